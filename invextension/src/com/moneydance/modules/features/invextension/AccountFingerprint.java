@@ -0,0 +1,194 @@
+/*
+ * AccountFingerprint.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.model.*;
+
+import java.util.TreeSet;
+
+/**
+ * Summary of the transaction and price data underlying an investment account
+ * (and its security sub-accounts).  BulkSecInfo compares fingerprints on
+ * refresh so that only accounts whose data has moved are rebuilt.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class AccountFingerprint {
+    // number of security sub-accounts
+    private int subAccountCount;
+    // number of transactions across investment account and sub-accounts
+    private int txnCount;
+    // highest transaction id seen
+    private long maxTxnId;
+    // earliest and latest transaction dates
+    private int minDateInt;
+    private int maxDateInt;
+    // latest "date entered" time stamp (i.e. last modification)
+    private long maxDateEntered;
+    // order-independent checksum of transaction ids, dates and split values
+    private long txnChecksum;
+    // checksum of price and split history of associated securities
+    private long priceChecksum;
+    // starting balance of investment account
+    private long startBalance;
+
+    public AccountFingerprint(InvestmentAccount invAcct, TransactionSet transactionSet) {
+        TreeSet<Account> accounts = BulkSecInfo.getSelectedSubAccounts(invAcct,
+                Account.ACCOUNT_TYPE_SECURITY);
+        this.subAccountCount = accounts.size();
+        this.minDateInt = Integer.MAX_VALUE;
+        this.maxDateInt = Integer.MIN_VALUE;
+        this.maxTxnId = Long.MIN_VALUE;
+        this.maxDateEntered = Long.MIN_VALUE;
+        this.startBalance = invAcct.getStartBalance();
+        addTransactions(invAcct, transactionSet);
+        for (Account account : accounts) {
+            addTransactions(account, transactionSet);
+            addPrices(account.getCurrencyType());
+        }
+    }
+
+    /**
+     * mixes a value into a 64-bit hash (so that checksums are sensitive to
+     * individual field changes, not just their sum)
+     *
+     * @param hash  running hash
+     * @param value value to mix in
+     * @return updated hash
+     */
+    private static long mix(long hash, long value) {
+        long h = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    private void addTransactions(Account account, TransactionSet transactionSet) {
+        TxnSet txnSet = transactionSet.getTransactionsForAccount(account);
+        for (AbstractTxn abstractTxn : txnSet) {
+            txnCount++;
+            long txnId = abstractTxn.getTxnId();
+            int dateInt = abstractTxn.getDateInt();
+            maxTxnId = Math.max(maxTxnId, txnId);
+            minDateInt = Math.min(minDateInt, dateInt);
+            maxDateInt = Math.max(maxDateInt, dateInt);
+            maxDateEntered = Math.max(maxDateEntered, abstractTxn.getDateEntered());
+            ParentTxn parentTxn = abstractTxn instanceof ParentTxn ? (ParentTxn) abstractTxn
+                    : abstractTxn.getParentTxn();
+            long hash = mix(mix(0L, txnId), dateInt);
+            for (int i = 0; i < parentTxn.getSplitCount(); i++) {
+                SplitTxn split = parentTxn.getSplit(i);
+                hash = mix(hash, split.getAccount().getAccountNum());
+                hash = mix(hash, split.getValue());
+                hash = mix(hash, split.getAmount());
+            }
+            // sum keeps checksum independent of iteration order
+            txnChecksum += hash;
+        }
+    }
+
+    /**
+     * hashes every snapshot and split of the currency, since an edit to an
+     * earlier price or split changes values (and split-adjusted positions)
+     * of transactions which are themselves unchanged
+     *
+     * @param currencyType security currency
+     */
+    private void addPrices(CurrencyType currencyType) {
+        int snapshotCount = currencyType.getSnapshotCount();
+        long hash = mix(mix(priceChecksum, currencyType.getID()), snapshotCount);
+        hash = mix(hash, Double.doubleToLongBits(currencyType.getUserRate()));
+        for (int i = 0; i < snapshotCount; i++) {
+            CurrencyType.Snapshot snapshot = currencyType.getSnapshot(i);
+            hash = mix(hash, snapshot.getDateInt());
+            hash = mix(hash, Double.doubleToLongBits(snapshot.getUserRate()));
+        }
+        int splitCount = currencyType.getSplitCount();
+        hash = mix(hash, splitCount);
+        for (int i = 0; i < splitCount; i++) {
+            CurrencyType.StockSplit split = currencyType.getSplit(i);
+            hash = mix(hash, split.getDateInt());
+            hash = mix(hash, Double.doubleToLongBits(split.getSplitRatio()));
+        }
+        priceChecksum = hash;
+    }
+
+    public int getTxnCount() {
+        return txnCount;
+    }
+
+    public long getMaxTxnId() {
+        return maxTxnId;
+    }
+
+    public int getMaxDateInt() {
+        return maxDateInt;
+    }
+
+    public long getMaxDateEntered() {
+        return maxDateEntered;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + txnCount;
+        result = prime * result + (int) (maxTxnId ^ (maxTxnId >>> 32));
+        result = prime * result + (int) (txnChecksum ^ (txnChecksum >>> 32));
+        result = prime * result + (int) (priceChecksum ^ (priceChecksum >>> 32));
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        AccountFingerprint other = (AccountFingerprint) obj;
+        return subAccountCount == other.subAccountCount
+                && txnCount == other.txnCount
+                && maxTxnId == other.maxTxnId
+                && minDateInt == other.minDateInt
+                && maxDateInt == other.maxDateInt
+                && maxDateEntered == other.maxDateEntered
+                && txnChecksum == other.txnChecksum
+                && priceChecksum == other.priceChecksum
+                && startBalance == other.startBalance;
+    }
+
+    @Override
+    public String toString() {
+        return "txns: " + txnCount + " maxTxnId: " + maxTxnId + " dates: " + minDateInt
+                + "-" + maxDateInt + " lastEntered: " + maxDateEntered;
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * BatchReportRunner.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.controller.io.FileUtils;
+import com.moneydance.apps.md.model.RootAccount;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+
+/**
+ * Runs saved report configurations against a Moneydance data file from
+ * the command line, writing each report to a csv file.  Runs headless
+ * (no windows are opened), and prints the time taken by each phase
+ * (also appended to the ReportProfiler file in the output directory).
+ * <p/>
+ * Usage: BatchReportRunner dataFile outputDirectory [reportName]
+ * [-config prefsFile] [-serial] [-rolling] [-allranges]
+ * <p/>
+ * All saved reports are run unless a report name is given.  With
+ * -rolling, each "From/To" report is followed by a rolling returns report
+ * over its date range.  With -allranges, each "From/To" report is run for
+ * every date rule in one pass, written to one csv file per rule.  With a
+ * prefs file (as exported from the report configuration preferences),
+ * reports are read from that file instead of the user's preferences
+ * (which are left unchanged), so that configurations can be maintained
+ * elsewhere.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class BatchReportRunner {
+    private static final String USAGE = "usage: BatchReportRunner dataFile outputDirectory [reportName] " +
+            "[-config prefsFile] [-serial] [-rolling] [-allranges]";
+    private final File dataFile;
+    private final File outputDirectory;
+    private final boolean parallelRun;
+    private boolean rollingReturns; // if true, From/To reports are followed by rolling returns
+    private boolean allDateRanges;  // if true, From/To reports are run for every date rule
+    private final LinkedHashMap<String, Long> phaseTimes = new LinkedHashMap<>();
+
+    /**
+     * @param dataFile        Moneydance data file (root.mdinternal)
+     * @param outputDirectory directory for csv files
+     * @param parallelRun     true to load securities and calculate reports in parallel
+     */
+    public BatchReportRunner(File dataFile, File outputDirectory, boolean parallelRun) {
+        this.dataFile = dataFile;
+        this.outputDirectory = outputDirectory;
+        this.parallelRun = parallelRun;
+    }
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        ArrayList<String> positionalArgs = new ArrayList<>();
+        File configFile = null;
+        boolean parallelRun = true;
+        boolean rollingReturns = false;
+        boolean allDateRanges = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-config") && i + 1 < args.length) {
+                configFile = new File(args[++i]);
+            } else if (args[i].equals("-serial")) {
+                parallelRun = false;
+            } else if (args[i].equals("-rolling")) {
+                rollingReturns = true;
+            } else if (args[i].equals("-allranges")) {
+                allDateRanges = true;
+            } else {
+                positionalArgs.add(args[i]);
+            }
+        }
+        if (positionalArgs.size() < 2 || positionalArgs.size() > 3) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try {
+            Preferences configPrefs = configFile != null ? importReportConfigs(configFile)
+                    : Prefs.REPORT_CONFIG_PREFS;
+            BatchReportRunner runner = new BatchReportRunner(new File(positionalArgs.get(0)),
+                    new File(positionalArgs.get(1)), parallelRun);
+            runner.setRollingReturns(rollingReturns);
+            runner.setAllDateRanges(allDateRanges);
+            ArrayList<ReportConfig> reportConfigs =
+                    getSavedReportConfigs(configPrefs, positionalArgs.size() == 3 ? positionalArgs.get(2) : null);
+            if (reportConfigs.isEmpty()) {
+                System.err.println("No saved report named " + positionalArgs.get(2));
+                System.exit(1);
+            }
+            runner.runReports(reportConfigs);
+            runner.printPhaseTimes();
+        } catch (Exception e) {
+            LogController.logException(e, "Error on running batch reports: ");
+            e.printStackTrace(System.err);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * reads report configurations from exported preferences file, without
+     * importing them into the user's preferences
+     *
+     * @param configFile preferences file
+     * @return report configuration node read from file (as
+     * Prefs.REPORT_CONFIG_PREFS)
+     * @throws Exception
+     */
+    public static Preferences importReportConfigs(File configFile) throws Exception {
+        try (InputStream inputStream = new FileInputStream(configFile)) {
+            return MemoryPreferences.readPreferences(inputStream).node(Prefs.REPORT_CONFIG_PATH);
+        }
+    }
+
+    /**
+     * @param reportName name of report to find, or null for all
+     * @return report configurations saved in user's preferences (standard
+     * configurations if none are saved)
+     * @throws Exception
+     */
+    public static ArrayList<ReportConfig> getSavedReportConfigs(String reportName) throws Exception {
+        return getSavedReportConfigs(Prefs.REPORT_CONFIG_PREFS, reportName);
+    }
+
+    /**
+     * @param configPrefs report configuration node (as
+     *                    Prefs.REPORT_CONFIG_PREFS)
+     * @param reportName  name of report to find, or null for all
+     * @return saved report configurations (standard configurations if
+     * none are saved)
+     * @throws NoSuchFieldException
+     * @throws IllegalAccessException
+     * @throws BackingStoreException
+     */
+    public static ArrayList<ReportConfig> getSavedReportConfigs(Preferences configPrefs, String reportName)
+            throws NoSuchFieldException, IllegalAccessException, BackingStoreException {
+        ArrayList<ReportConfig> reportConfigs = new ArrayList<>();
+        ArrayList<Class<? extends TotalReport>> reportClasses = new ArrayList<>();
+        reportClasses.add(TotalFromToReport.class);
+        reportClasses.add(TotalSnapshotReport.class);
+        for (Class<? extends TotalReport> reportClass : reportClasses) {
+            String[] reportNames = ReportConfig.getReportNamesForClass(configPrefs, reportClass);
+            if (reportNames.length == 0) reportNames = new String[]{Prefs.STANDARD_NAME};
+            for (String name : reportNames) {
+                if (reportName == null || reportName.trim().equals(name.trim())) {
+                    reportConfigs.add(new ReportConfig(configPrefs, reportClass, name));
+                }
+            }
+        }
+        return reportConfigs;
+    }
+
+    /**
+     * loads data file, then calculates each report and writes it to csv
+     *
+     * @param reportConfigs reports to run
+     * @return csv files written
+     * @throws Exception
+     */
+    public ArrayList<File> runReports(ArrayList<ReportConfig> reportConfigs) throws Exception {
+        ArrayList<File> outputFiles = new ArrayList<>();
+        ReportProfiler.reset();
+        long runStartTime = ReportProfiler.startTime();
+        long phaseStart = runStartTime;
+        RootAccount root = FileUtils.readAccountsFromFile(dataFile, null);
+        phaseStart = recordPhase("load data file", phaseStart);
+
+        BulkSecInfo currentInfo = null;
+        for (ReportConfig reportConfig : reportConfigs) {
+            String description = reportConfig.getReportTypeName() + " - " + reportConfig.getReportName().trim();
+            // reuse security information from prior report, rebuilding
+            // only accounts affected by differences in configuration
+            if (currentInfo == null) {
+                currentInfo = new BulkSecInfo(root, reportConfig, parallelRun);
+            } else {
+                currentInfo.refresh(reportConfig);
+            }
+            phaseStart = recordPhase(description + ": load securities", phaseStart);
+
+            if (allDateRanges && reportConfig.getReportClass() == TotalFromToReport.class) {
+                MultiRangeFromToReport multiRangeReport = MultiRangeFromToReport.getDateRulePresetReport(reportConfig);
+                multiRangeReport.setParallelCalc(parallelRun);
+                multiRangeReport.calcReports(currentInfo);
+                phaseStart = recordPhase(description + ": calculate all date ranges", phaseStart);
+
+                TotalFromToReport[] rangeReports = multiRangeReport.getReports();
+                for (int i = 0; i < rangeReports.length; i++) {
+                    File outputFile = new File(outputDirectory, getOutputFileName(reportConfig)
+                            .replaceAll("\\.csv$", "_"
+                                    + multiRangeReport.getRangeName(i).replaceAll("[^A-Za-z0-9-]+", "_") + ".csv"));
+                    IOUtils.writeArrayListToCSV(rangeReports[i].listReportTableHeader(),
+                            rangeReports[i].listReportTable(), outputFile);
+                    outputFiles.add(outputFile);
+                }
+                phaseStart = recordPhase(description + ": write all date ranges", phaseStart);
+            } else {
+                TotalReport report = reportConfig.getReportClass() == TotalFromToReport.class
+                        ? new TotalFromToReport(reportConfig) : new TotalSnapshotReport(reportConfig);
+                report.setParallelCalc(parallelRun);
+                report.calcReport(currentInfo);
+                phaseStart = recordPhase(description + ": calculate report", phaseStart);
+
+                File outputFile = new File(outputDirectory, getOutputFileName(reportConfig));
+                IOUtils.writeArrayListToCSV(report.listReportTableHeader(), report.listReportTable(), outputFile);
+                outputFiles.add(outputFile);
+                phaseStart = recordPhase(description + ": write " + outputFile.getName(), phaseStart);
+            }
+
+            if (rollingReturns && reportConfig.getReportClass() == TotalFromToReport.class) {
+                RollingReturnReport rollingReport = RollingReturnReport.getStandardReport(reportConfig);
+                rollingReport.calcReport(currentInfo);
+                File rollingFile = new File(outputDirectory, getOutputFileName(reportConfig)
+                        .replaceAll("\\.csv$", "_rolling.csv"));
+                IOUtils.writeArrayListToCSV(RollingReturnReport.listRowsHeader(), rollingReport.listRows(),
+                        rollingFile);
+                outputFiles.add(rollingFile);
+                phaseStart = recordPhase(description + ": rolling returns", phaseStart);
+            }
+        }
+        ReportProfiler.appendProfile(outputDirectory, "Batch: " + dataFile.getPath());
+        ReportEngineStats.getInstance().recordReportRun(runStartTime, currentInfo);
+        return outputFiles;
+    }
+
+    public boolean isRollingReturns() {
+        return rollingReturns;
+    }
+
+    public void setRollingReturns(boolean rollingReturns) {
+        this.rollingReturns = rollingReturns;
+    }
+
+    public boolean isAllDateRanges() {
+        return allDateRanges;
+    }
+
+    public void setAllDateRanges(boolean allDateRanges) {
+        this.allDateRanges = allDateRanges;
+    }
+
+    /**
+     * @return elapsed milliseconds of each phase, in run order
+     */
+    public LinkedHashMap<String, Long> getPhaseTimes() {
+        return phaseTimes;
+    }
+
+    public void printPhaseTimes() {
+        long totalTime = 0;
+        for (Map.Entry<String, Long> entry : phaseTimes.entrySet()) {
+            System.out.println(entry.getKey() + "\t" + entry.getValue() + " ms");
+            totalTime += entry.getValue();
+        }
+        System.out.println("Total\t" + totalTime + " ms");
+        System.out.print(ReportProfiler.getSummary());
+    }
+
+    private long recordPhase(String phase, long phaseStart) {
+        long now = System.nanoTime();
+        phaseTimes.put(phase, (now - phaseStart) / 1000000);
+        return now;
+    }
+
+    /**
+     * @param reportConfig report configuration
+     * @return file name from report type and name (non-alphanumeric
+     * characters replaced)
+     */
+    static String getOutputFileName(ReportConfig reportConfig) {
+        String name = reportConfig.getReportTypeName() + "_" + reportConfig.getReportName().trim();
+        return name.replaceAll("[^A-Za-z0-9-]+", "_").replaceAll("^_+|_+$", "") + ".csv";
+    }
+}
@@ -31,6 +31,7 @@ package com.moneydance.modules.features.invextension;
 import com.moneydance.apps.md.model.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Retrieves maps which show relationships among accounts, + between accounts
@@ -72,43 +73,23 @@ public class BulkSecInfo {
     /**
      * Comparator sorts transaction by date, account number, a custom
      * ordering based on transaction type, finally by transaction ID
+     * (computes keys on each comparison--to sort lists, use getSortedTxnKeys,
+     * which computes each key once)
      */
     static Comparator<ParentTxn> txnComp = new Comparator<ParentTxn>() {
         @Override
         public int compare(ParentTxn t1, ParentTxn t2) {
-
-            Integer d1 = t1.getDateInt();
-            Integer d2 = t2.getDateInt();
-            Long id1 = t1.getTxnId();
-            Long id2 = t2.getTxnId();
-            Integer assocAcctNum1 = getAssociatedAccount(t1).getAccountNum();
-            Integer assocAcctNum2 = getAssociatedAccount(t2).getAccountNum();
-            Integer transTypeSort1 = getTxnSortOrder(t1);
-            Integer transTypeSort2 = getTxnSortOrder(t2);
-
-            if (d1.compareTo(d2) != 0) {// different dates
-                return d1.compareTo(d2); // return date order
-            } else { // same date
-                // if Associated Accounts are different, sort Acct Nums
-                if (assocAcctNum1.compareTo(assocAcctNum2) != 0) {
-                    return assocAcctNum1.compareTo(assocAcctNum2);
-                } else {
-                    // if transaction types are different, sort on custom order
-                    if (transTypeSort1.compareTo(transTypeSort2) != 0) {
-                        return transTypeSort1.compareTo(transTypeSort2);
-                    } else { // sort on transIDs
-                        return id1.compareTo(id2);
-                    } // end transIDs order
-                }// end custom order
-            } // end date order
+            return new TxnSortKey(t1).compareTo(new TxnSortKey(t2));
         } // end compare method
     }; // end inner class
-    /* static reference to nextAcctNumber (to number account implementations of
+    /* next account number (to number account implementations of
      * cash currency */
-    private static int nextAcctNumber;
-    /*static reference to nextTxnNumber (to uniquely identify initial balance
+    private int nextAcctNumber;
+    /* next transaction number (to uniquely identify initial balance
      *  cash transactions)*/
-    private static long nextTxnNumber;
+    private long nextTxnNumber;
+    /* true if investment account wrappers are built on a fork/join pool */
+    private boolean parallelLoad;
     /* conveys account data here for processing */
     public Main extension;
     /* Cash Currency Type for uninvested cash */
@@ -119,42 +100,58 @@ public class BulkSecInfo {
     private HashMap<Integer, CurrencyWrapper> currencyWrappers;
     /* all transactions in root */
     private TransactionSet transactionSet;
-    /*TreeMap of Transvalues for leaf-level security Accounts */
-    private HashMap<Double, TransactionValues> securityTransactionValues;
+    /* parent transactions bucketed by associated account number */
+    private HashMap<Integer, ArrayList<ParentTxn>> associatedTxns;
     /* root account */
     private RootAccount root;
     /* GainsCalc Type */
-    private GainsCalc gainsCalc;
+    private CostBasisMethod costBasisMethod;
     /* HashSet of InvestmentAccount Wrappers */
     private HashSet<InvestmentAccountWrapper> investmentWrappers;
+    /* fingerprints of investment accounts (by account number) as of last build */
+    private HashMap<Integer, AccountFingerprint> accountFingerprints;
 
     public BulkSecInfo(RootAccount root, ReportConfig reportConfig) throws Exception {
+        this(root, reportConfig, false);
+    }
+
+    /**
+     * @param root         root account
+     * @param reportConfig Report Config from display
+     * @param parallelLoad if true, investment accounts are loaded in parallel
+     *                     (results are identical to serial load)
+     * @throws Exception
+     */
+    public BulkSecInfo(RootAccount root, ReportConfig reportConfig, boolean parallelLoad) throws Exception {
+        long startTime = ReportProfiler.startTime();
         this.root = root;
-        this.gainsCalc = reportConfig.useAverageCostBasis ? new GainsAverageCalc() : new GainsLotMatchCalc();
+        this.parallelLoad = parallelLoad;
+        this.costBasisMethod = reportConfig.getCostBasisMethod();
+        accountFingerprints = new HashMap<>();
         nextAcctNumber = this.root.getHighestAccountNum() + 1;
         transactionSet = this.root.getTransactionSet();
-        securityTransactionValues = new HashMap<>();
         firstDateInt = transactionSet.getDateBounds().getStartDateInt();
-        BulkSecInfo.nextTxnNumber = transactionSet.getAllTxns().getLastTxn().getTxnId() + 1L;
+        nextTxnNumber = transactionSet.getAllTxns().getLastTxn().getTxnId() + 1L;
         cashCurrencyWrapper = defineCashCurrency();
         currencyWrappers = getCurrencyWrappersFromRoot();
+        associatedTxns = bucketAssociatedTxns();
         investmentWrappers = getInvestmentAccountInfo(reportConfig);
+        ReportEngineStats.getInstance().recordAccountCache(0, investmentWrappers.size());
+        ReportProfiler.record(ReportProfiler.Phase.DATA_LOAD, startTime, investmentWrappers.size());
     }
 
-    public static int getNextAcctNumber() {
-        return nextAcctNumber;
-    }
-
-    public static void setNextAcctNumber(int nextAcctNumber) {
-        BulkSecInfo.nextAcctNumber = nextAcctNumber;
-    }
-
-    public static long getNextTxnNumber() {
-        return nextTxnNumber;
+    /**
+     * @return next synthetic account number (for cash accounts)
+     */
+    public synchronized int allocateAcctNumber() {
+        return nextAcctNumber++;
     }
 
-    public static void setNextTxnNumber(long nextTxnNumber) {
-        BulkSecInfo.nextTxnNumber = nextTxnNumber;
+    /**
+     * @return next synthetic transaction number (for initial balances)
+     */
+    public synchronized long allocateTxnNumber() {
+        return nextTxnNumber++;
     }
 
     /**
@@ -194,8 +191,17 @@ public class BulkSecInfo {
      * @return Integer which represents sort order
      */
     public static Integer getTxnSortOrder(ParentTxn parentTxn) {
-        InvestTxnType transType = TxnUtil.getInvestTxnType(parentTxn);
-        Integer txnOrder = 0;
+        return getTxnSortOrder(TxnUtil.getInvestTxnType(parentTxn));
+    }
+
+    /**
+     * returns custom sort order based on transaction type
+     *
+     * @param transType classified transaction type
+     * @return int which represents sort order
+     */
+    public static int getTxnSortOrder(InvestTxnType transType) {
+        int txnOrder = 0;
         switch (transType) {
             case BUY:
                 txnOrder = 0;
@@ -317,12 +323,69 @@ public class BulkSecInfo {
         return associatedAccount;
     }
 
-    public TransactionSet getTransactionSet() {
-        return transactionSet;
+    /**
+     * Adds parent transaction to bucket for account (investment and
+     * security accounts only), unless just added
+     *
+     * @param buckets   transactions by account number
+     * @param account   associated account
+     * @param parentTxn parent transaction
+     */
+    private static void addToBucket(HashMap<Integer, ArrayList<ParentTxn>> buckets,
+                                    Account account, ParentTxn parentTxn) {
+        int acctType = account.getAccountType();
+        if (acctType != Account.ACCOUNT_TYPE_INVESTMENT && acctType != Account.ACCOUNT_TYPE_SECURITY)
+            return;
+        ArrayList<ParentTxn> bucket = buckets.get(account.getAccountNum());
+        if (bucket == null) {
+            bucket = new ArrayList<>();
+            buckets.put(account.getAccountNum(), bucket);
+        }
+        if (bucket.isEmpty() || bucket.get(bucket.size() - 1) != parentTxn)
+            bucket.add(parentTxn);
+    }
+
+    /**
+     * Returns (unsorted) parent transactions associated with an account, i.e.
+     * those for which getAssociatedAccount returns the account for the
+     * parent or one of its splits
+     *
+     * @param account security account, or investment account for cash
+     * @return new list of associated parent transactions
+     */
+    public ArrayList<ParentTxn> getAssociatedTxns(Account account) {
+        ArrayList<ParentTxn> bucket = associatedTxns.get(account.getAccountNum());
+        if (bucket == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(bucket);
+    }
+
+    /**
+     * Returns sort keys for parent transactions associated with an account,
+     * sorted in txnComp order (decorate-sort: each key is computed once)
+     *
+     * @param account security account, or investment account for cash
+     * @return sorted keys of associated parent transactions
+     */
+    public ArrayList<TxnSortKey> getSortedTxnKeys(Account account) {
+        long startTime = ReportProfiler.startTime();
+        ArrayList<TxnSortKey> sortKeys = new ArrayList<>();
+        ArrayList<ParentTxn> bucket = associatedTxns.get(account.getAccountNum());
+        if (bucket != null) {
+            sortKeys.ensureCapacity(bucket.size());
+            for (ParentTxn parentTxn : bucket) {
+                sortKeys.add(new TxnSortKey(parentTxn));
+            }
+            Collections.sort(sortKeys);
+        }
+        // transactions are counted when bucketed
+        ReportProfiler.record(ReportProfiler.Phase.TRANSACTION_BUCKETING, startTime, 0);
+        return sortKeys;
     }
 
-    public HashMap<Double, TransactionValues> getSecurityTransactionValues() {
-        return securityTransactionValues;
+    public TransactionSet getTransactionSet() {
+        return transactionSet;
     }
 
     public CurrencyWrapper getCashCurrencyWrapper() {
@@ -337,18 +400,154 @@ public class BulkSecInfo {
         return firstDateInt;
     }
 
+    /**
+     * gets user rate on date from the currency's wrapper (dense daily rates),
+     * or from the currency itself if it has no wrapper (e.g. base currency)
+     *
+     * @param cur     currency (null implies base currency)
+     * @param dateInt date of rate
+     * @return user rate
+     */
+    public double getUserRateByDateInt(CurrencyType cur, int dateInt) {
+        if (cur == null) return 1.0;
+        CurrencyWrapper currencyWrapper = currencyWrappers.get(cur.getID());
+        return currencyWrapper == null ? cur.getUserRateByDateInt(dateInt)
+                : currencyWrapper.getUserRateByDateInt(dateInt);
+    }
+
+    /**
+     * gets split factor between dates from the currency's wrapper (split
+     * ladder), or from the currency itself if it has no wrapper
+     *
+     * @param cur         currency (null implies base currency)
+     * @param fromDateInt reference date
+     * @param toDateInt   date to adjust to
+     * @return factor by which a position held at fromDateInt changes
+     * through splits up to toDateInt
+     */
+    public double getSplitFactor(CurrencyType cur, int fromDateInt, int toDateInt) {
+        if (cur == null) return 1.0;
+        CurrencyWrapper currencyWrapper = currencyWrappers.get(cur.getID());
+        return currencyWrapper == null ? cur.adjustRateForSplitsInt(fromDateInt, 1.0, toDateInt)
+                : currencyWrapper.getSplitFactor(fromDateInt, toDateInt);
+    }
+
+    /**
+     * @return approximate heap used by ledgers, daily rates and transaction
+     * buckets, in bytes (transaction values are released once ledgers are
+     * built)
+     */
+    public long getFootprintBytes() {
+        long footprintBytes = 0;
+        for (InvestmentAccountWrapper invWrapper : investmentWrappers) {
+            for (SecurityAccountWrapper secWrapper : invWrapper.getSecurityAccountWrappers()) {
+                if (secWrapper.getLedger() != null) footprintBytes += secWrapper.getLedger().getFootprintBytes();
+                if (secWrapper.getLotLedger() != null) footprintBytes += secWrapper.getLotLedger().getFootprintBytes();
+            }
+        }
+        for (CurrencyWrapper currencyWrapper : currencyWrappers.values()) {
+            footprintBytes += currencyWrapper.getFootprintBytes();
+        }
+        for (ArrayList<ParentTxn> bucket : associatedTxns.values()) {
+            footprintBytes += 8L * bucket.size() + 40;
+        }
+        return footprintBytes;
+    }
+
     public RootAccount getRoot() {
         return root;
     }
 
-    public GainsCalc getGainsCalc() {
-        return gainsCalc;
+    /**
+     * GainsCalc implementations hold per-transaction state, so each
+     * investment account gets its own instance
+     *
+     * @return new GainsCalc of the type selected for this object
+     */
+    public GainsCalc createGainsCalc() {
+        return costBasisMethod.createGainsCalc();
+    }
+
+    public boolean isParallelLoad() {
+        return parallelLoad;
+    }
+
+    public void setParallelLoad(boolean parallelLoad) {
+        this.parallelLoad = parallelLoad;
     }
 
     public HashSet<InvestmentAccountWrapper> getInvestmentWrappers() {
         return investmentWrappers;
     }
 
+    /**
+     * Brings this object up to date with the underlying root account.
+     * Investment accounts whose fingerprint is unchanged keep their existing
+     * wrappers and transaction values; changed accounts are rebuilt, new
+     * accounts are added and excluded or deleted accounts are dropped.
+     * A change in cost basis method forces all accounts to be rebuilt.
+     *
+     * @param reportConfig Report Config from display
+     * @return number of investment accounts rebuilt
+     * @throws Exception
+     */
+    public int refresh(ReportConfig reportConfig) throws Exception {
+        long startTime = ReportProfiler.startTime();
+        boolean rebuildAll = false;
+        if (reportConfig.getCostBasisMethod() != costBasisMethod) {
+            costBasisMethod = reportConfig.getCostBasisMethod();
+            rebuildAll = true;
+        }
+        int startDateInt = transactionSet.getDateBounds().getStartDateInt();
+        if (startDateInt < firstDateInt) {
+            firstDateInt = startDateInt;
+            cashCurrencyWrapper.getCurrencyType().addSnapshotInt(firstDateInt, 1.0);
+        }
+        addNewCurrencyWrappers();
+        // prices may have been edited since last build
+        for (CurrencyWrapper currencyWrapper : currencyWrappers.values()) {
+            currencyWrapper.resetPrices();
+        }
+        associatedTxns = bucketAssociatedTxns();
+
+        HashMap<Integer, InvestmentAccountWrapper> priorWrappers = new HashMap<>();
+        for (InvestmentAccountWrapper investmentWrapper : investmentWrappers) {
+            priorWrappers.put(investmentWrapper.getInvestmentAccount().getAccountNum(), investmentWrapper);
+        }
+        HashSet<InvestmentAccountWrapper> invAcctWrappers = new HashSet<>();
+        HashMap<Integer, AccountFingerprint> fingerprints = new HashMap<>();
+        ArrayList<Callable<InvestmentAccountWrapper>> loaders = new ArrayList<>();
+        for (Account selectedSubAccount : getSelectedInvestmentAccounts(reportConfig)) {
+            InvestmentAccount invAcct = (InvestmentAccount) selectedSubAccount;
+            Integer acctNum = invAcct.getAccountNum();
+            AccountFingerprint fingerprint = new AccountFingerprint(invAcct, transactionSet);
+            InvestmentAccountWrapper invAcctWrapper = priorWrappers.remove(acctNum);
+            if (invAcctWrapper == null) {
+                loaders.add(getWrapperLoader(invAcct));
+            } else if (rebuildAll || !fingerprint.equals(accountFingerprints.get(acctNum))) {
+                invAcctWrapper.releaseTransactionValues();
+                loaders.add(getWrapperRefresher(invAcctWrapper));
+            } else {
+                invAcctWrappers.add(invAcctWrapper);
+            }
+            fingerprints.put(acctNum, fingerprint);
+        }
+        // accounts which have been excluded or deleted since last build
+        for (InvestmentAccountWrapper droppedWrapper : priorWrappers.values()) {
+            droppedWrapper.releaseTransactionValues();
+        }
+        for (InvestmentAccountWrapper invAcctWrapper : runWrapperLoaders(loaders)) {
+            invAcctWrapper.registerWithCurrencies();
+            invAcctWrappers.add(invAcctWrapper);
+        }
+        investmentWrappers = invAcctWrappers;
+        accountFingerprints = fingerprints;
+        ReportEngineStats.getInstance().recordAccountCache(invAcctWrappers.size() - loaders.size(),
+                loaders.size());
+        ReportProfiler.record(ReportProfiler.Phase.DATA_LOAD, startTime, loaders.size());
+        return loaders.size();
+    }
+
     /**
      * lists all TransactionValues in InvestmentAccountWrappers
      *
@@ -405,6 +604,54 @@ public class BulkSecInfo {
         return wrapperHashMap;
     }
 
+    /**
+     * Single pass over all transactions which buckets each parent transaction
+     * once, under its associated account.  Security transactions go to the
+     * (last) security account in the splits; other transactions go to the
+     * parent account and each split account, which matches
+     * getAssociatedAccount applied to the parent and its splits.
+     *
+     * @return parent transactions by associated account number
+     */
+    private HashMap<Integer, ArrayList<ParentTxn>> bucketAssociatedTxns() {
+        long startTime = ReportProfiler.startTime();
+        HashMap<Integer, ArrayList<ParentTxn>> buckets = new HashMap<>();
+        Set<ParentTxn> bucketedTxns = Collections.newSetFromMap(new IdentityHashMap<ParentTxn, Boolean>());
+        for (AbstractTxn abstractTxn : transactionSet.getAllTxns()) {
+            ParentTxn parentTxn = abstractTxn instanceof ParentTxn ? (ParentTxn) abstractTxn
+                    : abstractTxn.getParentTxn();
+            if (!bucketedTxns.add(parentTxn)) continue;
+            Account securityAccount = null;
+            for (int i = 0; i < parentTxn.getSplitCount(); i++) {
+                Account splitAccount = parentTxn.getSplit(i).getAccount();
+                if (splitAccount.getAccountType() == Account.ACCOUNT_TYPE_SECURITY)
+                    securityAccount = splitAccount;
+            }
+            if (securityAccount != null) {
+                addToBucket(buckets, securityAccount, parentTxn);
+            } else {
+                addToBucket(buckets, parentTxn.getAccount(), parentTxn);
+                for (int i = 0; i < parentTxn.getSplitCount(); i++) {
+                    addToBucket(buckets, parentTxn.getSplit(i).getAccount(), parentTxn);
+                }
+            }
+        }
+        ReportProfiler.record(ReportProfiler.Phase.TRANSACTION_BUCKETING, startTime, bucketedTxns.size());
+        return buckets;
+    }
+
+    /**
+     * adds currency wrappers for any securities created since last build
+     */
+    private void addNewCurrencyWrappers() {
+        for (CurrencyType currency : root.getCurrencyTable().getAllCurrencies()) {
+            if (currency.getCurrencyType() == CurrencyType.CURRTYPE_SECURITY
+                    && !currencyWrappers.containsKey(currency.getID())) {
+                currencyWrappers.put(currency.getID(), new CurrencyWrapper(currency, this));
+            }
+        }
+    }
+
     /**
      * @param reportConfig Report Config from display
      * @return Completed InvestmentAccountWrappers with interpreted transaction
@@ -412,6 +659,88 @@ public class BulkSecInfo {
      * @throws Exception
      */
     private HashSet<InvestmentAccountWrapper> getInvestmentAccountInfo(ReportConfig reportConfig) throws Exception {
+        ArrayList<Callable<InvestmentAccountWrapper>> loaders = new ArrayList<>();
+        for (Account selectedSubAccount : getSelectedInvestmentAccounts(reportConfig)) {
+            InvestmentAccount invAcct = (InvestmentAccount) selectedSubAccount;
+            loaders.add(getWrapperLoader(invAcct));
+            accountFingerprints.put(invAcct.getAccountNum(), new AccountFingerprint(invAcct, transactionSet));
+        } // end Investment Accounts Loop
+        HashSet<InvestmentAccountWrapper> invAcctWrappers = new HashSet<>();
+        for (InvestmentAccountWrapper invAcctWrapper : runWrapperLoaders(loaders)) {
+            // register in account order so that currency wrappers are deterministic
+            invAcctWrapper.registerWithCurrencies();
+            invAcctWrappers.add(invAcctWrapper);
+        }
+        return invAcctWrappers;
+    }
+
+    /**
+     * Creates a task to load an investment account into a wrapper.  Synthetic
+     * account and transaction numbers are allocated here (i.e. in account
+     * order) so that numbering does not depend on thread scheduling.
+     *
+     * @param invAcct investment account to load
+     * @return task which returns completed wrapper
+     */
+    private Callable<InvestmentAccountWrapper> getWrapperLoader(final InvestmentAccount invAcct) {
+        final int cashAcctNum = allocateAcctNumber();
+        final long initialBalanceTxnId = allocateTxnNumber();
+        return new Callable<InvestmentAccountWrapper>() {
+            @Override
+            public InvestmentAccountWrapper call() throws Exception {
+                //Load investment account into Wrapper Class
+                return new InvestmentAccountWrapper(invAcct, BulkSecInfo.this, cashAcctNum,
+                        initialBalanceTxnId);
+            }
+        };
+    }
+
+    /**
+     * @param invAcctWrapper existing wrapper to be rebuilt
+     * @return task which rebuilds and returns wrapper
+     */
+    private Callable<InvestmentAccountWrapper> getWrapperRefresher(final InvestmentAccountWrapper invAcctWrapper) {
+        return new Callable<InvestmentAccountWrapper>() {
+            @Override
+            public InvestmentAccountWrapper call() throws Exception {
+                invAcctWrapper.refreshTransactionValues();
+                return invAcctWrapper;
+            }
+        };
+    }
+
+    /**
+     * Runs wrapper tasks, either in order on this thread or on a fork/join
+     * pool, depending on parallelLoad
+     *
+     * @param loaders tasks which build investment account wrappers
+     * @return completed wrappers, in same order as tasks
+     * @throws Exception
+     */
+    private ArrayList<InvestmentAccountWrapper> runWrapperLoaders(
+            ArrayList<Callable<InvestmentAccountWrapper>> loaders) throws Exception {
+        ArrayList<InvestmentAccountWrapper> invAcctWrappers = new ArrayList<>();
+        if (!parallelLoad || loaders.size() < 2) {
+            for (Callable<InvestmentAccountWrapper> loader : loaders) {
+                invAcctWrappers.add(loader.call());
+            }
+        } else {
+            for (Future<InvestmentAccountWrapper> future : ReportPool.getPool().invokeAll(loaders)) {
+                try {
+                    invAcctWrappers.add(future.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        return invAcctWrappers;
+    }
+
+    /**
+     * @param reportConfig Report Config from display
+     * @return investment accounts in root, less those excluded by report config
+     */
+    private TreeSet<Account> getSelectedInvestmentAccounts(ReportConfig reportConfig) {
         TreeSet<Account> allSubAccounts = getSelectedSubAccounts(root, Account.ACCOUNT_TYPE_INVESTMENT);
         HashSet<Integer> excludedAccountNums = reportConfig.getExcludedAccountNums();
         TreeSet<Account> selectedSubAccounts = new TreeSet<>(acctComp);
@@ -420,15 +749,7 @@ public class BulkSecInfo {
                 selectedSubAccounts.add(account);
             }
         }
-        HashSet<InvestmentAccountWrapper> invAcctWrappers = new HashSet<>();
-        for (Account selectedSubAccount : selectedSubAccounts) {
-            InvestmentAccount invAcct = (InvestmentAccount) selectedSubAccount;
-            //Load investment account into Wrapper Class
-            InvestmentAccountWrapper invAcctWrapper = new InvestmentAccountWrapper(
-                    invAcct, this);
-            invAcctWrappers.add(invAcctWrapper);
-        } // end Investment Accounts Loop
-        return invAcctWrappers;
+        return selectedSubAccounts;
     }
 
 }
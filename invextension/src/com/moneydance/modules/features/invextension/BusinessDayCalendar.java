@@ -0,0 +1,208 @@
+/*
+ * BusinessDayCalendar.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import java.util.Calendar;
+
+/**
+ * Immutable business day calendar for a range of years.  Business days are
+ * held in a bitset by epoch day, along with the index of the previous and
+ * next business day for each day, so lookups are O(1) and need no locking.
+ * Dates outside the range are computed day by day from the same holidays.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public final class BusinessDayCalendar {
+    /**
+     * Holidays of an exchange (or other business day convention)
+     */
+    public interface HolidaySet {
+        /**
+         * @param year year
+         * @return holidays (dateInts) observed in year (weekend dates are allowed)
+         */
+        int[] getHolidays(int year);
+    }
+
+    /* New York Stock Exchange holidays (as observed) */
+    public static final HolidaySet NYSE = new HolidaySet() {
+        @Override
+        public int[] getHolidays(int year) {
+            return DateUtils.getOfflimitDateInts(year);
+        }
+    };
+    /* weekends only, no holidays */
+    public static final HolidaySet WEEKDAYS = new HolidaySet() {
+        @Override
+        public int[] getHolidays(int year) {
+            return new int[0];
+        }
+    };
+    private static final int DEFAULT_FIRST_YEAR = 1960;
+    private static final int DEFAULT_LAST_YEAR = 2100;
+
+    private final HolidaySet holidaySet;
+    private final int firstEpochDay;
+    private final int dayCount;
+    private final long[] businessDays;
+    // index of latest business day strictly before each day (-1 if none in range)
+    private final int[] prevIndices;
+    // index of earliest business day strictly after each day (dayCount if none in range)
+    private final int[] nextIndices;
+
+    public BusinessDayCalendar(HolidaySet holidaySet, int firstYear, int lastYear) {
+        this.holidaySet = holidaySet;
+        this.firstEpochDay = DateUtils.toEpochDay(firstYear * 10000 + 101);
+        this.dayCount = DateUtils.toEpochDay(lastYear * 10000 + 1231) - firstEpochDay + 1;
+        this.businessDays = new long[(dayCount + 63) / 64];
+        for (int index = 0; index < dayCount; index++) {
+            if (!isWeekend(firstEpochDay + index)) setBit(index);
+        }
+        for (int year = firstYear; year <= lastYear; year++) {
+            for (int holiday : holidaySet.getHolidays(year)) {
+                // a holiday counts only in its own year (e.g. New Year's Day
+                // on a Saturday is not observed on the prior Friday)
+                int index = DateUtils.toEpochDay(holiday) - firstEpochDay;
+                if (holiday / 10000 == year && index >= 0 && index < dayCount) clearBit(index);
+            }
+        }
+        prevIndices = new int[dayCount];
+        int prevIndex = -1;
+        for (int index = 0; index < dayCount; index++) {
+            prevIndices[index] = prevIndex;
+            if (getBit(index)) prevIndex = index;
+        }
+        nextIndices = new int[dayCount];
+        int nextIndex = dayCount;
+        for (int index = dayCount - 1; index >= 0; index--) {
+            nextIndices[index] = nextIndex;
+            if (getBit(index)) nextIndex = index;
+        }
+    }
+
+    /**
+     * @return NYSE calendar (built on first use)
+     */
+    public static BusinessDayCalendar getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    public boolean isBusinessDay(int dateInt) {
+        int index = DateUtils.toEpochDay(dateInt) - firstEpochDay;
+        if (index >= 0 && index < dayCount) {
+            return getBit(index);
+        } else {
+            return isComputedBusinessDay(index + firstEpochDay);
+        }
+    }
+
+    /**
+     * @param dateInt start date
+     * @return latest business day before dateInt
+     */
+    public int getPrevBusinessDay(int dateInt) {
+        int index = DateUtils.toEpochDay(dateInt) - firstEpochDay;
+        if (index >= 0 && index < dayCount && prevIndices[index] >= 0) {
+            return DateUtils.fromEpochDay(firstEpochDay + prevIndices[index]);
+        }
+        int epochDay = index + firstEpochDay - 1;
+        while (!isBusinessDayByEpochDay(epochDay)) epochDay--;
+        return DateUtils.fromEpochDay(epochDay);
+    }
+
+    /**
+     * @param dateInt start date
+     * @return earliest business day after dateInt
+     */
+    public int getNextBusinessDay(int dateInt) {
+        int index = DateUtils.toEpochDay(dateInt) - firstEpochDay;
+        if (index >= 0 && index < dayCount && nextIndices[index] < dayCount) {
+            return DateUtils.fromEpochDay(firstEpochDay + nextIndices[index]);
+        }
+        int epochDay = index + firstEpochDay + 1;
+        while (!isBusinessDayByEpochDay(epochDay)) epochDay++;
+        return DateUtils.fromEpochDay(epochDay);
+    }
+
+    /**
+     * @param dateInt start date
+     * @return dateInt if it is a business day, otherwise latest business
+     * day before it
+     */
+    public int getLatestBusinessDay(int dateInt) {
+        return isBusinessDay(dateInt) ? dateInt : getPrevBusinessDay(dateInt);
+    }
+
+    public HolidaySet getHolidaySet() {
+        return holidaySet;
+    }
+
+    private boolean isBusinessDayByEpochDay(int epochDay) {
+        int index = epochDay - firstEpochDay;
+        return index >= 0 && index < dayCount ? getBit(index) : isComputedBusinessDay(epochDay);
+    }
+
+    /**
+     * business day test for days outside precomputed range
+     */
+    private boolean isComputedBusinessDay(int epochDay) {
+        if (isWeekend(epochDay)) return false;
+        int dateInt = DateUtils.fromEpochDay(epochDay);
+        int year = dateInt / 10000;
+        for (int holiday : holidaySet.getHolidays(year)) {
+            if (holiday / 10000 != year) continue;
+            if (DateUtils.toEpochDay(holiday) == epochDay) return false;
+        }
+        return true;
+    }
+
+    private static boolean isWeekend(int epochDay) {
+        int dayOfWeek = DateUtils.getDayOfWeek(DateUtils.fromEpochDay(epochDay));
+        return dayOfWeek == Calendar.SATURDAY || dayOfWeek == Calendar.SUNDAY;
+    }
+
+    private boolean getBit(int index) {
+        return (businessDays[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void setBit(int index) {
+        businessDays[index >>> 6] |= 1L << index;
+    }
+
+    private void clearBit(int index) {
+        businessDays[index >>> 6] &= ~(1L << index);
+    }
+
+    private static class DefaultHolder {
+        static final BusinessDayCalendar INSTANCE =
+                new BusinessDayCalendar(NYSE, DEFAULT_FIRST_YEAR, DEFAULT_LAST_YEAR);
+    }
+}
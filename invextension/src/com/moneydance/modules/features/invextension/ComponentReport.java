@@ -36,6 +36,8 @@ package com.moneydance.modules.features.invextension;
  */
 
 public abstract class ComponentReport {
+    // XIRR solves of this report, until added to the run total (see addXirrSolves)
+    private XIRR.Solver xirrSolver;
 
     /**
      * adds SecurityReport to other SecurityReport or CompositeReport
@@ -52,40 +54,55 @@ public abstract class ComponentReport {
      * @return Annual return
      */
     public double computeAnnualReturn(DateMap retMap, double mdRet) {
+        if (xirrSolver == null) xirrSolver = new XIRR.Solver();
+        return computeAnnualReturn(retMap, mdRet, Double.NaN, xirrSolver);
+    }
+
+    /**
+     * adds XIRR solves of this report to total for report run, so that
+     * they are published once per run rather than per solve
+     *
+     * @param total solver accumulating report run
+     */
+    void addXirrSolves(XIRR.Solver total) {
+        if (xirrSolver != null) {
+            total.add(xirrSolver);
+            xirrSolver = null;
+        }
+    }
+
+    /**
+     * Returns annualized returns (same as excel XIRR function), starting
+     * search from a known nearby annual return (e.g. from a prior date)
+     *
+     * @param retMap    date map relating dateInts to cash flows
+     * @param mdRet     Mod-Dietz total return for guess if no warm start
+     * @param warmStart prior annual return, or NaN if none
+     * @param solver    solver counting XIRR solves of caller
+     * @return Annual return
+     */
+    public static double computeAnnualReturn(DateMap retMap, double mdRet, double warmStart,
+                                             XIRR.Solver solver) {
         // Assumes first value is startvalue, last is endvalue same with dates.
-        int numPeriods = retMap == null ? 0 : retMap.keySet().size();
-        double[] excelDates = new double[numPeriods];
-        double[] annRetValuesArray = new double[numPeriods];
-        int[] dateIntsArray = new int[numPeriods];
-
-        // Put datemap info into primitive arrays
-        if (retMap != null && retMap.keySet().size() > 0
-                && retMap.values().size() > 0) {
-            int i = 0;
-            for (Integer dateInt : retMap.keySet()) {
-                Double value = retMap.get(dateInt);
-                dateIntsArray[i] = dateInt;
-                annRetValuesArray[i] = value;
-                i++;
-            }
-        } else {
+        if (retMap == null || retMap.isEmpty()) {
             return Double.NaN;
         }
+        int numPeriods = retMap.size();
+        double[] excelDates = new double[numPeriods];
+        double[] annRetValuesArray = retMap.getValues();
 
         for (int i = 0; i < numPeriods; i++) {
-            excelDates[i] = DateUtils.getExcelDateValue(dateIntsArray[i]);
+            excelDates[i] = DateUtils.getExcelDateValue(retMap.getDateInt(i));
         }
         double totYrs = (excelDates[numPeriods - 1] - excelDates[0]) / 365;
 
         // Need to supply guess to return algorithm, so use modified dietz
         // return divided by number of years (have to add 1 because of returns
         // algorithm). Must be greater than zero
-        double guess = Math.max((1 + mdRet / totYrs), 0.01);
-
-        XIRRData thisData = new XIRRData(numPeriods, guess, annRetValuesArray,
-                excelDates);
+        double guess = Double.isNaN(warmStart) || Double.isInfinite(warmStart)
+                ? Math.max((1 + mdRet / totYrs), 0.01) : 1 + warmStart;
 
-        return XIRR.xirr(thisData);
+        return solver.xirr(annRetValuesArray, excelDates, numPeriods, guess);
     }
 
 
@@ -101,20 +118,19 @@ public abstract class ComponentReport {
      */
     public double computeMDReturn(double startValue, double endValue,
                                   double income, double expense, DateMap mdMap) {
-        if (mdMap.keySet().size() > 0 && mdMap.values().size() > 0) {
+        if (!mdMap.isEmpty()) {
             double mdValue;
             double sumCF = 0;
             double weightCF = 0;
 
-            Integer cd = DateUtils.getDaysBetween(mdMap.firstKey(),
-                    mdMap.lastKey());
-            Double cdD = cd.doubleValue();
+            int firstDateInt = mdMap.firstDateInt();
+            double cdD = DateUtils.getDaysBetween(firstDateInt,
+                    mdMap.lastDateInt());
 
-            for (Integer thisDateInt : mdMap.keySet()) {
-                Double cf = mdMap.get(thisDateInt);
-                Integer dayBetw = DateUtils.getDaysBetween(mdMap.firstKey(),
-                        thisDateInt);
-                Double dayBetD = dayBetw.doubleValue();
+            for (int i = 0; i < mdMap.size(); i++) {
+                double cf = mdMap.getValue(i);
+                double dayBetD = DateUtils.getDaysBetween(firstDateInt,
+                        mdMap.getDateInt(i));
                 double wSubI = (cdD - dayBetD) / cdD;
                 weightCF = weightCF + (wSubI * cf);
                 sumCF = sumCF + cf;
@@ -0,0 +1,161 @@
+/*
+ * CompositeIndex.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.modules.features.invextension.CompositeReport.COMPOSITE_TYPE;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Index of composite reports keyed by composite type and aggregator
+ * values, so that each security report is routed directly to the (at
+ * most four) composites it belongs to.  Aggregator values are interned
+ * to the first instance seen, so key comparisons are usually identity
+ * checks.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+class CompositeIndex {
+    private final AggregationController aggregationController;
+    private final boolean isHierarchy;
+    private final CompositeReport allComposite;
+    private final HashMap<Key, CompositeReport> composites = new HashMap<>();
+    private final HashMap<Aggregator, Aggregator> canonicalAggregators = new HashMap<>();
+
+    /**
+     * @param aggregationController input aggregation mode
+     * @param allComposite          "All-Securities" composite
+     */
+    CompositeIndex(AggregationController aggregationController, CompositeReport allComposite) {
+        this.aggregationController = aggregationController;
+        this.isHierarchy = aggregationController.isHierarchy();
+        this.allComposite = allComposite;
+    }
+
+    /**
+     * adds security report to its composites, creating any which
+     * don't yet exist
+     *
+     * @param securityReport leaf-level security report
+     */
+    void add(SecurityReport securityReport) {
+        allComposite.addTo(securityReport);
+
+        Aggregator first = intern(securityReport.getAggregator(aggregationController.getFirstAggregator()));
+        Aggregator second = intern(securityReport.getAggregator(aggregationController.getSecondAggregator()));
+        route(securityReport, new Key(COMPOSITE_TYPE.FIRST, first,
+                aggregationController.getSecondAggregator()));
+        // if second AggClass isn't AllAggregate, need 1 or 2 more
+        // aggregates
+        if (second != AllAggregate.getInstance()) {
+            route(securityReport, new Key(COMPOSITE_TYPE.BOTH, first, second));
+            // if second aggregate a subset of first, don't need
+            // second aggregate alone (line above suffices)
+            if (!isHierarchy)
+                route(securityReport, new Key(COMPOSITE_TYPE.SECOND,
+                        aggregationController.getFirstAggregator(), second));
+        }
+    }
+
+    /**
+     * @return all composites, including "All-Securities" composite
+     */
+    ArrayList<CompositeReport> getCompositeReports() {
+        ArrayList<CompositeReport> compositeReports = new ArrayList<>(composites.size() + 1);
+        compositeReports.add(allComposite);
+        compositeReports.addAll(composites.values());
+        return compositeReports;
+    }
+
+    private void route(SecurityReport securityReport, Key key) {
+        CompositeReport compositeReport = composites.get(key);
+        if (compositeReport == null) {
+            composites.put(key, securityReport.getCompositeReport(aggregationController,
+                    key.compositeType));
+        } else {
+            compositeReport.addTo(securityReport);
+        }
+    }
+
+    private Aggregator intern(Aggregator aggregator) {
+        if (aggregator == null) return null;
+        Aggregator canonical = canonicalAggregators.get(aggregator);
+        if (canonical == null) {
+            canonicalAggregators.put(aggregator, aggregator);
+            canonical = aggregator;
+        }
+        return canonical;
+    }
+
+    /*
+     * Composite identity, consistent with CompositeReport.equals
+     */
+    private static final class Key {
+        private final COMPOSITE_TYPE compositeType;
+        private final Aggregator firstAggregator;
+        private final Aggregator secondAggregator;
+        private final int hash;
+
+        Key(COMPOSITE_TYPE compositeType, Aggregator firstAggregator, Aggregator secondAggregator) {
+            this.compositeType = compositeType;
+            this.firstAggregator = firstAggregator;
+            this.secondAggregator = secondAggregator;
+            final int prime = 31;
+            int result = 1;
+            result = prime * result + compositeType.hashCode();
+            result = prime * result + (firstAggregator == null ? 0 : firstAggregator.hashCode());
+            result = prime * result + (secondAggregator == null ? 0 : secondAggregator.hashCode());
+            this.hash = result;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return compositeType == other.compositeType
+                    && sameAggregator(firstAggregator, other.firstAggregator)
+                    && sameAggregator(secondAggregator, other.secondAggregator);
+        }
+
+        private static boolean sameAggregator(Aggregator a, Aggregator b) {
+            return a == b || (a != null && a.equals(b));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * CostBasisMethod.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+/**
+ * Cost basis method used to calculate long basis (short basis is always
+ * average cost). Order matches the cost basis options of the report options
+ * panel.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public enum CostBasisMethod {
+    AVERAGE("Average Cost Basis Always"),
+    LOT_MATCH("Lot Matching Where Available"),
+    FIFO("First In, First Out"),
+    LIFO("Last In, First Out"),
+    HIFO("Highest Cost, First Out");
+    private final String description;
+
+    CostBasisMethod(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return new GainsCalc implementing this method
+     */
+    public GainsCalc createGainsCalc() {
+        switch (this) {
+            case LOT_MATCH:
+                return new GainsLotMatchCalc();
+            case FIFO:
+                return new GainsFifoCalc();
+            case LIFO:
+                return new GainsLifoCalc();
+            case HIFO:
+                return new GainsHifoCalc();
+            default:
+                return new GainsAverageCalc();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.description;
+    }
+}
@@ -29,6 +29,8 @@ package com.moneydance.modules.features.invextension;
 
 import com.moneydance.apps.md.model.CurrencyType;
 
+import java.util.Arrays;
+import java.util.Date;
 import java.util.LinkedHashSet;
 
 /**
@@ -48,6 +50,10 @@ public class CurrencyWrapper implements Aggregator {
     boolean isCash = false; //true if Currency represents uninvested cash
     LinkedHashSet<SecurityAccountWrapper> secAccts;
     BulkSecInfo currentInfo;
+    /* user rates by day, carried forward from price snapshots (built on first use) */
+    private volatile DailyRates dailyRates;
+    /* cumulative split factors (built on first use) */
+    private volatile SplitLadder splitLadder;
 
     public CurrencyWrapper(CurrencyType currencyType, BulkSecInfo currentInfo) {
         this.currentInfo = currentInfo;
@@ -162,4 +168,152 @@ public class CurrencyWrapper implements Aggregator {
         return currentInfo;
     }
 
+    /**
+     * gets user rate (units of currency per base currency) on date, as
+     * CurrencyType.getUserRateByDateInt, but from a dense array of daily rates
+     *
+     * @param dateInt date of rate
+     * @return user rate
+     */
+    public double getUserRateByDateInt(int dateInt) {
+        DailyRates rates = getDailyRates();
+        int index = DateUtils.toEpochDay(dateInt) - rates.startDay;
+        if (index >= 0 && index < rates.rates.length) {
+            return rates.rates[index];
+        } else {
+            // date outside daily rates (rare), so counted directly
+            ReportEngineStats.getInstance().recordPriceFallbackLookup();
+            return currencyType.getUserRateByDateInt(dateInt);
+        }
+    }
+
+    /**
+     * @param dateInt date of price
+     * @return price (in base currency) on date, 1.0 for cash
+     */
+    public double getPrice(int dateInt) {
+        return isCash ? 1.0 : 1.0 / getUserRateByDateInt(dateInt);
+    }
+
+    /**
+     * @param dateInts dates of rates
+     * @return user rates, in order of dateInts
+     */
+    public double[] getUserRatesByDateInt(int[] dateInts) {
+        double[] userRates = new double[dateInts.length];
+        for (int i = 0; i < dateInts.length; i++) {
+            userRates[i] = getUserRateByDateInt(dateInts[i]);
+        }
+        return userRates;
+    }
+
+    /**
+     * @param dateInts dates of prices
+     * @return prices (in base currency), in order of dateInts
+     */
+    public double[] getPrices(int[] dateInts) {
+        double[] prices = new double[dateInts.length];
+        for (int i = 0; i < dateInts.length; i++) {
+            prices[i] = getPrice(dateInts[i]);
+        }
+        return prices;
+    }
+
+    /**
+     * @param fromDateInt reference date
+     * @param toDateInt   date to adjust to
+     * @return factor by which a position held at fromDateInt changes through
+     * splits up to toDateInt
+     */
+    public double getSplitFactor(int fromDateInt, int toDateInt) {
+        SplitLadder ladder = splitLadder;
+        if (ladder == null) {
+            // concurrent first calls may each build (identical) ladders
+            ladder = new SplitLadder(currencyType);
+            splitLadder = ladder;
+        }
+        return ladder.getSplitFactor(fromDateInt, toDateInt);
+    }
+
+    /**
+     * @return approximate heap used by daily rates, in bytes
+     */
+    public long getFootprintBytes() {
+        DailyRates rates = dailyRates;
+        return rates == null ? 0 : 8L * rates.rates.length + 16;
+    }
+
+    /**
+     * discards daily rates and split factors, so they are rebuilt from
+     * current price and split history on next use
+     */
+    public void resetPrices() {
+        dailyRates = null;
+        splitLadder = null;
+    }
+
+    private DailyRates getDailyRates() {
+        DailyRates rates = dailyRates;
+        if (rates == null) {
+            // concurrent first calls may each build (identical) rates
+            rates = buildDailyRates();
+            dailyRates = rates;
+        }
+        return rates;
+    }
+
+    /**
+     * builds daily rates from first transaction date through the later of
+     * last transaction date, last snapshot date and today
+     *
+     * @return daily rates
+     */
+    private DailyRates buildDailyRates() {
+        int snapshotCount = currencyType.getSnapshotCount();
+        long[] snapshots = new long[snapshotCount]; // date in high bits, index in low
+        int startDateInt = currentInfo.getFirstDateInt();
+        int endDateInt = Math.max(currentInfo.getTransactionSet().getDateBounds().getEndDateInt(),
+                DateUtils.convertToDateInt(new Date()));
+        for (int i = 0; i < snapshotCount; i++) {
+            int snapshotDateInt = currencyType.getSnapshot(i).getDateInt();
+            endDateInt = Math.max(endDateInt, snapshotDateInt);
+            snapshots[i] = ((long) snapshotDateInt << 32) | i;
+        }
+        Arrays.sort(snapshots); // same-date snapshots stay in list order
+        int startDay = DateUtils.toEpochDay(startDateInt);
+        double[] rates = new double[DateUtils.toEpochDay(endDateInt) - startDay + 1];
+
+        // days before first snapshot take the rate Moneydance gives there
+        int firstSnapshotIndex = snapshotCount == 0 ? rates.length
+                : DateUtils.toEpochDay((int) (snapshots[0] >>> 32)) - startDay;
+        if (firstSnapshotIndex > 0) {
+            Arrays.fill(rates, 0, Math.min(firstSnapshotIndex, rates.length),
+                    currencyType.getUserRateByDateInt(startDateInt));
+        }
+        // each snapshot rate carries forward to the next snapshot
+        for (int i = 0; i < snapshotCount; i++) {
+            int fromIndex = Math.max(0, DateUtils.toEpochDay((int) (snapshots[i] >>> 32)) - startDay);
+            int toIndex = i + 1 < snapshotCount
+                    ? DateUtils.toEpochDay((int) (snapshots[i + 1] >>> 32)) - startDay : rates.length;
+            if (toIndex > fromIndex) {
+                Arrays.fill(rates, fromIndex, toIndex,
+                        currencyType.getSnapshot((int) snapshots[i]).getUserRate());
+            }
+        }
+        return new DailyRates(startDay, rates);
+    }
+
+    /**
+     * user rates for consecutive days, starting at startDay (epoch day)
+     */
+    private static class DailyRates {
+        final int startDay;
+        final double[] rates;
+
+        DailyRates(int startDay, double[] rates) {
+            this.startDay = startDay;
+            this.rates = rates;
+        }
+    }
+
 }
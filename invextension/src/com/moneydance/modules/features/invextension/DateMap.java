@@ -25,68 +25,138 @@
  * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
+
 package com.moneydance.modules.features.invextension;
 
 
-import java.util.Collection;
-import java.util.Set;
+import java.util.Arrays;
 import java.util.TreeMap;
 
 /*
 Map which matches dates to cash flows for returns
-calculations
+calculations.  Dates and cash flows are held in sorted
+primitive arrays; adds in date order append, others insert.
  */
 public class DateMap {
-    private TreeMap<Integer, Double> map;
+    private static final int INITIAL_CAPACITY = 16;
+    private int[] dateInts;
+    private double[] values;
+    private int size;
 
     DateMap() {
-        map = new TreeMap<>();
+        this(INITIAL_CAPACITY);
+    }
+
+    private DateMap(int capacity) {
+        dateInts = new int[Math.max(capacity, 1)];
+        values = new double[dateInts.length];
     }
 
 
     DateMap(DateMap old) {
-        map = new TreeMap<>();
-        map.putAll(old.map);
+        dateInts = Arrays.copyOf(old.dateInts, Math.max(old.size, 1));
+        values = Arrays.copyOf(old.values, dateInts.length);
+        size = old.size;
     }
 
 
-    public Double put(Integer dateInt, Double value) {
-        return map.put(dateInt, value);
+    /**
+     * copies a range of another map, leaving room to add a start and end
+     * value
+     *
+     * @param old       map to copy
+     * @param fromIndex first index to copy
+     * @param toIndex   last index to copy (exclusive)
+     */
+    DateMap(DateMap old, int fromIndex, int toIndex) {
+        this(toIndex - fromIndex + 2);
+        size = toIndex - fromIndex;
+        System.arraycopy(old.dateInts, fromIndex, dateInts, 0, size);
+        System.arraycopy(old.values, fromIndex, values, 0, size);
     }
 
 
-    public TreeMap<Integer, Double> getMap() {
-        return map;
+    /**
+     * sets cash flow on date, replacing any existing value
+     *
+     * @param dateInt date
+     * @param value   cash flow
+     */
+    public void put(int dateInt, double value) {
+        int index = indexOf(dateInt);
+        if (index >= 0) {
+            values[index] = value;
+        } else {
+            insert(-index - 1, dateInt, value);
+        }
+    }
+
+
+    /**
+     * @param dateInt date
+     * @return cash flow on date, or null if none
+     */
+    public Double get(int dateInt) {
+        int index = indexOf(dateInt);
+        return index >= 0 ? values[index] : null;
+    }
+
+
+    public int size() {
+        return size;
     }
 
 
-    public Double get(Integer dateInt) {
-        return map.get(dateInt);
+    public boolean isEmpty() {
+        return size == 0;
     }
 
 
-    public Set<Integer> keySet() {
-        return map.keySet();
+    public int getDateInt(int index) {
+        return dateInts[index];
     }
 
 
-    public Integer firstKey() {
-        return map.firstKey();
+    public double getValue(int index) {
+        return values[index];
     }
 
 
-    public Integer lastKey() {
-        return map.lastKey();
+    public int firstDateInt() {
+        return dateInts[0];
     }
 
 
-    public boolean isEmpty() {
-        return map.isEmpty();
+    public int lastDateInt() {
+        return dateInts[size - 1];
     }
 
 
-    public Collection<Double> values() {
-        return map.values();
+    /**
+     * @return dates in ascending order (copy)
+     */
+    public int[] getDateInts() {
+        return Arrays.copyOf(dateInts, size);
+    }
+
+
+    /**
+     * @return cash flows in date order (copy)
+     */
+    public double[] getValues() {
+        return Arrays.copyOf(values, size);
+    }
+
+
+    /**
+     * @return contents as TreeMap (copy, for display)
+     */
+    public TreeMap<Integer, Double> getMap() {
+        TreeMap<Integer, Double> map = new TreeMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(dateInts[i], values[i]);
+        }
+        return map;
     }
 
 
@@ -94,53 +164,90 @@ public class DateMap {
      * Adds date/cashflow pair to this date map, incrementing old value
      *
      * @param dateInt dateInto to add
-     * @return old value
+     * @param incr    cash flow to add
      */
-    public Double add(Integer dateInt, Double incr) {
-        Double oldVal = get(dateInt);
-        if (oldVal == null) {
-            return map.put(dateInt, incr);
+    public void add(int dateInt, double incr) {
+        if (size > 0 && dateInt == dateInts[size - 1]) {
+            values[size - 1] = values[size - 1] + incr;
+        } else if (size == 0 || dateInt > dateInts[size - 1]) {
+            insert(size, dateInt, incr);
         } else {
-            return put(dateInt, oldVal + incr);
+            int index = indexOf(dateInt);
+            if (index >= 0) {
+                values[index] = values[index] + incr;
+            } else {
+                insert(-index - 1, dateInt, incr);
+            }
         }
     }
 
 
+    /**
+     * @param operand input map (may be null)
+     * @return new map with cash flows of both maps added
+     */
+    public DateMap plus(DateMap operand) {
+        return merge(operand, false);
+    }
+
+
+    /**
+     * @param operand input map (may be null)
+     * @return new map with cash flows of operand subtracted from this map
+     */
+    public DateMap minus(DateMap operand) {
+        return merge(operand, true);
+    }
+
+
     /*
-     * Combines date maps, either adding or subtracting cash flows.
-     *
-     * @param operand input map
-     * @param combType either "add" or "subtract"
-     * @return resultant output map
+     * Combines date maps in a single pass over both, either adding or
+     * subtracting cash flows.
      */
-    public DateMap combine(DateMap operand, String combType) {
-        DateMap outMap = new DateMap(this);
-
-        if (operand != null) {
-            for (Integer operandDateInt : operand.keySet()) {
-                Double value2 = operand.get(operandDateInt);
-
-                if (outMap.get(operandDateInt) == null) {
-                    if ("add".equals(combType)) {
-                        outMap.put(operandDateInt, value2);
-                    }
-                    if ("subtract".equals(combType)) {
-                        outMap.put(operandDateInt, -value2);
-                    }
-                } else {
-                    if ("add".equals(combType)) {
-                        outMap.put(operandDateInt,
-                                this == null ? 0 : this.get(operandDateInt) + value2);
-                    }
-                    if ("subtract".equals(combType)) {
-                        outMap.put(operandDateInt,
-                                this == null ? 0 : this.get(operandDateInt) - value2);
-                    }
-                }
+    private DateMap merge(DateMap operand, boolean subtract) {
+        if (operand == null) return new DateMap(this);
+        DateMap outMap = new DateMap(size + operand.size);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < operand.size) {
+            if (j == operand.size || (i < size && dateInts[i] < operand.dateInts[j])) {
+                outMap.append(dateInts[i], values[i]);
+                i++;
+            } else if (i == size || operand.dateInts[j] < dateInts[i]) {
+                outMap.append(operand.dateInts[j], subtract ? -operand.values[j] : operand.values[j]);
+                j++;
+            } else {
+                outMap.append(dateInts[i], subtract ? values[i] - operand.values[j]
+                        : values[i] + operand.values[j]);
+                i++;
+                j++;
             }
         }
-
         return outMap;
     }
 
-}
\ No newline at end of file
+    private void append(int dateInt, double value) {
+        dateInts[size] = dateInt;
+        values[size] = value;
+        size++;
+    }
+
+    private void insert(int index, int dateInt, double value) {
+        if (size == dateInts.length) {
+            dateInts = Arrays.copyOf(dateInts, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(dateInts, index, dateInts, index + 1, size - index);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        dateInts[index] = dateInt;
+        values[index] = value;
+        size++;
+    }
+
+    /**
+     * @return index of dateInt, or (-(insertion point) - 1) if absent
+     */
+    private int indexOf(int dateInt) {
+        return Arrays.binarySearch(dateInts, 0, size, dateInt);
+    }
+}
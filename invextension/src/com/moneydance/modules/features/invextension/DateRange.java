@@ -132,6 +132,24 @@ class DateRange {
         return new DateRange(REF_DATE.LAST_TRADE_DATE, DATE_RULE.YEAR_TO_DATE, true);
     }
 
+    /**
+     * @param refDate           reference date
+     * @param snapDateIsRefDate true if snapshot date is reference date
+     * @return one DateRange for each date rule (except NONE), in enum order
+     */
+    public static DateRange[] getDateRulePresets(REF_DATE refDate, boolean snapDateIsRefDate) {
+        DATE_RULE[] dateRules = DATE_RULE.values();
+        DateRange[] output = new DateRange[dateRules.length - 1];
+        int i = 0;
+        for (DATE_RULE dateRule : dateRules) {
+            if (dateRule != DATE_RULE.NONE) {
+                output[i] = new DateRange(refDate, dateRule, snapDateIsRefDate);
+                i++;
+            }
+        }
+        return output;
+    }
+
     /**
      * @param prefString String from preferences
      * @return DateRange stored in preferences
@@ -203,6 +221,14 @@ class DateRange {
         return dateRule;
     }
 
+    /**
+     * @return true if snapshot date is reference date (null if date range
+     * has no date rule)
+     */
+    public Boolean getSnapDateIsRefDate() {
+        return snapDateIsRefDate;
+    }
+
     @Override
     public String toString() {
         return fromDateInt + "," + toDateInt + "," + snapDateInt + "," +
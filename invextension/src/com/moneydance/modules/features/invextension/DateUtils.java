@@ -39,9 +39,11 @@ import java.util.*;
  */
 public final class DateUtils {
     static final long MillisPerDay = (24 * 60 * 60 * 1000);
-    private static final GregorianCalendar dateStart = new GregorianCalendar(1899, 11, 31);
+    // day before 1/1/1900 (excel day zero)
+    private static final int excelStartDateInt = 18991231;
+    // days in each month of a non-leap year
+    private static final int[] monthLengths = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
     // private static Log log = LogFactory.getLog(MDBusinessDayUtil.class);
-    private static final transient Map<Integer, List<Date>> computedDates = new HashMap<>();
 
     private DateUtils() {
 
@@ -57,39 +59,12 @@ public final class DateUtils {
      * Veterans Day Thanksgiving Day Christmas Day Good Friday
      */
     public static boolean isBusinessDay(int dateIntToCheck) {
-        Date dateToCheck = convertToDate(dateIntToCheck);
-        // Setup the calendar to have the start date truncated
-        Calendar baseCal = Calendar.getInstance();
-        // baseCal.setTime(DateUtils.truncate(dateToCheck, Calendar.DATE));
-        // uses apache package--truncates dateToCheck to midnight of that date
-        baseCal.setTime(dateToCheck);
-        List<Date> offlimitDates;
-
-        // Grab the list of dates for the year. These SHOULD NOT be modified.
-        synchronized (computedDates) {
-            int year = baseCal.get(Calendar.YEAR);
-
-            // If the map doesn't already have the dates computed, create them.
-            if (!computedDates.containsKey(year)) {
-                computedDates.put(year, getOfflimitDates(year));
-            }
-            offlimitDates = computedDates.get(year);
-        }
-
-        // Determine if the date is on a weekend.
-        int dayOfWeek = baseCal.get(Calendar.DAY_OF_WEEK);
-        boolean onWeekend = dayOfWeek == Calendar.SATURDAY
-                || dayOfWeek == Calendar.SUNDAY;
-
-        // If it's on a holiday, increment and test again
-        // If it's on a weekend, increment necessary amount and test again
-        return !(offlimitDates.contains(dateToCheck) || onWeekend);
+        return BusinessDayCalendar.getDefault().isBusinessDay(dateIntToCheck);
     }
 
     /**
      * This method will calculate the next business day after the one input.
-     * This leverages the isBusinessDay heavily, so look at that documentation
-     * for further information.
+     * See BusinessDayCalendar (default calendar) for holidays.
      *
      * @param startDateInt the Date of which you need the next business day.
      * @return The next business day. I.E. it doesn't fall on a weekend, a
@@ -98,80 +73,50 @@ public final class DateUtils {
      */
     @SuppressWarnings("unused")
     public static int getNextBusinessDay(int startDateInt) {
-        // Increment the Date object by a Day and clear out hour/min/sec
-        // information
-        // Date startDate = convertToDate(startDateInt);
-
-        // int nextDayInt =
-        // convertToDateInt(DateUtils.truncate(addDays(startDate, 1),
-        // Calendar.DATE));
-        int nextDayInt = addDaysInt(startDateInt, 1);
-        // If tomorrow is a valid business day, return it
-        if (isBusinessDay(nextDayInt)) {
-            return nextDayInt;
-        } // Else we recursively call our function until we find one.
-        else {
-            return getNextBusinessDay(nextDayInt);
-        }
+        return BusinessDayCalendar.getDefault().getNextBusinessDay(startDateInt);
     }
 
     public static int getPrevBusinessDay(int startDateInt) {
-        // Increment the Date object by a Day and clear out hour/min/sec
-        // information
-
-        // int prevDayInt =
-        // convertToDateInt(DateUtils.truncate(addDays(startDate, -1),
-        // Calendar.DATE));
-        int prevDayInt = addDaysInt(startDateInt, -1);
-        // If tomorrow is a valid business day, return it
-        if (isBusinessDay(prevDayInt)) {
-            return prevDayInt;
-        } // Else we recursively call our function until we find one.
-        else {
-            return getPrevBusinessDay(prevDayInt);
-        }
+        return BusinessDayCalendar.getDefault().getPrevBusinessDay(startDateInt);
     }
 
     public static int getLatestBusinessDay(int startDateInt) {
-        // Increment the Date object by a Day and clear out hour/min/sec
-        // information
-
-        // int prevDayInt =
-        // convertToDateInt(DateUtils.truncate(addDays(startDate, -1),
-        // Calendar.DATE));
-        int prevDayInt = addDaysInt(startDateInt, -1);
-        // If tomorrow is a valid business day, return it
-        if (isBusinessDay(startDateInt)) {
-            return startDateInt;
-        } // Else we recursively call our function until we find one.
-        else {
-            return getLatestBusinessDay(prevDayInt);
-        }
+        return BusinessDayCalendar.getDefault().getLatestBusinessDay(startDateInt);
     }
 
     public static int getStartYear(int startDateInt) {
-        Calendar tempCal = GregorianCalendar.getInstance();
-        tempCal.setTime(convertToDate(startDateInt));
-        int tempYear = tempCal.get(Calendar.YEAR) * 10000 + 101;
+        int normalDateInt = normalize(startDateInt);
+        int tempYear = (normalDateInt / 10000) * 10000 + 101;
         return getPrevBusinessDay(tempYear);
     }
 
     public static int getStartMonth(int startDateInt) {
-        Calendar tempCal = GregorianCalendar.getInstance();
-        tempCal.setTime(convertToDate(startDateInt));
-        int tempYear = tempCal.get(Calendar.YEAR) * 10000 + (tempCal.get(Calendar.MONTH) + 1) * 100 + 1;
+        int normalDateInt = normalize(startDateInt);
+        int tempYear = (normalDateInt / 100) * 100 + 1;
         return getPrevBusinessDay(tempYear);
     }
 
     public static int getStartQuarter(int startDateInt) {
         int[] quarterStarts = {1, 1, 1, 3, 3, 3, 6, 6, 6, 9, 9, 9};
-        Calendar tempCal = GregorianCalendar.getInstance();
-        tempCal.setTime(convertToDate(startDateInt));
-        int tempYear = tempCal.get(Calendar.YEAR) * 10000 +
-                quarterStarts[tempCal.get(Calendar.MONTH)] * 100 + 1;
+        int normalDateInt = normalize(startDateInt);
+        int tempYear = (normalDateInt / 10000) * 10000 +
+                quarterStarts[(normalDateInt / 100) % 100 - 1] * 100 + 1;
         return getPrevBusinessDay(tempYear);
     }
 
+    /**
+     * @param year year
+     * @return NYSE holidays for year (as dateInts)
+     */
+    static int[] getOfflimitDateInts(int year) {
+        List<Date> offlimitDates = getOfflimitDates(year);
+        int[] offlimitDateInts = new int[offlimitDates.size()];
+        for (int i = 0; i < offlimitDateInts.length; i++) {
+            offlimitDateInts[i] = convertToDateInt(offlimitDates.get(i));
+        }
+        return offlimitDateInts;
+    }
+
     /*
      * Based on a year, this will compute the actual dates of
      *
@@ -441,22 +386,27 @@ public final class DateUtils {
 
     public static int addDaysInt(int dateIntToAdd, int numberOfDay) {
         if (dateIntToAdd == 0) throw new IllegalArgumentException("Date can't be zero!");
-        Calendar tempCal = Calendar.getInstance();
-
-        tempCal.setTime(convertToDate(dateIntToAdd));
-        tempCal.add(Calendar.DATE, numberOfDay);
-        return convertToDateInt(tempCal.getTime());
+        return fromEpochDay(toEpochDay(dateIntToAdd) + numberOfDay);
     }
 
+    /**
+     * adds months as Calendar.add(Calendar.MONTH, ...) does, i.e. day of
+     * month is reduced to the last day of a shorter month
+     *
+     * @param dateIntToAdd   input date
+     * @param numberOfMonths number of months to add
+     * @return new date
+     */
     public static int addMonthsInt(int dateIntToAdd, int numberOfMonths) {
         if (dateIntToAdd == 0) {
             throw new IllegalArgumentException("Date can't be zero!");
         }
-        Calendar tempCal = Calendar.getInstance();
-
-        tempCal.setTime(convertToDate(dateIntToAdd));
-        tempCal.add(Calendar.MONTH, numberOfMonths);
-        return convertToDateInt(tempCal.getTime());
+        int normalDateInt = normalize(dateIntToAdd);
+        int months = (normalDateInt / 10000) * 12 + (normalDateInt / 100) % 100 - 1 + numberOfMonths;
+        int year = months >= 0 ? months / 12 : (months - 11) / 12;
+        int month = months - year * 12 + 1;
+        int day = Math.min(normalDateInt % 100, getDaysInMonth(year, month));
+        return year * 10000 + month * 100 + day;
     }
 
     /**
@@ -514,11 +464,75 @@ public final class DateUtils {
      * @return number of days between dates
      */
     public static int getDaysBetween(int dateInt1, int dateInt2) {
-        Calendar di1 = convertToCal(dateInt1);
-        Calendar di2 = convertToCal(dateInt2);
+        return Math.abs(toEpochDay(dateInt1) - toEpochDay(dateInt2));
+    }
 
-        return Math.round(Math.abs(di1.getTimeInMillis() - di2.getTimeInMillis())
-                / (float) MillisPerDay);
+    /**
+     * converts dateInt to days since 1970-01-01 using integer arithmetic
+     * only (proleptic Gregorian calendar, no time zone)
+     *
+     * @param dateInt date (integer)
+     * @return epoch day
+     */
+    public static int toEpochDay(int dateInt) {
+        int year = dateInt / 10000;
+        int month = (dateInt / 100) % 100;
+        int day = dateInt % 100;
+        if (month <= 2) year--;
+        int era = (year >= 0 ? year : year - 399) / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * converts days since 1970-01-01 to dateInt (inverse of toEpochDay)
+     *
+     * @param epochDay epoch day
+     * @return date (integer)
+     */
+    public static int fromEpochDay(int epochDay) {
+        int shiftedDay = epochDay + 719468; // days from 3/1/0000
+        int era = (shiftedDay >= 0 ? shiftedDay : shiftedDay - 146096) / 146097;
+        int dayOfEra = shiftedDay - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153; // 0 is March
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    /**
+     * @param dateInt date (integer), possibly with day past end of month
+     * @return equivalent valid date (e.g. 20140230 becomes 20140302)
+     */
+    public static int normalize(int dateInt) {
+        return fromEpochDay(toEpochDay(dateInt));
+    }
+
+    /**
+     * @param dateInt date (integer)
+     * @return day of week, as Calendar.SUNDAY (1) through Calendar.SATURDAY (7)
+     */
+    public static int getDayOfWeek(int dateInt) {
+        int daysFromThursday = (toEpochDay(dateInt) + 4) % 7; // 1/1/1970 was a Thursday
+        return (daysFromThursday < 0 ? daysFromThursday + 7 : daysFromThursday) + 1;
+    }
+
+    public static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    /**
+     * @param year  year
+     * @param month month (1 for January)
+     * @return number of days in month
+     */
+    public static int getDaysInMonth(int year, int month) {
+        return month == 2 && isLeapYear(year) ? 29 : monthLengths[month - 1];
     }
 
     /**
@@ -535,9 +549,7 @@ public final class DateUtils {
 
 
     public static double getExcelDateValue(int dateInt) {
-        int dateStartInt = convertToDateInt(dateStart.getTime());
-        Integer daysBetwInt = getDaysBetween(dateStartInt, dateInt);
-        return daysBetwInt.doubleValue();
+        return getDaysBetween(excelStartDateInt, dateInt);
     }
 
     /**
@@ -104,12 +104,9 @@ public class GainsAverageCalc implements GainsCalc {
 
         int currentDateInt = thisTrans.getParentTxn().getDateInt();
         CurrencyType cur = thisTrans.getReferenceAccount().getCurrencyType();
-        double currentRate = cur == null ? 1.0
-                : cur.getUserRateByDateInt(currentDateInt);
         int prevDateInt = prevTransValues == null ? Integer.MIN_VALUE
                 : prevTransValues.getParentTxn().getDateInt();
-        double splitAdjust = (cur == null ? 1.0 : cur.adjustRateForSplitsInt(
-                prevDateInt, currentRate, currentDateInt) / currentRate);
+        double splitAdjust = currentInfo.getSplitFactor(cur, prevDateInt, currentDateInt);
         this.adjPrevPos = prevTransValues == null ? 0.0 : prevTransValues.getPosition()
                 * splitAdjust;
 
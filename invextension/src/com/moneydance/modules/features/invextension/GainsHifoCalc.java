@@ -0,0 +1,91 @@
+/*
+ * GainsHifoCalc.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import java.util.Arrays;
+
+/**
+ * Implementation of Highest Cost, First Out Method
+ * <p/>
+ * Open lots are kept in a binary max-heap ordered by unit cost.  Splits
+ * scale every unit cost alike, so the heap is ordered by the unadjusted
+ * (origin) unit cost and never needs reordering.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class GainsHifoCalc extends GainsLotQueueCalc {
+    private int[] heap = new int[16];
+    private int size;
+
+    public GainsHifoCalc() {
+    }
+
+    @Override
+    void clearQueue() {
+        size = 0;
+    }
+
+    @Override
+    void offerLot(int lot) {
+        if (size == heap.length) heap = Arrays.copyOf(heap, 2 * size);
+        int i = size++;
+        double cost = lotLedger.getOriginUnitCost(lot);
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (lotLedger.getOriginUnitCost(heap[parent]) >= cost) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = lot;
+    }
+
+    @Override
+    int peekLot() {
+        return size == 0 ? -1 : heap[0];
+    }
+
+    @Override
+    void pollLot() {
+        int lot = heap[--size];
+        double cost = lotLedger.getOriginUnitCost(lot);
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && lotLedger.getOriginUnitCost(heap[child + 1])
+                    > lotLedger.getOriginUnitCost(heap[child])) child++;
+            if (cost >= lotLedger.getOriginUnitCost(heap[child])) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = lot;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * GainsLifoCalc.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import java.util.Arrays;
+
+/**
+ * Implementation of Last In, First Out Method
+ * <p/>
+ * Open lots are kept on a stack of lot numbers.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class GainsLifoCalc extends GainsLotQueueCalc {
+    private int[] stack = new int[16];
+    private int size;
+
+    public GainsLifoCalc() {
+    }
+
+    @Override
+    void clearQueue() {
+        size = 0;
+    }
+
+    @Override
+    void offerLot(int lot) {
+        if (size == stack.length) stack = Arrays.copyOf(stack, 2 * size);
+        stack[size++] = lot;
+    }
+
+    @Override
+    int peekLot() {
+        return size == 0 ? -1 : stack[size - 1];
+    }
+
+    @Override
+    void pollLot() {
+        size--;
+    }
+}
@@ -28,16 +28,21 @@
 package com.moneydance.modules.features.invextension;
 
 import com.moneydance.apps.md.model.CurrencyType;
-import com.moneydance.apps.md.model.ParentTxn;
 import com.moneydance.apps.md.model.SplitTxn;
 import com.moneydance.apps.md.model.TxnUtil;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Hashtable;
+import java.util.Map;
 
 /**
  * Implementation of Lot Matching Method
  * <p/>
+ * Open lots are kept in the LotLedger of each security, so lot-weighted
+ * cost is read from the ledger rather than recomputed from the acquiring
+ * transactions.
+ * <p/>
  * Version 1.0
  *
  * @author Dale Furrow
@@ -48,7 +53,13 @@ public class GainsLotMatchCalc implements GainsCalc {
     TransactionValues currentTrans;
     TransactionValues prevTransValues;
     double adjPrevPos;
-    Hashtable<Long, Double> matchTable;
+    LotLedger lotLedger;
+    // lots matched by current transaction (parallel arrays, matchCount used)
+    private long[] matchKeys = new long[4];
+    private double[] matchQuantities = new double[4];
+    private int matchCount;
+    private double longBasis;
+    private double shortBasis;
 
 
     public GainsLotMatchCalc() {
@@ -65,12 +76,10 @@ public class GainsLotMatchCalc implements GainsCalc {
                                         TransactionValues priorTrans) {
         int currentDateInt = thisTrans.getParentTxn().getDateInt();
         CurrencyType cur = thisTrans.getReferenceAccount().getCurrencyType();
-        double currentRate = cur == null ? 1.0 : cur
-                .getUserRateByDateInt(currentDateInt);
         int prevDateInt = priorTrans == null ? Integer.MIN_VALUE
                 : priorTrans.getParentTxn().getDateInt();
-        double splitAdjust = (cur == null ? 1.0 : cur.adjustRateForSplitsInt(
-                prevDateInt, currentRate, currentDateInt) / currentRate);
+        double splitAdjust = thisTrans.getSecurityAccountWrapper().getInvAcctWrapper().getBulkSecInfo()
+                .getSplitFactor(cur, prevDateInt, currentDateInt);
         return priorTrans == null ? 0.0 : splitAdjust;
 
     }
@@ -80,8 +89,10 @@ public class GainsLotMatchCalc implements GainsCalc {
      */
     @Override
     public double getLongBasis() {
+        return longBasis;
+    }
 
-
+    private double calcLongBasis() {
         if (currentTrans.getPosition() <= positionThreshold) {// position short or closed
             return 0.0;
         } else if (currentTrans.getPosition() >= (prevTransValues == null ? 0
@@ -94,12 +105,12 @@ public class GainsLotMatchCalc implements GainsCalc {
                     : prevTransValues.getLongBasis());
         } else { // subsequent pos smaller than previous
             // implies prev long basis must exist
-            double wtAvgUnitCost;
-            if (matchTable == null) {//use average cost
+            double wtAvgUnitCost = Double.NaN;
+            if (matchCount > 0) { //use lot-weighted average cost
+                wtAvgUnitCost = getWeightedCost();
+            }
+            if (Double.isNaN(wtAvgUnitCost)) {//use average cost
                 wtAvgUnitCost = prevTransValues.getLongBasis() / adjPrevPos;
-
-            } else { //use lot-weighted average cost
-                wtAvgUnitCost = getWeightedCost(matchTable);
             }
 
             return prevTransValues.getLongBasis() + wtAvgUnitCost
@@ -108,52 +119,36 @@ public class GainsLotMatchCalc implements GainsCalc {
     }
 
     /**
-     * Gets weighted average unit cost from match table
+     * Gets weighted average unit cost of matched lots from lot ledger
      *
-     * @param thisMatchTable match table from security
-     * @return weighted cost of security
+     * @return weighted cost of security, NaN if no matched lot is in ledger
      */
-    private double getWeightedCost(Hashtable<Long, Double> thisMatchTable) {
+    private double getWeightedCost() {
         double totWeightedNumerator = 0.0;
         double totalAllocatedQtyAdjust = 0.0;
-        for (Long allocationSplitTransNum : thisMatchTable.keySet()) {
-            //split transaction number
-            //parent transaction of associated split
-            ParentTxn allocationParentTrans = currentInfo.getTransactionSet()
-                    .getTxnByID(allocationSplitTransNum).getParentTxn();
-            //parent transaction number
-            Double allocationParentTransNum = (Long
-                    .valueOf(allocationParentTrans.getTxnId()).doubleValue());
-            //Transvalue associated with parent transaction number
-            TransactionValues allocationTransValues = currentInfo.getSecurityTransactionValues()
-                    .get(allocationParentTransNum);
-            //Split-adjustment for shares (adjusts previous shares to current)
-            Double splitAdjust = getSplitAdjust(currentTrans,
-                    allocationTransValues);
-            //Lots to include in weighted average
-            Double allocationQtyAdjust = thisMatchTable
-                    .get(allocationSplitTransNum);
+        for (int i = 0; i < matchCount; i++) {
+            int lot = lotLedger.getLot(matchKeys[i]);
+            if (lot < 0) continue;
             //add to total quantity (will use as denominator later)
-            totalAllocatedQtyAdjust += allocationQtyAdjust;
-
-            //get unit cost (transaction amt + commission divided by adjusted shares)
-            Double secQtyUnAdjust = allocationTransValues.getSecQuantity();
-            Double secQtyAdjust = secQtyUnAdjust * splitAdjust;
-            Double unitCostAdjust = (-allocationTransValues.getBuy() - allocationTransValues.getCommission())
-                    / secQtyAdjust;
-            //add weight
-            totWeightedNumerator += unitCostAdjust * allocationQtyAdjust;
+            totalAllocatedQtyAdjust += matchQuantities[i];
+            //unit cost is split-adjusted to current transaction in ledger
+            totWeightedNumerator += lotLedger.getUnitCost(lot) * matchQuantities[i];
         }
         //Divide by total adjusted shares for weighted average
-        return totWeightedNumerator / totalAllocatedQtyAdjust;
+        return totalAllocatedQtyAdjust == 0.0 ? Double.NaN
+                : totWeightedNumerator / totalAllocatedQtyAdjust;
     }
 
     /* (non-Javadoc)
      * @see com.moneydance.modules.features.invextension.GainsCalc#getShortBasis()
      */
-    //short basis is same as average calc--no provision in MD for short positions
     @Override
     public double getShortBasis() {
+        return shortBasis;
+    }
+
+    //short basis is same as average calc--no provision in MD for short positions
+    private double calcShortBasis() {
         if (currentTrans.getPosition() >= -positionThreshold) { // position long or closed
             return 0.0;
         } else if (currentTrans.getPosition() <= (prevTransValues == null ? 0.0
@@ -176,51 +171,99 @@ public class GainsLotMatchCalc implements GainsCalc {
     public void initializeGainsCalc(BulkSecInfo thisCurrentInfo,
                                     TransactionValues thisTrans, ArrayList<TransactionValues> prevTranses) {
         this.currentInfo = thisCurrentInfo;
+        this.lotLedger = thisTrans.getSecurityAccountWrapper().getLotLedger();
+        // ledger must reflect exactly the prior transactions (e.g. on replay)
+        if (lotLedger.getAppliedCount() != prevTranses.size()) {
+            lotLedger.reset();
+            for (int i = 0; i < prevTranses.size(); i++) {
+                applyTransaction(prevTranses.get(i), i == 0 ? null : prevTranses.get(i - 1));
+            }
+        }
+        this.longBasis = 0.0;
+        this.shortBasis = 0.0;
+        applyTransaction(thisTrans, prevTranses.isEmpty() ? null : prevTranses.get(prevTranses.size() - 1));
+    }
+
+    /**
+     * calculates basis of transaction, then updates open lots with it
+     *
+     * @param thisTrans  transaction to apply
+     * @param priorTrans previous transaction of security, null if first
+     */
+    private void applyTransaction(TransactionValues thisTrans, TransactionValues priorTrans) {
         this.currentTrans = thisTrans;
-        this.prevTransValues = prevTranses.isEmpty() ? null : prevTranses.get(prevTranses.size() - 1);
+        this.prevTransValues = priorTrans;
 
         int currentDateInt = thisTrans.getParentTxn().getDateInt();
         CurrencyType cur = thisTrans.getReferenceAccount().getCurrencyType();
-        double currentRate = cur == null ? 1.0
-                : cur.getUserRateByDateInt(currentDateInt);
         int prevDateInt = prevTransValues == null ? Integer.MIN_VALUE
                 : prevTransValues.getParentTxn().getDateInt();
-        double splitAdjust = (cur == null ? 1.0 : cur.adjustRateForSplitsInt(
-                prevDateInt, currentRate, currentDateInt) / currentRate);
+        double splitAdjust = prevTransValues == null ? 1.0
+                : currentInfo.getSplitFactor(cur, prevDateInt, currentDateInt);
         this.adjPrevPos = prevTransValues == null ? 0.0 : prevTransValues.getPosition()
                 * splitAdjust;
-        this.matchTable = getLotMatchTable();
+        lotLedger.advance(splitAdjust);
 
+        double position = thisTrans.getPosition();
+        boolean reducesLong = prevTransValues != null && position > positionThreshold
+                && position < adjPrevPos;
+        this.matchCount = reducesLong ? loadLotMatches() : 0;
+        this.longBasis = calcLongBasis();
+        this.shortBasis = calcShortBasis();
 
+        if (position <= positionThreshold) {
+            lotLedger.relieveAll();
+        } else if (reducesLong) {
+            double toRelieve = -thisTrans.getSecQuantity();
+            for (int i = 0; i < matchCount && toRelieve > positionThreshold; i++) {
+                int lot = lotLedger.getLot(matchKeys[i]);
+                if (lot >= 0) toRelieve -= lotLedger.relieve(lot, Math.min(matchQuantities[i], toRelieve));
+            }
+            // untagged (or unmatched) remainder comes out of all lots evenly
+            if (toRelieve > positionThreshold && adjPrevPos > 0)
+                lotLedger.relieveProportionally(toRelieve / adjPrevPos);
+        } else if (thisTrans.getSecQuantity() > positionThreshold) {
+            lotLedger.addLot(getSecuritySplitId(), currentDateInt, thisTrans.getSecQuantity(),
+                    -thisTrans.getBuy() - thisTrans.getCommission());
+        }
     }
 
     /**
-     * populates lot matching table if available in transaction.  if
-     * not available, return null
-     *
-     * @return lot match table for security
+     * @return id of security split of current transaction, -1 if none
      */
-    public Hashtable<Long, Double> getLotMatchTable() {
-        Hashtable<Long, Double> lotMatchTable = new Hashtable<>();
-        SplitTxn securitySplit = currentTrans.getReferenceAccount().getCurrencyType()
+    private long getSecuritySplitId() {
+        SplitTxn securitySplit = getSecuritySplit();
+        return securitySplit == null ? -1 : securitySplit.getTxnId();
+    }
+
+    private SplitTxn getSecuritySplit() {
+        return currentTrans.getReferenceAccount().getCurrencyType()
                 .equals(currentInfo.getCashCurrencyWrapper().getCurrencyType()) ? null : TxnUtil
                 .getSecurityPart(currentTrans.getParentTxn());
-        Hashtable<String, String> splitTable = null;
-        if (securitySplit != null)
-            splitTable = TxnUtil.parseCostBasisTag(securitySplit);
-        if (splitTable != null) {
-            for (String key : splitTable.keySet()) {
-                Long keyLong = Long.parseLong(key);
-                Long valueLong = Long.parseLong(splitTable.get(key));
-                Double valueDouble = (valueLong.doubleValue()) / 10000.0;
-                lotMatchTable.put(keyLong, valueDouble);
-            }
+    }
+
+    /**
+     * loads lots matched by the cost basis tag of the current transaction
+     * into matchKeys and matchQuantities
+     *
+     * @return number of matched lots, zero if transaction is not tagged
+     */
+    private int loadLotMatches() {
+        SplitTxn securitySplit = getSecuritySplit();
+        Hashtable<String, String> splitTable = securitySplit == null ? null
+                : TxnUtil.parseCostBasisTag(securitySplit);
+        if (splitTable == null) return 0;
+        if (splitTable.size() > matchKeys.length) {
+            matchKeys = Arrays.copyOf(matchKeys, splitTable.size());
+            matchQuantities = Arrays.copyOf(matchQuantities, splitTable.size());
         }
-        if (lotMatchTable.size() > 0) {
-            return lotMatchTable;
-        } else {
-            return null;
+        int count = 0;
+        for (Map.Entry<String, String> entry : splitTable.entrySet()) {
+            matchKeys[count] = Long.parseLong(entry.getKey());
+            matchQuantities[count] = Long.parseLong(entry.getValue()) / 10000.0;
+            count++;
         }
+        return count;
     }
 
 }
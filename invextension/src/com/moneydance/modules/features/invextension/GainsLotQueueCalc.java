@@ -0,0 +1,199 @@
+/*
+ * GainsLotQueueCalc.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.model.CurrencyType;
+
+import java.util.ArrayList;
+
+/**
+ * Base for cost basis methods which relieve whole lots in a fixed order
+ * (FIFO, LIFO, highest cost), ignoring any lot matching tags. Lots are
+ * held in the LotLedger of each security; subclasses keep the open lots
+ * in relief order.
+ * <p/>
+ * Short basis is average cost, as in the other methods.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public abstract class GainsLotQueueCalc implements GainsCalc {
+    static final double positionThreshold = 0.00001;
+    BulkSecInfo currentInfo;
+    TransactionValues currentTrans;
+    TransactionValues prevTransValues;
+    double adjPrevPos;
+    LotLedger lotLedger;
+    // ledger and transaction count the lot queue reflects
+    private LotLedger queueLedger;
+    private int queueAppliedCount = -1;
+    private double longBasis;
+    private double shortBasis;
+
+    /**
+     * empties queue of open lots
+     */
+    abstract void clearQueue();
+
+    /**
+     * adds open lot to queue
+     *
+     * @param lot lot number in lotLedger
+     */
+    abstract void offerLot(int lot);
+
+    /**
+     * @return next lot to relieve, -1 if queue is empty
+     */
+    abstract int peekLot();
+
+    /**
+     * removes next lot to relieve from queue
+     */
+    abstract void pollLot();
+
+    @Override
+    public double getLongBasis() {
+        return longBasis;
+    }
+
+    @Override
+    public double getShortBasis() {
+        return shortBasis;
+    }
+
+    @Override
+    public void initializeGainsCalc(BulkSecInfo thisCurrentInfo,
+                                    TransactionValues thisTrans, ArrayList<TransactionValues> prevTranses) {
+        this.currentInfo = thisCurrentInfo;
+        this.lotLedger = thisTrans.getSecurityAccountWrapper().getLotLedger();
+        if (lotLedger.getAppliedCount() != prevTranses.size()) {
+            // ledger must reflect exactly the prior transactions (e.g. on replay)
+            lotLedger.reset();
+            resetQueue();
+            for (int i = 0; i < prevTranses.size(); i++) {
+                applyTransaction(prevTranses.get(i), i == 0 ? null : prevTranses.get(i - 1));
+            }
+        } else if (lotLedger != queueLedger || lotLedger.getAppliedCount() != queueAppliedCount) {
+            // first transaction of another security since queue was built
+            resetQueue();
+            for (int lot = 0; lot < lotLedger.size(); lot++) {
+                if (lotLedger.getQuantity(lot) > positionThreshold) offerLot(lot);
+            }
+        }
+        applyTransaction(thisTrans, prevTranses.isEmpty() ? null : prevTranses.get(prevTranses.size() - 1));
+    }
+
+    private void resetQueue() {
+        clearQueue();
+        queueLedger = lotLedger;
+        queueAppliedCount = lotLedger.getAppliedCount();
+    }
+
+    /**
+     * calculates basis of transaction, updating open lots and lot queue
+     *
+     * @param thisTrans  transaction to apply
+     * @param priorTrans previous transaction of security, null if first
+     */
+    private void applyTransaction(TransactionValues thisTrans, TransactionValues priorTrans) {
+        this.currentTrans = thisTrans;
+        this.prevTransValues = priorTrans;
+
+        CurrencyType cur = thisTrans.getReferenceAccount().getCurrencyType();
+        int currentDateInt = thisTrans.getParentTxn().getDateInt();
+        int prevDateInt = prevTransValues == null ? Integer.MIN_VALUE
+                : prevTransValues.getParentTxn().getDateInt();
+        double splitAdjust = prevTransValues == null ? 1.0
+                : currentInfo.getSplitFactor(cur, prevDateInt, currentDateInt);
+        this.adjPrevPos = prevTransValues == null ? 0.0 : prevTransValues.getPosition()
+                * splitAdjust;
+        lotLedger.advance(splitAdjust);
+
+        double position = thisTrans.getPosition();
+        if (position <= positionThreshold) {// position short or closed
+            longBasis = 0.0;
+            lotLedger.relieveAll();
+            clearQueue();
+        } else if (position >= (prevTransValues == null ? 0 : adjPrevPos)) {
+            // first trans or subsequent larger position
+            // add current buy to previous long basis, and as a new lot
+            double cost = -thisTrans.getBuy() - thisTrans.getCommission();
+            longBasis = cost + (prevTransValues == null ? 0.0 : prevTransValues.getLongBasis());
+            double quantity = Math.min(thisTrans.getSecQuantity(), position);
+            if (quantity > positionThreshold) offerLot(lotLedger.addLot(-1, currentDateInt, quantity, cost));
+        } else { // subsequent pos smaller than previous
+            longBasis = prevTransValues.getLongBasis() - relieveLots(-thisTrans.getSecQuantity());
+        }
+        shortBasis = calcShortBasis();
+        queueAppliedCount = lotLedger.getAppliedCount();
+    }
+
+    /**
+     * relieves open lots in queue order
+     *
+     * @param quantity quantity sold
+     * @return cost of quantity sold
+     */
+    private double relieveLots(double quantity) {
+        double cost = 0.0;
+        double toRelieve = quantity;
+        for (int lot = peekLot(); lot >= 0 && toRelieve > positionThreshold; lot = peekLot()) {
+            double relieved = lotLedger.relieve(lot, toRelieve);
+            cost += relieved * lotLedger.getUnitCost(lot);
+            toRelieve -= relieved;
+            if (lotLedger.getQuantity(lot) <= positionThreshold) pollLot();
+        }
+        // lots fall short of position (e.g. rounding): remainder at average cost
+        if (toRelieve > positionThreshold)
+            cost += toRelieve * prevTransValues.getLongBasis() / adjPrevPos;
+        return cost;
+    }
+
+    //short basis is same as average calc--no provision in MD for short positions
+    private double calcShortBasis() {
+        if (currentTrans.getPosition() >= -positionThreshold) { // position long or closed
+            return 0.0;
+        } else if (currentTrans.getPosition() <= (prevTransValues == null ? 0.0
+                : adjPrevPos)) {
+            // first trans or subsequent larger (more negative) position
+            // add current short sale to previous short basis
+            return -currentTrans.getShortSell()
+                    - currentTrans.getCommission()
+                    + (prevTransValues == null ? 0.0
+                    : +prevTransValues.getShortBasis());
+        } else { // subsequent pos smaller (closer to 0) than previous
+            // implies previous short basis must exist
+            double histAvgUnitCost = prevTransValues.getShortBasis() / adjPrevPos;
+            return prevTransValues.getShortBasis() + histAvgUnitCost
+                    * currentTrans.getSecQuantity();
+        }
+    }
+}
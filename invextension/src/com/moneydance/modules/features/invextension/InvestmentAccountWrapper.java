@@ -57,19 +57,57 @@ public class InvestmentAccountWrapper implements Aggregator {
     private int acctNum;
     // associated CashAccount
     private SecurityAccountWrapper cashWrapper;
+    // gains calculation for this account's securities
+    private GainsCalc gainsCalc;
     // Security Account Wrappers
     private ArrayList<SecurityAccountWrapper> securityAccountWrappers;
     private String name;
+    // transaction id of synthetic initial balance transaction (kept across refreshes)
+    private long initialBalanceTxnId;
 
-    public InvestmentAccountWrapper(InvestmentAccount invAcct,
-                                    BulkSecInfo currentInfo) throws Exception {
+    /**
+     * Loads investment account and its securities.  Wrappers are registered
+     * with their currencies separately (see registerWithCurrencies) so that
+     * accounts may be loaded in parallel.
+     *
+     * @param invAcct             investment account
+     * @param currentInfo         associated BulkSecInfo
+     * @param cashAcctNum         account number for synthetic cash account
+     * @param initialBalanceTxnId transaction id for synthetic initial balance
+     * @throws Exception
+     */
+    public InvestmentAccountWrapper(InvestmentAccount invAcct, BulkSecInfo currentInfo,
+                                    int cashAcctNum, long initialBalanceTxnId) throws Exception {
         this.currentInfo = currentInfo;
         this.investmentAccount = invAcct;
         this.acctNum = this.investmentAccount.getAccountNum();
         this.securityAccountWrappers = new ArrayList<>();
         this.name = investmentAccount.getAccountName().trim();
+        this.initialBalanceTxnId = initialBalanceTxnId;
+        this.gainsCalc = currentInfo.createGainsCalc();
+        loadSecurityAccountWrappers();
+        createCashWrapper(cashAcctNum);  //creates basic cash wrapper
+        this.securityAccountWrappers.add(cashWrapper);   //add cash wrapper to total securityAccountWrappers
+        createCashTransactions(); //populates cash wrapper with synthetic cash transactions
+        compactTransValues(); //keeps ledgers only
+    }
+
+    public InvestmentAccountWrapper() {
+    }
+
+    public InvestmentAccountWrapper(String name) {
+        this.name = name;
+    }
+
+
+    /**
+     * Loads wrappers (with transaction values) for all security sub-accounts
+     *
+     * @throws Exception
+     */
+    private void loadSecurityAccountWrappers() throws Exception {
         //get Security Sub Accounts
-        TreeSet<Account> subSecAccts = BulkSecInfo.getSelectedSubAccounts(invAcct,
+        TreeSet<Account> subSecAccts = BulkSecInfo.getSelectedSubAccounts(investmentAccount,
                 Account.ACCOUNT_TYPE_SECURITY);
         //Loop through Security Sub Accounts
         for (Account subSecAcct : subSecAccts) {
@@ -80,18 +118,92 @@ public class InvestmentAccountWrapper implements Aggregator {
             // add Security Account to Investment Account
             this.securityAccountWrappers.add(secAcctWrapper);
         }
-        createCashWrapper();  //creates basic cash wrapper
-        this.securityAccountWrappers.add(cashWrapper);   //add cash wrapper to total securityAccountWrappers
-        createCashTransactions(); //populates cash wrapper with synthetic cash transactions
     }
 
-    public InvestmentAccountWrapper() {
+    /**
+     * Rebuilds security wrappers and transaction values from the current state
+     * of the investment account (used by BulkSecInfo.refresh, which releases
+     * and re-registers the wrappers).  The synthetic cash account and its
+     * initial balance transaction id are retained.
+     *
+     * @throws Exception
+     */
+    public void refreshTransactionValues() throws Exception {
+        SecurityAccount cashAccount = this.cashWrapper.getSecurityAccount();
+        this.securityAccountWrappers = new ArrayList<>();
+        this.name = investmentAccount.getAccountName().trim();
+        this.gainsCalc = currentInfo.createGainsCalc();
+        loadSecurityAccountWrappers();
+        this.cashWrapper = new SecurityAccountWrapper(cashAccount, this);
+        this.securityAccountWrappers.add(cashWrapper);
+        createCashTransactions();
+        compactTransValues();
     }
 
-    public InvestmentAccountWrapper(String name) {
-        this.name = name;
+    /**
+     * Adds this account's security wrappers to their currency wrappers
+     */
+    public void registerWithCurrencies() {
+        for (SecurityAccountWrapper securityAccountWrapper : securityAccountWrappers) {
+            securityAccountWrapper.getCurrencyWrapper().secAccts.add(securityAccountWrapper);
+        }
+    }
+
+    /**
+     * Removes this account's security wrappers from the shared structures in
+     * BulkSecInfo
+     */
+    public void releaseTransactionValues() {
+        for (SecurityAccountWrapper securityAccountWrapper : securityAccountWrappers) {
+            securityAccountWrapper.getCurrencyWrapper().secAccts.remove(securityAccountWrapper);
+        }
+    }
+
+    /**
+     * Builds each security's ledger and releases its transaction values,
+     * which are regenerated on demand (see createAllTransValues)
+     */
+    private void compactTransValues() {
+        for (SecurityAccountWrapper securityAccountWrapper : securityAccountWrappers) {
+            securityAccountWrapper.compactTransValues();
+        }
     }
 
+    /**
+     * Regenerates transaction values of every security and of synthetic
+     * cash, after they were released (e.g. for the transaction listing)
+     *
+     * @return transaction values of each security wrapper, in wrapper order
+     * @throws Exception
+     */
+    synchronized ArrayList<ArrayList<TransactionValues>> createAllTransValues() throws Exception {
+        ArrayList<ArrayList<TransactionValues>> allTransValues = new ArrayList<>();
+        ArrayList<TransactionValues> accountTransValues = new ArrayList<>();
+        for (SecurityAccountWrapper securityAccountWrapper : securityAccountWrappers) {
+            ArrayList<TransactionValues> transValues = securityAccountWrapper.createTransValues();
+            allTransValues.add(transValues);
+            accountTransValues.addAll(transValues);
+        }
+        // account-level transactions of cash wrapper are replaced by synthetic cash
+        Collections.sort(accountTransValues, TransactionValues.transComp);
+        allTransValues.set(securityAccountWrappers.indexOf(cashWrapper), createCashTransValues(accountTransValues));
+        return allTransValues;
+    }
+
+    /**
+     * Regenerates transaction values of one security wrapper after they
+     * were released
+     *
+     * @param securityAccountWrapper security (or cash) wrapper of this account
+     * @return transaction values of wrapper
+     * @throws Exception
+     */
+    synchronized ArrayList<TransactionValues> createTransValues(SecurityAccountWrapper securityAccountWrapper)
+            throws Exception {
+        if (securityAccountWrapper != cashWrapper) return securityAccountWrapper.createTransValues();
+        // synthetic cash depends on all of the account's transactions
+        return createAllTransValues().get(securityAccountWrappers.indexOf(cashWrapper));
+    }
 
     /**
      * Populate Synthetic Cash Transactions for a given Investment Account
@@ -99,10 +211,20 @@ public class InvestmentAccountWrapper implements Aggregator {
      * @throws Exception
      */
     public void createCashTransactions() throws Exception {
-        ArrayList<TransactionValues> tempTransValues = new ArrayList<>();
-        // add to tempTransValues all Security and Account-Level Cash
-        // transactions for this InvestmentAccountWrapper
-        tempTransValues.addAll(this.getTransactionValues());
+        // all Security and Account-Level Cash transactions for this
+        // InvestmentAccountWrapper
+        this.cashWrapper.setAllTransactionValues(createCashTransValues(this.getTransactionValues()));
+    }
+
+    /**
+     * @param tempTransValues sorted Security and Account-Level Cash
+     *                        transactions of this account
+     * @return synthetic cash transactions
+     * @throws Exception
+     */
+    private ArrayList<TransactionValues> createCashTransValues(ArrayList<TransactionValues> tempTransValues)
+            throws Exception {
+        long startTime = ReportProfiler.startTime();
         ArrayList<TransactionValues> cashTransactions = new ArrayList<>();
         // add initial balance as a transValues object (use day before first
         // transaction date if available, creation date if not
@@ -121,18 +243,28 @@ public class InvestmentAccountWrapper implements Aggregator {
             cashTransactions.add(newTransactionValues);
             //Collections.sort(cashTransactions, TransactionValues.transComp);
         }
-        this.cashWrapper.setAllTransactionValues(cashTransactions);
+        ReportProfiler.record(ReportProfiler.Phase.TRANSACTION_VALUES, startTime, cashTransactions.size());
+        return cashTransactions;
+    }
+
+    public long getInitialBalanceTxnId() {
+        return initialBalanceTxnId;
+    }
+
+    public GainsCalc getGainsCalc() {
+        return gainsCalc;
     }
 
     /**
      * creates CashWrapper as a money market mutual fund
      *
+     * @param cashAcctNum account number for synthetic cash account
      * @throws Exception
      */
-    public void createCashWrapper()
+    public void createCashWrapper(int cashAcctNum)
             throws Exception {
         SecurityAccount cashAccount = new SecurityAccount("~Cash",
-                BulkSecInfo.getNextAcctNumber(),
+                cashAcctNum,
                 currentInfo.getCashCurrencyWrapper().getCurrencyType(), null, null,
                 this.investmentAccount);
         cashAccount.setComment("New Security to hold cash transactions");
@@ -140,8 +272,6 @@ public class InvestmentAccountWrapper implements Aggregator {
         cashAccount.setSecuritySubType("Money Market");
         this.cashWrapper = new SecurityAccountWrapper(
                 cashAccount, this);
-        BulkSecInfo.setNextAcctNumber(BulkSecInfo.getNextAcctNumber() + 1);
-        currentInfo.getCashCurrencyWrapper().secAccts.add(this.cashWrapper);
         cashWrapper.generateTransValues();
     }
 
@@ -190,15 +320,18 @@ public class InvestmentAccountWrapper implements Aggregator {
 
     /**
      * Returns sorted transaction value lines for this investment account
+     * (regenerated if released once ledgers were built)
      *
      * @return sorted transaction values list
      * @throws Exception
      */
     public ArrayList<TransactionValues> getTransactionValues() throws Exception {
         ArrayList<TransactionValues> outputTransactionValues = new ArrayList<>();
-        for (SecurityAccountWrapper securityAccountWrapper : securityAccountWrappers) {
-            ArrayList<TransactionValues> accountTransactionValues = securityAccountWrapper
-                    .getTransactionValues();
+        boolean released = cashWrapper != null && cashWrapper.getLedger() != null;
+        ArrayList<ArrayList<TransactionValues>> allTransValues = released ? createAllTransValues() : null;
+        for (int i = 0; i < securityAccountWrappers.size(); i++) {
+            ArrayList<TransactionValues> accountTransactionValues = released ? allTransValues.get(i)
+                    : securityAccountWrappers.get(i).getTransactionValues();
             if (accountTransactionValues != null) {
                 for (TransactionValues transactionValues : accountTransactionValues) {
                     boolean success = outputTransactionValues.add(transactionValues);
@@ -213,10 +346,18 @@ public class InvestmentAccountWrapper implements Aggregator {
         return outputTransactionValues;
     }
 
-    public ArrayList<String[]> listTransValuesInfo() {
+    /**
+     * lists transaction values of each security, regenerated for the listing
+     *
+     * @return ArrayList of String Arrays with values
+     * @throws Exception
+     */
+    public ArrayList<String[]> listTransValuesInfo() throws Exception {
         ArrayList<String[]> outputList = new ArrayList<>();
-        for (SecurityAccountWrapper securityAccountWrapper : securityAccountWrappers) {
-            outputList.addAll(securityAccountWrapper.listTransValuesInfo());
+        for (ArrayList<TransactionValues> transValues : createAllTransValues()) {
+            for (TransactionValues transactionValues : transValues) {
+                outputList.add(transactionValues.listInfo());
+            }
         }
         return outputList;
     }
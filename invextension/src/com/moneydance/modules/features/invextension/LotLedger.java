@@ -0,0 +1,247 @@
+/*
+ * LotLedger.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import java.util.Arrays;
+
+/**
+ * Open-lot ledger of one security, built incrementally as its
+ * TransactionValues are generated.  Each acquisition adds a lot keyed by
+ * the id of its security split (the id the cost basis tags of later
+ * sales refer to), holding acquisition date, remaining quantity and unit
+ * cost in primitive arrays.
+ * <p/>
+ * Quantities and unit costs are stored in "origin" units (divided or
+ * multiplied by the cumulative split factor as of acquisition), so a split
+ * is applied to every open lot by updating one factor instead of each lot.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class LotLedger {
+    // bytes per lot: long key, int date, 2 doubles, plus ~2 index slots
+    static final int BYTES_PER_LOT = 8 + 4 + 2 * 8 + 2 * (8 + 4);
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 8;
+    private int size;
+    private long[] lotKeys;
+    private int[] acquisitionDateInts;
+    private double[] originQuantities;
+    private double[] originUnitCosts;
+    // cumulative split factor since the first transaction of the security
+    private double splitFactor;
+    // number of transactions applied, checked against the caller's history
+    private int appliedCount;
+    // open-addressing index from lot key to lot number
+    private long[] indexKeys;
+    private int[] indexLots;
+
+    public LotLedger() {
+        reset();
+    }
+
+    /**
+     * removes all lots, ready for the first transaction of the security
+     */
+    public void reset() {
+        size = 0;
+        lotKeys = new long[INITIAL_CAPACITY];
+        acquisitionDateInts = new int[INITIAL_CAPACITY];
+        originQuantities = new double[INITIAL_CAPACITY];
+        originUnitCosts = new double[INITIAL_CAPACITY];
+        indexKeys = new long[2 * INITIAL_CAPACITY];
+        Arrays.fill(indexKeys, EMPTY_KEY);
+        indexLots = new int[2 * INITIAL_CAPACITY];
+        splitFactor = 1.0;
+        appliedCount = 0;
+    }
+
+    /**
+     * moves the ledger to the next transaction
+     *
+     * @param splitAdjust split factor from previous transaction to this one
+     */
+    public void advance(double splitAdjust) {
+        splitFactor *= splitAdjust;
+        appliedCount++;
+    }
+
+    public int getAppliedCount() {
+        return appliedCount;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * adds a lot acquired by the current transaction
+     *
+     * @param lotKey       id of acquiring security split (negative if none)
+     * @param dateInt      acquisition date
+     * @param quantity     quantity acquired
+     * @param cost         total cost including commission
+     * @return lot number of new lot
+     */
+    public int addLot(long lotKey, int dateInt, double quantity, double cost) {
+        if (size == lotKeys.length) {
+            int capacity = 2 * size;
+            lotKeys = Arrays.copyOf(lotKeys, capacity);
+            acquisitionDateInts = Arrays.copyOf(acquisitionDateInts, capacity);
+            originQuantities = Arrays.copyOf(originQuantities, capacity);
+            originUnitCosts = Arrays.copyOf(originUnitCosts, capacity);
+        }
+        int lot = size++;
+        lotKeys[lot] = lotKey;
+        acquisitionDateInts[lot] = dateInt;
+        originQuantities[lot] = quantity / splitFactor;
+        originUnitCosts[lot] = cost / quantity * splitFactor;
+        if (lotKey >= 0) putIndex(lotKey, lot);
+        return lot;
+    }
+
+    /**
+     * @param lotKey id of acquiring security split
+     * @return lot number, or -1 if no lot has that key
+     */
+    public int getLot(long lotKey) {
+        int mask = indexKeys.length - 1;
+        for (int slot = hash(lotKey) & mask; indexKeys[slot] != EMPTY_KEY; slot = (slot + 1) & mask) {
+            if (indexKeys[slot] == lotKey) return indexLots[slot];
+        }
+        return -1;
+    }
+
+    public long getLotKey(int lot) {
+        return lotKeys[lot];
+    }
+
+    public int getAcquisitionDateInt(int lot) {
+        return acquisitionDateInts[lot];
+    }
+
+    /**
+     * @param lot lot number
+     * @return remaining quantity, split adjusted to the current transaction
+     */
+    public double getQuantity(int lot) {
+        return originQuantities[lot] * splitFactor;
+    }
+
+    /**
+     * @param lot lot number
+     * @return unit cost, split adjusted to the current transaction
+     */
+    public double getUnitCost(int lot) {
+        return originUnitCosts[lot] / splitFactor;
+    }
+
+    /**
+     * unit cost unaffected by later splits, so it orders lots the same way
+     * as the split adjusted unit cost does
+     *
+     * @param lot lot number
+     * @return unit cost in origin units
+     */
+    public double getOriginUnitCost(int lot) {
+        return originUnitCosts[lot];
+    }
+
+    /**
+     * reduces remaining quantity of a lot, never below zero
+     *
+     * @param lot      lot number
+     * @param quantity split adjusted quantity to relieve
+     * @return quantity actually relieved
+     */
+    public double relieve(int lot, double quantity) {
+        double remaining = getQuantity(lot);
+        double relieved = Math.min(quantity, remaining);
+        originQuantities[lot] = relieved == remaining ? 0.0 : originQuantities[lot] - relieved / splitFactor;
+        return relieved;
+    }
+
+    /**
+     * reduces every open lot by the same fraction (average cost relief)
+     *
+     * @param fraction fraction of each lot to relieve
+     */
+    public void relieveProportionally(double fraction) {
+        double keep = Math.max(0.0, 1.0 - fraction);
+        for (int lot = 0; lot < size; lot++) {
+            originQuantities[lot] *= keep;
+        }
+    }
+
+    /**
+     * closes all open lots (position closed or reversed)
+     */
+    public void relieveAll() {
+        Arrays.fill(originQuantities, 0, size, 0.0);
+    }
+
+    public long getFootprintBytes() {
+        return (long) lotKeys.length * (8 + 4 + 2 * 8) + (long) indexKeys.length * (8 + 4);
+    }
+
+    private void putIndex(long lotKey, int lot) {
+        if (2 * size > indexKeys.length) rehash(2 * indexKeys.length);
+        int mask = indexKeys.length - 1;
+        int slot = hash(lotKey) & mask;
+        while (indexKeys[slot] != EMPTY_KEY && indexKeys[slot] != lotKey) {
+            slot = (slot + 1) & mask;
+        }
+        indexKeys[slot] = lotKey;
+        indexLots[slot] = lot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = indexKeys;
+        int[] oldLots = indexLots;
+        indexKeys = new long[capacity];
+        Arrays.fill(indexKeys, EMPTY_KEY);
+        indexLots = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY_KEY) continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (indexKeys[slot] != EMPTY_KEY) {
+                slot = (slot + 1) & mask;
+            }
+            indexKeys[slot] = oldKeys[i];
+            indexLots[slot] = oldLots[i];
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
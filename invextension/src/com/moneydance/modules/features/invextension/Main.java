@@ -59,11 +59,22 @@ public class Main
         } catch (Exception e) {
             e.printStackTrace(System.err);
         }
+        // live counters for jconsole/VisualVM
+        try {
+            ReportEngineStats.register();
+        } catch (Exception e) {
+            e.printStackTrace(System.err);
+        }
     }
 
     @Override
     public void cleanup() { //API method to end program (no other usages)
         closeConsole();
+        try {
+            ReportEngineStats.unregister();
+        } catch (Exception e) {
+            e.printStackTrace(System.err);
+        }
     }
 
     private Image getIcon() {
@@ -0,0 +1,156 @@
+/*
+ * MemoryPreferences.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.prefs.AbstractPreferences;
+import java.util.prefs.Preferences;
+
+/**
+ * Preferences held in memory only, so that an exported preferences file
+ * can be read without importing it into (and overwriting) the user's
+ * preferences.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+final class MemoryPreferences extends AbstractPreferences {
+    private final LinkedHashMap<String, String> values = new LinkedHashMap<>();
+    private final LinkedHashMap<String, MemoryPreferences> children = new LinkedHashMap<>();
+
+    private MemoryPreferences(MemoryPreferences parent, String name) {
+        super(parent, name);
+    }
+
+    /**
+     * reads preferences file (as written by Preferences.exportSubtree or
+     * exportNode)
+     *
+     * @param inputStream preferences XML document
+     * @return root of preferences read
+     * @throws Exception
+     */
+    static Preferences readPreferences(InputStream inputStream) throws Exception {
+        DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        // preferences DTD is not fetched
+        builder.setEntityResolver(new EntityResolver() {
+            @Override
+            public InputSource resolveEntity(String publicId, String systemId) {
+                return new InputSource(new StringReader(""));
+            }
+        });
+        Document document = builder.parse(inputStream);
+        MemoryPreferences root = new MemoryPreferences(null, "");
+        Element rootElement = getChild(document.getDocumentElement(), "root");
+        if (rootElement != null) readNode(rootElement, root);
+        return root;
+    }
+
+    private static void readNode(Element element, Preferences prefs) {
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (!(child instanceof Element)) continue;
+            Element childElement = (Element) child;
+            if (childElement.getTagName().equals("map")) {
+                for (Node entry = childElement.getFirstChild(); entry != null; entry = entry.getNextSibling()) {
+                    if (entry instanceof Element && ((Element) entry).getTagName().equals("entry")) {
+                        prefs.put(((Element) entry).getAttribute("key"), ((Element) entry).getAttribute("value"));
+                    }
+                }
+            } else if (childElement.getTagName().equals("node")) {
+                readNode(childElement, prefs.node(childElement.getAttribute("name")));
+            }
+        }
+    }
+
+    private static Element getChild(Element element, String tagName) {
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && ((Element) child).getTagName().equals(tagName)) return (Element) child;
+        }
+        return null;
+    }
+
+    @Override
+    protected void putSpi(String key, String value) {
+        values.put(key, value);
+    }
+
+    @Override
+    protected String getSpi(String key) {
+        return values.get(key);
+    }
+
+    @Override
+    protected void removeSpi(String key) {
+        values.remove(key);
+    }
+
+    @Override
+    protected void removeNodeSpi() {
+        ((MemoryPreferences) parent()).children.remove(name());
+    }
+
+    @Override
+    protected String[] keysSpi() {
+        return values.keySet().toArray(new String[values.size()]);
+    }
+
+    @Override
+    protected String[] childrenNamesSpi() {
+        return children.keySet().toArray(new String[children.size()]);
+    }
+
+    @Override
+    protected AbstractPreferences childSpi(String name) {
+        MemoryPreferences child = children.get(name);
+        if (child == null) {
+            child = new MemoryPreferences(this, name);
+            children.put(name, child);
+        }
+        return child;
+    }
+
+    @Override
+    protected void syncSpi() {
+    }
+
+    @Override
+    protected void flushSpi() {
+    }
+}
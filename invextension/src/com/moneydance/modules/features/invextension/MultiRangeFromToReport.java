@@ -0,0 +1,178 @@
+/*
+ * MultiRangeFromToReport.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Generates "From/To" Reports for several date ranges at once.  Each
+ * security's ledger is walked once for all ranges, and the composites of
+ * each range are then built from that range's leaf reports.
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class MultiRangeFromToReport {
+    private final DateRange[] dateRanges;
+    private final TotalFromToReport[] reports;
+    private boolean parallelCalc; // if true, leaf reports and composite returns are computed on a fork/join pool
+
+    /**
+     * @param reportConfig report configuration (date range is ignored)
+     * @param dateRanges   date ranges to report
+     * @throws Exception
+     */
+    public MultiRangeFromToReport(ReportConfig reportConfig, DateRange[] dateRanges) throws Exception {
+        this.dateRanges = dateRanges.clone();
+        this.reports = new TotalFromToReport[dateRanges.length];
+        for (int i = 0; i < dateRanges.length; i++) {
+            reports[i] = new TotalFromToReport(reportConfig, dateRanges[i]);
+        }
+    }
+
+    /**
+     * @param reportConfig report configuration
+     * @return reports for every date rule, relative to reference date of
+     * configured date range (or of default date range, if configured range
+     * has no date rule)
+     * @throws Exception
+     */
+    public static MultiRangeFromToReport getDateRulePresetReport(ReportConfig reportConfig) throws Exception {
+        DateRange configDateRange = reportConfig.getDateRange();
+        if (configDateRange == null || configDateRange.getRefDate() == DateRange.REF_DATE.NONE
+                || configDateRange.getSnapDateIsRefDate() == null) {
+            configDateRange = DateRange.getDefaultDateRange();
+        }
+        return new MultiRangeFromToReport(reportConfig, DateRange.getDateRulePresets(configDateRange.getRefDate(),
+                configDateRange.getSnapDateIsRefDate()));
+    }
+
+    public DateRange[] getDateRanges() {
+        return dateRanges.clone();
+    }
+
+    /**
+     * @return reports, in same order as date ranges
+     */
+    public TotalFromToReport[] getReports() {
+        return reports.clone();
+    }
+
+    public boolean isParallelCalc() {
+        return parallelCalc;
+    }
+
+    public void setParallelCalc(boolean parallelCalc) {
+        this.parallelCalc = parallelCalc;
+    }
+
+    public void calcReports(BulkSecInfo currentInfo) {
+        ArrayList<SecurityAccountWrapper> secWrappers = TotalReport.getSecurityAccountWrappers(currentInfo);
+        SecurityReport[][] leafReports = new SecurityReport[dateRanges.length][secWrappers.size()];
+        ForkJoinPool pool = parallelCalc ? ReportPool.getPool() : null;
+        long startTime = ReportProfiler.startTime();
+        LeafReportTask leafReportTask = new LeafReportTask(secWrappers, leafReports, 0, secWrappers.size());
+        if (pool == null || secWrappers.size() < 2) {
+            leafReportTask.compute();
+        } else {
+            pool.invoke(leafReportTask);
+        }
+        ReportProfiler.record(ReportProfiler.Phase.LEAF_REPORTS, startTime, secWrappers.size());
+        for (int i = 0; i < reports.length; i++) {
+            reports[i].calcReport(leafReports[i], pool);
+        }
+    }
+
+    /**
+     * @param index index of date range
+     * @return date rule of range, or its dates if it has no rule
+     */
+    public String getRangeName(int index) {
+        DateRange dateRange = dateRanges[index];
+        return dateRange.getDateRule() == DateRange.DATE_RULE.NONE
+                ? DateUtils.convertToShort(dateRange.getFromDateInt()) + " - "
+                + DateUtils.convertToShort(dateRange.getToDateInt())
+                : dateRange.getDateRule().name();
+    }
+
+    /**
+     * Displays one output window, with one tab per date range
+     */
+    public void displayReports() throws SecurityException,
+            IllegalArgumentException, NoSuchFieldException,
+            IllegalAccessException {
+        String[] tabTitles = new String[reports.length];
+        for (int i = 0; i < reports.length; i++) {
+            tabTitles[i] = getRangeName(i);
+        }
+        TotalReportOutputPane.createAndShowTables(reports, tabTitles,
+                "Investment Performance--All Date Ranges");
+    }
+
+    /*
+     * Computes leaf-level reports of all date ranges for a range of
+     * wrappers, splitting the range in half until it is small
+     */
+    private class LeafReportTask extends RecursiveAction {
+        private static final long serialVersionUID = -4470328546374216539L;
+        private static final int THRESHOLD = 4;
+        private final ArrayList<SecurityAccountWrapper> secWrappers;
+        private final SecurityReport[][] leafReports;
+        private final int from;
+        private final int to;
+
+        LeafReportTask(ArrayList<SecurityAccountWrapper> secWrappers,
+                       SecurityReport[][] leafReports, int from, int to) {
+            this.secWrappers = secWrappers;
+            this.leafReports = leafReports;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD || !inForkJoinPool()) {
+                for (int i = from; i < to; i++) {
+                    SecurityFromToReport[] rangeReports =
+                            SecurityFromToReport.getReports(secWrappers.get(i), dateRanges);
+                    for (int r = 0; r < rangeReports.length; r++) {
+                        leafReports[r][i] = rangeReports[r];
+                    }
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new LeafReportTask(secWrappers, leafReports, from, mid),
+                        new LeafReportTask(secWrappers, leafReports, mid, to));
+            }
+        }
+    }
+}
@@ -49,9 +49,12 @@ public class Prefs {
     static Preferences REPORT_PREFS = Preferences.userRoot().node(REPORT_PREFS_PATH);
     static final String RUN_ACTIVITY = "RUN_TRANS_ACTIVITY_REPORT";
     static final String RUN_SECURITIES_PRICES = "RUN_SECURITY_PRICES_REPORT";
+    static final String RUN_ROLLING_RETURNS = "RUN_ROLLING_RETURNS_REPORT";
+    static final String RUN_ALL_DATE_RANGES = "RUN_ALL_DATE_RANGES";
     static final String LAST_REPORT_TYPE_RUN = "LAST_REPORT_TYPE_RUN";
     static final String LAST_REPORT_NAME_RUN = "LAST_REPORT_NAME_RUN";
     static final String USE_AVERAGE_COST_BASIS = "USE_AVERAGE_COST_BASIS";
+    static final String COST_BASIS_METHOD = "COST_BASIS_METHOD";
     static final String EXPORT_DIR_PATH = "EXPORT_DIR_PATH";
     static final String AGGREGATION_MODE = "AGGREGATION_MODE";
     static final String OUTPUT_SINGLE = "OUTPUT_SINGLE";
@@ -49,7 +49,7 @@ public class ReportConfig {
     Class<? extends TotalReport> reportClass;
     String reportTypeName;
     String reportName;
-    boolean useAverageCostBasis;
+    CostBasisMethod costBasisMethod;
     AggregationController aggregationController;
     boolean outputSingle;
     int numFrozenColumns;
@@ -64,7 +64,7 @@ public class ReportConfig {
         this.reportClass = null;
         this.reportTypeName = "select any report";
         this.reportName = "select any report";
-        this.useAverageCostBasis = true;
+        this.costBasisMethod = CostBasisMethod.AVERAGE;
         this.aggregationController = null;
         this.outputSingle = false;
         this.numFrozenColumns = 0;
@@ -82,7 +82,7 @@ public class ReportConfig {
      *
      * @param reportClass           input Report Class
      * @param reportName            test report name
-     * @param useAverageCostBasis            test report name
+     * @param useAverageCostBasis   average cost if true, else lot matching
      * @param aggregationController test aggregation controller
      * @param outputSingle          irrelevant for testing
      * @param numFrozenColumns      irrelevant for testing
@@ -102,7 +102,7 @@ public class ReportConfig {
         this.reportClass = reportClass;
         this.reportTypeName = ReportConfig.getReportTypeName(reportClass);
         this.reportName = reportName;
-        this.useAverageCostBasis = useAverageCostBasis;
+        this.costBasisMethod = useAverageCostBasis ? CostBasisMethod.AVERAGE : CostBasisMethod.LOT_MATCH;
         this.aggregationController = aggregationController;
         this.outputSingle = outputSingle;
         this.numFrozenColumns = numFrozenColumns;
@@ -123,14 +123,29 @@ public class ReportConfig {
      */
     public ReportConfig(Class<? extends TotalReport> reportClass, String reportName) throws NoSuchFieldException,
             IllegalAccessException, BackingStoreException {
+        this(Prefs.REPORT_CONFIG_PREFS, reportClass, reportName);
+    }
+
+    /**
+     * Constructor reading report configuration from given preferences (e.g.
+     * read from an exported file) rather than the user's preferences
+     *
+     * @param configPrefs report configuration node (as Prefs.REPORT_CONFIG_PREFS)
+     * @param reportClass type of report
+     * @param reportName  name of report
+     * @throws NoSuchFieldException
+     * @throws IllegalAccessException
+     */
+    public ReportConfig(Preferences configPrefs, Class<? extends TotalReport> reportClass, String reportName)
+            throws NoSuchFieldException, IllegalAccessException, BackingStoreException {
+        this.prefs = configPrefs;
         this.reportTypeName = ReportConfig.getReportTypeName(reportClass);
         boolean nodeExists = prefs.node(reportTypeName).nodeExists(reportName);
         Preferences thisReportPrefs = prefs.node(reportTypeName).node(nodeExists ? reportName : Prefs.STANDARD_NAME);
         ReportConfig standardConfig = getStandardReportConfig(reportClass); //used to populate defaults if pref not found
         this.reportClass = reportClass;
         this.reportName = reportName;
-        this.useAverageCostBasis = thisReportPrefs.getBoolean(Prefs.USE_AVERAGE_COST_BASIS,
-                standardConfig.useAverageCostBasis());
+        this.costBasisMethod = getCostBasisMethodFromPrefs(thisReportPrefs, standardConfig);
         this.aggregationController = getAggregationControllerFromPrefs(thisReportPrefs);
         this.outputSingle = thisReportPrefs.getBoolean(Prefs.OUTPUT_SINGLE, standardConfig.isOutputSingle());
         this.numFrozenColumns = thisReportPrefs.getInt(Prefs.NUM_FROZEN_COLUMNS, standardConfig.getNumFrozenColumns());
@@ -165,8 +180,7 @@ public class ReportConfig {
         ReportConfig standardConfig = getStandardReportConfig(reportClass); //used to populate defaults if pref not found
         this.reportClass = reportClass;
         this.reportName = reportName;
-        this.useAverageCostBasis = thisReportPrefs.getBoolean(Prefs.USE_AVERAGE_COST_BASIS,
-                standardConfig.useAverageCostBasis());
+        this.costBasisMethod = getCostBasisMethodFromPrefs(thisReportPrefs, standardConfig);
         this.aggregationController = getAggregationControllerFromPrefs(thisReportPrefs);
         this.outputSingle = thisReportPrefs.getBoolean(Prefs.OUTPUT_SINGLE, standardConfig.isOutputSingle());
         this.numFrozenColumns = thisReportPrefs.getInt(Prefs.NUM_FROZEN_COLUMNS, standardConfig.getNumFrozenColumns());
@@ -182,7 +196,17 @@ public class ReportConfig {
 
     public static String[] getReportNamesForClass(Class<? extends TotalReport> reportClass) throws
             BackingStoreException, NoSuchFieldException, IllegalAccessException {
-        Preferences reportClassNode = Prefs.REPORT_CONFIG_PREFS.node(getReportTypeName(reportClass));
+        return getReportNamesForClass(Prefs.REPORT_CONFIG_PREFS, reportClass);
+    }
+
+    /**
+     * @param configPrefs report configuration node (as Prefs.REPORT_CONFIG_PREFS)
+     * @param reportClass type of report
+     * @return names of reports saved in given preferences
+     */
+    public static String[] getReportNamesForClass(Preferences configPrefs, Class<? extends TotalReport> reportClass)
+            throws BackingStoreException, NoSuchFieldException, IllegalAccessException {
+        Preferences reportClassNode = configPrefs.node(getReportTypeName(reportClass));
         return reportClassNode.childrenNames();
     }
 
@@ -356,12 +380,14 @@ public class ReportConfig {
     }
 
     /**
-     * gets default frame size based upon screen size
+     * gets default frame size based upon screen size (fixed size if
+     * running headless, where there is no screen)
      *
      * @return Frame dimensions as FrameInfo
      */
     public static FrameInfo getDefaultFrameInfo() {
-        Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+        Dimension screenSize = GraphicsEnvironment.isHeadless() ? new Dimension(1280, 1024)
+                : Toolkit.getDefaultToolkit().getScreenSize();
         Dimension frameSize = new Dimension((int) (screenSize.getWidth() * 0.8),
                 (int) (screenSize.getHeight() * 0.8));
         Point point = new Point((screenSize.width - frameSize.width) / 2,
@@ -412,6 +438,28 @@ public class ReportConfig {
         return reportConfigs;
     }
 
+    /**
+     * gets cost basis method, falling back to the average cost flag saved
+     * before other methods were available
+     *
+     * @param reportPref     preferences of report
+     * @param standardConfig standard config of report, for default
+     * @return cost basis method
+     */
+    private static CostBasisMethod getCostBasisMethodFromPrefs(Preferences reportPref, ReportConfig standardConfig) {
+        String costBasisMethodStr = reportPref.get(Prefs.COST_BASIS_METHOD, null);
+        if (costBasisMethodStr != null) {
+            try {
+                return CostBasisMethod.valueOf(costBasisMethodStr);
+            } catch (IllegalArgumentException e) {
+                // unknown method (e.g. saved by a later version): use flag below
+            }
+        }
+        boolean useAverageCostBasis = reportPref.getBoolean(Prefs.USE_AVERAGE_COST_BASIS,
+                standardConfig.useAverageCostBasis());
+        return useAverageCostBasis ? CostBasisMethod.AVERAGE : CostBasisMethod.LOT_MATCH;
+    }
+
     /*
     Gets aggregation controller from stored preferences
      */
@@ -454,7 +502,15 @@ public class ReportConfig {
         return isDefaultConfig;
     }
 
-    public boolean useAverageCostBasis() {return useAverageCostBasis;}
+    public boolean useAverageCostBasis() {return costBasisMethod == CostBasisMethod.AVERAGE;}
+
+    public CostBasisMethod getCostBasisMethod() {
+        return costBasisMethod;
+    }
+
+    public void setCostBasisMethod(CostBasisMethod costBasisMethod) {
+        this.costBasisMethod = costBasisMethod;
+    }
 
     public void setStandardConfig(boolean defaultConfig) {
         this.isDefaultConfig = defaultConfig;
@@ -468,7 +524,9 @@ public class ReportConfig {
         this.outputSingle = outputSingle;
     }
 
-    public void setUseAverageCostBasis(boolean useAverageCostBasis) {this.useAverageCostBasis = useAverageCostBasis;}
+    public void setUseAverageCostBasis(boolean useAverageCostBasis) {
+        this.costBasisMethod = useAverageCostBasis ? CostBasisMethod.AVERAGE : CostBasisMethod.LOT_MATCH;
+    }
 
     public DateRange getDateRange() {
         return dateRange;
@@ -570,7 +628,7 @@ public class ReportConfig {
         String nl = "\n";
         return "Report Class: " + reportTypeName + nl
                 + "Report Name: " + this.reportName + nl
-                + "Average Cost: " + this.useAverageCostBasis + nl
+                + "Cost Basis: " + this.costBasisMethod.getDescription() + nl
                 + "Aggregation Mode: " + aggregationController.getDescription() + nl
                 + "Output Single? " + outputSingle + nl
                 + "Number Frozen Columns: " + numFrozenColumns + nl
@@ -588,7 +646,8 @@ public class ReportConfig {
     public void saveReportConfig() {
         Preferences thisReportPrefs = prefs.node(reportTypeName).node(
                 (this.isDefaultConfig() ? this.reportName : this.reportName.trim()));
-        thisReportPrefs.putBoolean(Prefs.USE_AVERAGE_COST_BASIS, useAverageCostBasis);
+        thisReportPrefs.putBoolean(Prefs.USE_AVERAGE_COST_BASIS, useAverageCostBasis());
+        thisReportPrefs.put(Prefs.COST_BASIS_METHOD, costBasisMethod.name());
         thisReportPrefs.put(Prefs.AGGREGATION_MODE, aggregationController.name());
         thisReportPrefs.putBoolean(Prefs.OUTPUT_SINGLE, outputSingle);
         thisReportPrefs.putInt(Prefs.NUM_FROZEN_COLUMNS, numFrozenColumns);
@@ -71,6 +71,8 @@ public class ReportControlPanel extends javax.swing.JPanel implements ActionList
     private static final String SET_FROZEN_COLUMNS = "setFrozenColumns";
 
     private static final String HIDE_CLOSED_POSITIONS = "hideClosedPositions";
+    // run with -Dinvextension.serial=true to load and calculate on one thread (for debugging)
+    private static final boolean parallelRun = !Boolean.getBoolean("invextension.serial");
 
     private static File outputDirectory;
     private static Level logLevel = Level.INFO;
@@ -87,8 +89,10 @@ public class ReportControlPanel extends javax.swing.JPanel implements ActionList
     private JComboBox<String> snapReportComboBox = new JComboBox<>();
     private JLabel fromToReportLabel = new JLabel("'From-To' Reports");
     private JComboBox<String> fromToReportComboBox = new JComboBox<>();
+    private JCheckBox allDateRangesCheckbox = new javax.swing.JCheckBox("For All Date Ranges (One Tab Each)");
     private JCheckBox transActivityCheckbox = new javax.swing.JCheckBox("Transactions");
     private JCheckBox secPricesCheckbox = new javax.swing.JCheckBox("Securities Prices");
+    private JCheckBox rollingReturnsCheckbox = new javax.swing.JCheckBox("Rolling Returns");
     private JButton runReportsButton = new javax.swing.JButton("Run Reports");
     private JButton saveCustomReportsButton = new javax.swing.JButton("Save Custom Report");
     private JButton removeCustomReportButton = new JButton("Remove Custom Report");
@@ -227,6 +231,8 @@ public class ReportControlPanel extends javax.swing.JPanel implements ActionList
         reportsToRunPanel.add(fromToReportLabel, c);
         c.gridx = 1;
         reportsToRunPanel.add(fromToReportComboBox, c);
+        c.gridy++;
+        reportsToRunPanel.add(allDateRangesCheckbox, c);
         c.gridx = 0;
         c.gridy++;
         reportsToRunPanel.add(snapReportLabel, c);
@@ -239,6 +245,8 @@ public class ReportControlPanel extends javax.swing.JPanel implements ActionList
         downloadsPanel.add(transActivityCheckbox, c);
         c.gridx++;
         downloadsPanel.add(secPricesCheckbox, c);
+        c.gridx++;
+        downloadsPanel.add(rollingReturnsCheckbox, c);
 
 
 
@@ -455,12 +463,18 @@ public class ReportControlPanel extends javax.swing.JPanel implements ActionList
                 transActivityCheckbox.isSelected());
         Prefs.REPORT_PREFS.putBoolean(Prefs.RUN_SECURITIES_PRICES,
                 secPricesCheckbox.isSelected());
+        Prefs.REPORT_PREFS.putBoolean(Prefs.RUN_ROLLING_RETURNS,
+                rollingReturnsCheckbox.isSelected());
+        Prefs.REPORT_PREFS.putBoolean(Prefs.RUN_ALL_DATE_RANGES,
+                allDateRangesCheckbox.isSelected());
         folderPanel.savePreferences();
     }
 
     public void setDownloadPreferences(){
         transActivityCheckbox.setSelected(Prefs.REPORT_PREFS.getBoolean(Prefs.RUN_ACTIVITY, false));
         secPricesCheckbox.setSelected(Prefs.REPORT_PREFS.getBoolean(Prefs.RUN_SECURITIES_PRICES, false));
+        rollingReturnsCheckbox.setSelected(Prefs.REPORT_PREFS.getBoolean(Prefs.RUN_ROLLING_RETURNS, false));
+        allDateRangesCheckbox.setSelected(Prefs.REPORT_PREFS.getBoolean(Prefs.RUN_ALL_DATE_RANGES, false));
     }
 
 
@@ -532,8 +546,9 @@ public class ReportControlPanel extends javax.swing.JPanel implements ActionList
                 reportConfig.setAggregationController(aggregationController);
                 break;
             case SET_COST_BASIS:
-                boolean useAverageCost = reportOptionsPanel.costBasisOptionsComboBox.getSelectedIndex() == 0;
-                reportConfig.setUseAverageCostBasis(useAverageCost);
+                CostBasisMethod costBasisMethod = (CostBasisMethod) reportOptionsPanel
+                        .costBasisOptionsComboBox.getSelectedItem();
+                reportConfig.setCostBasisMethod(costBasisMethod);
                 break;
             case SET_OUTPUT_SINGLE:
                 reportConfig.setOutputSingle(reportOptionsPanel.aggregateSingleCheckBox.isSelected());
@@ -812,10 +827,9 @@ public class ReportControlPanel extends javax.swing.JPanel implements ActionList
         public JComboBox<AggregationController> aggregationOptionsComboBox =
                 new JComboBox<>(new DefaultComboBoxModel<>(AggregationController.values()));
         public JLabel costBasisOptionsLabel = new JLabel("Cost Basis");
-        public String[] costBasisOptionStrings = {
-                "Average Cost Basis Always", "Lot Matching Where Available"};
         // GUI Fields
-        public JComboBox<String> costBasisOptionsComboBox = new JComboBox<>(costBasisOptionStrings);
+        public JComboBox<CostBasisMethod> costBasisOptionsComboBox =
+                new JComboBox<>(new DefaultComboBoxModel<>(CostBasisMethod.values()));
 
         public AggregationController aggregationController;
         public JCheckBox aggregateSingleCheckBox = new JCheckBox("Show Aggregates for Single " +
@@ -902,7 +916,7 @@ public class ReportControlPanel extends javax.swing.JPanel implements ActionList
 
         public void setReportConfigInOptionsPanel() {
             aggregationOptionsComboBox.setSelectedItem(reportConfig.getAggregationController());
-            costBasisOptionsComboBox.setSelectedIndex(reportConfig.useAverageCostBasis ? 0 : 1);
+            costBasisOptionsComboBox.setSelectedItem(reportConfig.getCostBasisMethod());
             aggregateSingleCheckBox.setSelected(reportConfig.isOutputSingle());
             numFrozenColumnsComboBox.setSelectedItem(reportConfig.getNumFrozenColumns());
             hideClosedPosCheckBox.setSelected(reportConfig.isClosedPosHidden());
@@ -925,14 +939,25 @@ public class ReportControlPanel extends javax.swing.JPanel implements ActionList
                 return null;
             }
             saveLastReportRun();
+            long runStartTime = ReportProfiler.startTime();
+            ReportProfiler.reset();
+            String profileSummary = "";
             publish(reportConfig.getDescription() + " is running...\n");
             if(transActivityCheckbox.isSelected()) publish("writing transaction data to file\n");
             if(secPricesCheckbox.isSelected()) publish("writing security price data to file\n");
+            if(rollingReturnsCheckbox.isSelected()) publish("writing rolling returns to file\n");
             //load BulkSecInfo...
             if (root != null) {
                 try {
-                    currentInfo = new BulkSecInfo(root, reportConfig);
+                    // reuse security information from last run where data file is unchanged,
+                    // rebuilding only those accounts whose transactions have changed
+                    if (currentInfo == null || currentInfo.getRoot() != root) {
+                        currentInfo = new BulkSecInfo(root, reportConfig, parallelRun);
+                    } else {
+                        currentInfo.refresh(reportConfig);
+                    }
                 } catch (Exception e) {
+                    currentInfo = null;
                     LogController.logException(e, "Error on loading security information from datafile: ");
                     publish(showErrorMessage("Error--Could not load securities from data file!"));
                 }
@@ -943,11 +968,19 @@ public class ReportControlPanel extends javax.swing.JPanel implements ActionList
                 try {
                     if (snapReportComboBox.getSelectedIndex() != 0) {
                         TotalReport report = new TotalSnapshotReport(reportConfig);
+                        report.setParallelCalc(parallelRun);
                         report.calcReport(currentInfo);
                         report.displayReport();
                     }
-                    if (fromToReportComboBox.getSelectedIndex() != 0) {
+                    if (fromToReportComboBox.getSelectedIndex() != 0 && allDateRangesCheckbox.isSelected()) {
+                        // one pass over ledgers for every date rule
+                        MultiRangeFromToReport report = MultiRangeFromToReport.getDateRulePresetReport(reportConfig);
+                        report.setParallelCalc(parallelRun);
+                        report.calcReports(currentInfo);
+                        report.displayReports();
+                    } else if (fromToReportComboBox.getSelectedIndex() != 0) {
                         TotalReport report = new TotalFromToReport(reportConfig);
+                        report.setParallelCalc(parallelRun);
                         report.calcReport(currentInfo);
                         report.displayReport();
                     }
@@ -965,8 +998,16 @@ public class ReportControlPanel extends javax.swing.JPanel implements ActionList
                         IOUtils.writeArrayListToCSV(BulkSecInfo.listCurrencySnapshotHeader(),
                                 secPricesReport, secPricesReportFile);
                     }
+                    if (rollingReturnsCheckbox.isSelected()) {
+                        RollingReturnReport rollingReport = RollingReturnReport.getStandardReport(reportConfig);
+                        rollingReport.calcReport(currentInfo);
+                        File rollingReportFile = getOutputFile("rollingReturnsReport.csv");
+                        IOUtils.writeArrayListToCSV(RollingReturnReport.listRowsHeader(),
+                                rollingReport.listRows(), rollingReportFile);
+                    }
 
-                    if (transActivityCheckbox.isSelected() || secPricesCheckbox.isSelected()) {
+                    if (transActivityCheckbox.isSelected() || secPricesCheckbox.isSelected()
+                            || rollingReturnsCheckbox.isSelected()) {
                         openBrowserToDownloadFile();
                     }
 
@@ -977,14 +1018,17 @@ public class ReportControlPanel extends javax.swing.JPanel implements ActionList
 
                 long endTime = System.currentTimeMillis();
                 System.out.println("Report generated in " + (endTime - startTime) + " milliseconds");
+                ReportProfiler.appendProfile(outputDirectory, reportConfig.getDescription());
+                ReportEngineStats.getInstance().recordReportRun(runStartTime, currentInfo);
+                profileSummary = "\n" + ReportProfiler.getSummary();
             } else {
                 publish(showErrorMessage("Error--Reports not run! "));
             }
             if (logLevel.intValue() < Level.WARNING.intValue()) {
-                publish("Reports have been run!");
+                publish("Reports have been run!" + profileSummary);
             } else if ((logLevel.intValue() == Level.WARNING.intValue())) {
                 publish(showErrorMessage("Reports run with WARNINGS!  " +
-                        "Transaction data may not have validated. "));
+                        "Transaction data may not have validated. ") + profileSummary);
                 ReportControlPanel.this.getReportControlFrame().toFront();
                 ReportControlPanel.this.getReportControlFrame().repaint();
             }
@@ -0,0 +1,376 @@
+/*
+ * ReportEngineStats.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cumulative counters and latency histograms of the report engine,
+ * registered as a platform MXBean (see Main) so that a slow session can be
+ * diagnosed while it runs.  Phase events are forwarded from
+ * ReportProfiler, which keeps the figures for the current run only.
+ * <p/>
+ * All updates are lock-free: counters on hot paths are striped by thread,
+ * so that parallel loads and reports don't contend on one value.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class ReportEngineStats implements ReportEngineStatsMXBean {
+    public static final String OBJECT_NAME = "com.moneydance.modules.features.invextension:type=ReportEngineStats";
+    private static final ReportProfiler.Phase[] phases = ReportProfiler.Phase.values();
+    private static final ReportEngineStats instance = new ReportEngineStats(); // after phases
+
+    private final AtomicLong reportRuns = new AtomicLong();
+    private final AtomicLong reportRunNanos = new AtomicLong();
+    private final LatencyHistogram reportRunHistogram = new LatencyHistogram();
+    private final StripedCounter[] phaseNanos = new StripedCounter[phases.length];
+    private final StripedCounter[] phaseItems = new StripedCounter[phases.length];
+    private final LatencyHistogram[] phaseHistograms = new LatencyHistogram[phases.length];
+    private final StripedCounter xirrIterations = new StripedCounter();
+    private final StripedCounter xirrFailures = new StripedCounter();
+    private final AtomicLong accountCacheHits = new AtomicLong();
+    private final AtomicLong accountCacheMisses = new AtomicLong();
+    private final StripedCounter priceFallbackLookups = new StripedCounter();
+    private final AtomicLong bulkSecInfoFootprintBytes = new AtomicLong();
+
+    ReportEngineStats() {
+        for (int i = 0; i < phases.length; i++) {
+            phaseNanos[i] = new StripedCounter();
+            phaseItems[i] = new StripedCounter();
+            phaseHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    public static ReportEngineStats getInstance() {
+        return instance;
+    }
+
+    /**
+     * registers with platform MBean server, replacing any instance left by
+     * a prior load of the extension
+     *
+     * @throws JMException
+     */
+    public static synchronized void register() throws JMException {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(OBJECT_NAME);
+        if (mBeanServer.isRegistered(objectName)) mBeanServer.unregisterMBean(objectName);
+        mBeanServer.registerMBean(instance, objectName);
+    }
+
+    /**
+     * @throws JMException
+     */
+    public static synchronized void unregister() throws JMException {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(OBJECT_NAME);
+        if (mBeanServer.isRegistered(objectName)) mBeanServer.unregisterMBean(objectName);
+    }
+
+    /**
+     * @param startTime   time run started (from ReportProfiler.startTime)
+     * @param currentInfo security information used by run, or null
+     */
+    public void recordReportRun(long startTime, BulkSecInfo currentInfo) {
+        long elapsed = System.nanoTime() - startTime;
+        reportRuns.incrementAndGet();
+        reportRunNanos.addAndGet(elapsed);
+        reportRunHistogram.record(elapsed);
+        if (currentInfo != null) {
+            bulkSecInfoFootprintBytes.set(currentInfo.getFootprintBytes());
+        }
+    }
+
+    void recordPhase(ReportProfiler.Phase phase, long elapsed, long count) {
+        phaseNanos[phase.ordinal()].add(elapsed);
+        phaseItems[phase.ordinal()].add(count);
+        phaseHistograms[phase.ordinal()].record(elapsed);
+    }
+
+    void recordXirr(long solves, long iterations, long failures) {
+        phaseItems[ReportProfiler.Phase.XIRR.ordinal()].add(solves);
+        xirrIterations.add(iterations);
+        xirrFailures.add(failures);
+    }
+
+    /**
+     * @param hits   investment accounts reused from prior load
+     * @param misses investment accounts loaded or rebuilt
+     */
+    public void recordAccountCache(long hits, long misses) {
+        accountCacheHits.addAndGet(hits);
+        accountCacheMisses.addAndGet(misses);
+    }
+
+    /**
+     * records a price looked up in Moneydance because its date is outside
+     * the daily price array of its currency (lookups within the array are
+     * not counted, so they touch no shared counter)
+     */
+    void recordPriceFallbackLookup() {
+        priceFallbackLookups.add(1);
+    }
+
+    @Override
+    public long getReportRuns() {
+        return reportRuns.get();
+    }
+
+    @Override
+    public long getReportRunMeanMicros() {
+        long runs = reportRuns.get();
+        return runs == 0 ? 0 : reportRunNanos.get() / runs / 1000;
+    }
+
+    @Override
+    public long[] getReportRunLatencyHistogram() {
+        return reportRunHistogram.getCounts();
+    }
+
+    @Override
+    public long getTransactionsProcessed() {
+        return phaseItems[ReportProfiler.Phase.TRANSACTION_VALUES.ordinal()].sum();
+    }
+
+    @Override
+    public long getXirrSolves() {
+        return phaseItems[ReportProfiler.Phase.XIRR.ordinal()].sum();
+    }
+
+    @Override
+    public long getXirrFailures() {
+        return xirrFailures.sum();
+    }
+
+    @Override
+    public long getXirrIterations() {
+        return xirrIterations.sum();
+    }
+
+    @Override
+    public long getAccountCacheHits() {
+        return accountCacheHits.get();
+    }
+
+    @Override
+    public long getAccountCacheMisses() {
+        return accountCacheMisses.get();
+    }
+
+    @Override
+    public double getAccountCacheHitRate() {
+        return getHitRate(getAccountCacheHits(), getAccountCacheMisses());
+    }
+
+    @Override
+    public long getPriceFallbackLookups() {
+        return priceFallbackLookups.sum();
+    }
+
+    @Override
+    public long getBulkSecInfoFootprintBytes() {
+        return bulkSecInfoFootprintBytes.get();
+    }
+
+    @Override
+    public Map<String, Long> getPhaseEvents() {
+        Map<String, Long> phaseEvents = new LinkedHashMap<>();
+        for (ReportProfiler.Phase phase : phases) {
+            phaseEvents.put(phase.getDescription(), phaseHistograms[phase.ordinal()].getTotalCount());
+        }
+        return phaseEvents;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseItems() {
+        Map<String, Long> items = new LinkedHashMap<>();
+        for (ReportProfiler.Phase phase : phases) {
+            items.put(phase.getDescription(), phaseItems[phase.ordinal()].sum());
+        }
+        return items;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseTotalMicros() {
+        Map<String, Long> totalMicros = new LinkedHashMap<>();
+        for (ReportProfiler.Phase phase : phases) {
+            totalMicros.put(phase.getDescription(), phaseNanos[phase.ordinal()].sum() / 1000);
+        }
+        return totalMicros;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseMedianMicros() {
+        return getPhasePercentileMicros(0.5);
+    }
+
+    @Override
+    public Map<String, Long> getPhase99thPercentileMicros() {
+        return getPhasePercentileMicros(0.99);
+    }
+
+    @Override
+    public Map<String, long[]> getPhaseLatencyHistograms() {
+        Map<String, long[]> histograms = new LinkedHashMap<>();
+        for (ReportProfiler.Phase phase : phases) {
+            histograms.put(phase.getDescription(), phaseHistograms[phase.ordinal()].getCounts());
+        }
+        return histograms;
+    }
+
+    @Override
+    public String[] getLatencyHistogramBuckets() {
+        String[] buckets = new String[LatencyHistogram.NUM_BUCKETS];
+        for (int i = 0; i < buckets.length - 1; i++) {
+            buckets[i] = "< " + LatencyHistogram.getUpperBoundMicros(i) + " us";
+        }
+        buckets[buckets.length - 1] = ">= " + LatencyHistogram.getUpperBoundMicros(buckets.length - 2) + " us";
+        return buckets;
+    }
+
+    @Override
+    public void reset() {
+        reportRuns.set(0);
+        reportRunNanos.set(0);
+        reportRunHistogram.reset();
+        for (int i = 0; i < phases.length; i++) {
+            phaseNanos[i].reset();
+            phaseItems[i].reset();
+            phaseHistograms[i].reset();
+        }
+        xirrIterations.reset();
+        xirrFailures.reset();
+        accountCacheHits.set(0);
+        accountCacheMisses.set(0);
+        priceFallbackLookups.reset();
+    }
+
+    private Map<String, Long> getPhasePercentileMicros(double fraction) {
+        Map<String, Long> percentiles = new LinkedHashMap<>();
+        for (ReportProfiler.Phase phase : phases) {
+            percentiles.put(phase.getDescription(), phaseHistograms[phase.ordinal()].getPercentileMicros(fraction));
+        }
+        return percentiles;
+    }
+
+    private static double getHitRate(long hits, long misses) {
+        return hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+    }
+
+    /**
+     * Counter spread over several cells (each on its own cache line),
+     * chosen by thread, and summed on read
+     */
+    static final class StripedCounter {
+        private static final int STRIPES = 16; // power of 2
+        private static final int PADDING = 8; // longs per cache line
+        private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+        void add(long x) {
+            cells.addAndGet(((int) Thread.currentThread().getId() & (STRIPES - 1)) * PADDING, x);
+        }
+
+        long sum() {
+            long sum = 0;
+            for (int i = 0; i < STRIPES; i++) sum += cells.get(i * PADDING);
+            return sum;
+        }
+
+        void reset() {
+            for (int i = 0; i < STRIPES; i++) cells.set(i * PADDING, 0);
+        }
+    }
+
+    /**
+     * Counts of latencies in power-of-two buckets: bucket 0 is under
+     * 2^10 ns (about 1 us), bucket i covers [2^(9+i), 2^(10+i)) ns, and
+     * the last bucket is open-ended
+     */
+    static final class LatencyHistogram {
+        static final int NUM_BUCKETS = 32;
+        private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+
+        static int getBucket(long nanos) {
+            if (nanos < 1024) return 0;
+            return Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos) - 10);
+        }
+
+        static long getUpperBoundMicros(int bucket) {
+            return (1L << (10 + bucket)) / 1000;
+        }
+
+        void record(long nanos) {
+            counts.incrementAndGet(getBucket(nanos));
+        }
+
+        long[] getCounts() {
+            long[] values = new long[NUM_BUCKETS];
+            for (int i = 0; i < NUM_BUCKETS; i++) values[i] = counts.get(i);
+            return values;
+        }
+
+        long getTotalCount() {
+            long total = 0;
+            for (int i = 0; i < NUM_BUCKETS; i++) total += counts.get(i);
+            return total;
+        }
+
+        /**
+         * @param fraction fraction of events (e.g. 0.99)
+         * @return upper bound of bucket containing that fraction of events
+         * (microseconds), or 0 if none recorded
+         */
+        long getPercentileMicros(double fraction) {
+            long[] values = getCounts();
+            long total = 0;
+            for (long value : values) total += value;
+            if (total == 0) return 0;
+            long target = (long) Math.ceil(fraction * total);
+            long cumulative = 0;
+            for (int i = 0; i < values.length; i++) {
+                cumulative += values[i];
+                if (cumulative >= target) return getUpperBoundMicros(i);
+            }
+            return getUpperBoundMicros(values.length - 1);
+        }
+
+        void reset() {
+            for (int i = 0; i < NUM_BUCKETS; i++) counts.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * ReportEngineStatsMXBean.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import java.util.Map;
+
+/**
+ * Management interface of ReportEngineStats, for monitoring the extension
+ * with jconsole or VisualVM.  Values are cumulative since the extension
+ * was loaded (or last reset).  Latencies are in microseconds; histogram
+ * buckets are labelled by getLatencyHistogramBuckets.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public interface ReportEngineStatsMXBean {
+
+    long getReportRuns();
+
+    long getReportRunMeanMicros();
+
+    long[] getReportRunLatencyHistogram();
+
+    long getTransactionsProcessed();
+
+    long getXirrSolves();
+
+    long getXirrFailures();
+
+    long getXirrIterations();
+
+    long getAccountCacheHits();
+
+    long getAccountCacheMisses();
+
+    double getAccountCacheHitRate();
+
+    long getPriceFallbackLookups();
+
+    long getBulkSecInfoFootprintBytes();
+
+    Map<String, Long> getPhaseEvents();
+
+    Map<String, Long> getPhaseItems();
+
+    Map<String, Long> getPhaseTotalMicros();
+
+    Map<String, Long> getPhaseMedianMicros();
+
+    Map<String, Long> getPhase99thPercentileMicros();
+
+    Map<String, long[]> getPhaseLatencyHistograms();
+
+    String[] getLatencyHistogramBuckets();
+
+    void reset();
+}
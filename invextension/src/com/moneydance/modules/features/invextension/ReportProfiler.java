@@ -0,0 +1,253 @@
+/*
+ * ReportProfiler.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import java.io.File;
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records elapsed time and item counts for each phase of a report run, so
+ * that the phase responsible for a slowdown can be identified.  Reset at
+ * the start of each run; the summary is shown in the report status pane
+ * and each run is appended to a rolling csv file in the output directory.
+ * Each phase is also added to the cumulative ReportEngineStats.
+ * <p/>
+ * Phases nest: transaction bucketing, transaction values and gains are
+ * part of data load, XIRR is part of leaf reports and composite
+ * aggregation, and table model is part of rendering.  Phases which run on
+ * several threads (e.g. transaction values on a parallel load) report
+ * time summed over threads.  XIRR solves are counted (with iterations and
+ * failures) by each report and published once per report run, but not
+ * timed, as their time is within leaf reports and composite aggregation.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public final class ReportProfiler {
+    public static final String PROFILE_FILE_NAME = "reportProfile.csv";
+    static final int MAX_PROFILE_ROWS = 500;
+    private static final Phase[] phases = Phase.values();
+    private static final AtomicLongArray phaseNanos = new AtomicLongArray(phases.length);
+    private static final AtomicLongArray phaseCounts = new AtomicLongArray(phases.length);
+    private static final AtomicLong xirrIterations = new AtomicLong();
+    private static final AtomicLong xirrNonConverged = new AtomicLong();
+    private static final DecimalFormat msFormat = new DecimalFormat("#,##0.0");
+    private static final String nl = "\n";
+
+    /**
+     * prevents instantiation
+     */
+    private ReportProfiler() {
+    }
+
+    /**
+     * clears all phases, before a report run
+     */
+    public static void reset() {
+        for (int i = 0; i < phases.length; i++) {
+            phaseNanos.set(i, 0);
+            phaseCounts.set(i, 0);
+        }
+        xirrIterations.set(0);
+        xirrNonConverged.set(0);
+    }
+
+    /**
+     * @return start time for a later call to record
+     */
+    public static long startTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * @param phase     phase completed
+     * @param startTime time phase started (from startTime)
+     * @param count     items processed in phase
+     */
+    public static void record(Phase phase, long startTime, long count) {
+        recordElapsed(phase, System.nanoTime() - startTime, count);
+    }
+
+    /**
+     * records time already summed by the caller, so that fine-grained
+     * phases are published once rather than per item
+     *
+     * @param phase   phase completed
+     * @param elapsed nanoseconds spent in phase
+     * @param count   items processed in phase
+     */
+    public static void recordElapsed(Phase phase, long elapsed, long count) {
+        phaseNanos.addAndGet(phase.ordinal(), elapsed);
+        phaseCounts.addAndGet(phase.ordinal(), count);
+        ReportEngineStats.getInstance().recordPhase(phase, elapsed, count);
+    }
+
+    /**
+     * records XIRR solves accumulated by a report run (see XIRR.Solver)
+     *
+     * @param solves     XIRR solves
+     * @param iterations iterations taken by solver
+     * @param failures   solves for which no return was found
+     */
+    public static void recordXirr(long solves, long iterations, long failures) {
+        phaseCounts.addAndGet(Phase.XIRR.ordinal(), solves);
+        xirrIterations.addAndGet(iterations);
+        xirrNonConverged.addAndGet(failures);
+        ReportEngineStats.getInstance().recordXirr(solves, iterations, failures);
+    }
+
+    public static long getPhaseNanos(Phase phase) {
+        return phaseNanos.get(phase.ordinal());
+    }
+
+    public static long getPhaseCount(Phase phase) {
+        return phaseCounts.get(phase.ordinal());
+    }
+
+    public static long getXirrIterations() {
+        return xirrIterations.get();
+    }
+
+    public static long getXirrNonConverged() {
+        return xirrNonConverged.get();
+    }
+
+    /**
+     * @return one line per phase, for report status pane
+     */
+    public static String getSummary() {
+        StringBuilder summary = new StringBuilder("Phase times (ms):" + nl);
+        for (Phase phase : phases) {
+            if (phase == Phase.XIRR) {
+                // not timed (see class comment)
+                summary.append(phase.getDescription()).append(": ")
+                        .append(getPhaseCount(phase)).append(" ").append(phase.getCountName())
+                        .append(", ").append(getXirrIterations()).append(" iterations, ")
+                        .append(getXirrNonConverged()).append(" not converged");
+            } else {
+                summary.append(phase.getDescription()).append(": ")
+                        .append(msFormat.format(getPhaseNanos(phase) / 1e6)).append(" (")
+                        .append(getPhaseCount(phase)).append(" ").append(phase.getCountName()).append(")");
+            }
+            summary.append(nl);
+        }
+        return summary.toString();
+    }
+
+    public static StringBuffer listProfileHeader() {
+        StringBuffer header = new StringBuffer("Time,Report");
+        for (Phase phase : phases) {
+            header.append(",").append(phase.getDescription()).append(" ms,")
+                    .append(phase.getDescription()).append(" ").append(phase.getCountName());
+        }
+        header.append(",XIRR iterations,XIRR not converged");
+        return header;
+    }
+
+    /**
+     * @param description report(s) run
+     * @return current phase values as csv line
+     */
+    public static String[] listProfile(String description) {
+        ArrayList<String> line = new ArrayList<>();
+        line.add(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+        line.add(description.replaceAll("[,\\n]", " ").trim());
+        for (Phase phase : phases) {
+            line.add(Long.toString(getPhaseNanos(phase) / 1000000));
+            line.add(Long.toString(getPhaseCount(phase)));
+        }
+        line.add(Long.toString(getXirrIterations()));
+        line.add(Long.toString(getXirrNonConverged()));
+        return line.toArray(new String[line.size()]);
+    }
+
+    /**
+     * Appends current phase values to profile file in output directory,
+     * keeping only the most recent MAX_PROFILE_ROWS runs
+     *
+     * @param outputDirectory directory for profile file
+     * @param description     report(s) run
+     * @return profile file
+     */
+    public static File appendProfile(File outputDirectory, String description) {
+        File profileFile = new File(outputDirectory, PROFILE_FILE_NAME);
+        StringBuffer header = listProfileHeader();
+        ArrayList<String[]> rows = new ArrayList<>();
+        rows.add(listProfile(description));
+        ArrayList<String[]> priorRows = profileFile.exists() ? IOUtils.readCSVIntoArrayList(profileFile) : null;
+        if (priorRows != null && !priorRows.isEmpty()
+                && IOUtils.writeCSVLine(priorRows.get(0)).equals(header.toString())
+                && priorRows.size() <= MAX_PROFILE_ROWS) {
+            IOUtils.appendArrayListToCSV(rows, profileFile);
+        } else {
+            // new file, changed columns, or full: rewrite with latest rows
+            if (priorRows != null && !priorRows.isEmpty()
+                    && IOUtils.writeCSVLine(priorRows.get(0)).equals(header.toString())) {
+                int keep = Math.min(priorRows.size() - 1, MAX_PROFILE_ROWS - 1);
+                rows.addAll(0, priorRows.subList(priorRows.size() - keep, priorRows.size()));
+            }
+            IOUtils.writeArrayListToCSV(header, rows, profileFile);
+        }
+        return profileFile;
+    }
+
+    public enum Phase {
+        DATA_LOAD("Data Load", "accounts"),
+        TRANSACTION_BUCKETING("Transaction Bucketing", "transactions"),
+        TRANSACTION_VALUES("Transaction Values", "transactions"),
+        GAINS_CALC("Gains Calculation", "transactions"),
+        LEAF_REPORTS("Leaf Reports", "securities"),
+        COMPOSITE_AGGREGATION("Composite Aggregation", "composites"),
+        XIRR("XIRR", "solves"),
+        TABLE_MODEL("Table Model", "rows"),
+        RENDERING("Rendering", "windows");
+
+        private final String description;
+        private final String countName;
+
+        Phase(String description, String countName) {
+            this.description = description;
+            this.countName = countName;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        public String getCountName() {
+            return countName;
+        }
+    }
+}
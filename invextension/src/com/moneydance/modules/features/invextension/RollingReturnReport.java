@@ -0,0 +1,386 @@
+/*
+ * RollingReturnReport.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Generates rolling-window Mod-Dietz and annualized returns at each
+ * month-end for every security, every aggregate of one Aggregator and all
+ * securities, as one long-format table (one row per series and date).
+ * <p/>
+ * Each window gives the same returns as a "From/To" report over that
+ * window.  Windows are slid over each series with two cursors, so rows
+ * enter and leave a window once: Mod-Dietz sums come from cumulative flow
+ * arrays, and the XIRR flows of a window are the range between the cursors
+ * of one date-sorted flow map per series (a composite merges its members'
+ * maps once, not per window).  Each XIRR solve starts from the previous
+ * window's result.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class RollingReturnReport {
+    public static final int[] STANDARD_WINDOW_MONTHS = {12, 36};
+    private static final String ALL_NAME = "ALL";
+    private final Aggregator aggregator;
+    private final int[] windowMonths;
+    private final int[] toDateInts;
+    private final ArrayList<Object[]> rows = new ArrayList<>();
+    private final XIRR.Solver xirrSolver = new XIRR.Solver(); // published once per calcReport
+
+    /**
+     * @param aggregator   aggregator for aggregate series
+     * @param windowMonths window lengths, in months
+     * @param fromDateInt  first date for window ends
+     * @param toDateInt    last date for window ends
+     */
+    public RollingReturnReport(Aggregator aggregator, int[] windowMonths, int fromDateInt, int toDateInt) {
+        this.aggregator = aggregator;
+        this.windowMonths = windowMonths.clone();
+        this.toDateInts = getMonthEndDateInts(fromDateInt, toDateInt);
+    }
+
+    /**
+     * @param reportConfig report configuration
+     * @return 12 and 36 month windows ending in report date range, aggregated
+     * by first aggregator
+     */
+    public static RollingReturnReport getStandardReport(ReportConfig reportConfig) {
+        DateRange dateRange = reportConfig.getDateRange();
+        return new RollingReturnReport(reportConfig.getAggregationController().getFirstAggregator(),
+                STANDARD_WINDOW_MONTHS, dateRange.getFromDateInt(), dateRange.getToDateInt());
+    }
+
+    /**
+     * @param fromDateInt first date
+     * @param toDateInt   last date
+     * @return last business day of each month, between dates (inclusive)
+     */
+    public static int[] getMonthEndDateInts(int fromDateInt, int toDateInt) {
+        ArrayList<Integer> monthEnds = new ArrayList<>();
+        int year = fromDateInt / 10000;
+        int month = (fromDateInt / 100) % 100;
+        while (year * 100 + month <= toDateInt / 100) {
+            int monthEnd = DateUtils.getLatestBusinessDay(year * 10000 + month * 100
+                    + DateUtils.getDaysInMonth(year, month));
+            if (monthEnd >= fromDateInt && monthEnd <= toDateInt) monthEnds.add(monthEnd);
+            if (++month > 12) {
+                month = 1;
+                year++;
+            }
+        }
+        int[] output = new int[monthEnds.size()];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = monthEnds.get(i);
+        }
+        return output;
+    }
+
+    public void calcReport(BulkSecInfo currentInfo) {
+        rows.clear();
+        ArrayList<SecurityAccountWrapper> secWrappers = TotalReport.getSecurityAccountWrappers(currentInfo);
+        for (int months : windowMonths) {
+            int[] fromDateInts = new int[toDateInts.length];
+            for (int i = 0; i < toDateInts.length; i++) {
+                fromDateInts[i] = DateUtils.getLatestBusinessDay(DateUtils.addMonthsInt(toDateInts[i], -months));
+            }
+
+            LinkedHashMap<Aggregator, ArrayList<WindowValues[]>> aggregates = new LinkedHashMap<>();
+            ArrayList<WindowValues[]> allSeries = new ArrayList<>();
+            for (SecurityAccountWrapper secWrapper : secWrappers) {
+                if (secWrapper.getLedger() == null) continue;
+                WindowValues[] series = getSecuritySeries(secWrapper, fromDateInts);
+                Aggregator aggregate = secWrapper.getAggregator(aggregator);
+                ArrayList<WindowValues[]> members = aggregates.get(aggregate);
+                if (members == null) {
+                    members = new ArrayList<>();
+                    aggregates.put(aggregate, members);
+                }
+                members.add(series);
+                allSeries.add(series);
+                addRows(getAggregateName(aggregate), secWrapper.getName(), months, series);
+            }
+            for (Map.Entry<Aggregator, ArrayList<WindowValues[]>> entry : aggregates.entrySet()) {
+                addRows(getAggregateName(entry.getKey()), aggregator.getAllTypesName(), months,
+                        getCompositeSeries(entry.getValue()));
+            }
+            addRows(ALL_NAME, ALL_NAME, months, getCompositeSeries(allSeries));
+        }
+        xirrSolver.publish();
+    }
+
+    /**
+     * @return report rows (aggregate, security, window months, end date,
+     * start value, end value, Mod-Dietz return, annualized return)
+     */
+    public Object[][] getReportTable() {
+        return rows.toArray(new Object[rows.size()][]);
+    }
+
+    public static StringBuffer listRowsHeader() {
+        StringBuffer header = new StringBuffer();
+        header.append("Aggregate" + ",");
+        header.append("Security" + ",");
+        header.append("WindowMonths" + ",");
+        header.append("Date" + ",");
+        header.append("StartValue" + ",");
+        header.append("EndValue" + ",");
+        header.append("MDReturn" + ",");
+        header.append("AnnualReturn");
+        return header;
+    }
+
+    /**
+     * @return report rows, as strings for csv output
+     */
+    public ArrayList<String[]> listRows() {
+        ArrayList<String[]> output = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            String[] line = new String[row.length];
+            for (int i = 0; i < row.length; i++) {
+                line[i] = String.valueOf(row[i]);
+            }
+            output.add(line);
+        }
+        return output;
+    }
+
+    private static String getAggregateName(Aggregator aggregate) {
+        return aggregate == null || aggregate.getAggregateName() == null
+                ? ALL_NAME : aggregate.getAggregateName().trim();
+    }
+
+    /*
+     * adds one row per window with any activity, warm starting each XIRR
+     * solve from the prior window
+     */
+    private void addRows(String aggregateName, String securityName, int months, WindowValues[] series) {
+        double annualReturn = Double.NaN;
+        for (int i = 0; i < series.length; i++) {
+            WindowValues values = series[i];
+            if (values == null || values.isEmpty()) {
+                annualReturn = Double.NaN;
+                continue;
+            }
+            double mdReturn = values.getMDReturn();
+            annualReturn = ComponentReport.computeAnnualReturn(values.getReturnMap(), mdReturn, annualReturn,
+                    xirrSolver);
+            rows.add(new Object[]{aggregateName, securityName, months, toDateInts[i],
+                    values.startValue, values.endValue, mdReturn, annualReturn});
+        }
+    }
+
+    /*
+     * Slides windows over security ledger, with the same position, value
+     * and flow rules as SecurityFromToReport
+     */
+    private WindowValues[] getSecuritySeries(SecurityAccountWrapper secWrapper, int[] fromDateInts) {
+        SecurityLedger ledger = secWrapper.getLedger();
+        int size = ledger.size();
+
+        // cumulative buy/sell flows (plain and day-weighted), so that the
+        // Mod-Dietz sums of any window are a difference of two entries
+        int[] epochDays = new int[size];
+        DateMap flows = new DateMap();
+        double[] cumFlows = new double[size + 1];
+        double[] cumDayFlows = new double[size + 1];
+        SecurityLedger.Cursor cursor = ledger.cursor();
+        while (cursor.next()) {
+            int i = cursor.getIndex();
+            epochDays[i] = DateUtils.toEpochDay(cursor.getDateInt());
+            flows.add(cursor.getDateInt(), cursor.getTotalFlows());
+            double flow = cursor.getBuySellFlows();
+            cumFlows[i + 1] = cumFlows[i] + flow;
+            cumDayFlows[i + 1] = cumDayFlows[i] + flow * epochDays[i];
+        }
+
+        WindowValues[] series = new WindowValues[toDateInts.length];
+        int fromIndex = 0;  // first row after window start
+        int toIndex = -1;   // last row on or before window end
+        for (int w = 0; w < toDateInts.length; w++) {
+            int fromDateInt = fromDateInts[w];
+            int toDateInt = toDateInts[w];
+            while (fromIndex < size && ledger.getDateInt(fromIndex) <= fromDateInt) fromIndex++;
+            while (toIndex + 1 < size && ledger.getDateInt(toIndex + 1) <= toDateInt) toIndex++;
+            boolean inWindow = fromIndex < size && toIndex >= fromIndex;
+
+            WindowValues values = new WindowValues(fromDateInt, toDateInt);
+            double startPos = 0;
+            double endPos = 0;
+            if (size > 0 && !(inWindow && fromIndex == 0)) {
+                int priorIndex = inWindow ? fromIndex - 1 : size - 1;
+                startPos = getSplitAdjustedPosition(secWrapper, ledger.getPosition(priorIndex),
+                        ledger.getDateInt(priorIndex), fromDateInt);
+                endPos = startPos;
+            }
+            if (inWindow) {
+                endPos = getSplitAdjustedPosition(secWrapper, ledger.getPosition(toIndex),
+                        ledger.getDateInt(toIndex), toDateInt);
+                values.income = ledger.sum(SecurityLedger.FlowColumn.INCOME, fromIndex, toIndex);
+                values.expense = ledger.sum(SecurityLedger.FlowColumn.EXPENSE, fromIndex, toIndex);
+                values.mdFlows = cumFlows[toIndex + 1] - cumFlows[fromIndex];
+                values.mdDayFlows = cumDayFlows[toIndex + 1] - cumDayFlows[fromIndex];
+                values.mdFirstDay = epochDays[fromIndex];
+                values.mdLastDay = epochDays[toIndex];
+            }
+            values.startValue = startPos * secWrapper.getPrice(fromDateInt);
+            values.endValue = endPos * secWrapper.getPrice(toDateInt);
+            // Mod-Dietz dummy entries and XIRR start/end values
+            if (startPos != 0) {
+                values.hasStart = true;
+                values.mdFirstDay = DateUtils.toEpochDay(fromDateInt);
+                values.mdLastDay = Math.max(values.mdLastDay, values.mdFirstDay);
+            }
+            if (endPos != 0) {
+                values.hasEnd = true;
+                values.mdLastDay = DateUtils.toEpochDay(toDateInt);
+                values.mdFirstDay = Math.min(values.mdFirstDay, values.mdLastDay);
+            }
+            series[w] = values;
+        }
+        setFlowRanges(flows, series);
+        return series;
+    }
+
+    /*
+     * Points each window at its range of a series' flows (dates after window
+     * start, through window end), sliding both ends forward
+     */
+    private static void setFlowRanges(DateMap flows, WindowValues[] series) {
+        int flowFrom = 0;
+        int flowTo = 0;
+        for (WindowValues values : series) {
+            if (values == null) continue;
+            while (flowFrom < flows.size() && flows.getDateInt(flowFrom) <= values.fromDateInt) flowFrom++;
+            while (flowTo < flows.size() && flows.getDateInt(flowTo) <= values.toDateInt) flowTo++;
+            values.flows = flows;
+            values.flowFrom = flowFrom;
+            values.flowTo = Math.max(flowFrom, flowTo);
+        }
+    }
+
+    private static double getSplitAdjustedPosition(SecurityAccountWrapper secWrapper, double referencePosition,
+                                                   int referenceDateInt, int currentDateInt) {
+        CurrencyWrapper currencyWrapper = secWrapper.getCurrencyWrapper();
+        double splitAdjust = currencyWrapper.currencyType == null ? 1.0 : currencyWrapper
+                .getSplitFactor(referenceDateInt, currentDateInt);
+        return referencePosition * splitAdjust;
+    }
+
+    /*
+     * Combines member series, with the same rules as a composite "From/To"
+     * report
+     */
+    private WindowValues[] getCompositeSeries(ArrayList<WindowValues[]> members) {
+        // flows of each member are one map shared by all its windows
+        DateMap flows = new DateMap();
+        for (WindowValues[] member : members) {
+            if (member.length > 0) flows = flows.plus(member[0].flows);
+        }
+        WindowValues[] series = new WindowValues[toDateInts.length];
+        for (int w = 0; w < series.length; w++) {
+            WindowValues values = null;
+            for (WindowValues[] member : members) {
+                WindowValues memberValues = member[w];
+                if (values == null) {
+                    values = new WindowValues(memberValues.fromDateInt, memberValues.toDateInt);
+                }
+                values.startValue += memberValues.startValue;
+                values.endValue += memberValues.endValue;
+                values.income += memberValues.income;
+                values.expense += memberValues.expense;
+                values.mdFlows += memberValues.mdFlows;
+                values.mdDayFlows += memberValues.mdDayFlows;
+                values.mdFirstDay = Math.min(values.mdFirstDay, memberValues.mdFirstDay);
+                values.mdLastDay = Math.max(values.mdLastDay, memberValues.mdLastDay);
+            }
+            if (values != null) {
+                values.hasStart = values.startValue != 0;
+                values.hasEnd = values.endValue != 0;
+            }
+            series[w] = values;
+        }
+        setFlowRanges(flows, series);
+        return series;
+    }
+
+    /*
+     * Values of a security or composite over one window
+     */
+    private static final class WindowValues {
+        private final int fromDateInt;
+        private final int toDateInt;
+        private double startValue;
+        private double endValue;
+        private double income;
+        private double expense;
+        private double mdFlows;         // sum of buy/sell flows
+        private double mdDayFlows;      // sum of buy/sell flows times epoch day
+        private int mdFirstDay = Integer.MAX_VALUE;  // first epoch day of Mod-Dietz map
+        private int mdLastDay = Integer.MIN_VALUE;   // last epoch day of Mod-Dietz map
+        private DateMap flows;          // all flows of series, without start and end values
+        private int flowFrom;           // range of flows in window
+        private int flowTo;             // (exclusive)
+        private boolean hasStart;
+        private boolean hasEnd;
+
+        WindowValues(int fromDateInt, int toDateInt) {
+            this.fromDateInt = fromDateInt;
+            this.toDateInt = toDateInt;
+        }
+
+        boolean isEmpty() {
+            return mdFirstDay > mdLastDay;
+        }
+
+        /*
+         * Same as ComponentReport.computeMDReturn, with weighted flows
+         * summed as (lastDay * sum(cf) - sum(cf * day)) / days
+         */
+        double getMDReturn() {
+            double cdD = mdLastDay - mdFirstDay;
+            if (isEmpty() || cdD == 0) return Double.NaN;
+            double weightCF = (mdLastDay * mdFlows - mdDayFlows) / cdD;
+            return ((endValue + income + expense) - startValue - mdFlows)
+                    / (startValue + weightCF);
+        }
+
+        DateMap getReturnMap() {
+            DateMap returnMap = new DateMap(flows, flowFrom, flowTo);
+            if (hasStart) returnMap.add(fromDateInt, -startValue);
+            if (hasEnd) returnMap.add(toDateInt, endValue);
+            return returnMap;
+        }
+    }
+}
@@ -32,7 +32,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Vector;
 
 /**
@@ -46,8 +45,16 @@ public class SecurityAccountWrapper implements Aggregator, Comparable<SecurityAc
     private SecuritySubTypeWrapper securitySubTypeWrapper;
     private InvestmentAccountWrapper invAcctWrapper;
     private String name;
+    // transaction values, held only until the ledger is built (see compactTransValues)
     @Nullable
     private ArrayList<TransactionValues> transValuesList;
+    // columnar form of transaction values, scanned by reports
+    @Nullable
+    private SecurityLedger ledger;
+    // open lots, built by the GainsCalc as transaction values are generated
+    private LotLedger lotLedger = new LotLedger();
+    // time spent in gains calculations by current generateTransValues
+    private long gainsCalcNanos;
     private DIV_FREQUENCY divFrequency = DIV_FREQUENCY.UNKNOWN;
 
     public SecurityAccountWrapper(@NotNull SecurityAccount secAcct,
@@ -62,12 +69,8 @@ public class SecurityAccountWrapper implements Aggregator, Comparable<SecurityAc
         this.securitySubTypeWrapper = new SecuritySubTypeWrapper(this);
         this.name = secAcct.getAccountName().trim();
         generateTransValues();
-        CurrencyWrapper thisCurWrapper = invAcct.getBulkSecInfo().getCurrencyWrappers().get(secAcct
-                .getCurrencyType().getID());
-        // add account to list of accounts in currencyWrapper
-        thisCurWrapper.secAccts.add(this);
-        // set CurrencyWrapper associated with this SecurityWrapper
-        setCurrencyWrapper(thisCurWrapper);
+        // account is added to list of accounts in currencyWrapper
+        // by InvestmentAccountWrapper.registerWithCurrencies
     }
 
     /**
@@ -97,49 +100,40 @@ public class SecurityAccountWrapper implements Aggregator, Comparable<SecurityAc
      * with Investment Account cash
      */
     public void generateTransValues() throws Exception {
+        setTransValuesList(createTransValues());
+    }
+
+    /**
+     * creates TransactionValues as in generateTransValues, without holding
+     * them (lot ledger is rebuilt)
+     *
+     * @return sorted transaction values
+     * @throws Exception
+     */
+    @NotNull
+    ArrayList<TransactionValues> createTransValues() throws Exception {
+        long startTime = ReportProfiler.startTime();
         ArrayList<TransactionValues> transValuesSet = new ArrayList<>();
-        ArrayList<ParentTxn> assocTrans = new ArrayList<>();
+        lotLedger = new LotLedger();
+        gainsCalcNanos = 0;
         Account thisAccount = currencyWrapper.curID == invAcctWrapper.getBulkSecInfo().getCashCurrencyWrapper().getCurID() ? invAcctWrapper
                 .getInvestmentAccount() : this.securityAccount;
-        TxnSet txnSet = invAcctWrapper.getBulkSecInfo().getTransactionSet().getTransactionsForAccount(thisAccount);
+        // transactions were bucketed by associated account in a single pass in BulkSecInfo
+        ArrayList<TxnSortKey> assocTrans = invAcctWrapper.getBulkSecInfo().getSortedTxnKeys(thisAccount);
         DividendFrequencyAnalyzer dividendFrequencyAnalyzer = new DividendFrequencyAnalyzer();
-        for (AbstractTxn abstractTxn : txnSet) {
-            if (BulkSecInfo.getAssociatedAccount(abstractTxn) == thisAccount) {
-                ParentTxn parentTxn = abstractTxn instanceof ParentTxn ? (ParentTxn) abstractTxn : abstractTxn
-                        .getParentTxn();
-                if (!assocTrans.contains(parentTxn)) assocTrans.add(parentTxn);
-            }
-
-        }
-        Collections.sort(assocTrans, BulkSecInfo.txnComp);
-        for (ParentTxn parentTxn : assocTrans) {
-            TransactionValues transValuesToAdd = new TransactionValues(parentTxn,
-                    thisAccount, this, transValuesSet, this.getBulkSecInfo());
+        for (TxnSortKey txnSortKey : assocTrans) {
+            TransactionValues transValuesToAdd = new TransactionValues(txnSortKey.getParentTxn(),
+                    txnSortKey.getTxnTypeCode(), thisAccount, this, transValuesSet, this.getBulkSecInfo());
             dividendFrequencyAnalyzer.analyzeDividend(transValuesToAdd);
             transValuesSet.add(transValuesToAdd);
-            if (thisAccount instanceof SecurityAccount)
-                invAcctWrapper.getBulkSecInfo().getSecurityTransactionValues().put(transValuesToAdd.getTxnID(),
-                        transValuesToAdd);
-
         }
-        setTransValuesList(transValuesSet);
+        ReportProfiler.recordElapsed(ReportProfiler.Phase.GAINS_CALC, gainsCalcNanos, transValuesSet.size());
+        ReportProfiler.record(ReportProfiler.Phase.TRANSACTION_VALUES, startTime, transValuesSet.size());
+        return transValuesSet;
     }
 
     public double getPrice(int dateInt) {
-        if (currencyWrapper.isCash) {
-            return 1.0;
-        } else {
-            return 1.0 / currencyWrapper.getCurrencyType().getUserRateByDateInt(dateInt);
-        }
-    }
-
-    @NotNull
-    public ArrayList<String[]> listTransValuesInfo() {
-        ArrayList<String[]> outputList = new ArrayList<>();
-        for (TransactionValues transactionValues : transValuesList) {
-            outputList.add(transactionValues.listInfo());
-        }
-        return outputList;
+        return currencyWrapper.getPrice(dateInt);
     }
 
     private BulkSecInfo getBulkSecInfo() {
@@ -204,16 +198,31 @@ public class SecurityAccountWrapper implements Aggregator, Comparable<SecurityAc
         this.divFrequency = divFrequency;
     }
 
+    /**
+     * @return transaction values, regenerated if they were released once
+     * the ledger was built
+     * @throws Exception
+     */
     @Nullable
-    public ArrayList<TransactionValues> getTransactionValues() {
+    public ArrayList<TransactionValues> getTransactionValues() throws Exception {
+        if (transValuesList == null && ledger != null && invAcctWrapper != null)
+            return invAcctWrapper.createTransValues(this);
         return this.transValuesList;
     }
 
     public void setAllTransactionValues(@Nullable ArrayList<TransactionValues> transValuesSet) {
-        if (transValuesSet != null) {
-            this.transValuesList = transValuesSet;
-        }
+        if (transValuesSet != null) setTransValuesList(transValuesSet);
+    }
 
+    /**
+     * builds ledger from transaction values, then releases them, so that
+     * only the ledger is held per transaction
+     */
+    void compactTransValues() {
+        if (transValuesList != null) {
+            ledger = new SecurityLedger(transValuesList);
+            transValuesList = null;
+        }
     }
 
     @Override
@@ -225,14 +234,58 @@ public class SecurityAccountWrapper implements Aggregator, Comparable<SecurityAc
         return invAcctWrapper;
     }
 
+    /**
+     * returns Aggregate value for this security based on an input of any
+     * Class which subclasses Aggregator
+     *
+     * @param aggregator subclass of Aggregator
+     * @return aggregate value
+     */
+    public Aggregator getAggregator(Aggregator aggregator) {
+        if (aggregator instanceof InvestmentAccountWrapper) {
+            return getInvAcctWrapper();
+        } else if (aggregator instanceof SecurityTypeWrapper) {
+            return getSecurityTypeWrapper();
+        } else if (aggregator instanceof SecuritySubTypeWrapper) {
+            return getSecuritySubTypeWrapper();
+        } else if (aggregator instanceof Tradeable) {
+            return getTradeable();
+        } else if (aggregator instanceof CurrencyWrapper) {
+            return getCurrencyWrapper();
+        } else if (aggregator instanceof AllAggregate) {
+            return AllAggregate.getInstance();
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * @param transValuesList transaction values (ledger is built from them
+     *                        by compactTransValues)
+     */
     public void setTransValuesList(@Nullable ArrayList<TransactionValues> transValuesList) {
         this.transValuesList = transValuesList;
+        this.ledger = null;
+    }
+
+    @Nullable
+    public SecurityLedger getLedger() {
+        return ledger;
+    }
+
+    public LotLedger getLotLedger() {
+        return lotLedger;
+    }
+
+    void addGainsCalcNanos(long nanos) {
+        gainsCalcNanos += nanos;
     }
 
     @NotNull
-    public ArrayList<TransactionValues> getFromToSubset(@NotNull ArrayList<Integer> fromToIndices) {
+    public ArrayList<TransactionValues> getFromToSubset(@NotNull ArrayList<Integer> fromToIndices)
+            throws Exception {
         if (!fromToIndices.isEmpty()) {
-            return (new ArrayList<>(transValuesList.subList(fromToIndices.get(0),
+            return (new ArrayList<>(getTransactionValues().subList(fromToIndices.get(0),
                     fromToIndices.get(1) + 1)));//To index is exclusive per List interface
         } else {
             return new ArrayList<>();
@@ -245,7 +298,7 @@ public class SecurityAccountWrapper implements Aggregator, Comparable<SecurityAc
         int fromElement = binarySearch(dateRange.getFromDateInt(), true);
         if (fromElement != -1) {
             int toElement = binarySearchRecursive(dateRange.getToDateInt(), fromElement,
-                    this.getTransactionValues().size() - 1, false);
+                    ledger.size() - 1, false);
             if (toElement != -1) {
                 outputList.add(fromElement);
                 outputList.add(toElement);
@@ -255,13 +308,13 @@ public class SecurityAccountWrapper implements Aggregator, Comparable<SecurityAc
     }
 
     public int binarySearch(int searchDateInt, boolean getFromDate) {
-        return binarySearchRecursive(searchDateInt, 0, this.getTransactionValues().size() - 1, getFromDate);
+        return binarySearchRecursive(searchDateInt, 0, ledger.size() - 1, getFromDate);
     }
 
     public int binarySearchRecursive(int searchDateInt, int left, int right, boolean getFromDate) {
-        if (left > right || getTransactionValues().isEmpty()) return -1;
-        int leftDateInt = getTransactionValues().get(left).getDateint();
-        int rightDateInt = getTransactionValues().get(right).getDateint();
+        if (left > right || ledger.isEmpty()) return -1;
+        int leftDateInt = ledger.getDateInt(left);
+        int rightDateInt = ledger.getDateInt(right);
         if (getFromDate) {//check endpoints of list
             if (searchDateInt < leftDateInt) return left;
             if (searchDateInt >= rightDateInt) return -1;
@@ -271,15 +324,15 @@ public class SecurityAccountWrapper implements Aggregator, Comparable<SecurityAc
         }
         //"middle" defined so that 2 element-set returns correct side
         int middle = getFromDate ? Math.max((left + right) / 2, 1) : (left + right) / 2;
-        int middleDateInt = getTransactionValues().get(middle).getDateint();
+        int middleDateInt = ledger.getDateInt(middle);
         if (getFromDate) { //get "from" element
-            int leftOfMiddleDateInt = getTransactionValues().get(middle - 1).getDateint();
+            int leftOfMiddleDateInt = ledger.getDateInt(middle - 1);
             if (searchDateInt < middleDateInt && searchDateInt >= leftOfMiddleDateInt) return middle;
             else if (searchDateInt < leftOfMiddleDateInt) return binarySearchRecursive(searchDateInt, left, middle - 1,
                     getFromDate); //search left side
             else return binarySearchRecursive(searchDateInt, middle + 1, right, getFromDate);
         } else { //get "to" element
-            int rightOfMiddleDateInt = getTransactionValues().get(middle + 1).getDateint();
+            int rightOfMiddleDateInt = ledger.getDateInt(middle + 1);
             if (searchDateInt >= middleDateInt && searchDateInt < rightOfMiddleDateInt) return middle;
             else if (searchDateInt >= rightOfMiddleDateInt)
                 return binarySearchRecursive(searchDateInt, middle + 1, right,
@@ -349,7 +402,7 @@ public class SecurityAccountWrapper implements Aggregator, Comparable<SecurityAc
 
         void analyzeDividend(@NotNull TransactionValues transactionValues) {
             if (transactionValues.getIncome() > 0) {
-                InvestTxnType transType = TxnUtil.getInvestTxnType(transactionValues.getParentTxn());
+                InvestTxnType transType = transactionValues.getInvestTxnType();
                 switch (transType) {
                     case DIVIDEND:
                     case DIVIDENDXFR:
@@ -64,6 +64,7 @@ public class SecurityFromToReport extends SecurityReport {
     private DateMap arMap;              // date map of annual return data
     private DateMap mdMap;              // date map of Mod-Dietz return data
     private DateMap transMap;           // date map of transfer data
+    private int[] fromToIndices;        // ledger rows in report period (null if none)
 
 
     /**
@@ -75,6 +76,18 @@ public class SecurityFromToReport extends SecurityReport {
      */
     public SecurityFromToReport(SecurityAccountWrapper secAccountWrapper,
                                 DateRange dateRange) {
+        this(secAccountWrapper, dateRange, true);
+    }
+
+    /**
+     * @param secAccountWrapper reference account
+     * @param dateRange         date range
+     * @param walkLedger        if false, date maps are left empty and
+     *                          returns are not calculated (caller adds
+     *                          flows, then calls calcReturns)
+     */
+    private SecurityFromToReport(SecurityAccountWrapper secAccountWrapper,
+                                 DateRange dateRange, boolean walkLedger) {
 
         super(secAccountWrapper, dateRange);
 
@@ -120,69 +133,53 @@ public class SecurityFromToReport extends SecurityReport {
             double startLongBasis = 0;
             double startShortBasis = 0;
 
-            ArrayList<TransactionValues> fullTransactionSet = secAccountWrapper.getTransactionValues();
-            ArrayList<Integer> fromToIndices = secAccountWrapper.getFromToIndices(dateRange);
-            ArrayList<TransactionValues> subTransactionSet = secAccountWrapper.getFromToSubset(fromToIndices);
+            SecurityLedger ledger = secAccountWrapper.getLedger();
+            fromToIndices = ledger.getFromToIndices(dateRange);
 
-            boolean hasInitialPosition = !fullTransactionSet.isEmpty() &&
-                    !(!fromToIndices.isEmpty() && fromToIndices.get(0) == 0);
+            boolean hasInitialPosition = !ledger.isEmpty() &&
+                    !(fromToIndices != null && fromToIndices[0] == 0);
 
             if (hasInitialPosition) {
                 //security has initial position for this Date Range...so get position
-                TransactionValues priorTransactionValues = fromToIndices.isEmpty() ? fullTransactionSet.get
-                        (fullTransactionSet.size() - 1) : fullTransactionSet.get(fromToIndices.get(0) - 1);
+                int priorIndex = fromToIndices == null ? ledger.size() - 1 : fromToIndices[0] - 1;
                 // split adjusts last position from TransValuesCum
-                this.startPos = getSplitAdjustedPosition(priorTransactionValues.getPosition(),
-                        priorTransactionValues.getDateint(), fromDateInt);
+                this.startPos = getSplitAdjustedPosition(ledger.getPosition(priorIndex),
+                        ledger.getDateInt(priorIndex), fromDateInt);
                 this.startValue = this.startPrice * this.startPos;
-                startLongBasis = priorTransactionValues.getLongBasis();
-                startShortBasis = priorTransactionValues.getShortBasis();
+                startLongBasis = ledger.getLongBasis(priorIndex);
+                startShortBasis = ledger.getShortBasis(priorIndex);
 
                 // Initializes ending balance sheet values to start values (in
                 // case there are no transactions within report period).
                 this.endPos = this.startPos;
                 this.endValue = this.endPos * this.endPrice;
-                this.longBasis = priorTransactionValues.getLongBasis();
-                this.shortBasis = priorTransactionValues.getShortBasis();
+                this.longBasis = ledger.getLongBasis(priorIndex);
+                this.shortBasis = ledger.getShortBasis(priorIndex);
 
             }
 
             // Where transaction period intersects report period
-            for (TransactionValues transactionValues : subTransactionSet) {
-                // buySellFlows is net cash effect of buy/sell/short/cover, incl commission
-                // totalFlows are all cash flows (including income/expense)
-                // add values to date maps
-                double totalFlows = transactionValues.getTotalFlows();
-                double buySellFlows = transactionValues.getBuySellFlows();
-
-                this.arMap.add(transactionValues.getDateint(),
-                        totalFlows);
-                this.mdMap.add(transactionValues.getDateint(), buySellFlows);
-                this.transMap.add(transactionValues.getDateint(), transactionValues.getTransfer());
-
-                // Add the cumulative Values (note buys are defined by change in
-                // long basis, same with sells--commission is included).
-                this.buy += transactionValues.getBuy() == 0.0
-                        ? 0.0
-                        : -transactionValues.getBuy() - transactionValues.getCommission();
-                this.sell += transactionValues.getSell() == 0.0
-                        ? 0.0
-                        : -transactionValues.getSell() - transactionValues.getCommission();
-                this.shortSell += transactionValues.getShortSell() == 0.0
-                        ? 0.0
-                        : -transactionValues.getShortSell() - transactionValues.getCommission();
-                this.coverShort += transactionValues.getCoverShort() == 0.0
-                        ? 0.0
-                        : -transactionValues.getCoverShort() - transactionValues.getCommission();
-                this.income += transactionValues.getIncome();
-                this.expense += transactionValues.getExpense();
-                this.realizedGain += transactionValues.getPerRealizedGain();
-                this.endPos = getSplitAdjustedPosition(transactionValues.getPosition(),
-                        transactionValues.getDateint(), toDateInt);
+            if (fromToIndices != null) {
+                int fromIndex = fromToIndices[0];
+                int toIndex = fromToIndices[1];
+
+                // Cumulative values from ledger prefix sums (note buys are
+                // defined by change in long basis, same with sells--commission
+                // is included).
+                this.buy = ledger.sum(SecurityLedger.FlowColumn.BUY, fromIndex, toIndex);
+                this.sell = ledger.sum(SecurityLedger.FlowColumn.SELL, fromIndex, toIndex);
+                this.shortSell = ledger.sum(SecurityLedger.FlowColumn.SHORT_SELL, fromIndex, toIndex);
+                this.coverShort = ledger.sum(SecurityLedger.FlowColumn.COVER_SHORT, fromIndex, toIndex);
+                this.income = ledger.sum(SecurityLedger.FlowColumn.INCOME, fromIndex, toIndex);
+                this.expense = ledger.sum(SecurityLedger.FlowColumn.EXPENSE, fromIndex, toIndex);
+                this.realizedGain = ledger.sum(SecurityLedger.FlowColumn.REALIZED_GAIN, fromIndex, toIndex);
+
+                // ending balance sheet values as of last transaction in period
+                this.endPos = getSplitAdjustedPosition(ledger.getPosition(toIndex),
+                        ledger.getDateInt(toIndex), toDateInt);
                 this.endValue = this.endPos * this.endPrice;
-                this.longBasis = transactionValues.getLongBasis();
-                this.shortBasis = transactionValues.getShortBasis();
-
+                this.longBasis = ledger.getLongBasis(toIndex);
+                this.shortBasis = ledger.getShortBasis(toIndex);
             } // end--where transaction period intersects report period
 
 
@@ -201,32 +198,103 @@ public class SecurityFromToReport extends SecurityReport {
             this.unrealizedGain = endCumUnrealizedGain - startCumUnrealGain;
             this.totalGain = this.realizedGain + this.unrealizedGain;
 
-            // Get performance data--first Mod Dietz Returns
+            if (walkLedger) {
+                // date maps for XIRR, Mod-Dietz and composite aggregation
+                // need each transaction in period, so are built by walking
+                // the window (O(rows in period), unlike the totals above)
+                if (fromToIndices != null) {
+                    SecurityLedger.Cursor cursor = ledger.cursor(fromToIndices[0], fromToIndices[1]);
+                    while (cursor.next()) {
+                        addFlows(cursor);
+                    }
+                }
+                calcReturns();
+            }
+        }
+    }
 
-            // Add the first value in return arrays (if startpos != 0)
-            if (this.startPos != 0) {
-                this.arMap.add(fromDateInt, -this.startValue);
-                this.mdMap.add(fromDateInt, 0.0); // adds dummy value for mod-dietz
+    /**
+     * Generates reports for several date ranges of one security, walking
+     * its ledger once for all ranges
+     *
+     * @param secAccountWrapper reference account
+     * @param dateRanges        date ranges
+     * @return reports, in same order as date ranges
+     */
+    static SecurityFromToReport[] getReports(SecurityAccountWrapper secAccountWrapper,
+                                             DateRange[] dateRanges) {
+        SecurityFromToReport[] reports = new SecurityFromToReport[dateRanges.length];
+        int sweepFromIndex = Integer.MAX_VALUE;
+        int sweepToIndex = -1;
+        for (int i = 0; i < dateRanges.length; i++) {
+            reports[i] = new SecurityFromToReport(secAccountWrapper, dateRanges[i], false);
+            int[] indices = reports[i].fromToIndices;
+            if (indices != null) {
+                sweepFromIndex = Math.min(sweepFromIndex, indices[0]);
+                sweepToIndex = Math.max(sweepToIndex, indices[1]);
             }
-            // add the last value in return arrays (if endpos != 0)
-            if (this.endPos != 0) {
-                this.arMap.add(toDateInt, this.endValue);
-                this.mdMap.add(toDateInt, 0.0); // adds dummy value for mod-dietz
+        }
+        if (sweepToIndex >= 0) {
+            SecurityLedger.Cursor cursor = secAccountWrapper.getLedger().cursor(sweepFromIndex, sweepToIndex);
+            while (cursor.next()) {
+                int index = cursor.getIndex();
+                for (SecurityFromToReport report : reports) {
+                    int[] indices = report.fromToIndices;
+                    if (indices != null && index >= indices[0] && index <= indices[1]) {
+                        report.addFlows(cursor);
+                    }
+                }
             }
+        }
+        for (SecurityFromToReport report : reports) {
+            report.calcReturns();
+        }
+        return reports;
+    }
 
-            this.mdReturn = computeMDReturn(this.startValue, this.endValue, this.income,
-                    this.expense, this.mdMap);
-            // Now get annualized returns
-            this.annualPercentReturn = computeAnnualReturn(this.arMap, this.mdReturn);
+    /**
+     * adds flows of current ledger row to date maps
+     *
+     * @param cursor ledger cursor
+     */
+    private void addFlows(SecurityLedger.Cursor cursor) {
+        // buySellFlows is net cash effect of buy/sell/short/cover, incl commission
+        // totalFlows are all cash flows (including income/expense)
+        int transValuesDate = cursor.getDateInt();
+        this.arMap.add(transValuesDate, cursor.getTotalFlows());
+        this.mdMap.add(transValuesDate, cursor.getBuySellFlows());
+        this.transMap.add(transValuesDate, cursor.getTransfer());
+    }
 
-            // Remove start and end values from ar date map to enable aggregation
-            if (this.startPos != 0) {
-                this.arMap.add(fromDateInt, +this.startValue);
-            }
-            // Remove start and end values from date map for ease of aggregation
-            if (this.endPos != 0) {
-                this.arMap.add(toDateInt, -this.endValue);
-            }
+    /*
+     * Calculates returns once date maps are complete
+     */
+    private void calcReturns() {
+        // Get performance data--first Mod Dietz Returns
+
+        // Add the first value in return arrays (if startpos != 0)
+        if (this.startPos != 0) {
+            this.arMap.add(fromDateInt, -this.startValue);
+            this.mdMap.add(fromDateInt, 0.0); // adds dummy value for mod-dietz
+        }
+        // add the last value in return arrays (if endpos != 0)
+        if (this.endPos != 0) {
+            this.arMap.add(toDateInt, this.endValue);
+            this.mdMap.add(toDateInt, 0.0); // adds dummy value for mod-dietz
+        }
+
+        this.mdReturn = computeMDReturn(this.startValue, this.endValue, this.income,
+                this.expense, this.mdMap);
+        // Now get annualized returns
+        this.annualPercentReturn = computeAnnualReturn(this.arMap, this.mdReturn);
+
+        // Remove start and end values from ar date map to enable aggregation
+        if (this.startPos != 0) {
+            this.arMap.add(fromDateInt, +this.startValue);
+        }
+        // Remove start and end values from date map for ease of aggregation
+        if (this.endPos != 0) {
+            this.arMap.add(toDateInt, -this.endValue);
         }
     }
 
@@ -270,9 +338,9 @@ public class SecurityFromToReport extends SecurityReport {
         this.unrealizedGain += securityFromToReport.unrealizedGain;
         this.totalGain += securityFromToReport.totalGain;
 
-        this.arMap = this.arMap.combine(securityFromToReport.arMap, "add");
-        this.mdMap = this.mdMap.combine(securityFromToReport.mdMap, "add");
-        this.transMap = this.transMap.combine(securityFromToReport.transMap, "add");
+        this.arMap = this.arMap.plus(securityFromToReport.arMap);
+        this.mdMap = this.mdMap.plus(securityFromToReport.mdMap);
+        this.transMap = this.transMap.plus(securityFromToReport.transMap);
         //set returns to zero
         this.mdReturn = 0.0;
         this.annualPercentReturn = 0.0;
@@ -287,15 +355,17 @@ public class SecurityFromToReport extends SecurityReport {
         // SecurityFromToReport.mdReturn = thisReturn;
         mdReturn = mdReturnVal;
 
-        // add start and end values to return date maps
+        // add start and end values to copy of return date map (the map
+        // itself may be shared with other reports)
+        DateMap returnMap = new DateMap(arMap);
         if (startValue != 0) {
-            arMap.add(fromDateInt, -startValue);
+            returnMap.add(fromDateInt, -startValue);
         }
         if (endValue != 0) {
-            arMap.add(toDateInt, endValue);
+            returnMap.add(toDateInt, endValue);
         }
         // get annualized returns
-        annualPercentReturn = computeAnnualReturn(arMap, mdReturnVal);
+        annualPercentReturn = computeAnnualReturn(returnMap, mdReturnVal);
     }
 
     @Override
@@ -0,0 +1,361 @@
+/*
+ * SecurityLedger.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.model.InvestTxnType;
+
+import java.util.List;
+
+/**
+ * Columnar (struct-of-arrays) form of the TransactionValues of one security,
+ * holding only the fields the reports scan.  Reports iterate it through a
+ * Cursor, so scans touch contiguous primitive arrays rather than chasing
+ * one object per transaction.
+ * <p/>
+ * The ledger is also an as-of index: rows are in date order, so the
+ * position and basis as of any date are found by binary search, and
+ * prefix sums of the flow columns give totals over any date window
+ * without a scan.  Returns are not covered: XIRR and Mod-Dietz need the
+ * flow of each date in the window (and composites merge those date maps),
+ * so reports still walk the rows of their window once to build them.
+ * <p/>
+ * Once the ledger is built the TransactionValues are released, so only the
+ * ledger is held per transaction; the transaction listing regenerates them
+ * (see InvestmentAccountWrapper.createAllTransValues).
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class SecurityLedger {
+    // bytes per row: int date, byte type, 13 double columns, 7 prefix sums
+    static final int BYTES_PER_ROW = 4 + 1 + 13 * 8 + 7 * 8;
+    private final int size;
+    private final int[] dateInts;
+    // transaction ids (synthetic cash ids are fractional, so double)
+    private final double[] txnIds;
+    private final byte[] txnTypeCodes;
+    private final double[] buy;
+    private final double[] sell;
+    private final double[] shortSell;
+    private final double[] coverShort;
+    private final double[] commission;
+    private final double[] income;
+    private final double[] expense;
+    private final double[] transfer;
+    private final double[] position;
+    private final double[] longBasis;
+    private final double[] shortBasis;
+    private final double[] perRealizedGain;
+    // prefixSums[column][i] is sum of column over rows before row i
+    private final double[][] prefixSums;
+
+    /**
+     * @param transactionValuesList sorted transaction values of security
+     */
+    public SecurityLedger(List<TransactionValues> transactionValuesList) {
+        this.size = transactionValuesList.size();
+        this.dateInts = new int[size];
+        this.txnIds = new double[size];
+        this.txnTypeCodes = new byte[size];
+        this.buy = new double[size];
+        this.sell = new double[size];
+        this.shortSell = new double[size];
+        this.coverShort = new double[size];
+        this.commission = new double[size];
+        this.income = new double[size];
+        this.expense = new double[size];
+        this.transfer = new double[size];
+        this.position = new double[size];
+        this.longBasis = new double[size];
+        this.shortBasis = new double[size];
+        this.perRealizedGain = new double[size];
+        for (int i = 0; i < size; i++) {
+            TransactionValues transactionValues = transactionValuesList.get(i);
+            dateInts[i] = transactionValues.getDateint();
+            txnIds[i] = transactionValues.getTxnID();
+            txnTypeCodes[i] = TxnSortKey.getTxnTypeCode(transactionValues.getInvestTxnType());
+            buy[i] = transactionValues.getBuy();
+            sell[i] = transactionValues.getSell();
+            shortSell[i] = transactionValues.getShortSell();
+            coverShort[i] = transactionValues.getCoverShort();
+            commission[i] = transactionValues.getCommission();
+            income[i] = transactionValues.getIncome();
+            expense[i] = transactionValues.getExpense();
+            transfer[i] = transactionValues.getTransfer();
+            position[i] = transactionValues.getPosition();
+            longBasis[i] = transactionValues.getLongBasis();
+            shortBasis[i] = transactionValues.getShortBasis();
+            perRealizedGain[i] = transactionValues.getPerRealizedGain();
+        }
+        this.prefixSums = new double[FlowColumn.values().length][size + 1];
+        for (int i = 0; i < size; i++) {
+            // buys etc. are cash effect including commission (zero if no trade)
+            addToPrefixSum(FlowColumn.BUY, i, buy[i] == 0.0 ? 0.0 : -buy[i] - commission[i]);
+            addToPrefixSum(FlowColumn.SELL, i, sell[i] == 0.0 ? 0.0 : -sell[i] - commission[i]);
+            addToPrefixSum(FlowColumn.SHORT_SELL, i,
+                    shortSell[i] == 0.0 ? 0.0 : -shortSell[i] - commission[i]);
+            addToPrefixSum(FlowColumn.COVER_SHORT, i,
+                    coverShort[i] == 0.0 ? 0.0 : -coverShort[i] - commission[i]);
+            addToPrefixSum(FlowColumn.INCOME, i, income[i]);
+            addToPrefixSum(FlowColumn.EXPENSE, i, expense[i]);
+            addToPrefixSum(FlowColumn.REALIZED_GAIN, i, perRealizedGain[i]);
+        }
+    }
+
+    private void addToPrefixSum(FlowColumn column, int index, double value) {
+        double[] sums = prefixSums[column.ordinal()];
+        sums[index + 1] = sums[index] + value;
+    }
+
+    /**
+     * Total of a flow column over a range of rows
+     *
+     * @param column    flow column
+     * @param fromIndex first row (inclusive)
+     * @param toIndex   last row (inclusive)
+     * @return sum over rows, or zero if range is empty
+     */
+    public double sum(FlowColumn column, int fromIndex, int toIndex) {
+        if (toIndex < fromIndex) return 0.0;
+        double[] sums = prefixSums[column.ordinal()];
+        return sums[toIndex + 1] - sums[fromIndex];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return cursor positioned before first row
+     */
+    public Cursor cursor() {
+        return new Cursor(0, size - 1);
+    }
+
+    /**
+     * @param fromIndex first row (inclusive)
+     * @param toIndex   last row (inclusive)
+     * @return cursor positioned before fromIndex
+     */
+    public Cursor cursor(int fromIndex, int toIndex) {
+        return new Cursor(fromIndex, toIndex);
+    }
+
+    /**
+     * @param dateInt date to search
+     * @return index of first row dated after dateInt, or size if none
+     */
+    public int firstIndexAfter(int dateInt) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (dateInts[mid] <= dateInt) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param dateInt date to search
+     * @return index of last row dated on or before dateInt, or -1 if none
+     */
+    public int lastIndexOnOrBefore(int dateInt) {
+        return firstIndexAfter(dateInt) - 1;
+    }
+
+    /**
+     * Same result as SecurityAccountWrapper.getFromToIndices: first row after
+     * "from" date and last row on or before "to" date, or null if no rows
+     * fall in that range
+     *
+     * @param dateRange date range
+     * @return two-element array of row indices, or null
+     */
+    public int[] getFromToIndices(DateRange dateRange) {
+        int fromIndex = firstIndexAfter(dateRange.getFromDateInt());
+        if (fromIndex == size) return null;
+        int toIndex = lastIndexOnOrBefore(dateRange.getToDateInt());
+        return toIndex < fromIndex ? null : new int[]{fromIndex, toIndex};
+    }
+
+    public int getDateInt(int index) {
+        return dateInts[index];
+    }
+
+    public double getTxnId(int index) {
+        return txnIds[index];
+    }
+
+    public InvestTxnType getInvestTxnType(int index) {
+        return TxnSortKey.getTxnType(txnTypeCodes[index]);
+    }
+
+    public double getIncome(int index) {
+        return income[index];
+    }
+
+    public double getPosition(int index) {
+        return position[index];
+    }
+
+    public double getLongBasis(int index) {
+        return longBasis[index];
+    }
+
+    public double getShortBasis(int index) {
+        return shortBasis[index];
+    }
+
+    /**
+     * @return approximate heap used by this ledger, in bytes
+     */
+    public long getFootprintBytes() {
+        // 24 array headers of 16 bytes each, plus object header and fields
+        return (long) size * BYTES_PER_ROW + 24 * 16 + 80;
+    }
+
+    /**
+     * Columns with prefix sums
+     */
+    public enum FlowColumn {
+        BUY, SELL, SHORT_SELL, COVER_SHORT, INCOME, EXPENSE, REALIZED_GAIN
+    }
+
+    /**
+     * Forward-only view over a range of ledger rows
+     */
+    public class Cursor {
+        private final int toIndex;
+        private int index;
+
+        Cursor(int fromIndex, int toIndex) {
+            this.index = fromIndex - 1;
+            this.toIndex = Math.min(toIndex, size - 1);
+        }
+
+        /**
+         * @return true if cursor was advanced to a valid row
+         */
+        public boolean next() {
+            if (index >= toIndex) return false;
+            index++;
+            return true;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getDateInt() {
+            return dateInts[index];
+        }
+
+        public double getTxnId() {
+            return txnIds[index];
+        }
+
+        public InvestTxnType getInvestTxnType() {
+            return TxnSortKey.getTxnType(txnTypeCodes[index]);
+        }
+
+        public double getBuy() {
+            return buy[index];
+        }
+
+        public double getSell() {
+            return sell[index];
+        }
+
+        public double getShortSell() {
+            return shortSell[index];
+        }
+
+        public double getCoverShort() {
+            return coverShort[index];
+        }
+
+        public double getCommission() {
+            return commission[index];
+        }
+
+        public double getIncome() {
+            return income[index];
+        }
+
+        public double getExpense() {
+            return expense[index];
+        }
+
+        public double getTransfer() {
+            return transfer[index];
+        }
+
+        public double getPosition() {
+            return position[index];
+        }
+
+        public double getLongBasis() {
+            return longBasis[index];
+        }
+
+        public double getShortBasis() {
+            return shortBasis[index];
+        }
+
+        public double getPerRealizedGain() {
+            return perRealizedGain[index];
+        }
+
+        /**
+         * @return all cash flows, including income/expense (as TransactionValues)
+         */
+        public double getTotalFlows() {
+            return buy[index] + sell[index] + shortSell[index] + coverShort[index]
+                    + commission[index] + income[index] + expense[index];
+        }
+
+        /**
+         * @return net cash effect of buy/sell/short/cover, including commission
+         * (sign as TransactionValues.getBuySellFlows)
+         */
+        public double getBuySellFlows() {
+            return -(buy[index] + sell[index] + shortSell[index] + coverShort[index]
+                    + commission[index]);
+        }
+    }
+}
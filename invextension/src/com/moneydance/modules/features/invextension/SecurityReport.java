@@ -90,38 +90,21 @@ public abstract class SecurityReport extends ComponentReport {
 
     /**
      * returns Aggregate value for Security based on an input of any Class
-     * which subclasses Aggregator
+     * which subclasses Aggregator (see SecurityAccountWrapper.getAggregator)
      *
      * @param aggregator subclass of Aggregator
-     * @return aggregate value
+     * @return aggregate value (null for blank report)
      */
 
     public Aggregator getAggregator(Aggregator aggregator) {
-        if (aggregator instanceof InvestmentAccountWrapper) {
-            return this.investmentAccountWrapper;
-        } else if (aggregator instanceof SecurityTypeWrapper) {
-            return this.securityTypeWrapper;
-        } else if (aggregator instanceof SecuritySubTypeWrapper) {
-            return this.securitySubTypeWrapper;
-        } else if (aggregator instanceof Tradeable) {
-            return this.tradeable;
-        } else if (aggregator instanceof CurrencyWrapper) {
-            return this.currencyWrapper;
-        } else if (aggregator instanceof AllAggregate) {
-            return AllAggregate.getInstance();
-        } else {
-            throw new UnsupportedOperationException();
-        }
+        return securityAccountWrapper == null ? null : securityAccountWrapper.getAggregator(aggregator);
     }
 
     public double getSplitAdjustedPosition(double referencePosition, int referenceDateInt,
                                            int currentDateInt) {
         CurrencyType currency = currencyWrapper.currencyType;
-        double currentRate = currency == null ? 1.0 : currency
-                .getUserRateByDateInt(currentDateInt);
-        double splitAdjust = currency == null ? 1.0 : currency
-                .adjustRateForSplitsInt(referenceDateInt,
-                        currentRate, currentDateInt) / currentRate;
+        double splitAdjust = currency == null ? 1.0 : currencyWrapper
+                .getSplitFactor(referenceDateInt, currentDateInt);
         return referencePosition * splitAdjust;
     }
 
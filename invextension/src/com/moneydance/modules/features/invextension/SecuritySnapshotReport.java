@@ -28,12 +28,10 @@
 package com.moneydance.modules.features.invextension;
 
 import com.moneydance.apps.md.model.InvestTxnType;
-import com.moneydance.apps.md.model.TxnUtil;
 import com.moneydance.modules.features.invextension.CompositeReport.COMPOSITE_TYPE;
-import org.jetbrains.annotations.NotNull;
+import com.moneydance.modules.features.invextension.SnapshotWindows.Window;
 
 import java.util.*;
-import java.util.concurrent.LinkedBlockingDeque;
 
 /**
  * Report detailing performance attributes based on a specific snapshot
@@ -153,133 +151,94 @@ public class SecuritySnapshotReport extends SecurityReport {
         this.arMap = new CategoryMap<>();
         this.transMap = new CategoryMap<>();
 
-        AnnualDividendCalculator annualDividendCalculator = new AnnualDividendCalculator();
-
-
-        // Calculate return dates (use snapDate for "ALL" as it is latest
-        // possible
-        int fromDateInt = snapDateInt;
-        int prevFromDateInt = DateUtils.getPrevBusinessDay(snapDateInt);
-        int wkFromDateInt = DateUtils.getLatestBusinessDay(DateUtils
-                .addDaysInt(snapDateInt, -7));
-        int mnthFromDateInt = DateUtils.getLatestBusinessDay(DateUtils
-                .addMonthsInt(snapDateInt, -1));
-        int threeMnthFromDateInt = DateUtils.getLatestBusinessDay(DateUtils
-                .addMonthsInt(snapDateInt, -3));
-        int oneYearFromDateInt = DateUtils.getLatestBusinessDay(DateUtils
-                .addMonthsInt(snapDateInt, -12));
-        int threeYearFromDateInt = DateUtils.getLatestBusinessDay(DateUtils
-                .addMonthsInt(snapDateInt, -36));
-        int ytdFromDateInt = DateUtils.getStartYear(snapDateInt);
-
-        // put dates in return map
-        this.returnsStartDate = new CategoryMap<>();
-
-        this.returnsStartDate.put("All", fromDateInt);
-        this.returnsStartDate.put("PREV", prevFromDateInt);
-        this.returnsStartDate.put("1Wk", wkFromDateInt);
-        this.returnsStartDate.put("4Wk", mnthFromDateInt);
-        this.returnsStartDate.put("3Mnth", threeMnthFromDateInt);
-        this.returnsStartDate.put("1Yr", oneYearFromDateInt);
-        this.returnsStartDate.put("3Yr", threeYearFromDateInt);
-        this.returnsStartDate.put("YTD", ytdFromDateInt);
-
-        // initialize ArrayLists values to zero
-        for (String retCat : this.returnsStartDate.keySet()) {
-            startPoses.put(retCat, 0.0);
-            this.startValues.put(retCat, 0.0);
-            this.incomes.put(retCat, 0.0);
-            this.expenses.put(retCat, 0.0);
-            this.mdReturns.put(retCat, 0.0);
-
-            this.arMap.put(retCat, new DateMap());
-            this.mdMap.put(retCat, new DateMap());
-            this.transMap.put(retCat, new DateMap());
+        // window start dates (same for all securities except "All"), and
+        // primitive accumulators indexed by window
+        int all = Window.ALL.ordinal();
+        int prev = Window.PREV.ordinal();
+        int[] fromDateInts = SnapshotWindows.forSnapDate(snapDateInt).getStartDateInts();
+        double[] startPrices = new double[SnapshotWindows.COUNT];
+        double[] startPoses = new double[SnapshotWindows.COUNT];
+        double[] startValues = new double[SnapshotWindows.COUNT];
+        double[] incomes = new double[SnapshotWindows.COUNT];
+        double[] expenses = new double[SnapshotWindows.COUNT];
+        double[] mdReturns = new double[SnapshotWindows.COUNT];
+        DateMap[] arMaps = new DateMap[SnapshotWindows.COUNT];
+        DateMap[] mdMaps = new DateMap[SnapshotWindows.COUNT];
+        DateMap[] transMaps = new DateMap[SnapshotWindows.COUNT];
+        for (int w = 0; w < SnapshotWindows.COUNT; w++) {
+            arMaps[w] = new DateMap();
+            mdMaps[w] = new DateMap();
+            transMaps[w] = new DateMap();
         }
 
         if (secAccountWrapper != null) {
 
             this.lastPrice = secAccountWrapper.getPrice(snapDateInt);
 
-            // create dates for returns calculations
-            // ensures all dates for appropriate variables
-            ArrayList<TransactionValues> transSet = secAccountWrapper.getTransactionValues();
-
-            fromDateInt = transSet.isEmpty() ? snapDateInt : DateUtils
-                    .getPrevBusinessDay(transSet.get(0).getDateint());
+            SecurityLedger ledger = secAccountWrapper.getLedger();
+            AnnualDividendCalculator annualDividendCalculator = new AnnualDividendCalculator();
+            annualDividendCalculator.setLedger(ledger);
 
-            // put dates in return map
-            this.returnsStartDate.put("All", fromDateInt);
-
-            // these values dependent only on snapDate
+            // "All" starts before first transaction
+            fromDateInts[all] = ledger.isEmpty() ? snapDateInt : DateUtils
+                    .getPrevBusinessDay(ledger.getDateInt(0));
 
             longBasis = 0.0;
             shortBasis = 0.0;
-            double annualPercentReturn;
 
-            // fill startPrice Array List
-            for (String retCat : this.returnsStartDate.keySet()) {
-                int thisDateInt = this.returnsStartDate.get(retCat);
-                startPrices.put(retCat, secAccountWrapper.getPrice(thisDateInt));
+            // start position is last position on or before start date (split
+            // adjusted); window transactions are those after start date
+            int[] firstIndices = new int[SnapshotWindows.COUNT];
+            int sweepFromIndex = ledger.size();
+            for (int w = 0; w < SnapshotWindows.COUNT; w++) {
+                int thisFromDateInt = fromDateInts[w];
+                startPrices[w] = secAccountWrapper.getPrice(thisFromDateInt);
+                int startIndex = ledger.lastIndexOnOrBefore(thisFromDateInt);
+                if (startIndex >= 0) {
+                    startPoses[w] = getSplitAdjustedPosition(ledger.getPosition(startIndex),
+                            ledger.getDateInt(startIndex), thisFromDateInt);
+                    startValues[w] = startPrices[w] * startPoses[w];
+                }
+                firstIndices[w] = startIndex + 1;
+                sweepFromIndex = Math.min(sweepFromIndex, firstIndices[w]);
             }
 
-            // iterate through transaction values list
-            for (TransactionValues transactionValues : transSet) {
-                double totalFlows = transactionValues.getBuy() + transactionValues.getSell()
-                        + transactionValues.getShortSell() + transactionValues.getCoverShort()
-                        + transactionValues.getCommission() + transactionValues.getIncome()
-                        + transactionValues.getExpense();
-
-                // iterate through return dates
-                for (String retCat : this.returnsStartDate.keySet()) {
-                    int thisFromDateInt = this.returnsStartDate.get(retCat);
-                    int transValuesDate = transactionValues.getDateint();
-
-                    // where transactions are before report dates
-                    if (transValuesDate <= thisFromDateInt) {
-                        double adjustedPos = getSplitAdjustedPosition(transactionValues.getPosition(),
-                                transValuesDate, thisFromDateInt);
-                        startPoses.put(retCat, adjustedPos); // split adjusts last position
-                        // from
-                        // TransValuesCum
-                        this.startValues.put(retCat, startPrices.get(retCat)
-                                * startPoses.get(retCat));
-
-                    }
-
-                    // where transaction period intersects report period
-                    if (transValuesDate > thisFromDateInt
-                            && transValuesDate <= snapDateInt) {
-
-                        // MDCalc variable--net effect of calculation is to
-                        // return buys and sells, including commission
-                        double cf = -(transactionValues.getBuy() + transactionValues.getSell()
-                                + transactionValues.getShortSell()
-                                + transactionValues.getCoverShort() + transactionValues.getCommission());
-
+            // single pass through transactions in any window, up to snapDate
+            SecurityLedger.Cursor cursor = ledger.cursor(sweepFromIndex,
+                    ledger.lastIndexOnOrBefore(snapDateInt));
+            while (cursor.next()) {
+                int index = cursor.getIndex();
+                int transValuesDate = cursor.getDateInt();
+                double totalFlows = cursor.getTotalFlows();
+                // MDCalc variable--net effect of calculation is to
+                // return buys and sells, including commission
+                double cf = cursor.getBuySellFlows();
+                double transfer = cursor.getTransfer();
+                double transIncome = cursor.getIncome();
+                double transExpense = cursor.getExpense();
+
+                for (int w = 0; w < SnapshotWindows.COUNT; w++) {
+                    if (index >= firstIndices[w]) {
                         // add variables to arrays needed for returns
                         // calculation
+                        arMaps[w].add(transValuesDate, totalFlows);
+                        mdMaps[w].add(transValuesDate, cf);
+                        transMaps[w].add(transValuesDate, transfer);
+                        incomes[w] += transIncome;
+                        expenses[w] += transExpense;
+                    }
+                }
 
-                        this.arMap.get(retCat).add(transValuesDate, totalFlows);
-                        this.mdMap.get(retCat).add(transValuesDate, cf);
-                        this.transMap.get(retCat).add(transValuesDate, transactionValues.getTransfer());
-
-                        this.incomes.put(retCat, this.incomes.get(retCat) + transactionValues.getIncome());
-                        this.expenses.put(retCat, this.expenses.get(retCat) + transactionValues.getExpense());
-
-                        if ("All".equals(retCat)) {//For values which are common to all returns transactions
-                            //or are unused in returns calculations
-                            realizedGain += transactionValues.getPerRealizedGain();
-                            this.endPos = getSplitAdjustedPosition(transactionValues.getPosition(),
-                                    transValuesDate, snapDateInt);
-                            this.endValue = this.endPos * this.lastPrice;
-                            longBasis = transactionValues.getLongBasis();
-                            shortBasis = transactionValues.getShortBasis();
-                            annualDividendCalculator.analyzeTransaction(transactionValues);
-                        }
-
-                    } // end--where transaction period intersects report period
-                } // end of start date iterative loop
+                if (index >= firstIndices[all]) {//For values which are common to all returns transactions
+                    //or are unused in returns calculations
+                    realizedGain += cursor.getPerRealizedGain();
+                    this.endPos = getSplitAdjustedPosition(cursor.getPosition(),
+                            transValuesDate, snapDateInt);
+                    this.endValue = this.endPos * this.lastPrice;
+                    longBasis = cursor.getLongBasis();
+                    shortBasis = cursor.getShortBasis();
+                    annualDividendCalculator.analyzeTransaction(index);
+                }
             } // end of input transaction set loop
 
             if (this.endPos > 0) {
@@ -292,81 +251,75 @@ public class SecuritySnapshotReport extends SecurityReport {
             this.totalGain = realizedGain + unrealizedGain;
 
             // now go through arrays and get returns/calc values
-            for (String retCat : this.returnsStartDate.keySet()) {
-                int thisFromDateInt = this.returnsStartDate.get(retCat);
+            for (int w = 0; w < SnapshotWindows.COUNT; w++) {
+                int thisFromDateInt = fromDateInts[w];
                 // add the first value in return arrays (if startpos != 0)
-                if (startPoses.get(retCat) != 0) {
-                    this.arMap.get(retCat).add(thisFromDateInt,
-                            -this.startValues.get(retCat));
+                if (startPoses[w] != 0) {
+                    arMaps[w].add(thisFromDateInt, -startValues[w]);
                     // dummy values for Mod-dietz
-                    this.mdMap.get(retCat).add(thisFromDateInt, 0.0);
+                    mdMaps[w].add(thisFromDateInt, 0.0);
                 }
                 // add the last value in return arrays (if endpos != 0)
                 if (this.endPos != 0) {
-                    this.arMap.get(retCat).add(snapDateInt, this.endValue);
+                    arMaps[w].add(snapDateInt, this.endValue);
                     // dummy values for Mod-dietz
-                    this.mdMap.get(retCat).add(snapDateInt, 0.0);
+                    mdMaps[w].add(snapDateInt, 0.0);
                 }
 
                 // get MD returns on all start dates, only get annualized return
                 // on all dates
-
-                this.mdReturns.put(retCat, computeMDReturn(this.startValues.get(retCat),
-                        this.endValue, this.incomes.get(retCat), this.expenses.get(retCat),
-                        this.mdMap.get(retCat)));
+                mdReturns[w] = computeMDReturn(startValues[w], this.endValue,
+                        incomes[w], expenses[w], mdMaps[w]);
                 //get annualized returns only for total period
-                if ("All".equals(retCat)) {
-                    annualPercentReturn = computeAnnualReturn(this.arMap.get(retCat),
-                            this.mdReturns.get("All"));
-                    this.annRetAll = annualPercentReturn;
-                    this.income = this.incomes.get(retCat);
+                if (w == all) {
+                    this.annRetAll = computeAnnualReturn(arMaps[w], mdReturns[w]);
+                    this.income = incomes[w];
                 }
 
                 // remove start and end values from return date maps for ease of
                 // aggregation
-                if (startPoses.get(retCat) != 0) {
-                    this.arMap.get(retCat).add(thisFromDateInt,
-                            +this.startValues.get(retCat));
+                if (startPoses[w] != 0) {
+                    arMaps[w].add(thisFromDateInt, +startValues[w]);
                 }
-                // remove start and end values from return date maps for ease of
-                // aggregation
                 if (this.endPos != 0) {
-                    this.arMap.get(retCat).add(snapDateInt, -this.endValue);
+                    arMaps[w].add(snapDateInt, -this.endValue);
                 }
             } // end of start date iterateration
 
             // Produce output, get returns
-
-            if (this.returnsStartDate.get("PREV") == null) {
-                this.absPriceChange = Double.NaN;
-                this.absValueChange = Double.NaN;
-                this.pctPriceChange = Double.NaN;
-            } else {
-                double prevPrice = secAccountWrapper.getPrice(this.returnsStartDate.get("PREV"));
-                this.absPriceChange = this.lastPrice - prevPrice;
-                this.absValueChange = this.endPos * this.absPriceChange;
-                this.pctPriceChange = this.lastPrice / prevPrice - 1.0;
-            }
-            this.totRet1Day = this.mdReturns.get("PREV") == null ? Double.NaN
-                    : this.mdReturns.get("PREV");
-            this.totRetAll = this.mdReturns.get("All") == null ? Double.NaN
-                    : this.mdReturns.get("All");
-            this.totRetWk = this.mdReturns.get("1Wk") == null ? Double.NaN
-                    : this.mdReturns.get("1Wk");
-            this.totRet4Wk = this.mdReturns.get("4Wk") == null ? Double.NaN
-                    : this.mdReturns.get("4Wk");
-            this.totRet3Mnth = this.mdReturns.get("3Mnth") == null ? Double.NaN
-                    : this.mdReturns.get("3Mnth");
-            this.totRetYear = this.mdReturns.get("1Yr") == null ? Double.NaN
-                    : this.mdReturns.get("1Yr");
-            this.totRet3year = this.mdReturns.get("3Yr") == null ? Double.NaN
-                    : this.mdReturns.get("3Yr");
-            this.totRetYTD = this.mdReturns.get("YTD") == null ? Double.NaN
-                    : this.mdReturns.get("YTD");
+            double prevPrice = startPrices[prev];
+            this.absPriceChange = this.lastPrice - prevPrice;
+            this.absValueChange = this.endPos * this.absPriceChange;
+            this.pctPriceChange = this.lastPrice / prevPrice - 1.0;
+
+            this.totRet1Day = mdReturns[prev];
+            this.totRetAll = mdReturns[all];
+            this.totRetWk = mdReturns[Window.ONE_WEEK.ordinal()];
+            this.totRet4Wk = mdReturns[Window.FOUR_WEEK.ordinal()];
+            this.totRet3Mnth = mdReturns[Window.THREE_MONTH.ordinal()];
+            this.totRetYear = mdReturns[Window.ONE_YEAR.ordinal()];
+            this.totRet3year = mdReturns[Window.THREE_YEAR.ordinal()];
+            this.totRetYTD = mdReturns[Window.YTD.ordinal()];
 
             annualDividendCalculator.updateYieldInformation();
         }
 
+        // keep values by return category for aggregation
+        for (Window window : SnapshotWindows.WINDOWS) {
+            int w = window.ordinal();
+            String retCat = window.getCategory();
+            this.returnsStartDate.put(retCat, fromDateInts[w]);
+            if (secAccountWrapper != null) this.startPrices.put(retCat, startPrices[w]);
+            this.startPoses.put(retCat, startPoses[w]);
+            this.startValues.put(retCat, startValues[w]);
+            this.incomes.put(retCat, incomes[w]);
+            this.expenses.put(retCat, expenses[w]);
+            this.mdReturns.put(retCat, mdReturns[w]);
+
+            this.arMap.put(retCat, arMaps[w]);
+            this.mdMap.put(retCat, mdMaps[w]);
+            this.transMap.put(retCat, transMaps[w]);
+        }
     }
 
     @Override
@@ -384,16 +337,18 @@ public class SecuritySnapshotReport extends SecurityReport {
                     incomes.get(retCat), expenses.get(retCat), mdMap.get(retCat)));
 
             if ("All".equals(retCat)) {
-                // add start and end values to return date maps
+                // add start and end values to copy of return date map (the
+                // map itself may be shared with other reports)
+                DateMap returnMap = new DateMap(arMap.get(retCat));
                 if (startValues.get(retCat) != 0.0) {
-                    arMap.get(retCat).add(returnsStartDate.get(retCat),
+                    returnMap.add(returnsStartDate.get(retCat),
                             -startValues.get(retCat));
                 }
                 if (endValue != 0.0) {
-                    arMap.get(retCat).add(snapDateInt, endValue);
+                    returnMap.add(snapDateInt, endValue);
                 }
                 // get return
-                annRetAll = computeAnnualReturn(arMap.get(retCat),
+                annRetAll = computeAnnualReturn(returnMap,
                         mdReturns.get("All"));
                 income = incomes.get(retCat);
 
@@ -451,7 +406,8 @@ public class SecuritySnapshotReport extends SecurityReport {
         thisAggregate.startPrices = this.startPrices;
         thisAggregate.incomes = this.incomes;
         thisAggregate.expenses = this.expenses;
-        thisAggregate.mdReturns = this.mdReturns;
+        // copied, as recomputeAggregateReturns updates it
+        thisAggregate.mdReturns = new CategoryMap<>(this.mdReturns);
 
         thisAggregate.mdMap = this.mdMap;
         thisAggregate.arMap = this.arMap;
@@ -525,10 +481,9 @@ public class SecuritySnapshotReport extends SecurityReport {
         this.incomes = addDoubleMap(this.incomes, operand.incomes);
         this.expenses = addDoubleMap(this.expenses, operand.expenses);
 
-        this.mdMap = combineDateMapMap(this.mdMap, operand.mdMap, "add");
-        this.arMap = combineDateMapMap(this.arMap, operand.arMap, "add");
-        this.transMap = combineDateMapMap(this.transMap, operand.transMap,
-                "add");
+        this.mdMap = addDateMapMap(this.mdMap, operand.mdMap);
+        this.arMap = addDateMapMap(this.arMap, operand.arMap);
+        this.transMap = addDateMapMap(this.transMap, operand.transMap);
     }
 
     /**
@@ -634,15 +589,13 @@ public class SecuritySnapshotReport extends SecurityReport {
     }
 
     /*
-     * Combines map of datemaps for Snap Reports, either adding or subtracting
-     * cash flows.
+     * Combines map of datemaps for Snap Reports, adding cash flows.
      * @param map1 input map
      * @param map2 input map
-     * @param combType either "add" or "subtract"
      * @return output map
      */
-    private CategoryMap<DateMap> combineDateMapMap(CategoryMap<DateMap> map1,
-                                                   CategoryMap<DateMap> map2, String combType) {
+    private CategoryMap<DateMap> addDateMapMap(CategoryMap<DateMap> map1,
+                                               CategoryMap<DateMap> map2) {
         CategoryMap<DateMap> outMap = new CategoryMap<>(map1);
 
         if (map2 != null) {
@@ -652,9 +605,7 @@ public class SecuritySnapshotReport extends SecurityReport {
                     outMap.put(retCat2, treeMap2);
                 } else {
                     DateMap treeMap1 = map1.get(retCat2);
-                    DateMap tempMap = new DateMap(treeMap1.combine(treeMap2,
-                            combType));
-                    outMap.put(retCat2, tempMap);
+                    outMap.put(retCat2, treeMap1.plus(treeMap2));
                 }
             }
         }
@@ -760,8 +711,11 @@ public class SecuritySnapshotReport extends SecurityReport {
      */
     class AnnualDividendCalculator {
 
-        Deque<TransactionValues> basisTransactions = new LinkedBlockingDeque<>(2); //current transaction and most recent
-        Stack<TransactionValues> dividendTransactions = new Stack<>(); //recent distributions
+        SecurityLedger ledger;
+        // ledger rows of current basis transaction and most recent (-1 if none)
+        int firstBasisIndex = -1;
+        int lastBasisIndex = -1;
+        Stack<Integer> dividendIndices = new Stack<>(); //ledger rows of recent distributions
         HashSet<InvestTxnType> dividendTypes = new HashSet<>(Arrays.asList(InvestTxnType.DIVIDEND,
                 InvestTxnType.DIVIDEND_REINVEST, InvestTxnType.DIVIDENDXFR, InvestTxnType.BANK));
 
@@ -769,52 +723,50 @@ public class SecuritySnapshotReport extends SecurityReport {
         AnnualDividendCalculator() {
         }
 
-        void analyzeTransaction(@NotNull TransactionValues transactionValues) {
-            InvestTxnType transType = TxnUtil.getInvestTxnType(transactionValues.getParentTxn());
-            boolean isDividend = dividendTypes.contains(transType) && transactionValues.getIncome() != 0;
-            updateBasisTransactions(transactionValues);
-            if (isDividend) updateDividendTransactions(transactionValues);
+        void setLedger(SecurityLedger ledger) {
+            this.ledger = ledger;
+        }
+
+        void analyzeTransaction(int index) {
+            InvestTxnType transType = ledger.getInvestTxnType(index);
+            boolean isDividend = dividendTypes.contains(transType) && ledger.getIncome(index) != 0;
+            updateBasisTransactions(index);
+            if (isDividend) updateDividendTransactions(index);
         }
 
         /**
          * add current dividend, clear stack of "old" dividend transactions
          *
-         * @param transactionValues dividend transaction
+         * @param index ledger row of dividend transaction
          */
-        void updateDividendTransactions(TransactionValues transactionValues) {
-            int currentDateInt = transactionValues.getDateint();
-            if (dividendTransactions.size() > 0) {
-                for (Iterator<TransactionValues> iterator = dividendTransactions.iterator(); iterator.hasNext(); ) {
+        void updateDividendTransactions(int index) {
+            int currentDateInt = ledger.getDateInt(index);
+            if (dividendIndices.size() > 0) {
+                for (Iterator<Integer> iterator = dividendIndices.iterator(); iterator.hasNext(); ) {
                     int daysFromLastDivTransaction = DateUtils.getDaysBetween(currentDateInt,
-                            iterator.next().getDateint());
+                            ledger.getDateInt(iterator.next()));
                     //remove transaction if older than MINIMUM_EX_DIV_DAYS
                     if (daysFromLastDivTransaction > SecurityAccountWrapper.DividendFrequencyAnalyzer.MINIMUM_EX_DIV_DAYS)
                         iterator.remove();
                 }
             }
-            dividendTransactions.push(transactionValues);
+            dividendIndices.push(index);
         }
 
 
-        void updateBasisTransactions(TransactionValues transactionValues) {
-            if (basisTransactions.size() == 0) {
-                basisTransactions.addFirst(transactionValues);
-                basisTransactions.addLast(transactionValues);
+        void updateBasisTransactions(int index) {
+            if (lastBasisIndex < 0) {
+                firstBasisIndex = index;
+                lastBasisIndex = index;
             }
-            TransactionValues firstTransactonValues = basisTransactions.removeFirst();
-            TransactionValues lastTransactonValues = basisTransactions.removeLast();
-            int daysFromLastBasisTransaction = DateUtils.getDaysBetween(transactionValues.getDateint(),
-                    lastTransactonValues.getDateint());
-            if (daysFromLastBasisTransaction <= SecurityAccountWrapper.DividendFrequencyAnalyzer.MINIMUM_EX_DIV_DAYS) {
-                //possible correct to previous, or multiple distributions, update last transaction value only
-                lastTransactonValues = transactionValues;
-            } else {
+            int daysFromLastBasisTransaction = DateUtils.getDaysBetween(ledger.getDateInt(index),
+                    ledger.getDateInt(lastBasisIndex));
+            if (daysFromLastBasisTransaction > SecurityAccountWrapper.DividendFrequencyAnalyzer.MINIMUM_EX_DIV_DAYS) {
                 // new transaction, swap last and first
-                firstTransactonValues = lastTransactonValues;
-                lastTransactonValues = transactionValues;
+                firstBasisIndex = lastBasisIndex;
             }
-            basisTransactions.addFirst(firstTransactonValues);
-            basisTransactions.addLast(lastTransactonValues);
+            //otherwise possible correct to previous, or multiple distributions, update last transaction only
+            lastBasisIndex = index;
         }
 
         /**
@@ -825,8 +777,8 @@ public class SecuritySnapshotReport extends SecurityReport {
         public double getAnnualizedDividend() {
             double totalDividends = 0.0;
             double annualizingFactor = 0.0;
-            for (TransactionValues transactionValues : dividendTransactions) {
-                totalDividends += transactionValues.getIncome();
+            for (int index : dividendIndices) {
+                totalDividends += ledger.getIncome(index);
             }
             SecurityAccountWrapper.DIV_FREQUENCY div_frequency = getSecurityAccountWrapper().getDivFrequency();
             switch (div_frequency) {
@@ -849,12 +801,11 @@ public class SecuritySnapshotReport extends SecurityReport {
         }
 
         public void updateYieldInformation() {
-            if (basisTransactions.size() > 0) {
+            if (firstBasisIndex >= 0) {
                 //reference transaction is last transaction older than MINIMUM_EX_DIV_DAYS
                 // allows for situations where dividends are immediately reinvested
-                TransactionValues basisReferenceTransaction = basisTransactions.getFirst();
-                double splitAdjustReferencePos = getSplitAdjustedPosition(basisReferenceTransaction.getPosition(),
-                        basisReferenceTransaction.getDateint(), snapDateInt);
+                double splitAdjustReferencePos = getSplitAdjustedPosition(ledger.getPosition(firstBasisIndex),
+                        ledger.getDateInt(firstBasisIndex), snapDateInt);
                 double annualizedDivTotal = getAnnualizedDividend();
                 double annualizedDivPerShare = (splitAdjustReferencePos > 0.0 && endPos > 0.0) ?
                         annualizedDivTotal / splitAdjustReferencePos : Double.NaN;
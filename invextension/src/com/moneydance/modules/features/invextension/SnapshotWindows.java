@@ -0,0 +1,112 @@
+/*
+ * SnapshotWindows.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+/**
+ * Return windows of the snapshot report, and their start dates for a
+ * snapshot date.  Start dates depend only on the snapshot date (except
+ * "All", which each security moves back to its first transaction), so
+ * the plan is computed once and shared by all securities in a run.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+class SnapshotWindows {
+
+    enum Window {
+        ALL("All"), PREV("PREV"), ONE_WEEK("1Wk"), FOUR_WEEK("4Wk"), THREE_MONTH("3Mnth"),
+        ONE_YEAR("1Yr"), THREE_YEAR("3Yr"), YTD("YTD");
+
+        private final String category;
+
+        Window(String category) {
+            this.category = category;
+        }
+
+        /**
+         * @return return category name (key of report's category maps)
+         */
+        String getCategory() {
+            return category;
+        }
+    }
+
+    static final Window[] WINDOWS = Window.values();
+    static final int COUNT = WINDOWS.length;
+
+    // most recently used plan (immutable, so safe to share between threads)
+    private static volatile SnapshotWindows lastPlan;
+
+    private final int snapDateInt;
+    private final int[] startDateInts;
+
+    private SnapshotWindows(int snapDateInt) {
+        this.snapDateInt = snapDateInt;
+        startDateInts = new int[COUNT];
+        // use snapDate for "ALL" as it is latest possible
+        startDateInts[Window.ALL.ordinal()] = snapDateInt;
+        startDateInts[Window.PREV.ordinal()] = DateUtils.getPrevBusinessDay(snapDateInt);
+        startDateInts[Window.ONE_WEEK.ordinal()] = DateUtils.getLatestBusinessDay(DateUtils
+                .addDaysInt(snapDateInt, -7));
+        startDateInts[Window.FOUR_WEEK.ordinal()] = DateUtils.getLatestBusinessDay(DateUtils
+                .addMonthsInt(snapDateInt, -1));
+        startDateInts[Window.THREE_MONTH.ordinal()] = DateUtils.getLatestBusinessDay(DateUtils
+                .addMonthsInt(snapDateInt, -3));
+        startDateInts[Window.ONE_YEAR.ordinal()] = DateUtils.getLatestBusinessDay(DateUtils
+                .addMonthsInt(snapDateInt, -12));
+        startDateInts[Window.THREE_YEAR.ordinal()] = DateUtils.getLatestBusinessDay(DateUtils
+                .addMonthsInt(snapDateInt, -36));
+        startDateInts[Window.YTD.ordinal()] = DateUtils.getStartYear(snapDateInt);
+    }
+
+    /**
+     * @param snapDateInt snapshot date
+     * @return window plan for snapshot date
+     */
+    static SnapshotWindows forSnapDate(int snapDateInt) {
+        SnapshotWindows plan = lastPlan;
+        if (plan == null || plan.snapDateInt != snapDateInt) {
+            plan = new SnapshotWindows(snapDateInt);
+            lastPlan = plan;
+        }
+        return plan;
+    }
+
+    int getSnapDateInt() {
+        return snapDateInt;
+    }
+
+    /**
+     * @return start dates, indexed by Window ordinal (copy)
+     */
+    int[] getStartDateInts() {
+        return startDateInts.clone();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * SplitLadder.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.model.CurrencyType;
+
+import java.util.Arrays;
+
+/**
+ * Cumulative split factors for one currency: split dates in ascending order
+ * with prefix products of their split ratios.  The factor by which a
+ * position (or user rate) changes between two dates is the ratio of two
+ * prefix products, found by two binary searches.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class SplitLadder {
+    private final int[] splitDateInts;
+    // cumulativeFactors[k] is product of ratios of first k splits
+    private final double[] cumulativeFactors;
+
+    public SplitLadder(CurrencyType currencyType) {
+        int splitCount = currencyType.getSplitCount();
+        long[] splits = new long[splitCount]; // date in high bits, index in low
+        for (int i = 0; i < splitCount; i++) {
+            splits[i] = ((long) currencyType.getSplit(i).getDateInt() << 32) | i;
+        }
+        Arrays.sort(splits);
+        splitDateInts = new int[splitCount];
+        cumulativeFactors = new double[splitCount + 1];
+        cumulativeFactors[0] = 1.0;
+        for (int k = 0; k < splitCount; k++) {
+            splitDateInts[k] = (int) (splits[k] >>> 32);
+            cumulativeFactors[k + 1] = cumulativeFactors[k]
+                    * currencyType.getSplit((int) splits[k]).getSplitRatio();
+        }
+    }
+
+    /**
+     * Factor for splits after fromDateInt through toDateInt (inverted if
+     * toDateInt is earlier), as
+     * CurrencyType.adjustRateForSplitsInt(fromDateInt, rate, toDateInt) / rate
+     *
+     * @param fromDateInt reference date
+     * @param toDateInt   date to adjust to
+     * @return split factor
+     */
+    public double getSplitFactor(int fromDateInt, int toDateInt) {
+        int fromCount = getSplitCountThrough(fromDateInt);
+        int toCount = getSplitCountThrough(toDateInt);
+        return fromCount == toCount ? 1.0 : cumulativeFactors[toCount] / cumulativeFactors[fromCount];
+    }
+
+    /**
+     * @param dateInt date
+     * @return number of splits dated on or before dateInt
+     */
+    private int getSplitCountThrough(int dateInt) {
+        int low = 0;
+        int high = splitDateInts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (splitDateInts[mid] <= dateInt) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public int getSplitCount() {
+        return splitDateInts.length;
+    }
+}
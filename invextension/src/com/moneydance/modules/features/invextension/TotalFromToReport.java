@@ -59,6 +59,10 @@ public class TotalFromToReport
         super(reportConfig, COL_TYPES, MODEL_HEADER);
     }
 
+    public TotalFromToReport(ReportConfig reportConfig, DateRange dateRange) throws Exception {
+        super(reportConfig, COL_TYPES, MODEL_HEADER, dateRange);
+    }
+
     @Override
     public int getClosedPosColumn() {
         return MODEL_HEADER.indexOf("End\nValue");
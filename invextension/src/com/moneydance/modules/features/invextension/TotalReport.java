@@ -28,13 +28,17 @@
 
 package com.moneydance.modules.features.invextension;
 
-import com.moneydance.modules.features.invextension.CompositeReport.COMPOSITE_TYPE;
 import com.moneydance.modules.features.invextension.TotalReportOutputPane.ColType;
 
 import javax.swing.table.AbstractTableModel;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 
 /**
@@ -58,9 +62,22 @@ public abstract class TotalReport {
     private LinkedList<Integer> viewHeader;
     private ReportConfig reportConfig;
     private ColType[] colTypes;
+    private boolean parallelCalc; // if true, leaf reports and composite returns are computed on a fork/join pool
 
     public TotalReport(ReportConfig reportConfig, ColType[] colTypes,
                        LinkedList<String> modelHeader) throws Exception {
+        this(reportConfig, colTypes, modelHeader, reportConfig.getDateRange());
+    }
+
+    /**
+     * @param reportConfig report configuration
+     * @param colTypes     column types
+     * @param modelHeader  model header
+     * @param dateRange    date range (overrides date range of report configuration)
+     * @throws Exception
+     */
+    public TotalReport(ReportConfig reportConfig, ColType[] colTypes,
+                       LinkedList<String> modelHeader, DateRange dateRange) throws Exception {
         this.reportConfig = reportConfig;
         this.aggregationController = reportConfig.getAggregationController();
         this.outputSingle = reportConfig.isOutputSingle();
@@ -69,7 +86,7 @@ public abstract class TotalReport {
         this.modelHeader = modelHeader;
         this.viewHeader = reportConfig.getViewHeader();
         this.colTypes = colTypes;
-        this.dateRange = reportConfig.getDateRange();
+        this.dateRange = dateRange;
         isHierarchy = aggregationController.isHierarchy();
         securityReports = new HashSet<>();
         compositeReports = new HashSet<>();
@@ -233,45 +250,165 @@ public abstract class TotalReport {
         return getModelHeader().indexOf(aggregationController.getSecondAggregator().getColumnName());
     }
 
+    public boolean isParallelCalc() {
+        return parallelCalc;
+    }
+
+    public void setParallelCalc(boolean parallelCalc) {
+        this.parallelCalc = parallelCalc;
+    }
+
     public void calcReport(BulkSecInfo currentInfo) {
+        calcReport(currentInfo, parallelCalc ? ReportPool.getPool() : null);
+    }
+
+    /**
+     * @param currentInfo security information
+     * @param pool        pool for leaf reports and returns, or null to
+     *                    calculate on this thread
+     */
+    private void calcReport(BulkSecInfo currentInfo, ForkJoinPool pool) {
 
         //produce all leaf-level Security Reports
-        for (InvestmentAccountWrapper invWrapper : currentInfo.getInvestmentWrappers()) {
-            for (SecurityAccountWrapper secWrapper : invWrapper.getSecurityAccountWrappers()) {
-                SecurityReport thisReport = getLeafSecurityReport(secWrapper,
-                        dateRange);
-                securityReports.add(thisReport);
+        ArrayList<SecurityAccountWrapper> secWrappers = getSecurityAccountWrappers(currentInfo);
+        SecurityReport[] leafReports = new SecurityReport[secWrappers.size()];
+        long startTime = ReportProfiler.startTime();
+        LeafReportTask leafReportTask = new LeafReportTask(secWrappers, leafReports, 0, leafReports.length);
+        if (pool == null || leafReports.length < 2) {
+            leafReportTask.compute();
+        } else {
+            pool.invoke(leafReportTask);
+        }
+        ReportProfiler.record(ReportProfiler.Phase.LEAF_REPORTS, startTime, leafReports.length);
+        calcReport(leafReports, pool);
+    }
+
+    /**
+     * Completes report from leaf-level Security Reports computed elsewhere
+     *
+     * @param leafReports leaf-level reports, in account order
+     * @param pool        pool for composite returns, or null to calculate
+     *                    on this thread
+     */
+    void calcReport(SecurityReport[] leafReports, ForkJoinPool pool) {
+        long startTime = ReportProfiler.startTime();
+        Collections.addAll(securityReports, leafReports);
+
+        // generate "All Securities" composite, then route each Security
+        // Report to its composites (generating them as required).  Reports
+        // are added in account order, not set order, so that composite
+        // totals are identical from run to run
+        CompositeIndex compositeIndex = new CompositeIndex(aggregationController,
+                getAllCompositeReport(dateRange, aggregationController));
+        for (SecurityReport securityReport : leafReports) {
+            compositeIndex.add(securityReport);
+        }
+        ArrayList<CompositeReport> composites = compositeIndex.getCompositeReports();
+        compositeReports.addAll(composites);
+
+        // recompute returns (composites are independent, so may be run in
+        // parallel, largest first so that long XIRR solves start early)
+        if (pool == null || composites.size() < 2) {
+            for (CompositeReport compositeReport : composites) {
+                compositeReport.recomputeAggregateReturns();
             }
+        } else {
+            Collections.sort(composites, new Comparator<CompositeReport>() {
+                @Override
+                public int compare(CompositeReport c1, CompositeReport c2) {
+                    return Integer.compare(c2.getSecurityReports().size(), c1.getSecurityReports().size());
+                }
+            });
+            ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>(composites.size());
+            for (final CompositeReport compositeReport : composites) {
+                tasks.add(pool.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        compositeReport.recomputeAggregateReturns();
+                    }
+                }));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        }
+        // XIRR solves of all reports, published once
+        XIRR.Solver xirrSolver = new XIRR.Solver();
+        for (SecurityReport securityReport : leafReports) {
+            securityReport.addXirrSolves(xirrSolver);
         }
+        for (CompositeReport compositeReport : composites) {
+            compositeReport.getAggregateReport().addXirrSolves(xirrSolver);
+        }
+        xirrSolver.publish();
+        ReportProfiler.record(ReportProfiler.Phase.COMPOSITE_AGGREGATION, startTime, composites.size());
+    }
 
-        // generate "All Securities" composite, add to composite reports
-        CompositeReport allRept = getAllCompositeReport(dateRange, aggregationController);
-        compositeReports.add(allRept);
+    /**
+     * Generates display value of report table cell (independent of GUI)
+     *
+     * @param o report table cell
+     * @return name of wrapper, or number as string
+     * @throws Exception
+     */
+    public static String getDisplayValueFromObject(Object o) throws Exception {
+        String outputName;
+        if (o instanceof InvestmentAccountWrapper) {
+            outputName = ((InvestmentAccountWrapper) o).getName();
+        } else if (o instanceof SecurityAccountWrapper) {
+            outputName = ((SecurityAccountWrapper) o).getName();
+        } else if (o instanceof SecurityTypeWrapper) {
+            outputName = ((SecurityTypeWrapper) o).getName();
+        } else if (o instanceof SecuritySubTypeWrapper) {
+            outputName = ((SecuritySubTypeWrapper) o).getName();
+        } else if (o instanceof CurrencyWrapper) {
+            outputName = ((CurrencyWrapper) o).getTicker();
+        } else if (o instanceof Number) {
+            outputName = o.toString();
+        } else {
+            throw new Exception("invalid attempt to get name from object");
+        }
+        return outputName;
+    }
 
-        //generate composites and add Security Reports to them
-        for (SecurityReport securityReport : securityReports) {
-            for (CompositeReport compositeReport : compositeReports) {
-                compositeReport.addTo(securityReport);
-            }
-            // generate composite based on first aggregate
-            compositeReports.add(securityReport.getCompositeReport(
-                    aggregationController, COMPOSITE_TYPE.FIRST));
-            // if second AggClass isn't AllAggregate, need 1 or 2 more
-            // aggregates
-            if (securityReport.getAggregator(aggregationController.getSecondAggregator()) != AllAggregate
-                    .getInstance()) {
-                compositeReports.add(securityReport.getCompositeReport(aggregationController, COMPOSITE_TYPE.BOTH));
-                // if second aggregate a subset of first, don't need
-                // second aggregate alone (line above suffices)
-                if (!isHierarchy)
-                    compositeReports.add(securityReport.getCompositeReport(aggregationController,
-                            COMPOSITE_TYPE.SECOND));
+    /**
+     * @return column names of report table, as csv header line
+     */
+    public StringBuffer listReportTableHeader() {
+        StringBuffer header = new StringBuffer();
+        for (String columnName : modelHeader) {
+            if (header.length() > 0) header.append(",");
+            header.append(columnName.replace("\n", " "));
+        }
+        return header;
+    }
+
+    /**
+     * @return report table, as strings for csv output
+     * @throws Exception
+     */
+    public ArrayList<String[]> listReportTable() throws Exception {
+        ArrayList<String[]> output = new ArrayList<>();
+        for (Object[] row : getReportTable()) {
+            String[] line = new String[row.length];
+            for (int i = 0; i < row.length; i++) {
+                line[i] = getDisplayValueFromObject(row[i]);
             }
+            output.add(line);
         }
-        // recompute returns
-        for (CompositeReport compositeReport : compositeReports) {
-            compositeReport.recomputeAggregateReturns();
+        return output;
+    }
+
+    /**
+     * @param currentInfo security information
+     * @return security account wrappers of all investment accounts, in account order
+     */
+    static ArrayList<SecurityAccountWrapper> getSecurityAccountWrappers(BulkSecInfo currentInfo) {
+        ArrayList<SecurityAccountWrapper> secWrappers = new ArrayList<>();
+        for (InvestmentAccountWrapper invWrapper : currentInfo.getInvestmentWrappers()) {
+            secWrappers.addAll(invWrapper.getSecurityAccountWrappers());
         }
+        return secWrappers;
     }
 
     public void displayReport() throws SecurityException,
@@ -283,13 +420,51 @@ public abstract class TotalReport {
     }
 
     public ReportTableModel getReportTableModel() throws NoSuchFieldException, IllegalAccessException {
-        return new ReportTableModel(getReportTable(), getModelHeader());
+        long startTime = ReportProfiler.startTime();
+        Object[][] reportTable = getReportTable();
+        ReportTableModel reportTableModel = new ReportTableModel(reportTable, getModelHeader());
+        ReportProfiler.record(ReportProfiler.Phase.TABLE_MODEL, startTime, reportTable.length);
+        return reportTableModel;
     }
 
     public ReportConfig getReportConfig() {
         return reportConfig;
     }
 
+    /*
+     * Computes leaf-level reports for a range of wrappers, splitting the
+     * range in half until it is small
+     */
+    private class LeafReportTask extends RecursiveAction {
+        private static final long serialVersionUID = 5190627326186442207L;
+        private static final int THRESHOLD = 4;
+        private final ArrayList<SecurityAccountWrapper> secWrappers;
+        private final SecurityReport[] leafReports;
+        private final int from;
+        private final int to;
+
+        LeafReportTask(ArrayList<SecurityAccountWrapper> secWrappers,
+                       SecurityReport[] leafReports, int from, int to) {
+            this.secWrappers = secWrappers;
+            this.leafReports = leafReports;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= THRESHOLD || !inForkJoinPool()) {
+                for (int i = from; i < to; i++) {
+                    leafReports[i] = getLeafSecurityReport(secWrappers.get(i), dateRange);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new LeafReportTask(secWrappers, leafReports, from, mid),
+                        new LeafReportTask(secWrappers, leafReports, mid, to));
+            }
+        }
+    }
+
     /*
          * Class provides a generic TableModel which receives data from the
          * reporting methods above.
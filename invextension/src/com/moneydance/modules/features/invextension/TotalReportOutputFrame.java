@@ -30,11 +30,14 @@ package com.moneydance.modules.features.invextension;
 
 import javax.swing.*;
 import javax.swing.border.Border;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import java.awt.*;
 import java.awt.event.*;
 
 /**
- * Handle external controls for TotalReportOutputPane
+ * Handle external controls for TotalReportOutputPane (or several panes,
+ * one tab each, as for a multi-range report)
  */
 class TotalReportOutputFrame extends JFrame implements ActionListener, ItemListener {
     public static final String SET_FROZEN_COLUMNS = "setFrozenColumns";
@@ -42,6 +45,9 @@ class TotalReportOutputFrame extends JFrame implements ActionListener, ItemListe
     public static final String COPY_CLIPBOARD = "copyClipboard";
     private static final long serialVersionUID = 2199471200123995601L;
     TotalReportOutputPane totalReportOutputPane;
+    TotalReportOutputPane[] totalReportOutputPanes;
+    String[] tabTitles;
+    JTabbedPane tabbedPane;
     String frameText;
     ReportConfig reportConfig;
     JComboBox<Integer> freezeColsBox;
@@ -50,7 +56,19 @@ class TotalReportOutputFrame extends JFrame implements ActionListener, ItemListe
     JButton copyToClipboardButton;
 
     public TotalReportOutputFrame(TotalReportOutputPane totalReportOutputPane, String frameText) {
-        this.totalReportOutputPane = totalReportOutputPane;
+        this(new TotalReportOutputPane[]{totalReportOutputPane}, null, frameText);
+    }
+
+    /**
+     * @param totalReportOutputPanes panes to show, one tab each if more than one
+     * @param tabTitles              tab titles, in same order as panes
+     * @param frameText              frame title
+     */
+    public TotalReportOutputFrame(TotalReportOutputPane[] totalReportOutputPanes, String[] tabTitles,
+                                  String frameText) {
+        this.totalReportOutputPanes = totalReportOutputPanes;
+        this.totalReportOutputPane = totalReportOutputPanes[0];
+        this.tabTitles = tabTitles;
         this.frameText = frameText;
         this.reportConfig = totalReportOutputPane.getReportConfig();
         initComponents();
@@ -130,7 +148,21 @@ class TotalReportOutputFrame extends JFrame implements ActionListener, ItemListe
         c.gridwidth = 3;
         c.fill = GridBagConstraints.BOTH;
 
-        this.getContentPane().add(totalReportOutputPane, c);
+        if (totalReportOutputPanes.length == 1) {
+            this.getContentPane().add(totalReportOutputPane, c);
+        } else {
+            tabbedPane = new JTabbedPane();
+            for (int i = 0; i < totalReportOutputPanes.length; i++) {
+                tabbedPane.addTab(tabTitles[i], totalReportOutputPanes[i]);
+            }
+            tabbedPane.addChangeListener(new ChangeListener() {
+                @Override
+                public void stateChanged(ChangeEvent e) {
+                    totalReportOutputPane = totalReportOutputPanes[tabbedPane.getSelectedIndex()];
+                }
+            });
+            this.getContentPane().add(tabbedPane, c);
+        }
         this.setLocation(reportConfig.getFrameInfo().getPoint());
         this.pack(); //added to accommodate field chooser
         this.setSize(reportConfig.getFrameInfo().getDimension());
@@ -139,8 +171,10 @@ class TotalReportOutputFrame extends JFrame implements ActionListener, ItemListe
 
     public void showFrame() {
         this.setVisible(true);
-        this.totalReportOutputPane.sortRows();
-        totalReportOutputPane.setFrozenColumns(reportConfig.getNumFrozenColumns()); //behavior doesn't work if placed before setVisible
+        for (TotalReportOutputPane outputPane : totalReportOutputPanes) {
+            outputPane.sortRows();
+            outputPane.setFrozenColumns(reportConfig.getNumFrozenColumns()); //behavior doesn't work if placed before setVisible
+        }
     }
 
     public void setFrameInfo() {
@@ -152,7 +186,9 @@ class TotalReportOutputFrame extends JFrame implements ActionListener, ItemListe
         try {
             String actionCommand = e.getActionCommand();
             if (actionCommand.equals(SET_FROZEN_COLUMNS)) {
-                totalReportOutputPane.setFrozenColumns(freezeColsBox.getSelectedIndex());
+                for (TotalReportOutputPane outputPane : totalReportOutputPanes) {
+                    outputPane.setFrozenColumns(freezeColsBox.getSelectedIndex());
+                }
             }
             if (actionCommand.equals(SORT_ROWS)) {
                 totalReportOutputPane.sortRows(new Point(this.getLocationOnScreen()));
@@ -171,10 +207,12 @@ class TotalReportOutputFrame extends JFrame implements ActionListener, ItemListe
     @Override
     public void itemStateChanged(ItemEvent e) {
         if (e.getSource().equals(hideClosedBox)) {
-            totalReportOutputPane.closedPosHidden = (e.getStateChange() == ItemEvent.SELECTED);
-            totalReportOutputPane.sortRows();
-            totalReportOutputPane.setFrozenColumns(0); // repaint doesn't work properly w/o this line
-            totalReportOutputPane.setFrozenColumns(freezeColsBox.getSelectedIndex());
+            for (TotalReportOutputPane outputPane : totalReportOutputPanes) {
+                outputPane.closedPosHidden = (e.getStateChange() == ItemEvent.SELECTED);
+                outputPane.sortRows();
+                outputPane.setFrozenColumns(0); // repaint doesn't work properly w/o this line
+                outputPane.setFrozenColumns(freezeColsBox.getSelectedIndex());
+            }
         }
     }
 
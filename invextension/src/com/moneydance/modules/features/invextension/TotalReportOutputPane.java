@@ -194,23 +194,7 @@ public class TotalReportOutputPane extends JScrollPane {
     }
 
     public static String getDisplayValueFromObject(Object o) throws Exception {
-        String outputName;
-        if (o instanceof InvestmentAccountWrapper) {
-            outputName = ((InvestmentAccountWrapper) o).getName();
-        } else if (o instanceof SecurityAccountWrapper) {
-            outputName = ((SecurityAccountWrapper) o).getName();
-        } else if (o instanceof SecurityTypeWrapper) {
-            outputName = ((SecurityTypeWrapper) o).getName();
-        } else if (o instanceof SecuritySubTypeWrapper) {
-            outputName = ((SecuritySubTypeWrapper) o).getName();
-        } else if (o instanceof CurrencyWrapper) {
-            outputName = ((CurrencyWrapper) o).getTicker();
-        } else if (o instanceof Number) {
-            outputName = o.toString();
-        } else {
-            throw new Exception("invalid attempt to get name from object");
-        }
-        return outputName;
+        return TotalReport.getDisplayValueFromObject(o);
     }
 
     public static String replaceLineBreak(String inString) {
@@ -219,9 +203,30 @@ public class TotalReportOutputPane extends JScrollPane {
     }
 
     public static void createAndShowTable(TotalReport totalReport) throws NoSuchFieldException, IllegalAccessException {
+        long startTime = ReportProfiler.startTime();
         final TotalReportOutputPane thisTable = new TotalReportOutputPane(totalReport);
         final TotalReportOutputFrame outerFrame = new TotalReportOutputFrame(thisTable, totalReport.getReportTitle());
         outerFrame.showFrame();
+        ReportProfiler.record(ReportProfiler.Phase.RENDERING, startTime, 1);
+    }
+
+    /**
+     * shows several reports in one frame, one tab each
+     *
+     * @param totalReports reports to show
+     * @param tabTitles    tab titles, in same order as reports
+     * @param frameText    frame title
+     */
+    public static void createAndShowTables(TotalReport[] totalReports, String[] tabTitles, String frameText)
+            throws NoSuchFieldException, IllegalAccessException {
+        long startTime = ReportProfiler.startTime();
+        TotalReportOutputPane[] tables = new TotalReportOutputPane[totalReports.length];
+        for (int i = 0; i < totalReports.length; i++) {
+            tables[i] = new TotalReportOutputPane(totalReports[i]);
+        }
+        final TotalReportOutputFrame outerFrame = new TotalReportOutputFrame(tables, tabTitles, frameText);
+        outerFrame.showFrame();
+        ReportProfiler.record(ReportProfiler.Phase.RENDERING, startTime, totalReports.length);
     }
 
     public void adjustColumnPreferredWidths(JTable table, ColSizeOption option) {
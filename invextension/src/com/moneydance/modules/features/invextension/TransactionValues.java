@@ -45,40 +45,35 @@ import java.util.logging.Level;
 public class TransactionValues implements Comparable<TransactionValues> {
 
     private static final double positionThreshold = 0.0005;
+    // approximate heap per instance: header, ~30 fields, description string
+    static final int FOOTPRINT_BYTES = 400;
     // cumulative total gain after completion of transaction
     public double cumTotalGain;
     private ParentTxn parentTxn; // parentTxn account
     // reference account (to determine correct sign for transfers)
     private Account referenceAccount;
     private SecurityAccountWrapper securityAccountWrapper;
-    private Integer dateint; // transaction date
+    private int dateint; // transaction date
     private double txnID; // transaction ID
+    // classified transaction type (see TxnSortKey.getTxnTypeCode)
+    private byte txnTypeCode;
+    /* sorts on date, custom order based on transaction type, then
+     * transaction id. Reference accounts are deliberately not compared, so
+     * that the synthetic cash ledger interleaves securities by type order */
     static Comparator<TransactionValues> transComp = new Comparator<TransactionValues>() {
         @Override
         public int compare(TransactionValues t1, TransactionValues t2) {
-            Integer d1 = t1.dateint;
-            Integer d2 = t2.dateint;
-            Double id1 = t1.txnID;
-            Double id2 = t2.txnID;
-            Integer assocAcctNum1 = t1.referenceAccount.getAccountNum();
-            Integer assocAcctNum2 = t1.referenceAccount.getAccountNum();
-            Integer transTypeSort1 = t1.getTxnSortOrder();
-            Integer transTypeSort2 = t2.getTxnSortOrder();
-
-            if (d1.compareTo(d2) != 0) {// different dates
-                return d1.compareTo(d2); // return date order
+            if (t1.dateint != t2.dateint) {// different dates
+                return t1.dateint < t2.dateint ? -1 : 1; // return date order
             } else { // same date
-                // if Associated Accounts are different, sort Acct Nums
-                if (assocAcctNum1.compareTo(assocAcctNum2) != 0) {
-                    return assocAcctNum1.compareTo(assocAcctNum2);
-                } else {
-                    // if transaction types are different, sort on custom order
-                    if (transTypeSort1.compareTo(transTypeSort2) != 0) {
-                        return transTypeSort1.compareTo(transTypeSort2);
-                    } else { // sort on transIDs
-                        return id1.compareTo(id2);
-                    } // end transIDs order
-                }// end custom order
+                int transTypeSort1 = t1.getTxnSortOrder();
+                int transTypeSort2 = t2.getTxnSortOrder();
+                // if transaction types are different, sort on custom order
+                if (transTypeSort1 != transTypeSort2) {
+                    return transTypeSort1 < transTypeSort2 ? -1 : 1;
+                } else { // sort on transIDs
+                    return Double.compare(t1.txnID, t2.txnID);
+                } // end transIDs order
             } // end date order
         }
     }; // end inner class
@@ -133,9 +128,9 @@ public class TransactionValues implements Comparable<TransactionValues> {
         this.parentTxn = new ParentTxn(firstDateInt, firstDateInt,
                 System.currentTimeMillis(), "",
                 invAcctWrapper.getCashAccountWrapper().getSecurityAccount(), memo, memo,
-                BulkSecInfo.getNextTxnNumber(), AbstractTxn.STATUS_UNRECONCILED);
-        this.txnID = BulkSecInfo.getNextTxnNumber();
-        BulkSecInfo.setNextTxnNumber(BulkSecInfo.getNextTxnNumber() + 1L);
+                invAcctWrapper.getInitialBalanceTxnId(), AbstractTxn.STATUS_UNRECONCILED);
+        this.txnID = invAcctWrapper.getInitialBalanceTxnId();
+        this.txnTypeCode = TxnSortKey.getTxnTypeCode(TxnUtil.getInvestTxnType(this.parentTxn));
 
         this.referenceAccount = invAcctWrapper.getCashAccountWrapper().getSecurityAccount();
         this.dateint = firstDateInt;
@@ -191,8 +186,24 @@ public class TransactionValues implements Comparable<TransactionValues> {
     public TransactionValues(ParentTxn thisParentTxn, Account referenceAccount,
                              SecurityAccountWrapper securityAccountWrapper,
                              ArrayList<TransactionValues> prevTransLines, BulkSecInfo currentInfo) throws Exception {
+        this(thisParentTxn, TxnSortKey.getTxnTypeCode(TxnUtil.getInvestTxnType(thisParentTxn)), referenceAccount,
+                securityAccountWrapper, prevTransLines, currentInfo);
+    }
+
+    /**
+     * Constructor as above, where transaction type has already been
+     * classified (see TxnSortKey)
+     *
+     * @param thisParentTxn    Parent Transaction
+     * @param txnTypeCode      byte code of classified transaction type
+     * @param referenceAccount Investment Account associated with Security or bank transaction
+     */
+    public TransactionValues(ParentTxn thisParentTxn, byte txnTypeCode, Account referenceAccount,
+                             SecurityAccountWrapper securityAccountWrapper,
+                             ArrayList<TransactionValues> prevTransLines, BulkSecInfo currentInfo) throws Exception {
         //intitalize values
         this.parentTxn = thisParentTxn;
+        this.txnTypeCode = txnTypeCode;
         this.referenceAccount = referenceAccount;
         this.securityAccountWrapper = securityAccountWrapper;
         this.dateint = thisParentTxn.getDateInt();
@@ -234,24 +245,21 @@ public class TransactionValues implements Comparable<TransactionValues> {
                     prevTransLines.get(prevTransLines.size() - 1);
             CurrencyType cur = this.referenceAccount.getCurrencyType();
             int currentDateInt = this.parentTxn.getDateInt();
-            double currentRate = cur == null ? 1.0 : cur
-                    .getUserRateByDateInt(currentDateInt);
+            double currentRate = currentInfo.getUserRateByDateInt(cur, currentDateInt);
             int prevDateInt = prevTransLine == null ? Integer.MIN_VALUE
                     : prevTransLine.parentTxn.getDateInt();
-            double splitAdjust = (cur == null ? 1.0 : cur.adjustRateForSplitsInt(
-                    prevDateInt, currentRate, currentDateInt) / currentRate);
+            double splitAdjust = currentInfo.getSplitFactor(cur, prevDateInt, currentDateInt);
             double adjPrevPos = prevTransLine == null ? 0.0
                     : prevTransLine.position * splitAdjust;
             double adjPrevMktPrc = prevTransLine == null ? 0.0
                     : prevTransLine.mktPrice / splitAdjust;
             // mktPrice (Set to 1 if cur is null: Implies (Cash) Investment Account
-            this.mktPrice = (cur == null ? 1.0 : 1 / cur
-                    .getUserRateByDateInt(currentDateInt));
+            this.mktPrice = (cur == null ? 1.0 : 1 / currentRate);
 
             // position
             if (prevTransLine == null) { // first transaction (buy || shortSell)
                 // if first transaction improper, throw an exception
-                InvestTxnType transactionType = TxnUtil.getInvestTxnType(parentTxn);
+                InvestTxnType transactionType = getInvestTxnType();
                 boolean validStartTransaction = (transactionType == InvestTxnType.BUY ||
                         transactionType == InvestTxnType.BUY_XFER || transactionType == InvestTxnType.SHORT);
                 if (!validStartTransaction && securityAccountWrapper.isTradeable()) {
@@ -259,7 +267,7 @@ public class TransactionValues implements Comparable<TransactionValues> {
                 }
                 this.position = this.secQuantity;
             } else { // subsequent transaction
-                if(securityAccountWrapper.isTradeable()) testSubsequentTransaction(TxnUtil.getInvestTxnType(parentTxn),
+                if(securityAccountWrapper.isTradeable()) testSubsequentTransaction(getInvestTxnType(),
                         secQuantity, adjPrevPos);
                 //round to zero if negligibly small
                 this.position = Math.abs(this.secQuantity + adjPrevPos) < positionThreshold ? 0.0
@@ -269,10 +277,13 @@ public class TransactionValues implements Comparable<TransactionValues> {
 
 
             //get long and short basis
-            GainsCalc gainsCalc = currentInfo.getGainsCalc();
+            long gainsStartTime = ReportProfiler.startTime();
+            GainsCalc gainsCalc = securityAccountWrapper.getInvAcctWrapper().getGainsCalc();
             gainsCalc.initializeGainsCalc(currentInfo, this, prevTransLines);
             this.longBasis = gainsCalc.getLongBasis();
             this.shortBasis = gainsCalc.getShortBasis();
+            // summed per security, recorded once by generateTransValues
+            securityAccountWrapper.addGainsCalcNanos(System.nanoTime() - gainsStartTime);
 
 
             // OpenValue
@@ -372,8 +383,9 @@ public class TransactionValues implements Comparable<TransactionValues> {
         this.referenceAccount = invAcctWrapper.getCashAccountWrapper().getSecurityAccount();
         this.securityAccountWrapper = prevTransValues.getSecurityAccountWrapper();
         this.dateint = transactionValues.dateint;
+        this.txnTypeCode = transactionValues.txnTypeCode;
         // adding 0.1 to related transValues id to ensure unique cash id
-        this.txnID = TxnUtil.getInvestTxnType(transactionValues.parentTxn) ==
+        this.txnID = getInvestTxnType() ==
                 InvestTxnType.BANK ? transactionValues.parentTxn.getTxnId() :
                 transactionValues.parentTxn.getTxnId() + 0.1;
         this.desc = "INSERTED: " + parentTxn.getDescription();
@@ -393,7 +405,7 @@ public class TransactionValues implements Comparable<TransactionValues> {
         this.income = 0.0;
         this.expense = 0.0;
         this.secQuantity = 0.0;
-        InvestTxnType txnType = TxnUtil.getInvestTxnType(this.parentTxn);
+        InvestTxnType txnType = getInvestTxnType();
 
         switch (txnType) {
             case BANK: // transfer in/out, account-level income or expense
@@ -596,7 +608,7 @@ public class TransactionValues implements Comparable<TransactionValues> {
         return cumUnrealizedGain;
     }
 
-    public Integer getDateint() {
+    public int getDateint() {
         return dateint;
     }
 
@@ -676,7 +688,7 @@ public class TransactionValues implements Comparable<TransactionValues> {
 
     public String[] listInfo() {
         ArrayList<String> txnInfo = new ArrayList<>();
-        InvestTxnType transType = TxnUtil.getInvestTxnType(parentTxn);
+        InvestTxnType transType = getInvestTxnType();
         txnInfo.add(referenceAccount.getParentAccount()
                 .getAccountName());
         txnInfo.add(referenceAccount.getAccountName());
@@ -714,49 +726,15 @@ public class TransactionValues implements Comparable<TransactionValues> {
      *
      * @return custom transaction order based on method
      */
-    public Integer getTxnSortOrder() {
-        InvestTxnType transType = this.parentTxn != null ?
-                TxnUtil.getInvestTxnType(parentTxn) : InvestTxnType.BANK;
-        Integer txnOrder = 0;
-        switch (transType) {
-            case BUY:
-                txnOrder = 0;
-                break;
-            case BUY_XFER:
-                txnOrder = 1;
-                break;
-            case DIVIDEND_REINVEST:
-                txnOrder = 2;
-                break;
-            case SELL:
-                txnOrder = 3;
-                break;
-            case SELL_XFER:
-                txnOrder = 4;
-                break;
-            case SHORT:
-                txnOrder = 5;
-                break;
-            case COVER:
-                txnOrder = 6;
-                break;
-            case MISCINC:
-                txnOrder = 7;
-                break;
-            case MISCEXP:
-                txnOrder = 8;
-                break;
-            case DIVIDEND:
-                txnOrder = 9;
-                break;
-            case DIVIDENDXFR:
-                txnOrder = 10;
-                break;
-            case BANK:
-                txnOrder = 11;
-                break;
-        }
-        return txnOrder;
+    public int getTxnSortOrder() {
+        return BulkSecInfo.getTxnSortOrder(getInvestTxnType());
+    }
+
+    /**
+     * @return classified transaction type (cached at construction)
+     */
+    public InvestTxnType getInvestTxnType() {
+        return TxnSortKey.getTxnType(txnTypeCode);
     }
 
     /**
@@ -828,8 +806,7 @@ public class TransactionValues implements Comparable<TransactionValues> {
         public SplitValues(SplitTxn thisSplit, Account accountRef) {
             this.split = thisSplit;
             thisSplit.getDateInt();
-            InvestTxnType txnType = TxnUtil.getInvestTxnType(thisSplit
-                    .getParentTxn());
+            InvestTxnType txnType = getInvestTxnType();
             int acctType = thisSplit.getAccount().getAccountType();
             int parentAcctType = thisSplit.getParentTxn().getAccount()
                     .getAccountType();
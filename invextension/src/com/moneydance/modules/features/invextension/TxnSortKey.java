@@ -0,0 +1,100 @@
+/*
+ * TxnSortKey.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.model.InvestTxnType;
+import com.moneydance.apps.md.model.ParentTxn;
+import com.moneydance.apps.md.model.TxnUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Sort key for a parent transaction, computed once so that sorting compares
+ * primitives only (same order as BulkSecInfo.txnComp: date, associated account
+ * number, custom transaction type order, transaction id).  Date and account
+ * number are packed into one long, type order and transaction id into a
+ * second.  Also caches the classified InvestTxnType as a byte code, for reuse
+ * by TransactionValues.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class TxnSortKey implements Comparable<TxnSortKey> {
+    private static final InvestTxnType[] txnTypes = InvestTxnType.values();
+    // bits available for transaction id below type order
+    private static final int ORDER_SHIFT = 56;
+    private final ParentTxn parentTxn;
+    // date (high 32 bits), associated account number (low 32 bits, offset to unsigned)
+    private final long dateAcctKey;
+    // type order (high 8 bits), transaction id (low 56 bits)
+    private final long orderIdKey;
+    private final byte txnTypeCode;
+
+    public TxnSortKey(@NotNull ParentTxn parentTxn) {
+        this.parentTxn = parentTxn;
+        InvestTxnType txnType = TxnUtil.getInvestTxnType(parentTxn);
+        this.txnTypeCode = getTxnTypeCode(txnType);
+        long acctNum = BulkSecInfo.getAssociatedAccount(parentTxn).getAccountNum();
+        this.dateAcctKey = ((long) parentTxn.getDateInt() << 32) | (acctNum - Integer.MIN_VALUE);
+        // moneydance transaction ids are sequential, so well inside 56 bits
+        this.orderIdKey = ((long) BulkSecInfo.getTxnSortOrder(txnType) << ORDER_SHIFT)
+                | parentTxn.getTxnId();
+    }
+
+    public static byte getTxnTypeCode(@NotNull InvestTxnType txnType) {
+        return (byte) txnType.ordinal();
+    }
+
+    public static InvestTxnType getTxnType(byte txnTypeCode) {
+        return txnTypes[txnTypeCode];
+    }
+
+    public ParentTxn getParentTxn() {
+        return parentTxn;
+    }
+
+    public byte getTxnTypeCode() {
+        return txnTypeCode;
+    }
+
+    public InvestTxnType getTxnType() {
+        return txnTypes[txnTypeCode];
+    }
+
+    @Override
+    public int compareTo(@NotNull TxnSortKey o) {
+        if (dateAcctKey != o.dateAcctKey) {
+            return dateAcctKey < o.dateAcctKey ? -1 : 1;
+        } else if (orderIdKey != o.orderIdKey) {
+            return orderIdKey < o.orderIdKey ? -1 : 1;
+        } else {
+            return 0;
+        }
+    }
+}
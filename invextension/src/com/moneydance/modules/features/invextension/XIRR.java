@@ -39,6 +39,22 @@ public class XIRR {
 	 *  after January 1, 1900.
 	 */
 
+    /*
+     *  The solver works on the gross rate x = 1 + r, for which
+     *  NPV(x) = sum(values[i] * x^(-t[i])), t[i] in years from dates[0].
+     *  Newton's method (with analytic derivative) is tried first from the
+     *  supplied guess; if it fails, a sign change is bracketed and the
+     *  root is found by Brent's method.  No objects are allocated; a
+     *  Solver (one per report, not shared between threads) counts solves,
+     *  iterations and failures, which the report publishes once.
+     */
+    private static final double XMIN = 1e-6;
+    private static final double XMAX = 1000;
+    private static final double PRECISION = 1e-10;
+    private static final int MAX_NEWTON_ITERATIONS = 20;
+    private static final int MAX_BRENT_ITERATIONS = 100;
+    private static final double BRACKET_FACTOR = 1.6;
+
     /**
      * Calculate XIRR.
      *
@@ -46,30 +62,286 @@ public class XIRR {
      * @return result of search
      */
     public static double xirr(XIRRData xirrData) {
-        GoalSeekData data;
-        GoalSeekStatus status;
-        double result;
-        double rate0;
-
-        data = new GoalSeekData();
-        GoalSeek.goal_seek_initialize(data);
-        data.xmin = -1;
-        data.xmax = Math.min(1000, data.xmax);
-        rate0 = xirrData.guess; //argv[2] ? value_get_as_float (argv[2]) : 0.1;
-
-        status = GoalSeek.goalSeekNewton(
-                new XIRRNPV(), null, data, xirrData, rate0);
-
-        if (status.seekStatus == GoalSeekStatus.GOAL_SEEK_OK) {
-//			result = value_new_float(data.root);
-            result = (Double) status.returnData;    //data.root ;
-        } else {
-//			result = value_new_error_NUM (ei.pos);
-            result = Double.NaN;
+        return xirr(xirrData.values, xirrData.dates, xirrData.n, xirrData.guess);
+    }
+
+    /**
+     * Calculate XIRR.
+     *
+     * @param values cash flows
+     * @param dates  excel dates of cash flows (none before dates[0])
+     * @param n      number of cash flows to use
+     * @param guess  initial estimate of gross rate (1 + return), e.g. from
+     *               Mod-Dietz return or result for a prior date
+     * @return annual return, or NaN if none found within iteration limits
+     */
+    public static double xirr(double[] values, double[] dates, int n, double guess) {
+        return new Solver().xirr(values, dates, n, guess);
+    }
+
+    /**
+     * Solves XIRR, counting solves, iterations and failures until they are
+     * published.  Not thread-safe: each report (or task) uses its own.
+     */
+    public static final class Solver {
+        private long solves;
+        private long iterations;
+        private long failures;
+        private double root; // result of last solve (as annual return)
+
+        /**
+         * @param values cash flows
+         * @param dates  excel dates of cash flows (none before dates[0])
+         * @param n      number of cash flows to use
+         * @param guess  initial estimate of gross rate (1 + return)
+         * @return annual return, or NaN if none found within iteration limits
+         */
+        public double xirr(double[] values, double[] dates, int n, double guess) {
+            if (n == 0) return Double.NaN;
+            for (int i = 1; i < n; i++) {
+                if (dates[i] < dates[0]) return Double.NaN;
+            }
+            iterations += solve(values, dates, n, guess);
+            solves++;
+            if (Double.isNaN(root)) failures++;
+            return root;
+        }
+
+        /**
+         * adds counts of another solver (e.g. of a component report)
+         *
+         * @param solver solver to add
+         */
+        public void add(Solver solver) {
+            solves += solver.solves;
+            iterations += solver.iterations;
+            failures += solver.failures;
+        }
+
+        /**
+         * publishes counts to ReportProfiler, then clears them
+         */
+        public void publish() {
+            if (solves > 0) ReportProfiler.recordXirr(solves, iterations, failures);
+            solves = 0;
+            iterations = 0;
+            failures = 0;
+        }
+
+        public long getSolves() {
+            return solves;
+        }
+
+        public long getIterations() {
+            return iterations;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        /*
+         * Newton's method from guess, then bracket and Brent's method;
+         * sets root and returns iterations of both
+         */
+        private int solve(double[] values, double[] dates, int n, double guess) {
+            int iterationCount = 0;
+            // points either side of root seen so far
+            double xPos = Double.NaN;
+            double yPos = Double.NaN;
+            double xNeg = Double.NaN;
+            double yNeg = Double.NaN;
+
+            double x = guess;
+            for (int iterations = 0; iterations < MAX_NEWTON_ITERATIONS; iterations++) {
+                if (!(x >= XMIN && x <= XMAX)) break;
+                iterationCount++;
+                // NPV and derivative in one pass
+                double lnX = Math.log(x);
+                double y = 0;
+                double dy = 0;
+                for (int i = 0; i < n; i++) {
+                    double t = (dates[i] - dates[0]) / 365.0;
+                    double term = values[i] * Math.exp(-t * lnX);
+                    y += term;
+                    dy -= t * term;
+                }
+                dy /= x;
+
+                if (y == 0) {
+                    root = x - 1;
+                    return iterationCount;
+                }
+                if (Double.isNaN(y) || Double.isInfinite(y)) break;
+                if (y > 0) {
+                    xPos = x;
+                    yPos = y;
+                } else {
+                    xNeg = x;
+                    yNeg = y;
+                }
+                if (dy == 0 || Double.isInfinite(dy)) break;
+
+                double x1 = x - y / dy;
+                double stepSize = Math.abs(x1 - x) / (Math.abs(x) + Math.abs(x1));
+                if (stepSize < PRECISION / 2 && x1 >= XMIN && x1 <= XMAX) {
+                    root = x1 - 1;
+                    return iterationCount;
+                }
+                x = x1;
+            }
+
+            // Newton failed; look for a sign change around the guess
+            double up = guess >= XMIN && guess <= XMAX ? guess : 1.0;
+            double yUp = npv(values, dates, n, up);
+            if (yUp == 0) {
+                root = up - 1;
+                return iterationCount;
+            }
+            double down = up;
+            double yDown = yUp;
+            while (Double.isNaN(xPos) || Double.isNaN(xNeg)) {
+                if (up >= XMAX && down <= XMIN) {
+                    root = Double.NaN;
+                    return iterationCount;
+                }
+                iterationCount++;
+                if (up < XMAX) {
+                    double next = Math.min(up * BRACKET_FACTOR, XMAX);
+                    double yNext = npv(values, dates, n, next);
+                    if (yNext == 0) {
+                        root = next - 1;
+                        return iterationCount;
+                    }
+                    if (yNext > 0 && yUp < 0 || yNext < 0 && yUp > 0) {
+                        xPos = yNext > 0 ? next : up;
+                        yPos = yNext > 0 ? yNext : yUp;
+                        xNeg = yNext > 0 ? up : next;
+                        yNeg = yNext > 0 ? yUp : yNext;
+                        break;
+                    }
+                    up = next;
+                    yUp = yNext;
+                }
+                if (down > XMIN) {
+                    double next = Math.max(down / BRACKET_FACTOR, XMIN);
+                    double yNext = npv(values, dates, n, next);
+                    if (yNext == 0) {
+                        root = next - 1;
+                        return iterationCount;
+                    }
+                    if (yNext > 0 && yDown < 0 || yNext < 0 && yDown > 0) {
+                        xPos = yNext > 0 ? next : down;
+                        yPos = yNext > 0 ? yNext : yDown;
+                        xNeg = yNext > 0 ? down : next;
+                        yNeg = yNext > 0 ? yDown : yNext;
+                        break;
+                    }
+                    down = next;
+                    yDown = yNext;
+                }
+            }
+            iterationCount = brent(values, dates, n, xNeg, yNeg, xPos, yPos, iterationCount);
+            if (!Double.isNaN(root)) root -= 1;
+            return iterationCount;
+        }
+
+        /*
+         * Net present value at gross rate x
+         */
+        private static double npv(double[] values, double[] dates, int n, double x) {
+            double lnX = Math.log(x);
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += values[i] * Math.exp(-(dates[i] - dates[0]) / 365.0 * lnX);
+            }
+            return sum;
         }
 
-//		System.out.println( "XIRR Result - " + result ) ; //commented out to improve speed
-        return (result != Double.NaN) ? (result - 1) : result;
+        /*
+         * Brent's method on bracket [a, b] where f(a) and f(b) differ in
+         * sign; sets root (gross rate, or NaN) and returns iteration count
+         */
+        private int brent(double[] values, double[] dates, int n,
+                          double a, double fa, double b, double fb,
+                          int iterationCount) {
+            if (Math.abs(fa) < Math.abs(fb)) {
+                double tmp = a;
+                a = b;
+                b = tmp;
+                tmp = fa;
+                fa = fb;
+                fb = tmp;
+            }
+            double c = a;
+            double fc = fa;
+            double d = b - a;
+            double e = d;
+            for (int iterations = 0; iterations < MAX_BRENT_ITERATIONS; iterations++) {
+                iterationCount++;
+                if (fb == 0) {
+                    root = b;
+                    return iterationCount;
+                }
+                if ((fb > 0) == (fc > 0)) {
+                    c = a;
+                    fc = fa;
+                    d = b - a;
+                    e = d;
+                }
+                if (Math.abs(fc) < Math.abs(fb)) {
+                    a = b;
+                    b = c;
+                    c = a;
+                    fa = fb;
+                    fb = fc;
+                    fc = fa;
+                }
+                double tol = PRECISION * Math.abs(b);
+                double m = (c - b) / 2;
+                if (Math.abs(m) <= tol) {
+                    root = b;
+                    return iterationCount;
+                }
+                if (Math.abs(e) >= tol && Math.abs(fa) > Math.abs(fb)) {
+                    // inverse quadratic interpolation or secant
+                    double p;
+                    double q;
+                    double s = fb / fa;
+                    if (a == c) {
+                        p = 2 * m * s;
+                        q = 1 - s;
+                    } else {
+                        double r = fb / fc;
+                        q = fa / fc;
+                        p = s * (2 * m * q * (q - r) - (b - a) * (r - 1));
+                        q = (q - 1) * (r - 1) * (s - 1);
+                    }
+                    if (p > 0) {
+                        q = -q;
+                    } else {
+                        p = -p;
+                    }
+                    if (2 * p < Math.min(3 * m * q - Math.abs(tol * q), Math.abs(e * q))) {
+                        e = d;
+                        d = p / q;
+                    } else {
+                        d = m;
+                        e = m;
+                    }
+                } else {
+                    // bisection
+                    d = m;
+                    e = m;
+                }
+                a = b;
+                fa = fb;
+                b += Math.abs(d) > tol ? d : (m > 0 ? tol : -tol);
+                fb = npv(values, dates, n, b);
+            }
+            root = Double.NaN;
+            return iterationCount;
+        }
     }
 
-}   /*  End of the XIRR class. */
\ No newline at end of file
+}   /*  End of the XIRR class. */
@@ -34,7 +34,13 @@ import org.junit.runners.Suite.SuiteClasses;
 //NOTE: If tests won't run, workaround as follows:
 // Remove JUnit.jar from build path, and add back
 @RunWith(Suite.class)
-@SuiteClasses({BulkSecInfoTest.class, ReportProdTest.class})
+@SuiteClasses({BulkSecInfoTest.class, BulkSecInfoRefreshTest.class,
+        BulkSecInfoParallelTest.class, SecurityLedgerTest.class, LotLedgerTest.class,
+        GainsLotQueueCalcTest.class, CurrencyWrapperTest.class,
+        DateMapTest.class, XIRRTest.class, ReportProfilerTest.class,
+        ReportEngineStatsTest.class, DateUtilsTest.class, BusinessDayCalendarTest.class,
+        RollingReturnReportTest.class, BatchReportRunnerTest.class, SyntheticDataGeneratorTest.class,
+        ReportProdTest.class})
 public class AllTests {
 
 }
@@ -0,0 +1,166 @@
+/*
+ * BatchReportRunnerTest.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.prefs.Preferences;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests headless batch runs of standard report configurations
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class BatchReportRunnerTest {
+
+    @Test
+    public void testOutputFileName() throws Exception {
+        ReportConfig reportConfig = ReportConfig.getStandardReportConfig(TotalFromToReport.class);
+        assertEquals("From-To_Report_Standard.csv", BatchReportRunner.getOutputFileName(reportConfig));
+    }
+
+    @Test
+    public void testRunStandardReports() throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        File outputDirectory = Files.createTempDirectory("batchReports").toFile();
+        BatchReportRunner runner = new BatchReportRunner(BulkSecInfoTest.mdTestFile, outputDirectory, true);
+        ArrayList<ReportConfig> reportConfigs = new ArrayList<>();
+        reportConfigs.add(ReportConfig.getStandardReportConfig(TotalFromToReport.class));
+        reportConfigs.add(ReportConfig.getStandardReportConfig(TotalSnapshotReport.class));
+        ArrayList<File> outputFiles = runner.runReports(reportConfigs);
+        assertEquals(2, outputFiles.size());
+        for (File outputFile : outputFiles) {
+            ArrayList<String[]> lines = IOUtils.readCSVIntoArrayList(outputFile);
+            assertTrue(lines.size() > 1);
+            assertEquals(lines.get(0).length, lines.get(1).length);
+            outputFile.delete();
+        }
+        File profileFile = new File(outputDirectory, ReportProfiler.PROFILE_FILE_NAME);
+        assertTrue(profileFile.delete());
+        outputDirectory.delete();
+        // data file load, then load, calculate and write for each report
+        assertEquals(1 + 3 * reportConfigs.size(), runner.getPhaseTimes().size());
+    }
+
+    @Test
+    public void testImportReportConfigs() throws Exception {
+        String reportTypeName = ReportConfig.getReportTypeName(TotalFromToReport.class);
+        String reportName = "Batch Import Test";
+        DateRange dateRange = new DateRange(DateRange.REF_DATE.TODAY, DateRange.DATE_RULE.YEAR_TO_DATE, false);
+        // exported preferences, written without touching user's preferences
+        Preferences exportRoot = MemoryPreferences.readPreferences(new ByteArrayInputStream(
+                "<preferences EXTERNAL_XML_VERSION=\"1.0\"><root type=\"user\"><map/></root></preferences>"
+                        .getBytes("UTF-8")));
+        Preferences exportNode = exportRoot.node(Prefs.REPORT_CONFIG_PATH).node(reportTypeName).node(reportName);
+        exportNode.put(Prefs.COST_BASIS_METHOD, CostBasisMethod.FIFO.name());
+        exportNode.put(Prefs.DATERANGE, dateRange.toString());
+        File configFile = File.createTempFile("batchConfig", ".xml");
+        try (OutputStream outputStream = new FileOutputStream(configFile)) {
+            exportRoot.node(Prefs.REPORT_CONFIG_PATH).exportSubtree(outputStream);
+        }
+
+        Preferences configPrefs = BatchReportRunner.importReportConfigs(configFile);
+        assertTrue(configFile.delete());
+        ArrayList<ReportConfig> reportConfigs = BatchReportRunner.getSavedReportConfigs(configPrefs, reportName);
+        assertEquals(1, reportConfigs.size());
+        assertEquals(CostBasisMethod.FIFO, reportConfigs.get(0).getCostBasisMethod());
+        assertEquals(dateRange.toString(), reportConfigs.get(0).getDateRange().toString());
+        assertFalse(Prefs.REPORT_CONFIG_PREFS.node(reportTypeName).nodeExists(reportName));
+    }
+
+    @Test
+    public void testUnknownCostBasisMethod() throws Exception {
+        String reportTypeName = ReportConfig.getReportTypeName(TotalFromToReport.class);
+        String reportName = "Unknown Method Test";
+        Preferences configPrefs = MemoryPreferences.readPreferences(new ByteArrayInputStream(
+                "<preferences EXTERNAL_XML_VERSION=\"1.0\"><root type=\"user\"><map/></root></preferences>"
+                        .getBytes("UTF-8")));
+        Preferences reportNode = configPrefs.node(reportTypeName).node(reportName);
+        reportNode.put(Prefs.COST_BASIS_METHOD, "NOT_A_METHOD");
+        reportNode.putBoolean(Prefs.USE_AVERAGE_COST_BASIS, false);
+        // unknown method falls back to average cost flag
+        ReportConfig reportConfig = new ReportConfig(configPrefs, TotalFromToReport.class, reportName);
+        assertEquals(CostBasisMethod.LOT_MATCH, reportConfig.getCostBasisMethod());
+        reportNode.putBoolean(Prefs.USE_AVERAGE_COST_BASIS, true);
+        reportConfig = new ReportConfig(configPrefs, TotalFromToReport.class, reportName);
+        assertEquals(CostBasisMethod.AVERAGE, reportConfig.getCostBasisMethod());
+    }
+
+    @Test
+    public void testRunAllDateRanges() throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        File outputDirectory = Files.createTempDirectory("batchReports").toFile();
+        BatchReportRunner runner = new BatchReportRunner(BulkSecInfoTest.mdTestFile, outputDirectory, true);
+        runner.setAllDateRanges(true);
+        ArrayList<ReportConfig> reportConfigs = new ArrayList<>();
+        reportConfigs.add(ReportConfig.getStandardReportConfig(TotalFromToReport.class));
+        ArrayList<File> outputFiles = runner.runReports(reportConfigs);
+        assertEquals(DateRange.DATE_RULE.values().length - 1, outputFiles.size());
+        assertEquals("From-To_Report_Standard_ONE_DAY.csv", outputFiles.get(0).getName());
+        for (File outputFile : outputFiles) {
+            ArrayList<String[]> lines = IOUtils.readCSVIntoArrayList(outputFile);
+            assertTrue(lines.size() > 1);
+            outputFile.delete();
+        }
+        new File(outputDirectory, ReportProfiler.PROFILE_FILE_NAME).delete();
+        outputDirectory.delete();
+    }
+
+    @Test
+    public void testRunRollingReturns() throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        File outputDirectory = Files.createTempDirectory("batchReports").toFile();
+        BatchReportRunner runner = new BatchReportRunner(BulkSecInfoTest.mdTestFile, outputDirectory, false);
+        runner.setRollingReturns(true);
+        ArrayList<ReportConfig> reportConfigs = new ArrayList<>();
+        reportConfigs.add(ReportConfig.getStandardReportConfig(TotalFromToReport.class));
+        ArrayList<File> outputFiles = runner.runReports(reportConfigs);
+        assertEquals(2, outputFiles.size());
+        assertEquals("From-To_Report_Standard_rolling.csv", outputFiles.get(1).getName());
+        ArrayList<String[]> lines = IOUtils.readCSVIntoArrayList(outputFiles.get(1));
+        assertEquals(RollingReturnReport.listRowsHeader().toString().split(",").length, lines.get(0).length);
+        for (File outputFile : outputFiles) {
+            outputFile.delete();
+        }
+        new File(outputDirectory, ReportProfiler.PROFILE_FILE_NAME).delete();
+        outputDirectory.delete();
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * BulkSecInfoParallelTest.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.controller.io.FileUtils;
+import com.moneydance.apps.md.model.RootAccount;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that loading investment accounts in parallel produces the same
+ * transaction values (including synthetic account and transaction numbers)
+ * as the serial load
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class BulkSecInfoParallelTest {
+
+    /**
+     * lists transaction values as sorted strings
+     *
+     * @param currentInfo BulkSecInfo to list
+     * @return sorted list of transaction value lines
+     * @throws Exception
+     */
+    static ArrayList<String> listTransValues(BulkSecInfo currentInfo) throws Exception {
+        ArrayList<String> outputList = new ArrayList<>();
+        for (String[] row : currentInfo.listAllTransValues(currentInfo.getInvestmentWrappers())) {
+            outputList.add(Arrays.toString(row));
+        }
+        Collections.sort(outputList);
+        return outputList;
+    }
+
+    private static BulkSecInfo getSecurityInfo(boolean useAverageCostBasis, boolean parallelLoad)
+            throws Exception {
+        RootAccount root = FileUtils.readAccountsFromFile(BulkSecInfoTest.mdTestFile, null);
+        ReportConfig reportConfig = ReportConfig.getStandardReportConfig(TotalFromToReport.class);
+        reportConfig.setUseAverageCostBasis(useAverageCostBasis);
+        return new BulkSecInfo(root, reportConfig, parallelLoad);
+    }
+
+    @Test
+    public void testParallelLoadAvgCost() throws Exception {
+        BulkSecInfo serialInfo = getSecurityInfo(true, false);
+        BulkSecInfo parallelInfo = getSecurityInfo(true, true);
+        assertEquals(listTransValues(serialInfo), listTransValues(parallelInfo));
+        assertEquals(BulkSecInfoTest.countSecurityTransactions(serialInfo),
+                BulkSecInfoTest.countSecurityTransactions(parallelInfo));
+    }
+
+    @Test
+    public void testParallelLoadLotMatch() throws Exception {
+        BulkSecInfo serialInfo = getSecurityInfo(false, false);
+        BulkSecInfo parallelInfo = getSecurityInfo(false, true);
+        assertEquals(listTransValues(serialInfo), listTransValues(parallelInfo));
+    }
+
+    /**
+     * lists report table rows as strings (numbers at full precision)
+     *
+     * @param report      report to calculate
+     * @param currentInfo security info for report
+     * @param parallelCalc true to calculate leaf-level reports in parallel
+     * @return sorted list of report lines
+     * @throws Exception
+     */
+    private static ArrayList<String> listReportRows(TotalReport report, BulkSecInfo currentInfo,
+                                                    boolean parallelCalc) throws Exception {
+        report.setParallelCalc(parallelCalc);
+        report.calcReport(currentInfo);
+        return listReportRows(report);
+    }
+
+    /**
+     * @param report calculated report
+     * @return sorted list of report lines
+     * @throws Exception
+     */
+    private static ArrayList<String> listReportRows(TotalReport report) throws Exception {
+        ArrayList<String> outputList = new ArrayList<>();
+        for (ReportProdTest.ReportLine line : ReportProdTest.readObjArrayIntoRptLine(report.getReportTable())) {
+            outputList.add(Arrays.toString(line.getRow()));
+        }
+        Collections.sort(outputList);
+        return outputList;
+    }
+
+    @Test
+    public void testParallelReportCalc() throws Exception {
+        BulkSecInfo currentInfo = getSecurityInfo(false, false);
+        ReportConfig reportConfig = ReportConfig.getStandardReportConfig(TotalSnapshotReport.class);
+        assertEquals(listReportRows(new TotalSnapshotReport(reportConfig), currentInfo, false),
+                listReportRows(new TotalSnapshotReport(reportConfig), currentInfo, true));
+        reportConfig = ReportConfig.getStandardReportConfig(TotalFromToReport.class);
+        assertEquals(listReportRows(new TotalFromToReport(reportConfig), currentInfo, false),
+                listReportRows(new TotalFromToReport(reportConfig), currentInfo, true));
+    }
+
+    @Test
+    public void testMultiRangeReportCalc() throws Exception {
+        BulkSecInfo currentInfo = getSecurityInfo(false, false);
+        ReportConfig reportConfig = ReportConfig.getStandardReportConfig(TotalFromToReport.class);
+        MultiRangeFromToReport multiReport = MultiRangeFromToReport.getDateRulePresetReport(reportConfig);
+        multiReport.setParallelCalc(true);
+        multiReport.calcReports(currentInfo);
+        DateRange[] dateRanges = multiReport.getDateRanges();
+        TotalFromToReport[] reports = multiReport.getReports();
+        for (int i = 0; i < dateRanges.length; i++) {
+            assertEquals(dateRanges[i].toString(),
+                    listReportRows(new TotalFromToReport(reportConfig, dateRanges[i]), currentInfo, false),
+                    listReportRows(reports[i]));
+        }
+    }
+
+    @Test
+    public void testDateRulePresetsFollowConfig() throws Exception {
+        ReportConfig reportConfig = ReportConfig.getStandardReportConfig(TotalFromToReport.class);
+        reportConfig.setDateRange(new DateRange(DateRange.REF_DATE.TODAY, DateRange.DATE_RULE.YEAR_TO_DATE, false));
+        for (DateRange dateRange : MultiRangeFromToReport.getDateRulePresetReport(reportConfig).getDateRanges()) {
+            assertEquals(DateRange.REF_DATE.TODAY, dateRange.getRefDate());
+            assertEquals(Boolean.FALSE, dateRange.getSnapDateIsRefDate());
+        }
+    }
+
+    @Test
+    public void testCurrencyWrapperOrder() throws Exception {
+        BulkSecInfo serialInfo = getSecurityInfo(true, false);
+        BulkSecInfo parallelInfo = getSecurityInfo(true, true);
+        for (Integer curID : serialInfo.getCurrencyWrappers().keySet()) {
+            ArrayList<String> serialNames = new ArrayList<>();
+            ArrayList<String> parallelNames = new ArrayList<>();
+            for (SecurityAccountWrapper wrapper : serialInfo.getCurrencyWrappers().get(curID).getSecAccts()) {
+                serialNames.add(wrapper.getInvAcctWrapper().getName() + ":" + wrapper.getName());
+            }
+            for (SecurityAccountWrapper wrapper : parallelInfo.getCurrencyWrappers().get(curID).getSecAccts()) {
+                parallelNames.add(wrapper.getInvAcctWrapper().getName() + ":" + wrapper.getName());
+            }
+            assertEquals(serialNames, parallelNames);
+        }
+    }
+}
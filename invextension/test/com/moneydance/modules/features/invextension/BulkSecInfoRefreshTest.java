@@ -0,0 +1,160 @@
+/*
+ * BulkSecInfoRefreshTest.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.controller.io.FileUtils;
+import com.moneydance.apps.md.model.CurrencyType;
+import com.moneydance.apps.md.model.RootAccount;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that refreshing a BulkSecInfo in place produces the same transaction
+ * values as a full rebuild from the same data file
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class BulkSecInfoRefreshTest {
+
+    /**
+     * lists transaction values as sorted strings, less the transaction id
+     * (synthetic ids for initial balances depend on build order)
+     *
+     * @param currentInfo BulkSecInfo to list
+     * @return sorted list of transaction value lines
+     * @throws Exception
+     */
+    private static ArrayList<String> listTransValues(BulkSecInfo currentInfo) throws Exception {
+        ArrayList<String> outputList = new ArrayList<>();
+        for (String[] row : currentInfo.listAllTransValues(currentInfo.getInvestmentWrappers())) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < row.length; i++) {
+                if (i != 4) line.append(row[i]).append(",");
+            }
+            outputList.add(line.toString());
+        }
+        Collections.sort(outputList);
+        return outputList;
+    }
+
+    private static ReportConfig getReportConfig(boolean useAverageCostBasis) throws Exception {
+        ReportConfig reportConfig = ReportConfig.getStandardReportConfig(TotalFromToReport.class);
+        reportConfig.setUseAverageCostBasis(useAverageCostBasis);
+        return reportConfig;
+    }
+
+    @Test
+    public void testRefreshUnchanged() throws Exception {
+        RootAccount root = FileUtils.readAccountsFromFile(BulkSecInfoTest.mdTestFile, null);
+        ReportConfig reportConfig = getReportConfig(true);
+        BulkSecInfo currentInfo = new BulkSecInfo(root, reportConfig);
+        ArrayList<String> before = listTransValues(currentInfo);
+        int securityTransCount = BulkSecInfoTest.countSecurityTransactions(currentInfo);
+
+        assertEquals(0, currentInfo.refresh(reportConfig));
+        assertEquals(before, listTransValues(currentInfo));
+        assertEquals(securityTransCount, BulkSecInfoTest.countSecurityTransactions(currentInfo));
+    }
+
+    @Test
+    public void testRefreshMatchesFullRebuild() throws Exception {
+        RootAccount root = FileUtils.readAccountsFromFile(BulkSecInfoTest.mdTestFile, null);
+        BulkSecInfo currentInfo = new BulkSecInfo(root, getReportConfig(true));
+        // change of cost basis forces every account to be rebuilt in place
+        int rebuiltCount = currentInfo.refresh(getReportConfig(false));
+        assertEquals(currentInfo.getInvestmentWrappers().size(), rebuiltCount);
+
+        BulkSecInfo rebuiltInfo = new BulkSecInfo(
+                FileUtils.readAccountsFromFile(BulkSecInfoTest.mdTestFile, null), getReportConfig(false));
+        assertEquals(listTransValues(rebuiltInfo), listTransValues(currentInfo));
+        assertEquals(BulkSecInfoTest.countSecurityTransactions(rebuiltInfo),
+                BulkSecInfoTest.countSecurityTransactions(currentInfo));
+    }
+
+    @Test
+    public void testRefreshAfterPriceAndSplitEdit() throws Exception {
+        RootAccount root = FileUtils.readAccountsFromFile(BulkSecInfoTest.mdTestFile, null);
+        ReportConfig reportConfig = getReportConfig(false);
+        BulkSecInfo currentInfo = new BulkSecInfo(root, reportConfig);
+        SecurityAccountWrapper editedWrapper = null;
+        for (InvestmentAccountWrapper invWrapper : currentInfo.getInvestmentWrappers()) {
+            for (SecurityAccountWrapper secWrapper : invWrapper.getSecurityAccountWrappers()) {
+                if (secWrapper.getSecurityAccount() != null && secWrapper.getTransactionValues().size() > 2
+                        && secWrapper.getCurrencyWrapper().getCurrencyType().getSnapshotCount() > 1)
+                    editedWrapper = secWrapper;
+            }
+        }
+        assertNotNull(editedWrapper);
+        ArrayList<String> before = listTransValues(currentInfo);
+
+        // correct an early price and add a split in the middle of the history,
+        // leaving every transaction untouched
+        CurrencyType currencyType = editedWrapper.getCurrencyWrapper().getCurrencyType();
+        CurrencyType.Snapshot firstSnapshot = currencyType.getSnapshot(0);
+        currencyType.addSnapshotInt(firstSnapshot.getDateInt(), firstSnapshot.getUserRate() * 1.1);
+        ArrayList<TransactionValues> transValues = editedWrapper.getTransactionValues();
+        currencyType.addStockSplitInt(transValues.get(transValues.size() / 2).getParentTxn().getDateInt(), 2.0);
+
+        assertTrue(currentInfo.refresh(reportConfig) > 0);
+        ArrayList<String> refreshed = listTransValues(currentInfo);
+        assertTrue(!before.equals(refreshed));
+        assertEquals(listTransValues(new BulkSecInfo(root, reportConfig)), refreshed);
+    }
+
+    @Test
+    public void testRefreshExcludedAccount() throws Exception {
+        RootAccount root = FileUtils.readAccountsFromFile(BulkSecInfoTest.mdTestFile, null);
+        BulkSecInfo currentInfo = new BulkSecInfo(root, getReportConfig(true));
+        InvestmentAccountWrapper excludedWrapper = currentInfo.getInvestmentWrappers().iterator().next();
+        HashSet<Integer> excludedAccountNums = new HashSet<>();
+        excludedAccountNums.add(excludedWrapper.getInvestmentAccount().getAccountNum());
+        ReportConfig reportConfig = getReportConfig(true);
+        reportConfig.setExcludedAccountNums(excludedAccountNums);
+
+        assertEquals(0, currentInfo.refresh(reportConfig));
+        BulkSecInfo rebuiltInfo = new BulkSecInfo(
+                FileUtils.readAccountsFromFile(BulkSecInfoTest.mdTestFile, null), reportConfig);
+        assertEquals(listTransValues(rebuiltInfo), listTransValues(currentInfo));
+        assertEquals(BulkSecInfoTest.countSecurityTransactions(rebuiltInfo),
+                BulkSecInfoTest.countSecurityTransactions(currentInfo));
+
+        // restoring the account rebuilds only that account
+        assertEquals(1, currentInfo.refresh(getReportConfig(true)));
+        assertEquals(listTransValues(BulkSecInfoTest.getBaseSecurityInfoAvgCost()), listTransValues(currentInfo));
+    }
+}
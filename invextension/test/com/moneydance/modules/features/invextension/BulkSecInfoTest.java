@@ -28,7 +28,7 @@
 package com.moneydance.modules.features.invextension;
 
 import com.moneydance.apps.md.controller.io.FileUtils;
-import com.moneydance.apps.md.model.RootAccount;
+import com.moneydance.apps.md.model.*;
 import org.jetbrains.annotations.NotNull;
 import org.junit.Test;
 
@@ -39,9 +39,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Locale;
+import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 
 /**
@@ -80,6 +82,22 @@ public class BulkSecInfoTest {
         return new BulkSecInfo(root, ReportConfig.getStandardReportConfig(TotalFromToReport.class));
     }
 
+    /**
+     * counts transactions of securities (excluding synthetic cash)
+     *
+     * @param currentInfo BulkSecInfo to count
+     * @return number of security transactions
+     */
+    public static int countSecurityTransactions(BulkSecInfo currentInfo) {
+        int count = 0;
+        for (InvestmentAccountWrapper invWrapper : currentInfo.getInvestmentWrappers()) {
+            for (SecurityAccountWrapper secWrapper : invWrapper.getSecurityAccountWrappers()) {
+                if (secWrapper != invWrapper.getCashAccountWrapper()) count += secWrapper.getLedger().size();
+            }
+        }
+        return count;
+    }
+
     /**
      * gets BulkSecInfo from stored moneydance data file (Lot Matching basis)
      *
@@ -298,6 +316,63 @@ public class BulkSecInfoTest {
         assertFalse(errorFound);
     }
 
+    /**
+     * Test Method which checks single-pass transaction buckets against
+     * per-account scan of associated transactions
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAssociatedTxnBuckets() throws Exception {
+        BulkSecInfo currentInfo = getBaseSecurityInfoAvgCost();
+        TreeSet<Account> accounts = BulkSecInfo.getSelectedSubAccounts(currentInfo.getRoot(),
+                Account.ACCOUNT_TYPE_INVESTMENT, Account.ACCOUNT_TYPE_SECURITY);
+        for (Account account : accounts) {
+            ArrayList<ParentTxn> scannedTxns = new ArrayList<>();
+            for (AbstractTxn abstractTxn : currentInfo.getTransactionSet().getTransactionsForAccount(account)) {
+                if (BulkSecInfo.getAssociatedAccount(abstractTxn) == account) {
+                    ParentTxn parentTxn = abstractTxn instanceof ParentTxn ? (ParentTxn) abstractTxn
+                            : abstractTxn.getParentTxn();
+                    if (!scannedTxns.contains(parentTxn)) scannedTxns.add(parentTxn);
+                }
+            }
+            ArrayList<ParentTxn> bucketedTxns = currentInfo.getAssociatedTxns(account);
+            Collections.sort(scannedTxns, BulkSecInfo.txnComp);
+            Collections.sort(bucketedTxns, BulkSecInfo.txnComp);
+            assertEquals(account.getAccountName(), scannedTxns, bucketedTxns);
+        }
+    }
+
+    /**
+     * Test Method which checks that sorted transaction keys are in date,
+     * associated account, transaction type order, transaction id order
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTxnSortKeyOrder() throws Exception {
+        BulkSecInfo currentInfo = getBaseSecurityInfoAvgCost();
+        TreeSet<Account> accounts = BulkSecInfo.getSelectedSubAccounts(currentInfo.getRoot(),
+                Account.ACCOUNT_TYPE_INVESTMENT, Account.ACCOUNT_TYPE_SECURITY);
+        for (Account account : accounts) {
+            ArrayList<TxnSortKey> sortKeys = currentInfo.getSortedTxnKeys(account);
+            for (int i = 1; i < sortKeys.size(); i++) {
+                ParentTxn t1 = sortKeys.get(i - 1).getParentTxn();
+                ParentTxn t2 = sortKeys.get(i).getParentTxn();
+                long[] fields1 = {t1.getDateInt(), BulkSecInfo.getAssociatedAccount(t1).getAccountNum(),
+                        BulkSecInfo.getTxnSortOrder(t1), t1.getTxnId()};
+                long[] fields2 = {t2.getDateInt(), BulkSecInfo.getAssociatedAccount(t2).getAccountNum(),
+                        BulkSecInfo.getTxnSortOrder(t2), t2.getTxnId()};
+                int j = 0;
+                while (j < fields1.length - 1 && fields1[j] == fields2[j]) j++;
+                assertFalse(account.getAccountName() + " out of order at " + i, fields1[j] > fields2[j]);
+            }
+            for (TxnSortKey sortKey : sortKeys) {
+                assertEquals(TxnUtil.getInvestTxnType(sortKey.getParentTxn()), sortKey.getTxnType());
+            }
+        }
+    }
+
     /**
      * Class with only one element, String array of transaction report
      * elements.  Implements comparable based on transaction id
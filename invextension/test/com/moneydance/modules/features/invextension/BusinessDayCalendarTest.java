@@ -0,0 +1,86 @@
+/*
+ * BusinessDayCalendarTest.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests BusinessDayCalendar lookups against known NYSE dates, and the
+ * precomputed range against day-by-day computation
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class BusinessDayCalendarTest {
+
+    @Test
+    public void testNyseDates() {
+        BusinessDayCalendar calendar = BusinessDayCalendar.getDefault();
+        assertFalse(calendar.isBusinessDay(20140101)); // New Year's Day
+        assertFalse(calendar.isBusinessDay(20140120)); // Martin Luther King Day
+        assertFalse(calendar.isBusinessDay(20140418)); // Good Friday
+        assertFalse(calendar.isBusinessDay(20140704)); // Independence Day
+        assertFalse(calendar.isBusinessDay(20141127)); // Thanksgiving
+        assertFalse(calendar.isBusinessDay(20151225)); // Christmas
+        assertFalse(calendar.isBusinessDay(20150703)); // Independence Day (Saturday) observed
+        assertFalse(calendar.isBusinessDay(20140524)); // Saturday
+        assertTrue(calendar.isBusinessDay(20141128));
+        assertEquals(20140417, calendar.getPrevBusinessDay(20140421));
+        assertEquals(20140421, calendar.getNextBusinessDay(20140417));
+        assertEquals(20140703, calendar.getLatestBusinessDay(20140706));
+        assertEquals(20140707, calendar.getLatestBusinessDay(20140707));
+        assertEquals(20131231, DateUtils.getPrevBusinessDay(20140102));
+    }
+
+    @Test
+    public void testPrecomputedMatchesComputed() {
+        BusinessDayCalendar precomputed = BusinessDayCalendar.getDefault();
+        // one-year range, so nearly all lookups are computed day by day
+        BusinessDayCalendar computed = new BusinessDayCalendar(BusinessDayCalendar.NYSE, 1900, 1900);
+        for (int dateInt = 19600101; dateInt <= 21001231; dateInt = DateUtils.addDaysInt(dateInt, 1)) {
+            assertEquals(Integer.toString(dateInt), computed.isBusinessDay(dateInt),
+                    precomputed.isBusinessDay(dateInt));
+            assertEquals(computed.getPrevBusinessDay(dateInt), precomputed.getPrevBusinessDay(dateInt));
+            assertEquals(computed.getNextBusinessDay(dateInt), precomputed.getNextBusinessDay(dateInt));
+        }
+    }
+
+    @Test
+    public void testWeekdays() {
+        BusinessDayCalendar calendar = new BusinessDayCalendar(BusinessDayCalendar.WEEKDAYS, 2000, 2030);
+        assertTrue(calendar.isBusinessDay(20140704));
+        assertEquals(20140103, calendar.getPrevBusinessDay(20140106));
+        assertEquals(20141225, calendar.getNextBusinessDay(20141224));
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * CurrencyWrapperTest.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.controller.io.FileUtils;
+import com.moneydance.apps.md.model.CurrencyType;
+import com.moneydance.apps.md.model.RootAccount;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that CurrencyWrapper daily rates agree with
+ * CurrencyType.getUserRateByDateInt on every day of (and beyond) the data
+ * file's date bounds, and that split factors agree with
+ * CurrencyType.adjustRateForSplitsInt
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class CurrencyWrapperTest {
+    private static final double delta = 0.0;
+    private static BulkSecInfo currentInfo;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        RootAccount root = FileUtils.readAccountsFromFile(BulkSecInfoTest.mdTestFile, null);
+        ReportConfig reportConfig = ReportConfig.getStandardReportConfig(TotalFromToReport.class);
+        currentInfo = new BulkSecInfo(root, reportConfig);
+    }
+
+    private static ArrayList<Integer> getTestDates() {
+        ArrayList<Integer> dateInts = new ArrayList<>();
+        int endDateInt = DateUtils.addMonthsInt(DateUtils.getLastCurrentDateInt(), 1);
+        // start before first transaction, end after today (outside daily rates)
+        for (int dateInt = DateUtils.addMonthsInt(currentInfo.getFirstDateInt(), -1); dateInt <= endDateInt;
+             dateInt = DateUtils.addDaysInt(dateInt, 1)) {
+            dateInts.add(dateInt);
+        }
+        return dateInts;
+    }
+
+    @Test
+    public void testUserRateByDateInt() throws Exception {
+        ArrayList<Integer> dateInts = getTestDates();
+        for (CurrencyWrapper currencyWrapper : currentInfo.getCurrencyWrappers().values()) {
+            for (int dateInt : dateInts) {
+                assertEquals(currencyWrapper.getTicker() + " " + dateInt,
+                        currencyWrapper.getCurrencyType().getUserRateByDateInt(dateInt),
+                        currencyWrapper.getUserRateByDateInt(dateInt), delta);
+            }
+        }
+    }
+
+    @Test
+    public void testBatchPrices() throws Exception {
+        ArrayList<Integer> dateList = getTestDates();
+        int[] dateInts = new int[dateList.size()];
+        double[] expected = new double[dateInts.length];
+        for (CurrencyWrapper currencyWrapper : currentInfo.getCurrencyWrappers().values()) {
+            for (int i = 0; i < dateInts.length; i++) {
+                dateInts[i] = dateList.get(i);
+                expected[i] = currencyWrapper.getPrice(dateInts[i]);
+            }
+            assertArrayEquals(expected, currencyWrapper.getPrices(dateInts), delta);
+            currencyWrapper.resetPrices();
+            assertArrayEquals(expected, currencyWrapper.getPrices(dateInts), delta);
+        }
+    }
+
+    @Test
+    public void testSplitFactor() throws Exception {
+        for (CurrencyWrapper currencyWrapper : currentInfo.getCurrencyWrappers().values()) {
+            CurrencyType currencyType = currencyWrapper.getCurrencyType();
+            // days either side of each split, plus "no prior transaction"
+            ArrayList<Integer> dateInts = new ArrayList<>();
+            dateInts.add(Integer.MIN_VALUE);
+            dateInts.add(currentInfo.getFirstDateInt());
+            for (int i = 0; i < currencyType.getSplitCount(); i++) {
+                int splitDateInt = currencyType.getSplit(i).getDateInt();
+                dateInts.add(DateUtils.addDaysInt(splitDateInt, -1));
+                dateInts.add(splitDateInt);
+                dateInts.add(DateUtils.addDaysInt(splitDateInt, 1));
+            }
+            dateInts.add(DateUtils.getLastCurrentDateInt());
+            for (int fromDateInt : dateInts) {
+                for (int toDateInt : dateInts) {
+                    if (toDateInt == Integer.MIN_VALUE) continue;
+                    double rate = currencyWrapper.getUserRateByDateInt(toDateInt);
+                    if (rate == 0.0) continue;
+                    double expected = currencyType.adjustRateForSplitsInt(fromDateInt, rate, toDateInt) / rate;
+                    assertEquals(currencyWrapper.getTicker() + " " + fromDateInt + "-" + toDateInt,
+                            expected, currencyWrapper.getSplitFactor(fromDateInt, toDateInt),
+                            Math.abs(expected) * 1e-12);
+                }
+            }
+        }
+    }
+}
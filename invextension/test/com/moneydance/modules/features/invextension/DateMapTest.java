@@ -0,0 +1,119 @@
+/*
+ * DateMapTest.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.moneydance.modules.features.invextension;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that the array-backed DateMap agrees with a TreeMap reference
+ * for in-order and out-of-order adds, and for plus/minus merges
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class DateMapTest {
+    private static final double delta = 1e-9;
+
+    @Test
+    public void testAddMatchesTreeMap() {
+        Random random = new Random(42);
+        DateMap dateMap = new DateMap();
+        TreeMap<Integer, Double> reference = new TreeMap<>();
+        for (int i = 0; i < 2000; i++) {
+            // mostly ascending dates, with some out of order and repeats
+            int dateInt = random.nextInt(10) < 8 ? DateUtils.addDaysInt(20000101, i)
+                    : DateUtils.addDaysInt(20000101, random.nextInt(i + 1));
+            double value = random.nextDouble() * 100 - 50;
+            dateMap.add(dateInt, value);
+            Double old = reference.get(dateInt);
+            reference.put(dateInt, old == null ? value : old + value);
+        }
+        checkEquals(reference, dateMap);
+        assertNull(dateMap.get(19991231));
+    }
+
+    @Test
+    public void testPlusMinus() {
+        DateMap map1 = new DateMap();
+        DateMap map2 = new DateMap();
+        map1.add(20100101, 1.0);
+        map1.add(20100301, 3.0);
+        map2.add(20100201, 2.0);
+        map2.add(20100301, 0.5);
+        map2.add(20100401, 4.0);
+
+        DateMap sum = map1.plus(map2);
+        assertArrayEquals(new int[]{20100101, 20100201, 20100301, 20100401}, sum.getDateInts());
+        assertArrayEquals(new double[]{1.0, 2.0, 3.5, 4.0}, sum.getValues(), delta);
+
+        DateMap difference = map1.minus(map2);
+        assertArrayEquals(new double[]{1.0, -2.0, 2.5, -4.0}, difference.getValues(), delta);
+
+        // operands are unchanged and null operand yields a copy
+        assertEquals(2, map1.size());
+        DateMap copy = map1.plus(null);
+        copy.add(20100101, 1.0);
+        assertEquals(1.0, map1.get(20100101), delta);
+    }
+
+    @Test
+    public void testRangeCopy() {
+        DateMap dateMap = new DateMap();
+        for (int i = 0; i < 10; i++) {
+            dateMap.add(DateUtils.addDaysInt(20100101, i), i);
+        }
+        DateMap range = new DateMap(dateMap, 3, 7);
+        assertArrayEquals(new double[]{3.0, 4.0, 5.0, 6.0}, range.getValues(), delta);
+        // start and end values added either side of range
+        range.add(20100101, -1.0);
+        range.add(20100201, 1.0);
+        assertEquals(6, range.size());
+        assertEquals(20100101, range.firstDateInt());
+        assertEquals(20100201, range.lastDateInt());
+        assertEquals(0, new DateMap(dateMap, 5, 5).size());
+    }
+
+    private static void checkEquals(TreeMap<Integer, Double> reference, DateMap dateMap) {
+        assertEquals(reference.size(), dateMap.size());
+        int i = 0;
+        for (Map.Entry<Integer, Double> entry : reference.entrySet()) {
+            assertEquals(entry.getKey().intValue(), dateMap.getDateInt(i));
+            assertEquals(entry.getValue(), dateMap.getValue(i), delta);
+            i++;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * DateUtilsTest.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Cross-checks the integer date arithmetic in DateUtils against
+ * GregorianCalendar for every day from 1900 through 2100
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class DateUtilsTest {
+    private static final int[] dayOffsets = {-400, -31, -1, 1, 29, 366, 3653};
+    private static final int[] monthOffsets = {-13, -12, -1, 1, 2, 11, 12, 25};
+    private static final TimeZone utc = TimeZone.getTimeZone("UTC");
+
+    private static int toDateInt(Calendar cal) {
+        return cal.get(Calendar.YEAR) * 10000 + (cal.get(Calendar.MONTH) + 1) * 100
+                + cal.get(Calendar.DAY_OF_MONTH);
+    }
+
+    private static GregorianCalendar toCal(int dateInt) {
+        GregorianCalendar cal = new GregorianCalendar(utc);
+        cal.clear();
+        cal.set(dateInt / 10000, (dateInt / 100) % 100 - 1, dateInt % 100);
+        return cal;
+    }
+
+    @Test
+    public void testAgainstCalendar() {
+        GregorianCalendar cal = toCal(19000101);
+        long excelStartMillis = toCal(18991231).getTimeInMillis();
+        int prevEpochDay = DateUtils.toEpochDay(18991231);
+        while (cal.get(Calendar.YEAR) <= 2100) {
+            int dateInt = toDateInt(cal);
+            int epochDay = DateUtils.toEpochDay(dateInt);
+            assertEquals(dateInt + " epoch day", prevEpochDay + 1, epochDay);
+            assertEquals(dateInt + " epoch millis", cal.getTimeInMillis() / DateUtils.MillisPerDay, epochDay);
+            assertEquals(dateInt, DateUtils.fromEpochDay(epochDay));
+            assertEquals(dateInt + " weekday", cal.get(Calendar.DAY_OF_WEEK), DateUtils.getDayOfWeek(dateInt));
+            assertEquals(dateInt + " days in month", cal.getActualMaximum(Calendar.DAY_OF_MONTH),
+                    DateUtils.getDaysInMonth(dateInt / 10000, (dateInt / 100) % 100));
+            assertEquals(dateInt + " excel", (double) ((cal.getTimeInMillis() - excelStartMillis)
+                    / DateUtils.MillisPerDay), DateUtils.getExcelDateValue(dateInt), 0.0);
+            for (int dayOffset : dayOffsets) {
+                GregorianCalendar expected = toCal(dateInt);
+                expected.add(Calendar.DATE, dayOffset);
+                assertEquals(dateInt + " + " + dayOffset + " days", toDateInt(expected),
+                        DateUtils.addDaysInt(dateInt, dayOffset));
+                assertEquals(Math.abs(dayOffset), DateUtils.getDaysBetween(dateInt, toDateInt(expected)));
+            }
+            for (int monthOffset : monthOffsets) {
+                GregorianCalendar expected = toCal(dateInt);
+                expected.add(Calendar.MONTH, monthOffset);
+                assertEquals(dateInt + " + " + monthOffset + " months", toDateInt(expected),
+                        DateUtils.addMonthsInt(dateInt, monthOffset));
+            }
+            prevEpochDay = epochDay;
+            cal.add(Calendar.DATE, 1);
+        }
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals(20140302, DateUtils.normalize(20140230));
+        assertEquals(20120301, DateUtils.normalize(20120230));
+        assertEquals(20150101, DateUtils.normalize(20141232));
+        assertEquals(20140302, DateUtils.addDaysInt(20140230, 0));
+        assertEquals(20140402, DateUtils.addMonthsInt(20140230, 1));
+    }
+}
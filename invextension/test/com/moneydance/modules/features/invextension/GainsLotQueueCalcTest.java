@@ -0,0 +1,250 @@
+/*
+ * GainsLotQueueCalcTest.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.model.RootAccount;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests relief order of the FIFO, LIFO and highest-cost lot queues, and
+ * basis they calculate over buys, a split and sells (loaded from a
+ * SyntheticDataGenerator.TradeFile)
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class GainsLotQueueCalcTest {
+    // unit costs of lots 0 to 5, in acquisition order
+    private static final double[] unitCosts = {10.0, 30.0, 20.0, 50.0, 40.0, 5.0};
+    private static final CostBasisMethod[] lotQueueMethods = {CostBasisMethod.FIFO,
+            CostBasisMethod.LIFO, CostBasisMethod.HIFO};
+    private static final double tolerance = 1e-9;
+
+    @Test
+    public void testFifoOrder() {
+        assertReliefOrder(new GainsFifoCalc(), new int[]{0, 1, 2, 3, 4, 5});
+    }
+
+    @Test
+    public void testLifoOrder() {
+        assertReliefOrder(new GainsLifoCalc(), new int[]{5, 4, 3, 2, 1, 0});
+    }
+
+    @Test
+    public void testHifoOrder() {
+        assertReliefOrder(new GainsHifoCalc(), new int[]{3, 4, 1, 2, 0, 5});
+    }
+
+    @Test
+    public void testHifoOrderAfterSplit() {
+        GainsHifoCalc calc = new GainsHifoCalc();
+        calc.lotLedger = new LotLedger();
+        calc.clearQueue();
+        calc.lotLedger.advance(1.0);
+        calc.offerLot(calc.lotLedger.addLot(-1, 20100101, 10.0, 300.0));
+        calc.lotLedger.advance(3.0); // 3:1 split, first lot now costs 10.0
+        calc.offerLot(calc.lotLedger.addLot(-1, 20110101, 10.0, 150.0));
+        assertEquals(1, calc.peekLot());
+        calc.pollLot();
+        assertEquals(0, calc.peekLot());
+        assertEquals(10.0, calc.lotLedger.getUnitCost(calc.peekLot()), 1e-9);
+    }
+
+    @Test
+    public void testFifoBasis() throws Exception {
+        SecurityAccountWrapper sec = getSecurity(loadBuySplitSell(CostBasisMethod.FIFO), "Test");
+        ArrayList<TransactionValues> transValues = getBuySplitSellValues(sec);
+        // 20 shares of lot 0 at 5.0, 5 of lot 1 at 15.0
+        assertEquals(500.0 - 100.0 - 75.0, last(transValues).getLongBasis(), tolerance);
+        // lot 1 partially relieved
+        assertEquals(0.0, sec.getLotLedger().getQuantity(0), tolerance);
+        assertEquals(15.0, sec.getLotLedger().getQuantity(1), tolerance);
+        assertEquals(10.0, sec.getLotLedger().getQuantity(2), tolerance);
+    }
+
+    @Test
+    public void testLifoBasis() throws Exception {
+        SecurityAccountWrapper sec = getSecurity(loadBuySplitSell(CostBasisMethod.LIFO), "Test");
+        ArrayList<TransactionValues> transValues = getBuySplitSellValues(sec);
+        // 10 shares of lot 2 at 10.0, 15 of lot 1 at 15.0
+        assertEquals(500.0 - 100.0 - 225.0, last(transValues).getLongBasis(), tolerance);
+        assertEquals(20.0, sec.getLotLedger().getQuantity(0), tolerance);
+        assertEquals(5.0, sec.getLotLedger().getQuantity(1), tolerance);
+        assertEquals(0.0, sec.getLotLedger().getQuantity(2), tolerance);
+    }
+
+    @Test
+    public void testHifoBasis() throws Exception {
+        SecurityAccountWrapper sec = getSecurity(loadBuySplitSell(CostBasisMethod.HIFO), "Test");
+        ArrayList<TransactionValues> transValues = getBuySplitSellValues(sec);
+        // 20 shares of lot 1 at 15.0, 5 of lot 2 at 10.0
+        assertEquals(500.0 - 300.0 - 50.0, last(transValues).getLongBasis(), tolerance);
+        assertEquals(20.0, sec.getLotLedger().getQuantity(0), tolerance);
+        assertEquals(0.0, sec.getLotLedger().getQuantity(1), tolerance);
+        assertEquals(5.0, sec.getLotLedger().getQuantity(2), tolerance);
+    }
+
+    @Test
+    public void testShortToLongCrossing() throws Exception {
+        SyntheticDataGenerator.TradeFile tradeFile = new SyntheticDataGenerator.TradeFile();
+        int test = tradeFile.addSecurity("Test");
+        tradeFile.shortSell(test, 20100104, 10.0, 200.0);
+        // buy 30 covers short of 10, only long position of 20 is a lot
+        tradeFile.buy(test, 20100201, 30.0, 600.0);
+        tradeFile.sell(test, 20100215, 5.0, 150.0);
+        RootAccount root = tradeFile.generateRootAccount();
+        for (CostBasisMethod method : lotQueueMethods) {
+            SecurityAccountWrapper sec = getSecurity(loadTrades(root, method), "Test");
+            ArrayList<TransactionValues> transValues = sec.getTransactionValues();
+            assertEquals(method.name(), 3, transValues.size());
+            assertEquals(method.name(), 0.0, transValues.get(0).getLongBasis(), tolerance);
+            assertEquals(method.name(), 600.0, transValues.get(1).getLongBasis(), tolerance);
+            assertEquals(method.name(), 600.0 - 5.0 * 30.0, transValues.get(2).getLongBasis(), tolerance);
+            assertEquals(method.name(), 1, sec.getLotLedger().size());
+            assertEquals(method.name(), 15.0, sec.getLotLedger().getQuantity(0), tolerance);
+        }
+    }
+
+    @Test
+    public void testQueueRebuiltOnSecuritySwitch() throws Exception {
+        SyntheticDataGenerator.TradeFile tradeFile = new SyntheticDataGenerator.TradeFile();
+        int a = tradeFile.addSecurity("A");
+        int b = tradeFile.addSecurity("B");
+        tradeFile.buy(a, 20100104, 10.0, 100.0);
+        tradeFile.buy(a, 20100201, 10.0, 300.0);
+        tradeFile.sell(a, 20100215, 15.0, 450.0);
+        tradeFile.buy(b, 20100104, 5.0, 50.0);
+        tradeFile.sell(b, 20100215, 2.0, 30.0);
+        BulkSecInfo currentInfo = loadTrades(tradeFile.generateRootAccount(), CostBasisMethod.FIFO);
+        SecurityAccountWrapper secA = getSecurity(currentInfo, "A");
+        SecurityAccountWrapper secB = getSecurity(currentInfo, "B");
+        ArrayList<TransactionValues> transValuesA = secA.getTransactionValues();
+        ArrayList<TransactionValues> transValuesB = secB.getTransactionValues();
+        // securities share one calculator; interleave their transactions
+        GainsCalc calc = secA.getInvAcctWrapper().getGainsCalc();
+        calc.initializeGainsCalc(currentInfo, transValuesA.get(1), priorTo(transValuesA, 1));
+        assertEquals(400.0, calc.getLongBasis(), tolerance);
+        calc.initializeGainsCalc(currentInfo, transValuesB.get(0), priorTo(transValuesB, 0));
+        assertEquals(50.0, calc.getLongBasis(), tolerance);
+        // queue must hold lots of A again, not the lot of B
+        calc.initializeGainsCalc(currentInfo, transValuesA.get(2), priorTo(transValuesA, 2));
+        assertEquals(400.0 - 100.0 - 150.0, calc.getLongBasis(), tolerance);
+        calc.initializeGainsCalc(currentInfo, transValuesB.get(1), priorTo(transValuesB, 1));
+        assertEquals(50.0 - 20.0, calc.getLongBasis(), tolerance);
+    }
+
+    @Test
+    public void testQueueRebuiltOnReplay() throws Exception {
+        RootAccount root = getBuySplitSellFile().generateRootAccount();
+        for (CostBasisMethod method : lotQueueMethods) {
+            BulkSecInfo currentInfo = loadTrades(root, method);
+            SecurityAccountWrapper sec = getSecurity(currentInfo, "Test");
+            ArrayList<TransactionValues> transValues = getBuySplitSellValues(sec);
+            double sellBasis = last(transValues).getLongBasis();
+            // ledger has applied all four transactions, so is rebuilt from prior ones
+            GainsCalc calc = sec.getInvAcctWrapper().getGainsCalc();
+            calc.initializeGainsCalc(currentInfo, transValues.get(3), priorTo(transValues, 3));
+            assertEquals(method.name(), sellBasis, calc.getLongBasis(), tolerance);
+            calc.initializeGainsCalc(currentInfo, transValues.get(2), priorTo(transValues, 2));
+            assertEquals(method.name(), 500.0, calc.getLongBasis(), tolerance);
+        }
+    }
+
+    /**
+     * buys 10 at 10.0 and 10 at 30.0, splits 2:1 (unit costs become 5.0 and
+     * 15.0), buys 10 at 10.0 and sells 25
+     */
+    private static SyntheticDataGenerator.TradeFile getBuySplitSellFile() {
+        SyntheticDataGenerator.TradeFile tradeFile = new SyntheticDataGenerator.TradeFile();
+        int test = tradeFile.addSecurity("Test");
+        tradeFile.buy(test, 20100104, 10.0, 100.0);
+        tradeFile.buy(test, 20100201, 10.0, 300.0);
+        tradeFile.addSplit(test, 20100301, 2.0);
+        tradeFile.buy(test, 20100401, 10.0, 100.0);
+        tradeFile.sell(test, 20100501, 25.0, 250.0);
+        return tradeFile;
+    }
+
+    private static BulkSecInfo loadBuySplitSell(CostBasisMethod method) throws Exception {
+        return loadTrades(getBuySplitSellFile().generateRootAccount(), method);
+    }
+
+    private static ArrayList<TransactionValues> getBuySplitSellValues(SecurityAccountWrapper sec)
+            throws Exception {
+        ArrayList<TransactionValues> transValues = sec.getTransactionValues();
+        assertEquals(4, transValues.size());
+        assertEquals(400.0, transValues.get(1).getLongBasis(), tolerance);
+        assertEquals(500.0, transValues.get(2).getLongBasis(), tolerance);
+        return transValues;
+    }
+
+    private static BulkSecInfo loadTrades(RootAccount root, CostBasisMethod method) throws Exception {
+        ReportConfig reportConfig = ReportConfig.getStandardReportConfig(TotalFromToReport.class);
+        reportConfig.setCostBasisMethod(method);
+        return new BulkSecInfo(root, reportConfig);
+    }
+
+    private static SecurityAccountWrapper getSecurity(BulkSecInfo currentInfo, String name) {
+        for (InvestmentAccountWrapper invAcctWrapper : currentInfo.getInvestmentWrappers()) {
+            for (SecurityAccountWrapper securityAccountWrapper : invAcctWrapper.getSecurityAccountWrappers()) {
+                if (securityAccountWrapper.getName().equals(name)) return securityAccountWrapper;
+            }
+        }
+        throw new AssertionError("No security " + name);
+    }
+
+    private static ArrayList<TransactionValues> priorTo(ArrayList<TransactionValues> transValues, int index) {
+        return new ArrayList<>(transValues.subList(0, index));
+    }
+
+    private static TransactionValues last(ArrayList<TransactionValues> transValues) {
+        return transValues.get(transValues.size() - 1);
+    }
+
+    private static void assertReliefOrder(GainsLotQueueCalc calc, int[] expectedOrder) {
+        calc.lotLedger = new LotLedger();
+        calc.clearQueue();
+        calc.lotLedger.advance(1.0);
+        for (int i = 0; i < unitCosts.length; i++) {
+            calc.offerLot(calc.lotLedger.addLot(-1, 20100101 + i, 10.0, 10.0 * unitCosts[i]));
+        }
+        for (int expectedLot : expectedOrder) {
+            int lot = calc.peekLot();
+            assertEquals(expectedLot, lot);
+            calc.lotLedger.relieve(lot, 10.0);
+            calc.pollLot();
+        }
+        assertEquals(-1, calc.peekLot());
+    }
+}
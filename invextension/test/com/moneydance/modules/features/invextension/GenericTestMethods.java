@@ -94,7 +94,7 @@ public class GenericTestMethods {
             SecurityFromToReport securityFromToReport = (SecurityFromToReport) securityReport;
             securityFromToReports.add(securityFromToReport);
             testDateMap = testDateMap
-                    .combine(securityFromToReport.getMdMap(), "add");
+                    .plus(securityFromToReport.getMdMap());
             testIncome += securityFromToReport.income;
             testExpense += securityFromToReport.getExpense();
             testStartValue += securityFromToReport.getStartValue();
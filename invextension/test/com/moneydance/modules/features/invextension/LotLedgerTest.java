@@ -0,0 +1,96 @@
+/*
+ * LotLedgerTest.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests lot lookup, relief and split adjustment of LotLedger
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class LotLedgerTest {
+    private static final double delta = 1e-9;
+
+    @Test
+    public void testLookupAcrossGrowth() {
+        LotLedger lotLedger = new LotLedger();
+        for (int i = 0; i < 1000; i++) {
+            lotLedger.advance(1.0);
+            lotLedger.addLot(1000L * i + 7, 20100101 + i, 10.0, 100.0 + i);
+        }
+        assertEquals(1000, lotLedger.size());
+        assertEquals(1000, lotLedger.getAppliedCount());
+        for (int i = 0; i < 1000; i++) {
+            int lot = lotLedger.getLot(1000L * i + 7);
+            assertEquals(i, lot);
+            assertEquals(20100101 + i, lotLedger.getAcquisitionDateInt(lot));
+            assertEquals((100.0 + i) / 10.0, lotLedger.getUnitCost(lot), delta);
+        }
+        assertEquals(-1, lotLedger.getLot(8L));
+    }
+
+    @Test
+    public void testSplitAdjustment() {
+        LotLedger lotLedger = new LotLedger();
+        lotLedger.advance(1.0);
+        int first = lotLedger.addLot(1L, 20100101, 100.0, 1000.0);
+        lotLedger.advance(2.0); // 2:1 split
+        int second = lotLedger.addLot(2L, 20110101, 50.0, 1000.0);
+        assertEquals(200.0, lotLedger.getQuantity(first), delta);
+        assertEquals(5.0, lotLedger.getUnitCost(first), delta);
+        assertEquals(20.0, lotLedger.getUnitCost(second), delta);
+
+        assertEquals(150.0, lotLedger.relieve(first, 150.0), delta);
+        lotLedger.advance(0.5); // 1:2 reverse split
+        assertEquals(25.0, lotLedger.getQuantity(first), delta);
+        assertEquals(10.0, lotLedger.getUnitCost(first), delta);
+        assertEquals(25.0, lotLedger.getQuantity(second), delta);
+        assertEquals(25.0, lotLedger.relieve(second, 40.0), delta);
+        assertEquals(0.0, lotLedger.getQuantity(second), delta);
+    }
+
+    @Test
+    public void testProportionalRelief() {
+        LotLedger lotLedger = new LotLedger();
+        lotLedger.advance(1.0);
+        int first = lotLedger.addLot(1L, 20100101, 100.0, 1000.0);
+        int second = lotLedger.addLot(2L, 20100102, 300.0, 6000.0);
+        lotLedger.relieveProportionally(0.25);
+        assertEquals(75.0, lotLedger.getQuantity(first), delta);
+        assertEquals(225.0, lotLedger.getQuantity(second), delta);
+        lotLedger.relieveAll();
+        assertEquals(0.0, lotLedger.getQuantity(second), delta);
+        assertEquals(20.0, lotLedger.getUnitCost(second), delta);
+    }
+}
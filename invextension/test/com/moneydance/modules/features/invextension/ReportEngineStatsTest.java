@@ -0,0 +1,126 @@
+/*
+ * ReportEngineStatsTest.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests report engine counters, histograms and MXBean registration
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class ReportEngineStatsTest {
+
+    @Test
+    public void testHistogramBuckets() {
+        assertEquals(0, ReportEngineStats.LatencyHistogram.getBucket(0));
+        assertEquals(0, ReportEngineStats.LatencyHistogram.getBucket(1023));
+        assertEquals(1, ReportEngineStats.LatencyHistogram.getBucket(1024));
+        assertEquals(1, ReportEngineStats.LatencyHistogram.getBucket(2047));
+        assertEquals(2, ReportEngineStats.LatencyHistogram.getBucket(2048));
+        assertEquals(ReportEngineStats.LatencyHistogram.NUM_BUCKETS - 1,
+                ReportEngineStats.LatencyHistogram.getBucket(Long.MAX_VALUE));
+
+        ReportEngineStats.LatencyHistogram histogram = new ReportEngineStats.LatencyHistogram();
+        for (int i = 0; i < 99; i++) histogram.record(1500); // bucket 1, < 2 us
+        histogram.record(5000000); // bucket 13, < 8388 us
+        assertEquals(100, histogram.getTotalCount());
+        assertEquals(2, histogram.getPercentileMicros(0.5));
+        assertEquals(2, histogram.getPercentileMicros(0.99));
+        assertEquals(8388, histogram.getPercentileMicros(1.0));
+    }
+
+    @Test
+    public void testStripedCounter() throws Exception {
+        final ReportEngineStats.StripedCounter counter = new ReportEngineStats.StripedCounter();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) counter.add(1);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(80000, counter.sum());
+        counter.reset();
+        assertEquals(0, counter.sum());
+    }
+
+    @Test
+    public void testRegisteredAttributes() throws Exception {
+        ReportEngineStats stats = ReportEngineStats.getInstance();
+        stats.reset();
+        ReportProfiler.reset();
+        long startTime = ReportProfiler.startTime();
+        ReportProfiler.record(ReportProfiler.Phase.TRANSACTION_VALUES, startTime, 25);
+        XIRR.Solver solver = new XIRR.Solver();
+        solver.xirr(new double[]{-1000, 1100}, new double[]{0, 365}, 2, 1.0);
+        solver.publish();
+        stats.recordAccountCache(3, 1);
+        stats.recordPriceFallbackLookup();
+        stats.recordReportRun(startTime, null);
+
+        ReportEngineStats.register();
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(ReportEngineStats.OBJECT_NAME);
+        try {
+            assertTrue(mBeanServer.isRegistered(objectName));
+            assertEquals(1L, mBeanServer.getAttribute(objectName, "ReportRuns"));
+            assertEquals(25L, mBeanServer.getAttribute(objectName, "TransactionsProcessed"));
+            assertEquals(1L, mBeanServer.getAttribute(objectName, "XirrSolves"));
+            assertEquals(0L, mBeanServer.getAttribute(objectName, "XirrFailures"));
+            assertEquals(0.75, (Double) mBeanServer.getAttribute(objectName, "AccountCacheHitRate"), 1e-12);
+            assertEquals(1L, mBeanServer.getAttribute(objectName, "PriceFallbackLookups"));
+            assertEquals(ReportEngineStats.LatencyHistogram.NUM_BUCKETS,
+                    ((String[]) mBeanServer.getAttribute(objectName, "LatencyHistogramBuckets")).length);
+            // maps are exposed as open (tabular) data
+            assertTrue(mBeanServer.getAttribute(objectName, "PhaseLatencyHistograms")
+                    instanceof TabularData);
+            ReportEngineStats.register(); // re-registration replaces prior instance
+            assertTrue(mBeanServer.isRegistered(objectName));
+        } finally {
+            ReportEngineStats.unregister();
+        }
+        assertFalse(mBeanServer.isRegistered(objectName));
+    }
+}
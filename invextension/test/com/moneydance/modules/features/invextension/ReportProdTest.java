@@ -442,7 +442,7 @@ public class ReportProdTest {
             SecurityFromToReport securityFromToReport = (SecurityFromToReport) securityReport;
             securityFromToReports.add(securityFromToReport);
             testDateMap = testDateMap
-                    .combine(securityFromToReport.getMdMap(), "add");
+                    .plus(securityFromToReport.getMdMap());
             testIncome += securityFromToReport.income;
             testExpense += securityFromToReport.getExpense();
             testStartValue += securityFromToReport.getStartValue();
@@ -540,7 +540,7 @@ public class ReportProdTest {
                 reportLeafCount = compositeReport.getSecurityReports().size();
             } else if (compositeReport.getCompositeType() == CompositeReport.COMPOSITE_TYPE.FIRST) {
                 testLeafCount += compositeReport.getSecurityReports().size();
-                testDateMap = testDateMap.combine(aggregateReport.getMdMap(), "add");
+                testDateMap = testDateMap.plus(aggregateReport.getMdMap());
                 testIncome += aggregateReport.income;
                 testExpense += aggregateReport.getExpense();
                 testStartValue += aggregateReport.getStartValue();
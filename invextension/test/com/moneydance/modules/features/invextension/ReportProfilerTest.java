@@ -0,0 +1,95 @@
+/*
+ * ReportProfilerTest.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests phase recording and the rolling profile file
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class ReportProfilerTest {
+
+    @Test
+    public void testRecordPhases() throws Exception {
+        ReportProfiler.reset();
+        long startTime = ReportProfiler.startTime();
+        ReportProfiler.record(ReportProfiler.Phase.LEAF_REPORTS, startTime, 3);
+        ReportProfiler.record(ReportProfiler.Phase.LEAF_REPORTS, startTime, 2);
+        assertEquals(5, ReportProfiler.getPhaseCount(ReportProfiler.Phase.LEAF_REPORTS));
+        assertTrue(ReportProfiler.getPhaseNanos(ReportProfiler.Phase.LEAF_REPORTS) >= 0);
+
+        double[] oneYear = {0, 365};
+        XIRR.Solver solver = new XIRR.Solver();
+        solver.xirr(new double[]{-1000, 1100}, oneYear, 2, 1.0);
+        solver.xirr(new double[]{1000, 1100}, oneYear, 2, 1.0); // no sign change
+        assertEquals(2, solver.getSolves());
+        assertEquals(1, solver.getFailures());
+        // nothing recorded until solves are published
+        assertEquals(0, ReportProfiler.getPhaseCount(ReportProfiler.Phase.XIRR));
+        solver.publish();
+        assertEquals(0, solver.getSolves());
+        assertEquals(2, ReportProfiler.getPhaseCount(ReportProfiler.Phase.XIRR));
+        assertEquals(1, ReportProfiler.getXirrNonConverged());
+        assertTrue(ReportProfiler.getXirrIterations() > 0);
+        assertTrue(ReportProfiler.getSummary().contains("1 not converged"));
+
+        ReportProfiler.reset();
+        assertEquals(0, ReportProfiler.getPhaseCount(ReportProfiler.Phase.XIRR));
+        assertEquals(0, ReportProfiler.getXirrIterations());
+    }
+
+    @Test
+    public void testRollingProfileFile() throws Exception {
+        File outputDirectory = Files.createTempDirectory("reportProfile").toFile();
+        ReportProfiler.reset();
+        File profileFile = null;
+        for (int i = 0; i < ReportProfiler.MAX_PROFILE_ROWS + 5; i++) {
+            profileFile = ReportProfiler.appendProfile(outputDirectory, "Report, " + i);
+        }
+        ArrayList<String[]> lines = IOUtils.readCSVIntoArrayList(profileFile);
+        assertEquals(ReportProfiler.MAX_PROFILE_ROWS + 1, lines.size());
+        assertEquals(ReportProfiler.listProfileHeader().toString(), IOUtils.writeCSVLine(lines.get(0)));
+        assertEquals(lines.get(0).length, lines.get(1).length);
+        assertEquals("Report  " + (ReportProfiler.MAX_PROFILE_ROWS + 4), lines.get(lines.size() - 1)[1]);
+        assertEquals("Report  5", lines.get(1)[1]);
+        assertTrue(profileFile.delete());
+        assertTrue(outputDirectory.delete());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * RollingReturnReportTest.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.controller.io.FileUtils;
+import com.moneydance.apps.md.model.RootAccount;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests month-end dates of rolling return report, and that rolling
+ * returns agree with "From/To" reports over the same windows
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class RollingReturnReportTest {
+    private static final double delta = 1e-6;
+
+    @Test
+    public void testMonthEndDateInts() {
+        // 2014-05-31 and 2014-08-31 are weekends
+        assertArrayEquals(new int[]{20140430, 20140530, 20140630, 20140731, 20140829},
+                RollingReturnReport.getMonthEndDateInts(20140415, 20140910));
+        assertArrayEquals(new int[0], RollingReturnReport.getMonthEndDateInts(20140401, 20140415));
+    }
+
+    @Test
+    public void testMatchesFromToReports() throws Exception {
+        RootAccount root = FileUtils.readAccountsFromFile(BulkSecInfoTest.mdTestFile, null);
+        ReportConfig reportConfig = ReportConfig.getStandardReportConfig(TotalFromToReport.class);
+        BulkSecInfo currentInfo = new BulkSecInfo(root, reportConfig);
+        Aggregator aggregator = reportConfig.getAggregationController().getFirstAggregator();
+        DateRange dateRange = reportConfig.getDateRange();
+        RollingReturnReport rollingReport = new RollingReturnReport(aggregator, new int[]{12},
+                DateUtils.addMonthsInt(dateRange.getToDateInt(), -3), dateRange.getToDateInt());
+        rollingReport.calcReport(currentInfo);
+
+        HashMap<String, Object[]> rows = new HashMap<>();
+        for (Object[] row : rollingReport.getReportTable()) {
+            rows.put(row[0] + ":" + row[1] + ":" + row[3], row);
+        }
+        int[] toDateInts = RollingReturnReport.getMonthEndDateInts(
+                DateUtils.addMonthsInt(dateRange.getToDateInt(), -3), dateRange.getToDateInt());
+        assertTrue(toDateInts.length > 0);
+        for (int toDateInt : toDateInts) {
+            int fromDateInt = DateUtils.getLatestBusinessDay(DateUtils.addMonthsInt(toDateInt, -12));
+            TotalFromToReport report = new TotalFromToReport(reportConfig,
+                    new DateRange(fromDateInt, toDateInt, toDateInt));
+            report.calcReport(currentInfo);
+            for (CompositeReport compositeReport : report.getCompositeReports()) {
+                if (compositeReport.getCompositeType() == CompositeReport.COMPOSITE_TYPE.ALL) {
+                    assertReturns(rows.get("ALL:ALL:" + toDateInt),
+                            (SecurityFromToReport) compositeReport.getAggregateReport());
+                }
+            }
+            for (SecurityReport securityReport : report.getSecurityReports()) {
+                SecurityAccountWrapper secWrapper = securityReport.getSecurityAccountWrapper();
+                Object[] row = rows.get(secWrapper.getAggregator(aggregator).getAggregateName().trim()
+                        + ":" + secWrapper.getName() + ":" + toDateInt);
+                if (row != null) assertReturns(row, (SecurityFromToReport) securityReport);
+            }
+        }
+    }
+
+    private static void assertReturns(Object[] row, SecurityFromToReport report) {
+        assertEquals(report.getMdReturn(), (Double) row[6], delta);
+        assertEquals(report.getAnnualPercentReturn(), (Double) row[7], delta);
+    }
+}
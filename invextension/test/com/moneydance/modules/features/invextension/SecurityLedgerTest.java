@@ -0,0 +1,141 @@
+/*
+ * SecurityLedgerTest.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.controller.io.FileUtils;
+import com.moneydance.apps.md.model.RootAccount;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the columnar SecurityLedger reproduces the TransactionValues
+ * it was built from, and that its date searches agree with
+ * SecurityAccountWrapper
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class SecurityLedgerTest {
+    private static final double delta = 0.0;
+    private static BulkSecInfo currentInfo;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        RootAccount root = FileUtils.readAccountsFromFile(BulkSecInfoTest.mdTestFile, null);
+        ReportConfig reportConfig = ReportConfig.getStandardReportConfig(TotalFromToReport.class);
+        currentInfo = new BulkSecInfo(root, reportConfig);
+    }
+
+    @Test
+    public void testLedgerMatchesTransactionValues() throws Exception {
+        for (InvestmentAccountWrapper invWrapper : currentInfo.getInvestmentWrappers()) {
+            for (SecurityAccountWrapper secWrapper : invWrapper.getSecurityAccountWrappers()) {
+                ArrayList<TransactionValues> transSet = secWrapper.getTransactionValues();
+                SecurityLedger ledger = secWrapper.getLedger();
+                assertEquals(transSet.size(), ledger.size());
+                SecurityLedger.Cursor cursor = ledger.cursor();
+                for (TransactionValues transactionValues : transSet) {
+                    assertTrue(cursor.next());
+                    assertEquals(transactionValues.getDateint(), cursor.getDateInt());
+                    assertEquals(transactionValues.getTxnID(), cursor.getTxnId(), delta);
+                    assertEquals(transactionValues.getInvestTxnType(), cursor.getInvestTxnType());
+                    assertEquals(transactionValues.getTotalFlows(), cursor.getTotalFlows(), delta);
+                    assertEquals(transactionValues.getBuySellFlows(), cursor.getBuySellFlows(), delta);
+                    assertEquals(transactionValues.getTransfer(), cursor.getTransfer(), delta);
+                    assertEquals(transactionValues.getPosition(), cursor.getPosition(), delta);
+                    assertEquals(transactionValues.getLongBasis(), cursor.getLongBasis(), delta);
+                    assertEquals(transactionValues.getShortBasis(), cursor.getShortBasis(), delta);
+                    assertEquals(transactionValues.getPerRealizedGain(), cursor.getPerRealizedGain(), delta);
+                }
+                assertTrue(!cursor.next());
+            }
+        }
+    }
+
+    @Test
+    public void testFromToIndices() throws Exception {
+        for (InvestmentAccountWrapper invWrapper : currentInfo.getInvestmentWrappers()) {
+            for (SecurityAccountWrapper secWrapper : invWrapper.getSecurityAccountWrappers()) {
+                for (TransactionValues transactionValues : secWrapper.getTransactionValues()) {
+                    int dateInt = transactionValues.getDateint();
+                    checkFromToIndices(secWrapper, new DateRange(dateInt, dateInt, dateInt));
+                    checkFromToIndices(secWrapper, new DateRange(DateUtils.addDaysInt(dateInt, -1),
+                            DateUtils.addDaysInt(dateInt, 30), DateUtils.addDaysInt(dateInt, 30)));
+                    checkFromToIndices(secWrapper, new DateRange(DateUtils.addMonthsInt(dateInt, -12),
+                            dateInt, dateInt));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPrefixSums() throws Exception {
+        for (InvestmentAccountWrapper invWrapper : currentInfo.getInvestmentWrappers()) {
+            for (SecurityAccountWrapper secWrapper : invWrapper.getSecurityAccountWrappers()) {
+                ArrayList<TransactionValues> transSet = secWrapper.getTransactionValues();
+                SecurityLedger ledger = secWrapper.getLedger();
+                for (int from = 0; from < transSet.size(); from++) {
+                    double income = 0.0;
+                    double realizedGain = 0.0;
+                    double buy = 0.0;
+                    for (int to = from; to < transSet.size(); to++) {
+                        TransactionValues transactionValues = transSet.get(to);
+                        income += transactionValues.getIncome();
+                        realizedGain += transactionValues.getPerRealizedGain();
+                        buy += transactionValues.getBuy() == 0.0 ? 0.0
+                                : -transactionValues.getBuy() - transactionValues.getCommission();
+                        assertEquals(income, ledger.sum(SecurityLedger.FlowColumn.INCOME, from, to), 1e-6);
+                        assertEquals(realizedGain,
+                                ledger.sum(SecurityLedger.FlowColumn.REALIZED_GAIN, from, to), 1e-6);
+                        assertEquals(buy, ledger.sum(SecurityLedger.FlowColumn.BUY, from, to), 1e-6);
+                    }
+                    assertEquals(0.0, ledger.sum(SecurityLedger.FlowColumn.EXPENSE, from, from - 1), 0.0);
+                }
+            }
+        }
+    }
+
+    private static void checkFromToIndices(SecurityAccountWrapper secWrapper, DateRange dateRange) {
+        ArrayList<Integer> expected = secWrapper.getFromToIndices(dateRange);
+        int[] actual = secWrapper.getLedger().getFromToIndices(dateRange);
+        if (expected.isEmpty()) {
+            assertNull(actual);
+        } else {
+            assertArrayEquals(new int[]{expected.get(0), expected.get(1)}, actual);
+        }
+    }
+}
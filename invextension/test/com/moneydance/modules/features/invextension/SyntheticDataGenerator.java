@@ -0,0 +1,766 @@
+/*
+ * SyntheticDataGenerator.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.controller.io.FileUtils;
+import com.moneydance.apps.md.model.RootAccount;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates large synthetic Moneydance data files for scale testing.
+ * Investment accounts hold securities drawn from a shared pool, each
+ * security with its own random-walk price history and splits.  Long
+ * holdings are bought, sold (some sells carry cost-basis lot tags) and
+ * paid dividends, which some holdings reinvest; short holdings are
+ * shorted and covered.  Output depends only on the configuration and
+ * the seed, so the same dataset can be rebuilt at any scale.
+ * <p/>
+ * The data file is written in Moneydance's clear-text format and read
+ * back through FileUtils, so the resulting RootAccount is loaded exactly
+ * as a user's file would be.  TradeFile writes small hand-specified
+ * datasets in the same format.
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+@SuppressWarnings("unused")
+public class SyntheticDataGenerator {
+    public static final long DEFAULT_SEED = 20140101L;
+    private static final String nl = "\n";
+    private static final long baseCurrencyId = 1;
+    private static final long rootAccountId = 0;
+    private static final long checkingAccountId = 1;
+    private static final long dividendAccountId = 2;
+    private static final long commissionAccountId = 3;
+    private static final long firstInvestmentAccountId = 10;
+    private static final long baseEntryMillis = 1262304000000L;
+    private static final double[] splitRatios = {2.0, 3.0, 1.5};
+    private static final String[] stockSubTypes = {"Large Cap", "Mid Cap", "Small Cap"};
+    private static final MathContext rateContext = new MathContext(12);
+
+    private final long seed;
+    private int numInvestmentAccounts = 5;
+    private int numSecurities = 20;
+    private int securitiesPerAccount = 8;
+    private int shortHoldingsPerAccount = 1;
+    private int startDateInt = 20040102;
+    private int years = 10;
+    private int snapshotInterval = 5;
+    private int splitsPerSecurity = 1;
+    private int tradesPerHolding = 24;
+    private double dividendReinvestFraction = 0.3;
+    private double lotMatchFraction = 0.5;
+
+    private Random random;
+    private long nextTxnId;
+
+    public SyntheticDataGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Generator for a multiple of the default (production-sized) dataset;
+     * investment accounts and the security pool grow with the scale, so
+     * holdings, transactions and price history all grow proportionally.
+     *
+     * @param scale multiple of default size (e.g. 10, 100, 1000)
+     * @param seed  random seed
+     * @return scaled generator
+     */
+    public static SyntheticDataGenerator getScaledGenerator(int scale, long seed) {
+        SyntheticDataGenerator generator = new SyntheticDataGenerator(seed);
+        generator.setNumInvestmentAccounts(generator.numInvestmentAccounts * scale);
+        generator.setNumSecurities(generator.numSecurities * scale);
+        return generator;
+    }
+
+    /**
+     * Writes the data file to a temporary directory and loads it.
+     *
+     * @return root account of generated data
+     * @throws Exception
+     */
+    public RootAccount generateRootAccount() throws Exception {
+        File directory = Files.createTempDirectory("synthetic").toFile();
+        return readDataFile(directory, writeDataFile(directory));
+    }
+
+    private static RootAccount readDataFile(File directory, File dataFile) throws Exception {
+        RootAccount root = FileUtils.readAccountsFromFile(dataFile, null);
+        dataFile.deleteOnExit();
+        dataFile.getParentFile().deleteOnExit();
+        directory.deleteOnExit();
+        return root;
+    }
+
+    /**
+     * Writes root.mdinternal to a ".moneydance" directory under the
+     * directory given.
+     *
+     * @param directory parent directory
+     * @return data file written
+     * @throws IOException
+     */
+    public File writeDataFile(File directory) throws IOException {
+        File mdDirectory = new File(directory, getName() + ".moneydance");
+        if (!mdDirectory.isDirectory() && !mdDirectory.mkdirs())
+            throw new IOException("Cannot create directory " + mdDirectory.getAbsolutePath());
+        File dataFile = new File(mdDirectory, "root.mdinternal");
+        File txnFile = File.createTempFile("syntheticTxns", ".mdinternal", directory);
+        random = new Random(seed);
+        nextTxnId = 1;
+        int[] dateInts = getBusinessDateInts();
+        ArrayList<ArrayList<Holding>> holdingsBySecurity = assignHoldings();
+
+        try {
+            // transactions follow all currencies and accounts, so are held in
+            // txnFile until those are written
+            try (BufferedWriter out = new BufferedWriter(new FileWriter(dataFile));
+                 BufferedWriter txnOut = new BufferedWriter(new FileWriter(txnFile))) {
+                out.write("mdkv1/clear:v=2009" + nl);
+                out.write("curr:id=" + baseCurrencyId + "&ids=USD&nm=US Dollar&rrt=1.0&dec=2&pref=$&suff=&tick=&dt="
+                        + dateInts[dateInts.length - 1] + "&type=0&tag.hide_in_ui=n" + nl);
+                for (int i = 0; i < numSecurities; i++) {
+                    writeSecurity(out, txnOut, i, dateInts, holdingsBySecurity.get(i));
+                }
+                writeAccounts(out, txnOut, dateInts[0], holdingsBySecurity);
+            }
+            try (BufferedWriter out = new BufferedWriter(new FileWriter(dataFile, true));
+                 BufferedReader txnIn = new BufferedReader(new FileReader(txnFile))) {
+                String line;
+                while ((line = txnIn.readLine()) != null) {
+                    out.write(line);
+                    out.write(nl);
+                }
+                out.write("olinfo:info={%0A}%0A" + nl);
+            }
+        } finally {
+            if (!txnFile.delete()) txnFile.deleteOnExit();
+        }
+        return dataFile;
+    }
+
+    public String getName() {
+        return "synthetic_" + numInvestmentAccounts + "x" + numSecurities + "_" + seed;
+    }
+
+    private int[] getBusinessDateInts() {
+        int endDateInt = DateUtils.addMonthsInt(startDateInt, 12 * years);
+        ArrayList<Integer> dateIntList = new ArrayList<>();
+        for (int dateInt = startDateInt; dateInt <= endDateInt; dateInt = DateUtils.addDaysInt(dateInt, 1)) {
+            if (DateUtils.isBusinessDay(dateInt)) dateIntList.add(dateInt);
+        }
+        int[] dateInts = new int[dateIntList.size()];
+        for (int i = 0; i < dateInts.length; i++) dateInts[i] = dateIntList.get(i);
+        return dateInts;
+    }
+
+    /**
+     * Draws each investment account's securities from the pool and assigns
+     * account ids (investment account followed by its security accounts).
+     */
+    private ArrayList<ArrayList<Holding>> assignHoldings() {
+        ArrayList<ArrayList<Holding>> holdingsBySecurity = new ArrayList<>();
+        for (int i = 0; i < numSecurities; i++) holdingsBySecurity.add(new ArrayList<Holding>());
+        int holdingsPerAccount = Math.min(securitiesPerAccount, numSecurities);
+        int[] pool = new int[numSecurities];
+        for (int i = 0; i < numSecurities; i++) pool[i] = i;
+        long accountId = firstInvestmentAccountId;
+        for (int a = 0; a < numInvestmentAccounts; a++) {
+            long investmentAccountId = accountId++;
+            for (int h = 0; h < holdingsPerAccount; h++) {
+                int j = h + random.nextInt(numSecurities - h);
+                int securityIndex = pool[j];
+                pool[j] = pool[h];
+                pool[h] = securityIndex;
+                Holding holding = new Holding(a, investmentAccountId, accountId++, securityIndex,
+                        h < shortHoldingsPerAccount, random.nextDouble() < lotMatchFraction,
+                        random.nextDouble() < dividendReinvestFraction);
+                holdingsBySecurity.get(securityIndex).add(holding);
+            }
+        }
+        return holdingsBySecurity;
+    }
+
+    /**
+     * Writes currency, price snapshots and splits for one security, then the
+     * transactions of every holding of that security.
+     */
+    private void writeSecurity(BufferedWriter out, BufferedWriter txnOut, int securityIndex,
+                               int[] dateInts, ArrayList<Holding> holdings) throws IOException {
+        long currencyId = baseCurrencyId + 1 + securityIndex;
+        // split days (never the first day, so every split has prior prices)
+        double[] splitFactors = new double[dateInts.length];
+        for (int i = 0; i < dateInts.length; i++) splitFactors[i] = 1.0;
+        for (int s = 0; s < splitsPerSecurity && dateInts.length > 1; s++) {
+            splitFactors[1 + random.nextInt(dateInts.length - 1)] = splitRatios[random.nextInt(splitRatios.length)];
+        }
+        // geometric random walk, dropping by the split ratio on split days
+        double[] prices = new double[dateInts.length];
+        double drift = 0.0003;
+        double volatility = 0.01 + 0.02 * random.nextDouble();
+        double price = 10.0 + 90.0 * random.nextDouble();
+        for (int i = 0; i < dateInts.length; i++) {
+            if (i > 0) price *= Math.exp(drift - volatility * volatility / 2.0
+                    + volatility * random.nextGaussian());
+            price = Math.max(1.0, price / splitFactors[i]);
+            prices[i] = price;
+        }
+
+        String name = getSecurityName(securityIndex);
+        out.write("curr:id=" + currencyId + "&ids=&nm=" + name + "&rrt=" + formatRate(1.0 / prices[prices.length - 1])
+                + "&dec=4&pref=&suff=&tick=" + getTicker(securityIndex) + "&dt=" + dateInts[dateInts.length - 1]
+                + "&type=1&tag.hide_in_ui=n&tag.relative_to_currid=USD" + nl);
+        for (int i = 0; i < dateInts.length; i++) {
+            if (i % snapshotInterval == 0 || i == dateInts.length - 1 || splitFactors[i] != 1.0) {
+                String rate = formatRate(1.0 / prices[i]);
+                out.write("csnap:curr=" + currencyId + "&dt=" + dateInts[i] + "&urt=" + rate
+                        + "&vol=0&low=" + rate + "&high=" + rate + nl);
+            }
+        }
+        for (int i = 0; i < dateInts.length; i++) {
+            if (splitFactors[i] != 1.0) out.write("csplit:curr=" + currencyId + "&dt=" + dateInts[i]
+                    + "&ratio=" + splitFactors[i] + "&oldshares=1&newshares=1" + nl);
+        }
+
+        for (Holding holding : holdings) {
+            int[] eventIndices = getEventIndices(dateInts.length, splitFactors);
+            if (holding.isShort) {
+                writeShortHolding(txnOut, holding, name, dateInts, prices, splitFactors, eventIndices);
+            } else {
+                writeLongHolding(txnOut, holding, name, dateInts, prices, splitFactors, eventIndices);
+            }
+        }
+    }
+
+    /**
+     * Sorted, distinct trade days, after the first day (which carries the
+     * opening deposits) and never on a split day.
+     */
+    private int[] getEventIndices(int numDays, double[] splitFactors) {
+        int numEvents = Math.min(tradesPerHolding, numDays / 2);
+        boolean[] taken = new boolean[numDays];
+        int count = 0;
+        while (count < numEvents) {
+            int i = 1 + random.nextInt(numDays - 1);
+            if (!taken[i] && splitFactors[i] == 1.0) {
+                taken[i] = true;
+                count++;
+            }
+        }
+        int[] eventIndices = new int[numEvents];
+        for (int i = 0, j = 0; i < numDays; i++) {
+            if (taken[i]) eventIndices[j++] = i;
+        }
+        return eventIndices;
+    }
+
+    private void writeLongHolding(BufferedWriter txnOut, Holding holding, String name, int[] dateInts,
+                                  double[] prices, double[] splitFactors, int[] eventIndices) throws IOException {
+        long position = 0; // shares * 10000
+        ArrayList<long[]> lots = new ArrayList<>(); // {security split id, remaining shares * 10000}
+        int prevIndex = 0;
+        for (int e = 0; e < eventIndices.length; e++) {
+            int index = eventIndices[e];
+            double splitFactor = getSplitFactor(splitFactors, prevIndex, index);
+            if (splitFactor != 1.0) {
+                position = Math.round(position * splitFactor);
+                for (long[] lot : lots) lot[1] = Math.round(lot[1] * splitFactor);
+            }
+            prevIndex = index;
+            double price = prices[index];
+            int dateInt = dateInts[index];
+            double choice = random.nextDouble();
+            if (position < 10000 || choice < 0.4) {
+                boolean xfer = random.nextDouble() < 0.25;
+                long shares = (10 + random.nextInt(491)) * 10000L;
+                long amount = Math.round(shares / 10000.0 * price * 100.0);
+                long commission = getCommission();
+                TxnBuilder txn = new TxnBuilder(holding.investmentAccountId, (xfer ? "Buy Xfer " : "Buy ") + name,
+                        dateInt, xfer ? "xfrtp_buysellxfr" : "xfrtp_buysell", null);
+                long splitId = txn.addSplit(holding.securityAccountId, amount, shares, getRate(shares, amount, price),
+                        "sec", null);
+                txn.addSplit(commissionAccountId, commission, commission, "1.0", "fee", null);
+                if (xfer) txn.addSplit(checkingAccountId, -amount - commission, -amount - commission, "1.0", "xfr", null);
+                txnOut.write(txn.toString());
+                position += shares;
+                lots.add(new long[]{splitId, shares});
+            } else if (choice < 0.7) {
+                boolean xfer = random.nextDouble() < 0.25;
+                long shares = random.nextDouble() < 0.15 ? position
+                        : Math.max(10000L, Math.round(position * (0.2 + 0.6 * random.nextDouble()) / 10000.0) * 10000L);
+                shares = Math.min(shares, position);
+                long amount = Math.round(shares / 10000.0 * price * 100.0);
+                long commission = getCommission();
+                String costBasis = allocateLots(lots, shares, holding.lotMatch);
+                TxnBuilder txn = new TxnBuilder(holding.investmentAccountId, (xfer ? "Sell Xfer " : "Sell ") + name,
+                        dateInt, xfer ? "xfrtp_buysellxfr" : "xfrtp_buysell", null);
+                txn.addSplit(holding.securityAccountId, -amount, -shares, getRate(shares, amount, price), "sec",
+                        costBasis);
+                txn.addSplit(commissionAccountId, commission, commission, "1.0", "fee", null);
+                if (xfer) txn.addSplit(checkingAccountId, amount - commission, amount - commission, "1.0", "xfr", null);
+                txnOut.write(txn.toString());
+                position -= shares;
+            } else {
+                long amount = Math.max(1L, Math.round(position / 10000.0 * price * 100.0 * 0.004));
+                long reinvestShares = holding.reinvest ? Math.round(amount / 100.0 / price * 10000.0) : 0;
+                if (reinvestShares > 0) {
+                    TxnBuilder txn = new TxnBuilder(holding.investmentAccountId, "Dividend Reinvest " + name,
+                            dateInt, "xfrtp_dividend", Boolean.TRUE);
+                    txn.addSplit(holding.securityAccountId, amount, reinvestShares,
+                            getRate(reinvestShares, amount, price), "sec", null);
+                    txn.addSplit(dividendAccountId, -amount, -amount, "1.0", "inc", null);
+                    txnOut.write(txn.toString());
+                    position += reinvestShares;
+                } else {
+                    boolean xfer = random.nextDouble() < 0.25;
+                    TxnBuilder txn = new TxnBuilder(holding.investmentAccountId,
+                            (xfer ? "Dividend Transfer " : "Dividend ") + name, dateInt,
+                            xfer ? "xfrtp_dividendxfr" : "xfrtp_dividend", xfer ? null : Boolean.FALSE);
+                    txn.addSplit(holding.securityAccountId, 0, 0, formatRate(1.0 / price), "sec", null);
+                    txn.addSplit(dividendAccountId, -amount, -amount, "1.0", "inc", null);
+                    if (xfer) txn.addSplit(checkingAccountId, amount, amount, "1.0", "xfr", null);
+                    txnOut.write(txn.toString());
+                }
+            }
+        }
+    }
+
+    private void writeShortHolding(BufferedWriter txnOut, Holding holding, String name, int[] dateInts,
+                                   double[] prices, double[] splitFactors, int[] eventIndices) throws IOException {
+        long position = 0; // shares * 10000, never positive
+        int prevIndex = 0;
+        for (int e = 0; e < eventIndices.length; e++) {
+            int index = eventIndices[e];
+            position = Math.round(position * getSplitFactor(splitFactors, prevIndex, index));
+            prevIndex = index;
+            double price = prices[index];
+            long commission = getCommission();
+            if (position > -10000 || random.nextDouble() < 0.4) {
+                long shares = (10 + random.nextInt(291)) * 10000L;
+                long amount = Math.round(shares / 10000.0 * price * 100.0);
+                TxnBuilder txn = new TxnBuilder(holding.investmentAccountId, "Short " + name,
+                        dateInts[index], "xfrtp_shortcover", null);
+                txn.addSplit(holding.securityAccountId, -amount, -shares, getRate(shares, amount, price), "sec", null);
+                txn.addSplit(commissionAccountId, commission, commission, "1.0", "fee", null);
+                txnOut.write(txn.toString());
+                position -= shares;
+            } else {
+                long shares = random.nextDouble() < 0.3 ? -position
+                        : Math.max(10000L, Math.round(-position * 0.5 / 10000.0) * 10000L);
+                shares = Math.min(shares, -position);
+                long amount = Math.round(shares / 10000.0 * price * 100.0);
+                TxnBuilder txn = new TxnBuilder(holding.investmentAccountId, "Cover " + name,
+                        dateInts[index], "xfrtp_shortcover", null);
+                txn.addSplit(holding.securityAccountId, amount, shares, getRate(shares, amount, price), "sec", null);
+                txn.addSplit(commissionAccountId, commission, commission, "1.0", "fee", null);
+                txnOut.write(txn.toString());
+                position += shares;
+            }
+        }
+    }
+
+    /**
+     * Removes sold shares from open lots.  Lot-matched holdings tag the sell
+     * with the lots it draws on (starting from a random lot), others draw
+     * first-in first-out without a tag.
+     *
+     * @return cost basis tag value, or null
+     */
+    private String allocateLots(ArrayList<long[]> lots, long shares, boolean lotMatch) {
+        if (lots.isEmpty()) return null;
+        StringBuilder costBasis = new StringBuilder();
+        int start = lotMatch ? random.nextInt(lots.size()) : 0;
+        long remaining = shares;
+        for (int i = 0; i < lots.size() && remaining > 0; i++) {
+            long[] lot = lots.get((start + i) % lots.size());
+            long allocated = Math.min(lot[1], remaining);
+            if (allocated <= 0) continue;
+            lot[1] -= allocated;
+            remaining -= allocated;
+            costBasis.append(lot[0]).append(":").append(allocated).append("%3B");
+        }
+        for (int i = lots.size() - 1; i >= 0; i--) {
+            if (lots.get(i)[1] <= 0) lots.remove(i);
+        }
+        return lotMatch && costBasis.length() > 0 ? costBasis.toString() : null;
+    }
+
+    private void writeAccounts(BufferedWriter out, BufferedWriter txnOut, int firstDateInt,
+                               ArrayList<ArrayList<Holding>> holdingsBySecurity) throws IOException {
+        // security accounts by investment account, in account id order
+        ArrayList<ArrayList<Holding>> holdingsByAccount = new ArrayList<>();
+        for (int a = 0; a < numInvestmentAccounts; a++) holdingsByAccount.add(new ArrayList<Holding>());
+        for (ArrayList<Holding> holdings : holdingsBySecurity) {
+            for (Holding holding : holdings) holdingsByAccount.get(holding.accountIndex).add(holding);
+        }
+        long deposit = 100000000L; // cents per investment account
+        out.write("acct:t=r&nm=My Finances&id=" + rootAccountId + "&curr=" + baseCurrencyId + "&sbal=0" + nl);
+        out.write("acct:t=b&nm=Checking&id=" + checkingAccountId + "&curr=" + baseCurrencyId + "&sbal="
+                + deposit * numInvestmentAccounts + "&pid=" + rootAccountId + nl);
+        out.write("acct:t=i&nm=Dividends&id=" + dividendAccountId + "&curr=" + baseCurrencyId + "&sbal=0&pid="
+                + rootAccountId + nl);
+        out.write("acct:t=e&nm=Trading Commission&id=" + commissionAccountId + "&curr=" + baseCurrencyId
+                + "&sbal=0&pid=" + rootAccountId + nl);
+        for (int a = 0; a < numInvestmentAccounts; a++) {
+            ArrayList<Holding> holdings = holdingsByAccount.get(a);
+            if (holdings.isEmpty()) continue;
+            long investmentAccountId = holdings.get(0).investmentAccountId;
+            out.write("acct:t=v&nm=Synthetic Brokerage " + (a + 1) + "&id=" + investmentAccountId + "&curr="
+                    + baseCurrencyId + "&sbal=0&pid=" + rootAccountId + nl);
+            for (Holding holding : holdings) {
+                int i = holding.securityIndex;
+                boolean fund = i % 5 == 4;
+                out.write("acct:t=s&nm=" + getSecurityName(i) + "&id=" + holding.securityAccountId + "&curr="
+                        + (baseCurrencyId + 1 + i) + "&sbal=0&pid=" + investmentAccountId + "&p.sec_subtype="
+                        + (fund ? "Index Fund" : stockSubTypes[i % stockSubTypes.length]) + "&p.cost_basis="
+                        + (holding.lotMatch ? "y" : "n") + "&p.sec_type=" + (fund ? 2 : 3) + nl);
+            }
+            TxnBuilder txn = new TxnBuilder(investmentAccountId, "Deposit", firstDateInt, "xfrtp_bank", null);
+            txn.addSplit(checkingAccountId, -deposit, -deposit, "1.0", "xfr", null);
+            txnOut.write(txn.toString());
+        }
+    }
+
+    private static double getSplitFactor(double[] splitFactors, int fromIndex, int toIndex) {
+        double splitFactor = 1.0;
+        for (int i = fromIndex + 1; i <= toIndex; i++) splitFactor *= splitFactors[i];
+        return splitFactor;
+    }
+
+    private long getCommission() {
+        return 495 + random.nextInt(1000);
+    }
+
+    private static String getRate(long shares, long amount, double price) {
+        return amount == 0 ? formatRate(1.0 / price) : formatRate((double) shares / amount);
+    }
+
+    private static String formatRate(double rate) {
+        return new BigDecimal(rate).round(rateContext).stripTrailingZeros().toPlainString();
+    }
+
+    private static String getSecurityName(int securityIndex) {
+        return String.format("Synthetic Security %05d", securityIndex + 1);
+    }
+
+    private static String getTicker(int securityIndex) {
+        return String.format("SYN%05d", securityIndex + 1);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getNumInvestmentAccounts() {
+        return numInvestmentAccounts;
+    }
+
+    public void setNumInvestmentAccounts(int numInvestmentAccounts) {
+        this.numInvestmentAccounts = numInvestmentAccounts;
+    }
+
+    public int getNumSecurities() {
+        return numSecurities;
+    }
+
+    public void setNumSecurities(int numSecurities) {
+        this.numSecurities = numSecurities;
+    }
+
+    public int getSecuritiesPerAccount() {
+        return securitiesPerAccount;
+    }
+
+    public void setSecuritiesPerAccount(int securitiesPerAccount) {
+        this.securitiesPerAccount = securitiesPerAccount;
+    }
+
+    public int getShortHoldingsPerAccount() {
+        return shortHoldingsPerAccount;
+    }
+
+    public void setShortHoldingsPerAccount(int shortHoldingsPerAccount) {
+        this.shortHoldingsPerAccount = shortHoldingsPerAccount;
+    }
+
+    public int getStartDateInt() {
+        return startDateInt;
+    }
+
+    public void setStartDateInt(int startDateInt) {
+        this.startDateInt = startDateInt;
+    }
+
+    public int getYears() {
+        return years;
+    }
+
+    public void setYears(int years) {
+        this.years = years;
+    }
+
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public void setSnapshotInterval(int snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public int getSplitsPerSecurity() {
+        return splitsPerSecurity;
+    }
+
+    public void setSplitsPerSecurity(int splitsPerSecurity) {
+        this.splitsPerSecurity = splitsPerSecurity;
+    }
+
+    public int getTradesPerHolding() {
+        return tradesPerHolding;
+    }
+
+    public void setTradesPerHolding(int tradesPerHolding) {
+        this.tradesPerHolding = tradesPerHolding;
+    }
+
+    public double getDividendReinvestFraction() {
+        return dividendReinvestFraction;
+    }
+
+    public void setDividendReinvestFraction(double dividendReinvestFraction) {
+        this.dividendReinvestFraction = dividendReinvestFraction;
+    }
+
+    public double getLotMatchFraction() {
+        return lotMatchFraction;
+    }
+
+    public void setLotMatchFraction(double lotMatchFraction) {
+        this.lotMatchFraction = lotMatchFraction;
+    }
+
+    /**
+     * Hand-specified trades in one investment account, for tests which need
+     * exact quantities and costs (no commissions or lot tags).  Securities
+     * are priced at their trades, and may split.
+     */
+    public static class TradeFile {
+        private final SyntheticDataGenerator generator = new SyntheticDataGenerator(DEFAULT_SEED);
+        private final ArrayList<String> securityNames = new ArrayList<>();
+        private final ArrayList<Double> lastPrices = new ArrayList<>();
+        private final StringBuilder priceLines = new StringBuilder();
+        private final StringBuilder txnLines = new StringBuilder();
+        private int lastDateInt = 20000101;
+
+        public TradeFile() {
+            generator.nextTxnId = 1;
+        }
+
+        /**
+         * @param name security name
+         * @return index of security, for trades and splits
+         */
+        public int addSecurity(String name) {
+            securityNames.add(name);
+            lastPrices.add(1.0);
+            return securityNames.size() - 1;
+        }
+
+        public void addSplit(int security, int dateInt, double ratio) {
+            priceLines.append("csplit:curr=").append(getCurrencyId(security)).append("&dt=").append(dateInt)
+                    .append("&ratio=").append(ratio).append("&oldshares=1&newshares=1").append(nl);
+        }
+
+        public void buy(int security, int dateInt, double shares, double amount) {
+            addTrade(security, dateInt, "Buy", "xfrtp_buysell", shares, amount);
+        }
+
+        public void sell(int security, int dateInt, double shares, double amount) {
+            addTrade(security, dateInt, "Sell", "xfrtp_buysell", -shares, -amount);
+        }
+
+        public void shortSell(int security, int dateInt, double shares, double amount) {
+            addTrade(security, dateInt, "Short", "xfrtp_shortcover", -shares, -amount);
+        }
+
+        private void addTrade(int security, int dateInt, String desc, String xferType, double shares,
+                              double amount) {
+            long secShares = Math.round(shares * 10000.0);
+            long cents = Math.round(amount * 100.0);
+            double price = amount / shares;
+            String rate = formatRate(1.0 / price);
+            priceLines.append("csnap:curr=").append(getCurrencyId(security)).append("&dt=").append(dateInt)
+                    .append("&urt=").append(rate).append("&vol=0&low=").append(rate).append("&high=").append(rate)
+                    .append(nl);
+            if (dateInt >= lastDateInt) {
+                lastDateInt = dateInt;
+                lastPrices.set(security, price);
+            }
+            TxnBuilder txn = generator.new TxnBuilder(firstInvestmentAccountId, desc + " "
+                    + securityNames.get(security), dateInt, xferType, null);
+            txn.addSplit(getSecurityAccountId(security), cents, secShares,
+                    getRate(Math.abs(secShares), Math.abs(cents), price), "sec", null);
+            txnLines.append(txn);
+        }
+
+        /**
+         * Writes the data file to a temporary directory and loads it.
+         *
+         * @return root account of trades
+         * @throws Exception
+         */
+        public RootAccount generateRootAccount() throws Exception {
+            File directory = Files.createTempDirectory("trades").toFile();
+            return readDataFile(directory, writeDataFile(directory));
+        }
+
+        /**
+         * Writes root.mdinternal to a ".moneydance" directory under the
+         * directory given.
+         *
+         * @param directory parent directory
+         * @return data file written
+         * @throws IOException
+         */
+        public File writeDataFile(File directory) throws IOException {
+            File mdDirectory = new File(directory, "trades.moneydance");
+            if (!mdDirectory.isDirectory() && !mdDirectory.mkdirs())
+                throw new IOException("Cannot create directory " + mdDirectory.getAbsolutePath());
+            File dataFile = new File(mdDirectory, "root.mdinternal");
+            try (BufferedWriter out = new BufferedWriter(new FileWriter(dataFile))) {
+                out.write("mdkv1/clear:v=2009" + nl);
+                out.write("curr:id=" + baseCurrencyId + "&ids=USD&nm=US Dollar&rrt=1.0&dec=2&pref=$&suff=&tick=&dt="
+                        + lastDateInt + "&type=0&tag.hide_in_ui=n" + nl);
+                for (int i = 0; i < securityNames.size(); i++) {
+                    out.write("curr:id=" + getCurrencyId(i) + "&ids=&nm=" + securityNames.get(i) + "&rrt="
+                            + formatRate(1.0 / lastPrices.get(i)) + "&dec=4&pref=&suff=&tick=" + getTicker(i)
+                            + "&dt=" + lastDateInt + "&type=1&tag.hide_in_ui=n&tag.relative_to_currid=USD" + nl);
+                }
+                out.write(priceLines.toString());
+                out.write("acct:t=r&nm=My Finances&id=" + rootAccountId + "&curr=" + baseCurrencyId + "&sbal=0" + nl);
+                out.write("acct:t=v&nm=Trades&id=" + firstInvestmentAccountId + "&curr=" + baseCurrencyId
+                        + "&sbal=0&pid=" + rootAccountId + nl);
+                for (int i = 0; i < securityNames.size(); i++) {
+                    out.write("acct:t=s&nm=" + securityNames.get(i) + "&id=" + getSecurityAccountId(i) + "&curr="
+                            + getCurrencyId(i) + "&sbal=0&pid=" + firstInvestmentAccountId
+                            + "&p.sec_subtype=" + stockSubTypes[0] + "&p.cost_basis=n&p.sec_type=3" + nl);
+                }
+                out.write(txnLines.toString());
+                out.write("olinfo:info={%0A}%0A" + nl);
+            }
+            return dataFile;
+        }
+
+        private static long getCurrencyId(int security) {
+            return baseCurrencyId + 1 + security;
+        }
+
+        private static long getSecurityAccountId(int security) {
+            return firstInvestmentAccountId + 1 + security;
+        }
+    }
+
+    /**
+     * One security held in one investment account
+     */
+    private static class Holding {
+        final int accountIndex;
+        final long investmentAccountId;
+        final long securityAccountId;
+        final int securityIndex;
+        final boolean isShort;
+        final boolean lotMatch;
+        final boolean reinvest;
+
+        Holding(int accountIndex, long investmentAccountId, long securityAccountId, int securityIndex,
+                boolean isShort, boolean lotMatch, boolean reinvest) {
+            this.accountIndex = accountIndex;
+            this.investmentAccountId = investmentAccountId;
+            this.securityAccountId = securityAccountId;
+            this.securityIndex = securityIndex;
+            this.isShort = isShort;
+            this.lotMatch = lotMatch;
+            this.reinvest = reinvest;
+        }
+    }
+
+    /**
+     * Builds one transaction line; ids for the parent and its splits share
+     * one sequence, as lot tags refer to split ids.
+     */
+    private class TxnBuilder {
+        private final StringBuilder line = new StringBuilder();
+        private final String desc;
+        private int splitCount = 0;
+
+        TxnBuilder(long investmentAccountId, String desc, int dateInt, String xferType, Boolean reinvest) {
+            long txnId = nextTxnId++;
+            this.desc = desc;
+            line.append("txn:id=").append(txnId).append("&pacct=").append(investmentAccountId)
+                    .append("&desc=").append(desc).append("&stat= &dt=").append(dateInt)
+                    .append("&de=").append(baseEntryMillis + txnId * 1000L).append("&td=").append(dateInt)
+                    .append("&chk=&memo=&tag.xfer_type=").append(xferType);
+            if (reinvest != null) line.append("&tag.reinvest=").append(reinvest);
+        }
+
+        long addSplit(long accountId, long parentAmount, long splitAmount, String rate, String splitType,
+                      String costBasis) {
+            long splitId = nextTxnId++;
+            String prefix = "&split" + splitCount++ + ".";
+            line.append(prefix).append("id=").append(splitId)
+                    .append(prefix).append("acct=").append(accountId)
+                    .append(prefix).append("desc=").append(desc)
+                    .append(prefix).append("pamt=").append(parentAmount)
+                    .append(prefix).append("rrt=").append(rate)
+                    .append(prefix).append("samt=").append(splitAmount)
+                    .append(prefix).append("stat= ")
+                    .append(prefix).append("tag.invest.splittype=").append(splitType);
+            if (costBasis != null) line.append(prefix).append("tag.cost_basis=").append(costBasis);
+            return splitId;
+        }
+
+        @Override
+        public String toString() {
+            return line.toString() + nl;
+        }
+    }
+}
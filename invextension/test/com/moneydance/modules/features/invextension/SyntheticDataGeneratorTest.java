@@ -0,0 +1,114 @@
+/*
+ * SyntheticDataGeneratorTest.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.model.RootAccount;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that synthetic datasets are reproducible from their seed and
+ * load as valid Moneydance data
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class SyntheticDataGeneratorTest {
+
+    private static SyntheticDataGenerator getSmallGenerator(long seed) {
+        SyntheticDataGenerator generator = SyntheticDataGenerator.getScaledGenerator(2, seed);
+        generator.setYears(3);
+        return generator;
+    }
+
+    private static List<String> writeLines(SyntheticDataGenerator generator) throws Exception {
+        File directory = Files.createTempDirectory("synthetic").toFile();
+        File dataFile = generator.writeDataFile(directory);
+        List<String> lines = Files.readAllLines(dataFile.toPath(), StandardCharsets.UTF_8);
+        dataFile.delete();
+        dataFile.getParentFile().delete();
+        directory.delete();
+        return lines;
+    }
+
+    private static int countLines(List<String> lines, String prefix) {
+        int count = 0;
+        for (String line : lines) {
+            if (line.startsWith(prefix)) count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void testSameSeedSameData() throws Exception {
+        List<String> lines = writeLines(getSmallGenerator(SyntheticDataGenerator.DEFAULT_SEED));
+        assertEquals(lines, writeLines(getSmallGenerator(SyntheticDataGenerator.DEFAULT_SEED)));
+        assertFalse(lines.equals(writeLines(getSmallGenerator(SyntheticDataGenerator.DEFAULT_SEED + 1))));
+    }
+
+    @Test
+    public void testScaledCounts() throws Exception {
+        SyntheticDataGenerator generator = getSmallGenerator(SyntheticDataGenerator.DEFAULT_SEED);
+        List<String> lines = writeLines(generator);
+        assertEquals(generator.getNumSecurities(), countLines(lines, "curr:") - 1);
+        assertEquals(generator.getNumSecurities() * generator.getSplitsPerSecurity(), countLines(lines, "csplit:"));
+        assertEquals(generator.getNumInvestmentAccounts(), countLines(lines, "acct:t=v"));
+        assertEquals(generator.getNumInvestmentAccounts() * generator.getSecuritiesPerAccount(),
+                countLines(lines, "acct:t=s"));
+        int holdings = generator.getNumInvestmentAccounts() * generator.getSecuritiesPerAccount();
+        assertEquals(holdings * generator.getTradesPerHolding() + generator.getNumInvestmentAccounts(),
+                countLines(lines, "txn:"));
+        for (String type : Arrays.asList("xfrtp_shortcover", "tag.reinvest=true", "tag.cost_basis=")) {
+            boolean found = false;
+            for (String line : lines) found |= line.contains(type);
+            assertTrue(type, found);
+        }
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        SyntheticDataGenerator generator = getSmallGenerator(SyntheticDataGenerator.DEFAULT_SEED);
+        RootAccount root = generator.generateRootAccount();
+        BulkSecInfo currentInfo = new BulkSecInfo(root,
+                ReportConfig.getStandardReportConfig(TotalFromToReport.class));
+        assertEquals(generator.getNumInvestmentAccounts(), currentInfo.getInvestmentWrappers().size());
+        assertEquals(generator.getNumInvestmentAccounts() * generator.getSecuritiesPerAccount(),
+                TotalReport.getSecurityAccountWrappers(currentInfo).size());
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * TestBenchmarkSuite.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.controller.io.FileUtils;
+import com.moneydance.apps.md.model.RootAccount;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of each stage of the report pipeline (security load,
+ * transaction values, gains calculations, date arithmetic, returns and
+ * report calculation) on one or more data files.  Each benchmark runs in
+ * its own forked JVM with fixtures built once per trial; main runs them
+ * with the GC profiler, so results include allocation per operation and
+ * garbage collections, and writes them as JSON so that runs can be
+ * compared.
+ * <p/>
+ * Arguments: [-warmup n] [-iterations n] [-json file] [-seed n]
+ * [-synthetic scale,...] [dataFile...]; defaults to the stored test file.
+ * Synthetic datasets (see SyntheticDataGenerator) are generated at each
+ * scale given, e.g. "-synthetic 10,100,1000".
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+@SuppressWarnings("unused")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TestBenchmarkSuite {
+    private static final String testDataset = "test";
+    private static final String syntheticPrefix = "synthetic-";
+
+    /**
+     * "test" for the stored test file, "synthetic-<scale>" for a generated
+     * dataset, otherwise path of a data file
+     */
+    @Param({testDataset})
+    public String dataset;
+    @Param({"" + SyntheticDataGenerator.DEFAULT_SEED})
+    public long seed;
+
+    RootAccount root;
+    ReportConfig avgCostConfig;
+    ReportConfig snapConfig;
+    BulkSecInfo avgCostInfo;
+    BulkSecInfo lotMatchInfo;
+    ArrayList<SecurityAccountWrapper> secWrappers;
+    ArrayList<SecurityAccountWrapper> lotMatchWrappers;
+    // transaction values regenerated once, for gains calculation replays
+    ArrayList<ArrayList<TransactionValues>> avgCostTransValues;
+    ArrayList<ArrayList<TransactionValues>> lotMatchTransValues;
+    ArrayList<SecurityFromToReport> returnReports;
+    ArrayList<double[][]> xirrInputs;
+    int[] dateInts;
+
+    public static void main(String[] args) throws Exception {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(TestBenchmarkSuite.class.getName() + "\\.")
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON);
+        String jsonFile = "benchmarkResults.json";
+        ArrayList<String> datasets = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-warmup")) {
+                options.warmupIterations(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-iterations")) {
+                options.measurementIterations(Integer.parseInt(args[++i]));
+            } else if (args[i].equals("-json")) {
+                jsonFile = args[++i];
+            } else if (args[i].equals("-seed")) {
+                options.param("seed", args[++i]);
+            } else if (args[i].equals("-synthetic")) {
+                for (String scale : args[++i].split(",")) datasets.add(syntheticPrefix + scale.trim());
+            } else {
+                datasets.add(new File(args[i]).getAbsolutePath());
+            }
+        }
+        if (!datasets.isEmpty()) options.param("dataset", datasets.toArray(new String[datasets.size()]));
+        new Runner(options.result(jsonFile).build()).run();
+        System.out.println("Results written to " + new File(jsonFile).getAbsolutePath());
+    }
+
+    static RootAccount loadDataset(String dataset, long seed) throws Exception {
+        if (dataset.equals(testDataset)) {
+            return FileUtils.readAccountsFromFile(BulkSecInfoTest.mdTestFile, null);
+        } else if (dataset.startsWith(syntheticPrefix)) {
+            int scale = Integer.parseInt(dataset.substring(syntheticPrefix.length()));
+            return SyntheticDataGenerator.getScaledGenerator(scale, seed).generateRootAccount();
+        } else {
+            return FileUtils.readAccountsFromFile(new File(dataset), null);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        root = loadDataset(dataset, seed);
+        avgCostConfig = ReportConfig.getStandardReportConfig(TotalFromToReport.class);
+        ReportConfig lotMatchConfig = ReportConfig.getStandardReportConfig(TotalFromToReport.class);
+        lotMatchConfig.setUseAverageCostBasis(false);
+        snapConfig = ReportConfig.getStandardReportConfig(TotalSnapshotReport.class);
+
+        avgCostInfo = new BulkSecInfo(root, avgCostConfig, false);
+        lotMatchInfo = new BulkSecInfo(root, lotMatchConfig, false);
+        secWrappers = TotalReport.getSecurityAccountWrappers(avgCostInfo);
+        lotMatchWrappers = TotalReport.getSecurityAccountWrappers(lotMatchInfo);
+        avgCostTransValues = getTransValues(secWrappers);
+        lotMatchTransValues = getTransValues(lotMatchWrappers);
+
+        // return inputs from all leaf and composite From/To reports
+        TotalReport fromToReport = new TotalFromToReport(avgCostConfig);
+        fromToReport.calcReport(avgCostInfo);
+        returnReports = new ArrayList<>();
+        for (SecurityReport securityReport : fromToReport.getSecurityReports()) {
+            returnReports.add((SecurityFromToReport) securityReport);
+        }
+        for (CompositeReport compositeReport : fromToReport.getCompositeReports()) {
+            returnReports.add((SecurityFromToReport) compositeReport.getAggregateReport());
+        }
+        xirrInputs = getXIRRInputs(returnReports);
+        dateInts = getTransactionDateInts(secWrappers);
+    }
+
+    @Benchmark
+    public int bulkSecInfoSerial() throws Exception {
+        return new BulkSecInfo(root, avgCostConfig, false).getInvestmentWrappers().size();
+    }
+
+    @Benchmark
+    public int bulkSecInfoParallel() throws Exception {
+        return new BulkSecInfo(root, avgCostConfig, true).getInvestmentWrappers().size();
+    }
+
+    /*
+     * regenerates transaction values of securities loaded for this benchmark
+     * only, as other benchmarks read avgCostInfo
+     */
+    @Benchmark
+    public int generateTransValues(TransValuesState state) throws Exception {
+        int count = 0;
+        for (SecurityAccountWrapper secWrapper : state.secWrappers) {
+            secWrapper.generateTransValues();
+            count += secWrapper.getTransactionValues().size();
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int gainsAverageCalc() {
+        return replayGainsCalc(avgCostInfo, avgCostTransValues, CostBasisMethod.AVERAGE);
+    }
+
+    @Benchmark
+    public int gainsLotMatchCalc() {
+        return replayGainsCalc(lotMatchInfo, lotMatchTransValues, CostBasisMethod.LOT_MATCH);
+    }
+
+    @Benchmark
+    public int gainsFifoCalc() {
+        return replayGainsCalc(lotMatchInfo, lotMatchTransValues, CostBasisMethod.FIFO);
+    }
+
+    @Benchmark
+    public int gainsHifoCalc() {
+        return replayGainsCalc(lotMatchInfo, lotMatchTransValues, CostBasisMethod.HIFO);
+    }
+
+    @Benchmark
+    public int dateUtils() {
+        int count = 0;
+        for (int dateInt : dateInts) {
+            count += DateUtils.getDaysBetween(dateInt, DateUtils.addMonthsInt(dateInt, 12));
+            count += DateUtils.getLatestBusinessDay(dateInt);
+            count += (int) DateUtils.getExcelDateValue(dateInt);
+            count += DateUtils.addDaysInt(dateInt, 7);
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int computeMDReturn() {
+        int count = 0;
+        for (SecurityFromToReport report : returnReports) {
+            double mdReturn = report.computeMDReturn(report.getStartValue(), report.getEndValue(),
+                    report.getIncome(), report.getExpense(), report.getMdMap());
+            if (!Double.isNaN(mdReturn)) count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int xirr() {
+        int count = 0;
+        XIRR.Solver solver = new XIRR.Solver();
+        for (double[][] input : xirrInputs) {
+            double annualReturn = solver.xirr(input[0], input[1], input[0].length, input[2][0]);
+            if (!Double.isNaN(annualReturn)) count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int fromToCalcReport() throws Exception {
+        TotalReport report = new TotalFromToReport(avgCostConfig);
+        report.calcReport(avgCostInfo);
+        return report.getCompositeReports().size();
+    }
+
+    @Benchmark
+    public int snapshotCalcReport() throws Exception {
+        TotalReport report = new TotalSnapshotReport(snapConfig);
+        report.calcReport(avgCostInfo);
+        return report.getCompositeReports().size();
+    }
+
+    @Benchmark
+    public int fromToCalcReportParallel() throws Exception {
+        TotalReport report = new TotalFromToReport(avgCostConfig);
+        report.setParallelCalc(true);
+        report.calcReport(avgCostInfo);
+        return report.getCompositeReports().size();
+    }
+
+    /*
+     * reruns gains calculation of every transaction, in order, as the
+     * transaction values are built (lot ledgers are reset by the first
+     * transaction of each security, so each replay starts alike)
+     */
+    private static int replayGainsCalc(BulkSecInfo currentInfo,
+                                       ArrayList<ArrayList<TransactionValues>> transValuesLists,
+                                       CostBasisMethod costBasisMethod) {
+        int count = 0;
+        for (ArrayList<TransactionValues> transValuesList : transValuesLists) {
+            GainsCalc gainsCalc = costBasisMethod.createGainsCalc();
+            ArrayList<TransactionValues> prevTranses = new ArrayList<>();
+            for (TransactionValues transValues : transValuesList) {
+                gainsCalc.initializeGainsCalc(currentInfo, transValues, prevTranses);
+                if (gainsCalc.getLongBasis() != 0 || gainsCalc.getShortBasis() != 0) count++;
+                prevTranses.add(transValues);
+            }
+        }
+        return count;
+    }
+
+    /*
+     * transaction values of each security, which are released once ledgers
+     * are built
+     */
+    private static ArrayList<ArrayList<TransactionValues>> getTransValues(
+            ArrayList<SecurityAccountWrapper> secWrappers) throws Exception {
+        ArrayList<ArrayList<TransactionValues>> transValuesLists = new ArrayList<>();
+        for (SecurityAccountWrapper secWrapper : secWrappers) {
+            transValuesLists.add(secWrapper.getTransactionValues());
+        }
+        return transValuesLists;
+    }
+
+    /*
+     * XIRR inputs (values, excel dates, guess) as in recomputeAggregateReturns
+     */
+    private static ArrayList<double[][]> getXIRRInputs(ArrayList<SecurityFromToReport> reports) {
+        ArrayList<double[][]> inputs = new ArrayList<>();
+        for (SecurityFromToReport report : reports) {
+            DateMap returnMap = new DateMap(report.getArMap());
+            if (report.getStartValue() != 0) returnMap.add(report.getFromDateInt(), -report.getStartValue());
+            if (report.getEndValue() != 0) returnMap.add(report.getToDateInt(), report.getEndValue());
+            if (returnMap.size() < 2) continue;
+            double[] excelDates = new double[returnMap.size()];
+            for (int i = 0; i < excelDates.length; i++) {
+                excelDates[i] = DateUtils.getExcelDateValue(returnMap.getDateInt(i));
+            }
+            double totYrs = (excelDates[excelDates.length - 1] - excelDates[0]) / 365;
+            double guess = Math.max(1 + report.getMdReturn() / totYrs, 0.01);
+            inputs.add(new double[][]{returnMap.getValues(), excelDates,
+                    {Double.isNaN(guess) ? 1.1 : guess}});
+        }
+        return inputs;
+    }
+
+    private static int[] getTransactionDateInts(ArrayList<SecurityAccountWrapper> secWrappers) {
+        int size = 0;
+        for (SecurityAccountWrapper secWrapper : secWrappers) {
+            size += secWrapper.getLedger().size();
+        }
+        int[] dateInts = new int[size];
+        int i = 0;
+        for (SecurityAccountWrapper secWrapper : secWrappers) {
+            SecurityLedger ledger = secWrapper.getLedger();
+            for (int j = 0; j < ledger.size(); j++) {
+                dateInts[i++] = ledger.getDateInt(j);
+            }
+        }
+        return dateInts;
+    }
+
+    /**
+     * Securities loaded separately for generateTransValues, which rebuilds
+     * their transaction values
+     */
+    @State(Scope.Benchmark)
+    public static class TransValuesState {
+        ArrayList<SecurityAccountWrapper> secWrappers;
+
+        @Setup(Level.Trial)
+        public void setUp(TestBenchmarkSuite suite) throws Exception {
+            secWrappers = TotalReport.getSecurityAccountWrappers(new BulkSecInfo(suite.root,
+                    ReportConfig.getStandardReportConfig(TotalFromToReport.class), false));
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * TestLedgerFootprint.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.controller.io.FileUtils;
+import com.moneydance.apps.md.model.RootAccount;
+
+import java.io.File;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+
+/**
+ * Measures heap per transaction row of a data file.  Each security keeps
+ * only its SecurityLedger once loaded, so the BulkSecInfo figure is the
+ * ledger-only footprint; the TransactionValues figure is what regenerating
+ * the rows (as the transaction listing does) costs on top.  Pass the path of a
+ * (preferably large) root.mdinternal file and optionally the number of
+ * copies to hold (scales the measurement); defaults to the stored test file.
+ */
+@SuppressWarnings("unused")
+public class TestLedgerFootprint {
+    private static final DecimalFormat decFormat = new DecimalFormat("#,##0.0");
+    private static final String tab = "\t";
+
+    public static void main(String[] args) throws Exception {
+        File mdFile = args.length > 0 ? new File(args[0]) : BulkSecInfoTest.mdTestFile;
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        RootAccount root = FileUtils.readAccountsFromFile(mdFile, null);
+        ReportConfig reportConfig = ReportConfig.getStandardReportConfig(TotalFromToReport.class);
+
+        // ledgers (with their wrappers) for "copies" loads
+        long baseHeap = usedHeap();
+        ArrayList<BulkSecInfo> infos = new ArrayList<>();
+        for (int i = 0; i < copies; i++) {
+            infos.add(new BulkSecInfo(root, reportConfig));
+        }
+        long infoHeap = usedHeap() - baseHeap;
+
+        // regenerated transaction values for the same rows
+        long rows = 0;
+        long estimatedTransValuesBytes = 0;
+        long estimatedInfoBytes = 0;
+        baseHeap = usedHeap();
+        ArrayList<ArrayList<TransactionValues>> transValuesLists = new ArrayList<>();
+        for (BulkSecInfo currentInfo : infos) {
+            estimatedInfoBytes += currentInfo.getFootprintBytes();
+            for (InvestmentAccountWrapper invWrapper : currentInfo.getInvestmentWrappers()) {
+                for (ArrayList<TransactionValues> transValues : invWrapper.createAllTransValues()) {
+                    rows += transValues.size();
+                    estimatedTransValuesBytes += (long) transValues.size() * TransactionValues.FOOTPRINT_BYTES;
+                    transValuesLists.add(transValues);
+                }
+            }
+        }
+        long transValuesHeap = usedHeap() - baseHeap;
+
+        System.out.println("File: " + mdFile.getAbsolutePath() + tab + "Copies: " + copies
+                + tab + "Rows: " + rows);
+        System.out.println("BulkSecInfo (ledger) bytes/row:" + tab
+                + decFormat.format((double) infoHeap / rows));
+        System.out.println("BulkSecInfo estimate bytes/row:" + tab
+                + decFormat.format((double) estimatedInfoBytes / rows));
+        System.out.println("TransactionValues bytes/row:" + tab
+                + decFormat.format((double) transValuesHeap / rows));
+        System.out.println("TransactionValues estimate bytes/row:" + tab
+                + decFormat.format((double) estimatedTransValuesBytes / rows));
+        // keep both alive through measurement
+        System.out.println("Held: " + infos.size() + tab + transValuesLists.size());
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
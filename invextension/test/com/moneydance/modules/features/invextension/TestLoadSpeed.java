@@ -0,0 +1,79 @@
+/*
+ * TestLoadSpeed.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.moneydance.modules.features.invextension;
+
+import com.moneydance.apps.md.controller.io.FileUtils;
+import com.moneydance.apps.md.model.RootAccount;
+
+import java.io.File;
+import java.text.DecimalFormat;
+
+/**
+ * Compares serial and parallel load times of BulkSecInfo.  Pass the path of
+ * a (preferably many-account) root.mdinternal file and optionally the number
+ * of timed runs; defaults to the stored test file.
+ */
+@SuppressWarnings("unused")
+public class TestLoadSpeed {
+    private static final DecimalFormat decFormat = new DecimalFormat("#.000");
+    private static final int warmUpRuns = 3;
+    private static final String tab = "\t";
+
+    public static void main(String[] args) throws Exception {
+        File mdFile = args.length > 0 ? new File(args[0]) : BulkSecInfoTest.mdTestFile;
+        int timedRuns = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        RootAccount root = FileUtils.readAccountsFromFile(mdFile, null);
+        ReportConfig reportConfig = ReportConfig.getStandardReportConfig(TotalFromToReport.class);
+        System.out.println("File: " + mdFile.getAbsolutePath() + tab + "Processors: "
+                + Runtime.getRuntime().availableProcessors());
+
+        double serialMillis = timeLoad(root, reportConfig, false, timedRuns);
+        double parallelMillis = timeLoad(root, reportConfig, true, timedRuns);
+        BulkSecInfo currentInfo = new BulkSecInfo(root, reportConfig, true);
+        System.out.println("Investment Accounts: " + currentInfo.getInvestmentWrappers().size());
+        System.out.println("Serial load (ms):" + tab + decFormat.format(serialMillis));
+        System.out.println("Parallel load (ms):" + tab + decFormat.format(parallelMillis));
+        System.out.println("Speed-up:" + tab + decFormat.format(serialMillis / parallelMillis));
+    }
+
+    /**
+     * @return average milliseconds per load, after warm-up runs
+     */
+    private static double timeLoad(RootAccount root, ReportConfig reportConfig, boolean parallelLoad,
+                                   int timedRuns) throws Exception {
+        for (int i = 0; i < warmUpRuns; i++) {
+            new BulkSecInfo(root, reportConfig, parallelLoad);
+        }
+        long startTime = System.nanoTime();
+        for (int i = 0; i < timedRuns; i++) {
+            new BulkSecInfo(root, reportConfig, parallelLoad);
+        }
+        return (System.nanoTime() - startTime) / 1.0e6 / timedRuns;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * XIRRTest.java
+ * Copyright (c) 2014, Dale K. Furrow
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *     * Redistributions of source code must retain the above copyright
+ *       notice, this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright
+ *       notice, this list of conditions and the following disclaimer in the
+ *       documentation and/or other materials provided with the distribution.
+ *     * Neither the name of the <organization> nor the
+ *       names of its contributors may be used to endorse or promote products
+ *       derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL <COPYRIGHT HOLDER> BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.moneydance.modules.features.invextension;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests XIRR solver against known results, including starting guesses
+ * from which Newton's method alone does not converge
+ * <p/>
+ * Version 1.0
+ *
+ * @author Dale Furrow
+ */
+public class XIRRTest {
+    private static final double delta = 1e-8;
+    // example from Excel XIRR documentation
+    private static final double[] values = {-10000, 2750, 4250, 3250, 2750};
+    private static final double[] dates = {
+            DateUtils.getExcelDateValue(20080101), DateUtils.getExcelDateValue(20080301),
+            DateUtils.getExcelDateValue(20081030), DateUtils.getExcelDateValue(20090215),
+            DateUtils.getExcelDateValue(20090401)};
+    private static final double expected = 0.373362535;
+
+    @Test
+    public void testKnownResults() {
+        assertEquals(expected, XIRR.xirr(values, dates, values.length, 1.1), delta);
+        assertEquals(expected, XIRR.xirr(new XIRRData(values.length, 1.1, values, dates)), delta);
+        double[] oneYear = {DateUtils.getExcelDateValue(20100101), DateUtils.getExcelDateValue(20110101)};
+        assertEquals(0.1, XIRR.xirr(new double[]{-1000, 1100}, oneYear, 2, 1.0), 1e-12);
+        assertEquals(-0.5, XIRR.xirr(new double[]{-1000, 500}, oneYear, 2, 1.0), 1e-12);
+    }
+
+    @Test
+    public void testPoorGuesses() {
+        for (double guess : new double[]{1e-4, 0.01, 0.5, 50, 999, -3, Double.NaN}) {
+            assertEquals("guess " + guess, expected, XIRR.xirr(values, dates, values.length, guess), delta);
+        }
+    }
+
+    @Test
+    public void testNoSolution() {
+        // all inflows, so no sign change
+        assertTrue(Double.isNaN(XIRR.xirr(new double[]{1000, 100, 100}, dates, 3, 1.1)));
+        // dates before first date
+        double[] reversed = {dates[1], dates[0]};
+        assertTrue(Double.isNaN(XIRR.xirr(new double[]{-1000, 1100}, reversed, 2, 1.1)));
+    }
+}